@@ -58,8 +58,49 @@ public class AgentOptions {
 
     private static final String DEFAULT_FORK_PROPERTIES_FILE = "";
 
+    /**
+     * Specifies the path for the file containing the per-test-method filter from test selection,
+     * one {@code suite#testMethod} entry per line. Test methods of the listed suites that are not
+     * listed are disabled in the forked test JVM. Optional - empty when per-test-method selection
+     * is not in use.
+     */
+    public static final String SELECTED_TEST_METHODS_FILE = "selectedTestMethodsFile";
+
+    private static final String DEFAULT_SELECTED_TEST_METHODS_FILE = "";
+
+    /**
+     * Specifies the path for the file containing the selected test suites in their fail-fast run
+     * order, one per line. The agent publishes it as the {@code tiaTestRunOrder} system property
+     * for the test runner's class orderer. Optional - empty when fail-fast ordering is not in use.
+     */
+    public static final String TEST_RUN_ORDER_FILE = "testRunOrderFile";
+
+    private static final String DEFAULT_TEST_RUN_ORDER_FILE = "";
+
+    /**
+     * JUnit 5 only: when {@code true}, the ignored test suites are pruned from the test plan by the
+     * Tia {@code PostDiscoveryFilter} rather than disabled by bytecode instrumentation. The agent
+     * then only publishes the ignore-tests file as the {@code tiaIgnoreTestsFile} system property.
+     * Optional - defaults to {@code false}.
+     */
+    public static final String IGNORE_TESTS_DISCOVERY_FILTER = "ignoreTestsDiscoveryFilter";
+
+    private static final String DEFAULT_IGNORE_TESTS_DISCOVERY_FILTER = "false";
+
+    /**
+     * Specifies the path for the {@link SelectionHandoff selection handoff file} - one file holding
+     * the fork properties, the ignored and selected tests, the per-test-method filter, the run
+     * order, the library JARs and the drain result. When set, the agent reads everything from it
+     * and the per-payload file options above are not used. Optional - empty when the build tool
+     * passes the per-payload files.
+     */
+    public static final String HANDOFF_FILE = "handoffFile";
+
+    private static final String DEFAULT_HANDOFF_FILE = "";
+
     private static final Collection<String> VALID_OPTIONS = Arrays.asList(IGNORE_TESTS_FILE, SELECTED_TESTS_FILE,
-            LIBRARY_JARS_FILE, DRAIN_RESULT_FILE, FORK_PROPERTIES_FILE);
+            LIBRARY_JARS_FILE, DRAIN_RESULT_FILE, FORK_PROPERTIES_FILE, SELECTED_TEST_METHODS_FILE,
+            TEST_RUN_ORDER_FILE, IGNORE_TESTS_DISCOVERY_FILTER, HANDOFF_FILE);
 
     private static final Pattern OPTION_SPLIT = Pattern.compile(",(?=[a-zA-Z0-9_\\-]+=)");
 
@@ -173,4 +214,36 @@ public class AgentOptions {
     public void setForkPropertiesFile(String forkPropertiesFile) {
         setOption(FORK_PROPERTIES_FILE, forkPropertiesFile);
     }
+
+    public String getSelectedTestMethodsFile() {
+        return getOption(SELECTED_TEST_METHODS_FILE, DEFAULT_SELECTED_TEST_METHODS_FILE);
+    }
+
+    public void setSelectedTestMethodsFile(String selectedTestMethodsFile) {
+        setOption(SELECTED_TEST_METHODS_FILE, selectedTestMethodsFile);
+    }
+
+    public String getTestRunOrderFile() {
+        return getOption(TEST_RUN_ORDER_FILE, DEFAULT_TEST_RUN_ORDER_FILE);
+    }
+
+    public void setTestRunOrderFile(String testRunOrderFile) {
+        setOption(TEST_RUN_ORDER_FILE, testRunOrderFile);
+    }
+
+    public String getHandoffFile() {
+        return getOption(HANDOFF_FILE, DEFAULT_HANDOFF_FILE);
+    }
+
+    public void setHandoffFile(String handoffFile) {
+        setOption(HANDOFF_FILE, handoffFile);
+    }
+
+    public boolean isIgnoreTestsDiscoveryFilter() {
+        return Boolean.parseBoolean(getOption(IGNORE_TESTS_DISCOVERY_FILTER, DEFAULT_IGNORE_TESTS_DISCOVERY_FILTER));
+    }
+
+    public void setIgnoreTestsDiscoveryFilter(boolean ignoreTestsDiscoveryFilter) {
+        setOption(IGNORE_TESTS_DISCOVERY_FILTER, Boolean.toString(ignoreTestsDiscoveryFilter));
+    }
 }
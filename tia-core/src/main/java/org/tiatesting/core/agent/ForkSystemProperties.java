@@ -73,10 +73,27 @@ public final class ForkSystemProperties {
             props.load(reader);
         }
         for (String name : props.stringPropertyNames()) {
-            if (System.getProperty(name) == null) {
-                System.setProperty(name, props.getProperty(name));
-            }
+            applyToSystemProperty(name, props.getProperty(name));
         }
         return props;
     }
+
+    /**
+     * Publish each of the given properties as a system property, only when that property is not
+     * already set - the same rule as {@link #applyToSystemProperties(String)}, for the properties
+     * read from the {@link SelectionHandoff selection handoff file}.
+     *
+     * @param properties the property name to value pairs to publish
+     */
+    public static void applyEntriesToSystemProperties(final Map<String, String> properties) {
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            applyToSystemProperty(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void applyToSystemProperty(final String name, final String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
 }
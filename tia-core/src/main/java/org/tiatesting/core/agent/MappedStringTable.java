@@ -0,0 +1,181 @@
+package org.tiatesting.core.agent;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only view of a string table in the {@link SelectionHandoff} file, read in place from the
+ * mapped file. Nothing is decoded up front: {@link #contains} hashes the name and compares its
+ * bytes against the table, and the iterator decodes one string at a time.
+ *
+ * <p>Layout, big-endian:
+ * <pre>
+ * int count
+ * int slotCount                 a power of two, at least twice the count (0 when empty)
+ * int[slotCount] slots          index + 1 of the string hashed to the slot, 0 for a free slot
+ * int[count + 1] offsets        start of each string in the data, then the end of the data
+ * byte[] data                   the strings, UTF-8
+ * </pre>
+ *
+ * <p>The slots use linear probing over {@link String#hashCode()}, which the language spec fixes, so
+ * the build plugin and the fork hash a name the same way whatever their JVMs.
+ */
+class MappedStringTable extends AbstractSet<String> {
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int slotCount;
+    private final int slotsStart;
+    private final int offsetsStart;
+    private final int dataStart;
+
+    /**
+     * @param buffer the mapped file
+     * @param start the position the table starts at
+     */
+    MappedStringTable(final ByteBuffer buffer, final int start) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(start);
+        this.slotCount = buffer.getInt(start + 4);
+        this.slotsStart = start + 8;
+        this.offsetsStart = slotsStart + slotCount * 4;
+        this.dataStart = offsetsStart + (count + 1) * 4;
+    }
+
+    /**
+     * Write the strings as a table, in the order the collection iterates them. Duplicates are
+     * written once.
+     *
+     * @param strings the strings
+     * @param out the stream to write to
+     * @throws IOException if the stream can't be written
+     */
+    static void write(final Collection<String> strings, final DataOutputStream out) throws IOException {
+        byte[][] encoded = new byte[strings.size()][];
+        int[] hashes = new int[strings.size()];
+        int slotCount = strings.isEmpty() ? 0 : Integer.highestOneBit(strings.size() * 2 - 1) << 1;
+        int[] slots = new int[slotCount];
+
+        int count = 0;
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            int slot = slotOf(string, slotCount);
+            boolean duplicate = false;
+            while (slots[slot] != 0) {
+                int other = slots[slot] - 1;
+                if (hashes[other] == string.hashCode() && Arrays.equals(encoded[other], bytes)) {
+                    duplicate = true;
+                    break;
+                }
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            if (duplicate) {
+                continue;
+            }
+            encoded[count] = bytes;
+            hashes[count] = string.hashCode();
+            slots[slot] = ++count;
+        }
+
+        out.writeInt(count);
+        out.writeInt(slotCount);
+        for (int slot : slots) {
+            out.writeInt(slot);
+        }
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            out.writeInt(offset);
+            offset += encoded[i].length;
+        }
+        out.writeInt(offset);
+        for (int i = 0; i < count; i++) {
+            out.write(encoded[i]);
+        }
+    }
+
+    private static int slotOf(final String string, final int slotCount) {
+        int hash = string.hashCode();
+        return (hash ^ (hash >>> 16)) & (slotCount - 1);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        if (!(o instanceof String) || count == 0) {
+            return false;
+        }
+        String string = (String) o;
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        int slot = slotOf(string, slotCount);
+        int index;
+        while ((index = buffer.getInt(slotsStart + slot * 4)) != 0) {
+            if (equalsAt(index - 1, bytes)) {
+                return true;
+            }
+            slot = (slot + 1) & (slotCount - 1);
+        }
+        return false;
+    }
+
+    private boolean equalsAt(final int index, final byte[] bytes) {
+        int from = buffer.getInt(offsetsStart + index * 4);
+        int to = buffer.getInt(offsetsStart + (index + 1) * 4);
+        if (to - from != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(dataStart + from + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param index the position of the string in the table
+     * @return the string, decoded from the table
+     */
+    String get(final int index) {
+        int from = buffer.getInt(offsetsStart + index * 4);
+        int to = buffer.getInt(offsetsStart + (index + 1) * 4);
+        byte[] bytes = new byte[to - from];
+        ByteBuffer data = buffer.duplicate();
+        data.position(dataStart + from);
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the strings in the order they were written
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package org.tiatesting.core.agent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shared encoding of the per-test-method filter handed from test selection to the forked test
+ * JVM - see the "Per-test-method selection" chapter in WIKI.md.
+ *
+ * <p>The filter is written one {@code suite#testMethod} entry per line, the same
+ * newline-separated layout as the ignore/selected-test files, so the build plugin can reuse its
+ * existing test-list writer. The {@code #} separator is safe because it can't appear in a Java
+ * class or method name.
+ */
+public final class SelectedTestMethods {
+
+    static final String SEPARATOR = "#";
+
+    private SelectedTestMethods() {
+    }
+
+    /**
+     * The name a JUnit test method's per-test edges are recorded and selected under. A method
+     * without parameters is keyed by its bare name. A method with parameters also carries its
+     * parameter type names, comma-separated as JUnit's {@code MethodSource} reports them, so
+     * overloads and parameterized tests sharing a name keep their own edges.
+     *
+     * @param methodName the test method name
+     * @param parameterTypes the comma-separated parameter type names, empty when there are none
+     * @return the per-test key for the test method
+     */
+    public static String testMethodKey(final String methodName, final String parameterTypes) {
+        if (parameterTypes == null || parameterTypes.isEmpty()) {
+            return methodName;
+        }
+        return methodName + "(" + parameterTypes + ")";
+    }
+
+    /**
+     * Flatten the per-test-method filter into its file lines.
+     *
+     * @param testCasesToRun the test methods to run, keyed by test suite name
+     * @return one {@code suite#testMethod} line per selected test method
+     */
+    public static Set<String> toLines(final Map<String, Set<String>> testCasesToRun) {
+        Set<String> lines = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : testCasesToRun.entrySet()) {
+            for (String testMethod : entry.getValue()) {
+                lines.add(entry.getKey() + SEPARATOR + testMethod);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Rebuild the per-test-method filter from its file lines. Lines without a separator are
+     * ignored.
+     *
+     * @param lines the {@code suite#testMethod} lines
+     * @return the test methods to run, keyed by test suite name
+     */
+    public static Map<String, Set<String>> fromLines(final Iterable<String> lines) {
+        Map<String, Set<String>> testCasesToRun = new HashMap<>();
+        for (String line : lines) {
+            int separator = line.indexOf(SEPARATOR);
+            if (separator > 0 && separator < line.length() - 1) {
+                testCasesToRun.computeIfAbsent(line.substring(0, separator), key -> new HashSet<>())
+                        .add(line.substring(separator + 1));
+            }
+        }
+        return testCasesToRun;
+    }
+
+    /**
+     * Read the per-test-method filter file written by the build plugin.
+     *
+     * @param filePath path to the filter file, or {@code null}/empty when per-test-method selection
+     *                 is not in use
+     * @return the test methods to run, keyed by test suite name; empty when {@code filePath} is blank
+     * @throws IOException if the file exists but cannot be read
+     */
+    public static Map<String, Set<String>> read(final String filePath) throws IOException {
+        if (filePath == null || filePath.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<String> lines = Files.readAllLines(Paths.get(filePath), StandardCharsets.UTF_8);
+        return fromLines(lines);
+    }
+}
@@ -0,0 +1,299 @@
+package org.tiatesting.core.agent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+import org.tiatesting.core.library.LibraryImpactDrainResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.lang.String.format;
+
+/**
+ * The single file the Maven plugin hands the test selection to the forked test JVM in: the fork
+ * system properties, the ignored and selected test suites, the per-test-method filter, the run
+ * order, the library JARs and the library drain result. See the "Selection handoff file" chapter
+ * in WIKI.md.
+ *
+ * <p>The fork memory-maps the file and reads it in place. The test suite sets are
+ * {@link MappedStringTable sorted string tables with a hash index}, so a name is looked up without
+ * decoding the set, and a large selection costs the fork no parsing at startup. The agent only
+ * publishes the file's path, as the {@value #SYSTEM_PROPERTY} system property, in place of joining
+ * the selected suites into one system property.
+ *
+ * <p>Layout, big-endian:
+ * <pre>
+ * int magic                     "TIAH"
+ * int version
+ * int sectionCount
+ * { int id, int offset, int length } per section
+ * the sections
+ * </pre>
+ * A reader of another version fails rather than misreading the file - the build plugin and the
+ * agent are released together, so a mismatch means a stale agent on the {@code argLine}.
+ */
+public final class SelectionHandoff {
+
+    private static final Logger log = LoggerFactory.getLogger(SelectionHandoff.class);
+
+    /**
+     * System property holding the path of the handoff file in the forked test JVM.
+     */
+    public static final String SYSTEM_PROPERTY = "tiaHandoffFile";
+
+    static final int MAGIC = 0x54494148;
+    static final int VERSION = 1;
+
+    private static final int SECTION_FORK_PROPERTIES = 1;
+    private static final int SECTION_TESTS_TO_IGNORE = 2;
+    private static final int SECTION_TESTS_TO_RUN = 3;
+    private static final int SECTION_TEST_METHODS_TO_RUN = 4;
+    private static final int SECTION_TEST_RUN_ORDER = 5;
+    private static final int SECTION_LIBRARY_JARS = 6;
+    private static final int SECTION_DRAIN_RESULT = 7;
+
+    private static final String PROPERTY_SEPARATOR = "=";
+
+    private static String mappedFilePath;
+    private static SelectionHandoff mappedHandoff;
+
+    private final ByteBuffer buffer;
+    private final Map<Integer, int[]> sections;
+
+    private SelectionHandoff(final ByteBuffer buffer, final Map<Integer, int[]> sections) {
+        this.buffer = buffer;
+        this.sections = sections;
+    }
+
+    /**
+     * Write the handoff file. The file is written alongside and moved into place, so a fork never
+     * maps a partial file.
+     *
+     * @param file the destination file
+     * @param forkProperties the system properties for the fork; entries with a {@code null} value
+     *                       are skipped, as in {@link ForkSystemProperties#write}
+     * @param testSelectorResult the test selection
+     * @param libraryJars the absolute paths of the library JARs to include in the coverage analysis
+     * @throws IOException if the file can't be written
+     */
+    public static void write(final File file, final Map<String, String> forkProperties,
+                             final TestSelectorResult testSelectorResult, final Collection<String> libraryJars)
+            throws IOException {
+        List<String> properties = new ArrayList<>();
+        for (Map.Entry<String, String> entry : forkProperties.entrySet()) {
+            if (entry.getValue() != null) {
+                properties.add(entry.getKey() + PROPERTY_SEPARATOR + entry.getValue());
+            }
+        }
+
+        Map<Integer, byte[]> sections = new LinkedHashMap<>();
+        sections.put(SECTION_FORK_PROPERTIES, stringTable(properties));
+        sections.put(SECTION_TESTS_TO_IGNORE, stringTable(new TreeSet<>(testSelectorResult.getTestsToIgnore())));
+        sections.put(SECTION_TESTS_TO_RUN, stringTable(new TreeSet<>(testSelectorResult.getTestsToRun())));
+        sections.put(SECTION_TEST_METHODS_TO_RUN,
+                stringTable(new TreeSet<>(SelectedTestMethods.toLines(testSelectorResult.getTestCasesToRun()))));
+        sections.put(SECTION_TEST_RUN_ORDER, stringTable(testSelectorResult.getTestRunOrder()));
+        sections.put(SECTION_LIBRARY_JARS, stringTable(libraryJars));
+        LibraryImpactDrainResult drainResult = testSelectorResult.getLibraryImpactDrainResult();
+        if (drainResult != null && drainResult.hasDrainedBatches()) {
+            sections.put(SECTION_DRAIN_RESULT, serialize(drainResult));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sections.size());
+        int offset = 12 + sections.size() * 12;
+        for (Map.Entry<Integer, byte[]> section : sections.entrySet()) {
+            out.writeInt(section.getKey());
+            out.writeInt(offset);
+            out.writeInt(section.getValue().length);
+            offset += section.getValue().length;
+        }
+        for (byte[] section : sections.values()) {
+            out.write(section);
+        }
+        out.flush();
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            Files.write(tempFile.toPath(), bytes.toByteArray());
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    private static byte[] stringTable(final Collection<String> strings) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        MappedStringTable.write(strings, out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] serialize(final LibraryImpactDrainResult drainResult) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(drainResult);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Map the handoff file. Only the header is read; the sections are read when asked for.
+     *
+     * @param filePath the path of the handoff file
+     * @return the handoff
+     * @throws IOException if the file can't be mapped
+     * @throws IllegalStateException if the file isn't a handoff file of this version
+     */
+    public static SelectionHandoff open(final String filePath) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < 12 || buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException(format("%s is not a Tia selection handoff file", filePath));
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IllegalStateException(format("The Tia selection handoff file %s is version %d, the agent reads version %d. " +
+                    "Check the Tia agent on the argLine is the same version as the Tia plugin.", filePath, version, VERSION));
+        }
+
+        int sectionCount = buffer.getInt(8);
+        Map<Integer, int[]> sections = new LinkedHashMap<>();
+        for (int i = 0; i < sectionCount; i++) {
+            int entry = 12 + i * 12;
+            sections.put(buffer.getInt(entry), new int[]{buffer.getInt(entry + 4), buffer.getInt(entry + 8)});
+        }
+        return new SelectionHandoff(buffer, sections);
+    }
+
+    /**
+     * Get the handoff published as the {@value #SYSTEM_PROPERTY} system property. The file is
+     * mapped once per JVM, so the agent, the test listener and the discovery filter share it.
+     *
+     * @return the handoff, or {@code null} when the property is unset
+     */
+    public static synchronized SelectionHandoff fromSystemProperty() {
+        String filePath = System.getProperty(SYSTEM_PROPERTY);
+        if (filePath == null || filePath.isEmpty()) {
+            return null;
+        }
+
+        if (!filePath.equals(mappedFilePath)) {
+            try {
+                mappedHandoff = open(filePath);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            mappedFilePath = filePath;
+        }
+        return mappedHandoff;
+    }
+
+    /**
+     * @return the system properties for the fork
+     */
+    public Map<String, String> getForkProperties() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (String property : strings(SECTION_FORK_PROPERTIES)) {
+            int separator = property.indexOf(PROPERTY_SEPARATOR);
+            properties.put(property.substring(0, separator), property.substring(separator + 1));
+        }
+        return properties;
+    }
+
+    /**
+     * @return the test suites Tia selected to ignore, read in place from the file
+     */
+    public Set<String> getTestsToIgnore() {
+        return strings(SECTION_TESTS_TO_IGNORE);
+    }
+
+    /**
+     * @return the test suites Tia selected to run, read in place from the file
+     */
+    public Set<String> getTestsToRun() {
+        return strings(SECTION_TESTS_TO_RUN);
+    }
+
+    /**
+     * @return the test methods to run, keyed by test suite name; empty when per-test-method
+     *         selection is not in use
+     */
+    public Map<String, Set<String>> getTestCasesToRun() {
+        return SelectedTestMethods.fromLines(strings(SECTION_TEST_METHODS_TO_RUN));
+    }
+
+    /**
+     * @return the selected test suites in run order; empty when fail-fast ordering is not in use
+     */
+    public List<String> getTestRunOrder() {
+        return new ArrayList<>(strings(SECTION_TEST_RUN_ORDER));
+    }
+
+    /**
+     * @return the absolute paths of the library JARs to include in the coverage analysis
+     */
+    public List<String> getLibraryJars() {
+        return new ArrayList<>(strings(SECTION_LIBRARY_JARS));
+    }
+
+    /**
+     * @return the library drain result, or {@code null} when no library drain occurred or it can't be read
+     */
+    public LibraryImpactDrainResult getLibraryImpactDrainResult() {
+        int[] section = sections.get(SECTION_DRAIN_RESULT);
+        if (section == null) {
+            return null;
+        }
+
+        byte[] bytes = new byte[section[1]];
+        ByteBuffer data = buffer.duplicate();
+        data.position(section[0]);
+        data.get(bytes);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (LibraryImpactDrainResult) ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            log.warn("Failed to deserialize the LibraryImpactDrainResult from the selection handoff file: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Set<String> strings(final int id) {
+        int[] section = sections.get(id);
+        if (section == null) {
+            return Collections.emptySet();
+        }
+        return new MappedStringTable(buffer, section[0]);
+    }
+}
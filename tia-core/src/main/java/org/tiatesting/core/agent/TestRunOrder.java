@@ -0,0 +1,76 @@
+package org.tiatesting.core.agent;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared decoding of the fail-fast run order handed from test selection to the forked test JVM -
+ * see the "Fail-fast test ordering" chapter in WIKI.md.
+ *
+ * <p>The Maven plugin hands the order over in the {@link SelectionHandoff selection handoff file}.
+ * An agent given the per-payload files publishes it as the {@value #SYSTEM_PROPERTY} system
+ * property instead: the selected test suite names, comma-separated, first to run first. The runner-specific orderers (JUnit 5
+ * {@code ClassOrderer}, JUnit 4 {@code Sorter}) all sort through {@link #comparator()} so they
+ * agree on the order.
+ */
+public final class TestRunOrder {
+
+    /**
+     * System property carrying the run order in the forked test JVM.
+     */
+    public static final String SYSTEM_PROPERTY = "tiaTestRunOrder";
+
+    private TestRunOrder() {
+    }
+
+    /**
+     * Rebuild the position of each test suite from the encoded run order.
+     *
+     * @param testRunOrder the comma-separated suite names, or {@code null}/empty when fail-fast
+     *                     ordering is not in use
+     * @return each suite's zero-based position, keyed by suite name; empty when no order is set
+     */
+    public static Map<String, Integer> positions(final String testRunOrder) {
+        Map<String, Integer> positions = new HashMap<>();
+        if (testRunOrder == null || testRunOrder.isEmpty()) {
+            return positions;
+        }
+        for (String testSuite : testRunOrder.split(",")) {
+            if (!testSuite.isEmpty()) {
+                positions.putIfAbsent(testSuite, positions.size());
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Rebuild the position of each test suite from the run order.
+     *
+     * @param testRunOrder the suite names, first to run first
+     * @return each suite's zero-based position, keyed by suite name
+     */
+    public static Map<String, Integer> positionsOf(final List<String> testRunOrder) {
+        Map<String, Integer> positions = new HashMap<>();
+        for (String testSuite : testRunOrder) {
+            positions.putIfAbsent(testSuite, positions.size());
+        }
+        return positions;
+    }
+
+    /**
+     * Build a comparator over test suite names from the run order in the
+     * {@link SelectionHandoff selection handoff file}, or else the {@value #SYSTEM_PROPERTY} system
+     * property. Suites not in the order (ignored suites, nested classes) sort after the ordered ones
+     * and keep their relative order, since the runners' sorts are stable.
+     *
+     * @return the comparator; orders every suite equal when no run order is set
+     */
+    public static Comparator<String> comparator() {
+        SelectionHandoff handoff = SelectionHandoff.fromSystemProperty();
+        Map<String, Integer> positions = handoff != null ? positionsOf(handoff.getTestRunOrder())
+                : positions(System.getProperty(SYSTEM_PROPERTY));
+        return Comparator.comparingInt(testSuite -> positions.getOrDefault(testSuite, Integer.MAX_VALUE));
+    }
+}
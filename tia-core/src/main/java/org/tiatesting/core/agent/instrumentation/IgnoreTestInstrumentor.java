@@ -1,30 +1,108 @@
 package org.tiatesting.core.agent.instrumentation;
 
 import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.MemberAttributeExtension;
 import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.matcher.ElementMatchers;
+import org.tiatesting.core.agent.SelectedTestMethods;
 
 import java.lang.annotation.Annotation;
 import java.lang.instrument.Instrumentation;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public class IgnoreTestInstrumentor {
 
     /**
-     * Instrument the code to add the junit @Ignore to a given set of test classes.
+     * The annotations marking a method as a test for the JUnit 4 and JUnit Jupiter engines.
+     */
+    private static final String[] TEST_ANNOTATIONS = {
+            "org.junit.Test",
+            "org.junit.jupiter.api.Test",
+            "org.junit.jupiter.api.RepeatedTest",
+            "org.junit.jupiter.api.TestFactory",
+            "org.junit.jupiter.api.TestTemplate",
+            "org.junit.jupiter.params.ParameterizedTest"
+    };
+
+    /**
+     * Instrument the code to add the junit @Ignore to a given set of test classes. Each loaded
+     * class is looked up in the set, so a set read in place from the selection handoff file is
+     * never copied.
      *
      * @param ignoredTests the tests to ignore
      * @param instrumentation the Instrumentation
      * @param ignoreClass the ignore class
      */
     public void ignoreTests(final Set<String> ignoredTests, Instrumentation instrumentation, Class<? extends Annotation> ignoreClass){
-        AnnotationDescription ignoreDescription = AnnotationDescription.Builder.ofType(ignoreClass)
-                .define("value", "Ignored by TIA testing")
-                .build();
+        AnnotationDescription ignoreDescription = buildIgnoreDescription(ignoreClass);
 
         new AgentBuilder.Default()
-                .type(ElementMatchers.namedOneOf(ignoredTests.toArray(new String[ignoredTests.size()])))
+                .type(typeDescription -> ignoredTests.contains(typeDescription.getName()))
                 .transform((builder, typeDescription, arg3, arg4, arg5) -> builder.annotateType(ignoreDescription))
                 .installOn(instrumentation);
     }
+
+    /**
+     * Instrument the code to add the junit @Ignore to the test methods of the given test classes
+     * that were not selected to run by per-test-method selection. Only methods carrying one of the
+     * JUnit test annotations are touched, so lifecycle and helper methods are left as is. A method
+     * is kept when it's selected by its bare name or by its per-test key carrying its parameter
+     * types (see {@link SelectedTestMethods#testMethodKey(String, String)}).
+     *
+     * @param selectedTestMethods the test methods to keep running, keyed by test class name
+     * @param instrumentation the Instrumentation
+     * @param ignoreClass the ignore class
+     */
+    public void ignoreTestMethods(final Map<String, Set<String>> selectedTestMethods, Instrumentation instrumentation,
+                                  Class<? extends Annotation> ignoreClass){
+        if (selectedTestMethods.isEmpty()){
+            return;
+        }
+
+        AnnotationDescription ignoreDescription = buildIgnoreDescription(ignoreClass);
+        Set<String> testClasses = selectedTestMethods.keySet();
+
+        new AgentBuilder.Default()
+                .type(ElementMatchers.namedOneOf(testClasses.toArray(new String[testClasses.size()])))
+                .transform((builder, typeDescription, arg3, arg4, arg5) -> {
+                    Set<String> keep = selectedTestMethods.getOrDefault(typeDescription.getName(), Collections.emptySet());
+                    return builder.visit(new MemberAttributeExtension.ForMethod()
+                            .annotateMethod(ignoreDescription)
+                            .on(ElementMatchers.isAnnotatedWith(ElementMatchers.namedOneOf(TEST_ANNOTATIONS))
+                                    .and(ElementMatchers.not(isSelected(keep)))));
+                })
+                .installOn(instrumentation);
+    }
+
+    private static ElementMatcher.Junction<MethodDescription> isSelected(final Set<String> keep){
+        return new ElementMatcher.Junction.AbstractBase<MethodDescription>() {
+            @Override
+            public boolean matches(MethodDescription method) {
+                return keep.contains(method.getName())
+                        || keep.contains(SelectedTestMethods.testMethodKey(method.getName(), getParameterTypes(method)));
+            }
+        };
+    }
+
+    /**
+     * The parameter type names of a method in the form JUnit's {@code MethodSource} reports them:
+     * binary class names, comma-separated.
+     */
+    private static String getParameterTypes(MethodDescription method){
+        return method.getParameters().asTypeList().asErasures().stream()
+                .map(TypeDescription::getName)
+                .collect(Collectors.joining(", "));
+    }
+
+    private AnnotationDescription buildIgnoreDescription(Class<? extends Annotation> ignoreClass){
+        return AnnotationDescription.Builder.ofType(ignoreClass)
+                .define("value", "Ignored by TIA testing")
+                .build();
+    }
 }
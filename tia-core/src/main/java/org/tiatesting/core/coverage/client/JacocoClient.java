@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.tiatesting.core.model.ClassImpactTracker;
 import org.tiatesting.core.model.MethodIdSet;
 import org.tiatesting.core.model.MethodImpactTracker;
+import org.tiatesting.core.model.MethodLineCoverage;
 import org.tiatesting.core.coverage.result.CoverageResult;
 import org.tiatesting.core.sourcefile.FileExtensions;
 import org.tiatesting.core.util.StringUtil;
@@ -22,6 +23,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -34,8 +36,19 @@ public class JacocoClient {
 
     private final List<File> classfiles = new ArrayList<>();
     private String name = "TIA Client Coverage Bundle";
+    /*
+    Record which lines of each covered method were executed, for line-level selection.
+     */
+    private final boolean lineLevelCoverage;
+    /*
+    The run-wide method catalogue: the method ids of each analyzed class version, keyed by the JaCoCo class id
+    (a checksum of the class bytes), in the order JaCoCo reports the class methods. A class is catalogued on the
+    first dump it's invoked in; later dumps look up the method ids instead of building a tracker per method.
+     */
+    private final Map<Long, int[]> methodIdsByClassId = new ConcurrentHashMap<>();
 
     public JacocoClient(){
+        this.lineLevelCoverage = Boolean.parseBoolean(System.getProperty("tiaLineLevelSelection"));
     }
 
     public void initialize(){
@@ -43,8 +56,9 @@ public class JacocoClient {
         log.debug("classes size: " + this.classfiles.size());
 
         try {
-            // collect & dump any existing coverage metrics
-            collectCoverage();
+            // dump & discard any existing coverage metrics. Not analyzed, so the classes invoked before the
+            // first test aren't added to the method catalogue without being reported to the test runner.
+            dumpExecutionData();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -57,7 +71,20 @@ public class JacocoClient {
      */
     public CoverageResult collectCoverage() throws IOException {
         long startTime = System.currentTimeMillis();
+        ExecutionDataStore executionDataStore = dumpExecutionData();
+        IBundleCoverage bundleCoverage = analyze(executionDataStore);
+        CoverageResult coverageResult = collectMethodsCalled(bundleCoverage);
+        log.debug("Time to collect coverage (ms): " + (System.currentTimeMillis() - startTime));
+        return coverageResult;
+    }
 
+    /**
+     * Dump the execution data collected by the coverage agent and reset it on the agent.
+     *
+     * @return the execution data since the previous dump
+     * @throws IOException IO Exception
+     */
+    private ExecutionDataStore dumpExecutionData() throws IOException {
         // Open a socket to the coverage agent:
         final Socket socket = new Socket(InetAddress.getByName(ADDRESS), PORT);
         final RemoteControlReader reader = new RemoteControlReader(socket.getInputStream());
@@ -77,12 +104,8 @@ public class JacocoClient {
         }
 
         // session and execution info have been read to our local objects
-        IBundleCoverage bundleCoverage = analyze(executionDataStore);
-        CoverageResult coverageResult = collectMethodsCalled(bundleCoverage);
-
         socket.close();
-        log.debug("Time to collect coverage (ms): " + (System.currentTimeMillis() - startTime));
-        return coverageResult;
+        return executionDataStore;
     }
 
     private CoverageResult collectMethodsCalled(IBundleCoverage bundleCoverage){
@@ -109,17 +132,24 @@ public class JacocoClient {
                             classImpactTrackers.put(sourceFilename, new ClassImpactTracker(sourceFilename, methodsImpactedForClass));
                         }
 
-                        bundleClass.getMethods().forEach( method -> {
-                            String methodName = bundleClass.getName() + "." + method.getName() + "." + method.getDesc();
-                            MethodImpactTracker methodTracker = new MethodImpactTracker(methodName,  method.getFirstLine(), method.getLastLine());
-                            coverageResult.getAllMethodsClassesInvoked().put(methodTracker.hashCode(), methodTracker);
+                        int[] methodIds = methodIdsByClassId.computeIfAbsent(bundleClass.getId(),
+                                classId -> catalogueMethods(bundleClass, coverageResult));
+                        int methodIndex = 0;
+
+                        for (IMethodCoverage method : bundleClass.getMethods()){
+                            int methodId = methodIds[methodIndex++];
 
                             if (containsLineCoverage(method.getLineCounter())){
-                                methodsImpactedForClass.add(methodTracker.hashCode());
+                                methodsImpactedForClass.add(methodId);
                                 log.trace("Method contains line coverage {} first: {} last: {}", method.getName(),
                                         method.getFirstLine(), method.getLastLine());
+
+                                if (lineLevelCoverage){
+                                    coverageResult.getMethodLinesHit().merge(methodId,
+                                            collectLinesHit(method), MethodLineCoverage::merge);
+                                }
                             }
-                        });
+                        }
                     }
                 });
             }
@@ -130,6 +160,54 @@ public class JacocoClient {
         return coverageResult;
     }
 
+    /**
+     * Add the methods of a class version not yet seen in this run to the method catalogue. The new
+     * method trackers are returned to the test runner in the coverage result's catalogue delta.
+     *
+     * @param bundleClass the JaCoCo coverage for the class
+     * @param coverageResult the coverage result of the dump the class was first invoked in
+     * @return the ids of the class methods, in the order JaCoCo reports them
+     */
+    private int[] catalogueMethods(IClassCoverage bundleClass, CoverageResult coverageResult){
+        int[] methodIds = new int[bundleClass.getMethods().size()];
+        int methodIndex = 0;
+
+        for (IMethodCoverage method : bundleClass.getMethods()){
+            String methodName = bundleClass.getName() + "." + method.getName() + "." + method.getDesc();
+            MethodImpactTracker methodTracker = new MethodImpactTracker(methodName,  method.getFirstLine(), method.getLastLine());
+            coverageResult.getMethodCatalogueDelta().put(methodTracker.hashCode(), methodTracker);
+            methodIds[methodIndex++] = methodTracker.hashCode();
+        }
+
+        return methodIds;
+    }
+
+    /**
+     * Build the executable and executed line bitmaps for a covered method, relative to the
+     * method's first line.
+     *
+     * @param method the JaCoCo coverage for the method
+     * @return the method's line-level coverage
+     */
+    private MethodLineCoverage collectLinesHit(IMethodCoverage method){
+        int firstLine = method.getFirstLine();
+        int lastLine = method.getLastLine();
+        BitSet executableLines = new BitSet();
+        BitSet linesHit = new BitSet();
+
+        for (int line = firstLine; line <= lastLine; line++){
+            int status = method.getLine(line).getStatus();
+            if (status == ICounter.EMPTY){
+                continue;
+            }
+            executableLines.set(line - firstLine);
+            if (status != ICounter.NOT_COVERED){
+                linesHit.set(line - firstLine);
+            }
+        }
+        return new MethodLineCoverage(firstLine, lastLine, executableLines, linesHit);
+    }
+
     private boolean containsLineCoverage(ICounter counter){
         return counter.getMissedCount() < counter.getTotalCount();
     }
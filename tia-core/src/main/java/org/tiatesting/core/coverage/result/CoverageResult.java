@@ -2,6 +2,7 @@ package org.tiatesting.core.coverage.result;
 
 import org.tiatesting.core.model.ClassImpactTracker;
 import org.tiatesting.core.model.MethodImpactTracker;
+import org.tiatesting.core.model.MethodLineCoverage;
 
 import java.util.*;
 
@@ -14,15 +15,20 @@ public class CoverageResult {
     List<ClassImpactTracker> classesInvoked = new ArrayList<>();
 
     /**
-     * This list tracks the list of classes that were invoked and all its methods regardless of whether they were
-     * invoked. This list is used to update the method start and end line numbers for all methods that were associated
-     * with an invoked class.
-     * i.e. when one method in a class is involved by a test, it will most likely have an impact on the start and end
-     * numbers of the other methods in the class (i.e. lines were added to the source code).
-     * So we need to update the line numbers for all methods in the class afer each test run to keep them in sync
-     * with the code source changes.
+     * The methods of the invoked classes added to the run's method catalogue by this coverage dump, i.e. the
+     * methods of the classes first invoked in this dump, covered or not. Classes invoked by an earlier dump in the
+     * run were already reported, so per suite the coverage carries only method ids.
+     * The test runner collects the deltas to update the method start and end line numbers for all methods
+     * associated with an invoked class - when one method in a class is invoked by a test, lines were most likely
+     * added or removed in the source code affecting the other methods in the class too.
      */
-    Map<Integer, MethodImpactTracker> allMethodsClassesInvoked = new HashMap<>();
+    Map<Integer, MethodImpactTracker> methodCatalogueDelta = new HashMap<>();
+
+    /**
+     * The line-level coverage of each invoked method, keyed by method id. Only populated when
+     * line-level selection is enabled.
+     */
+    Map<Integer, MethodLineCoverage> methodLinesHit = new HashMap<>();
 
     public List<ClassImpactTracker> getClassesInvoked() {
         return classesInvoked;
@@ -32,12 +38,20 @@ public class CoverageResult {
         this.classesInvoked = classesInvoked;
     }
 
-    public Map<Integer, MethodImpactTracker> getAllMethodsClassesInvoked() {
-        return allMethodsClassesInvoked;
+    public Map<Integer, MethodImpactTracker> getMethodCatalogueDelta() {
+        return methodCatalogueDelta;
+    }
+
+    public void setMethodCatalogueDelta(Map<Integer, MethodImpactTracker> methodCatalogueDelta) {
+        this.methodCatalogueDelta = methodCatalogueDelta;
+    }
+
+    public Map<Integer, MethodLineCoverage> getMethodLinesHit() {
+        return methodLinesHit;
     }
 
-    public void setAllMethodsClassesInvoked(Map<Integer, MethodImpactTracker> allMethodsClassesInvoked) {
-        this.allMethodsClassesInvoked = allMethodsClassesInvoked;
+    public void setMethodLinesHit(Map<Integer, MethodLineCoverage> methodLinesHit) {
+        this.methodLinesHit = methodLinesHit;
     }
 
     @Override
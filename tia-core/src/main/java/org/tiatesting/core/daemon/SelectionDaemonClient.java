@@ -0,0 +1,111 @@
+package org.tiatesting.core.daemon;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * Asks a running Tia selection daemon to select the tests, for the build-tool plugins to consult
+ * before selecting the tests in process. See the "Selection daemon" chapter in WIKI.md.
+ *
+ * <p>The daemon is optional: when no daemon published its endpoint, it can't be reached, it
+ * refuses the request or it doesn't answer within {@link #READ_TIMEOUT_MS}, the client returns
+ * {@code null} and the plugin selects the tests itself.
+ */
+public final class SelectionDaemonClient {
+
+    private static final Logger log = LoggerFactory.getLogger(SelectionDaemonClient.class);
+
+    /**
+     * Give up on a daemon that doesn't accept the connection quickly - it's most likely gone and
+     * left a stale endpoint file behind.
+     */
+    static final int CONNECT_TIMEOUT_MS = 1000;
+
+    /**
+     * Give up on a daemon that doesn't answer in time - it's busy with another build's request or
+     * hung, and selecting the tests in process is quicker than waiting on it.
+     */
+    static final int READ_TIMEOUT_MS = 60_000;
+
+    private SelectionDaemonClient() {
+    }
+
+    /**
+     * Ask the daemon published at the endpoint file to select the tests.
+     *
+     * @param endpointFile the daemon's endpoint file
+     * @param request the selection settings
+     * @return the daemon's selection, or {@code null} when the daemon didn't select the tests
+     */
+    public static TestSelectorResult select(final File endpointFile, final SelectionDaemonRequest request) {
+        return select(endpointFile, request, READ_TIMEOUT_MS);
+    }
+
+    static TestSelectorResult select(final File endpointFile, final SelectionDaemonRequest request,
+                                     final int readTimeoutMs) {
+        long startTime = System.currentTimeMillis();
+        try {
+            SelectionDaemonEndpoint endpoint = SelectionDaemonEndpoint.read(endpointFile);
+            if (endpoint == null) {
+                log.info("No Tia selection daemon is running (no endpoint file at {}) - selecting the tests in process.",
+                        endpointFile);
+                return null;
+            }
+
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), endpoint.getPort()),
+                        CONNECT_TIMEOUT_MS);
+                socket.setSoTimeout(readTimeoutMs);
+                ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeUTF(endpoint.getToken());
+                byte[] requestBytes = serialize(request);
+                out.writeInt(requestBytes.length);
+                out.write(requestBytes);
+                out.flush();
+
+                ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (!in.readBoolean()) {
+                    log.warn("The Tia selection daemon didn't select the tests - selecting the tests in process: {}",
+                            in.readUTF());
+                    return null;
+                }
+
+                TestSelectorResult testSelectorResult = (TestSelectorResult) in.readObject();
+                log.info("Time to select the tests with the Tia selection daemon (ms): "
+                        + (System.currentTimeMillis() - startTime));
+                return testSelectorResult;
+            }
+        } catch (SocketTimeoutException e) {
+            log.warn("The Tia selection daemon didn't answer within {} ms - selecting the tests in process.",
+                    readTimeoutMs);
+            return null;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.warn("Couldn't reach the Tia selection daemon - selecting the tests in process: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Serialize the request up front so the daemon can tell a repeated request by its bytes.
+     */
+    static byte[] serialize(final SelectionDaemonRequest request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(request);
+        }
+        return bytes.toByteArray();
+    }
+}
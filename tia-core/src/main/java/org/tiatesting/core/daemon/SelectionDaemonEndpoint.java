@@ -0,0 +1,93 @@
+package org.tiatesting.core.daemon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.List;
+
+/**
+ * Where a running Tia selection daemon listens: the loopback port and the token a client must
+ * present before the daemon reads its request. Published by the daemon to its endpoint file, which
+ * the build-tool plugins are pointed at. See the "Selection daemon" chapter in WIKI.md.
+ *
+ * <p>The token keeps other local users from having the daemon deserialize their requests - the
+ * endpoint file is only readable by the user that started the daemon, where the file system
+ * supports POSIX permissions.
+ */
+public class SelectionDaemonEndpoint {
+
+    private final int port;
+    private final String token;
+
+    public SelectionDaemonEndpoint(final int port, final String token) {
+        this.port = port;
+        this.token = token;
+    }
+
+    /**
+     * @param port the loopback port the daemon listens on
+     * @return an endpoint with a new random token
+     */
+    public static SelectionDaemonEndpoint newEndpoint(final int port) {
+        byte[] tokenBytes = new byte[16];
+        new SecureRandom().nextBytes(tokenBytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : tokenBytes) {
+            token.append(String.format("%02x", b));
+        }
+        return new SelectionDaemonEndpoint(port, token.toString());
+    }
+
+    /**
+     * Read the endpoint published by a daemon.
+     *
+     * @param endpointFile the daemon's endpoint file
+     * @return the endpoint, or {@code null} when no daemon published the file
+     * @throws IOException when the file can't be read or isn't an endpoint file
+     */
+    public static SelectionDaemonEndpoint read(final File endpointFile) throws IOException {
+        if (!endpointFile.isFile()) {
+            return null;
+        }
+
+        List<String> lines = Files.readAllLines(endpointFile.toPath(), StandardCharsets.UTF_8);
+        if (lines.size() < 2) {
+            throw new IOException("Not a Tia selection daemon endpoint file: " + endpointFile);
+        }
+        try {
+            return new SelectionDaemonEndpoint(Integer.parseInt(lines.get(0).trim()), lines.get(1).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Not a Tia selection daemon endpoint file: " + endpointFile, e);
+        }
+    }
+
+    /**
+     * Publish the endpoint to the endpoint file, readable only by the current user.
+     *
+     * @param endpointFile the endpoint file
+     * @throws IOException when the file can't be written
+     */
+    public void write(final File endpointFile) throws IOException {
+        File parentDir = endpointFile.getAbsoluteFile().getParentFile();
+        if (parentDir != null) {
+            parentDir.mkdirs();
+        }
+        Files.deleteIfExists(endpointFile.toPath());
+        if (endpointFile.toPath().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(endpointFile.toPath(),
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        Files.write(endpointFile.toPath(), (port + "\n" + token + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getToken() {
+        return token;
+    }
+}
@@ -0,0 +1,129 @@
+package org.tiatesting.core.daemon;
+
+import org.tiatesting.core.staticselection.StaticTestSelectionConfig;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A request for the Tia selection daemon to select the tests for a project's local workspace.
+ * Carries the settings {@code TestSelector} is configured with by the build-tool plugins. See the
+ * "Selection daemon" chapter in WIKI.md.
+ *
+ * <p>The daemon only serves the project and DB it was started for, so the request names them too;
+ * the daemon refuses a request for a different project or DB and the plugin selects the tests itself.
+ */
+public class SelectionDaemonRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String projectDir;
+    private final String dbFilePath;
+    private final String dbUrl;
+    private final List<String> sourceFilesDirs;
+    private final List<String> testFilesDirs;
+    private final boolean checkLocalChanges;
+    private final StaticTestSelectionConfig staticTestSelectionConfig;
+    private boolean perTestSelection;
+    private boolean lineLevelSelection;
+    private long maxRunTimeMs;
+    private int shardIndex;
+    private int shardCount = 1;
+    private boolean failFastOrdering;
+
+    /**
+     * @param projectDir the project dir the tests are selected for
+     * @param dbFilePath the embedded-mode DB dir, or {@code null} in server mode
+     * @param dbUrl the server-mode JDBC URL, or {@code null} in embedded mode
+     * @param sourceFilesDirs the source files dirs of the project
+     * @param testFilesDirs the test files dirs of the project
+     * @param checkLocalChanges whether the local workspace changes are analyzed
+     * @param staticTestSelectionConfig the static test selection config
+     */
+    public SelectionDaemonRequest(final String projectDir, final String dbFilePath, final String dbUrl,
+                                  final List<String> sourceFilesDirs, final List<String> testFilesDirs,
+                                  final boolean checkLocalChanges,
+                                  final StaticTestSelectionConfig staticTestSelectionConfig) {
+        this.projectDir = projectDir;
+        this.dbFilePath = dbFilePath;
+        this.dbUrl = dbUrl;
+        this.sourceFilesDirs = sourceFilesDirs != null ? new ArrayList<>(sourceFilesDirs) : null;
+        this.testFilesDirs = testFilesDirs != null ? new ArrayList<>(testFilesDirs) : null;
+        this.checkLocalChanges = checkLocalChanges;
+        this.staticTestSelectionConfig = staticTestSelectionConfig;
+    }
+
+    public String getProjectDir() {
+        return projectDir;
+    }
+
+    public String getDbFilePath() {
+        return dbFilePath;
+    }
+
+    public String getDbUrl() {
+        return dbUrl;
+    }
+
+    public List<String> getSourceFilesDirs() {
+        return sourceFilesDirs;
+    }
+
+    public List<String> getTestFilesDirs() {
+        return testFilesDirs;
+    }
+
+    public boolean isCheckLocalChanges() {
+        return checkLocalChanges;
+    }
+
+    public StaticTestSelectionConfig getStaticTestSelectionConfig() {
+        return staticTestSelectionConfig;
+    }
+
+    public boolean isPerTestSelection() {
+        return perTestSelection;
+    }
+
+    public void setPerTestSelection(boolean perTestSelection) {
+        this.perTestSelection = perTestSelection;
+    }
+
+    public boolean isLineLevelSelection() {
+        return lineLevelSelection;
+    }
+
+    public void setLineLevelSelection(boolean lineLevelSelection) {
+        this.lineLevelSelection = lineLevelSelection;
+    }
+
+    public long getMaxRunTimeMs() {
+        return maxRunTimeMs;
+    }
+
+    public void setMaxRunTimeMs(long maxRunTimeMs) {
+        this.maxRunTimeMs = maxRunTimeMs;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setShard(int shardIndex, int shardCount) {
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    public boolean isFailFastOrdering() {
+        return failFastOrdering;
+    }
+
+    public void setFailFastOrdering(boolean failFastOrdering) {
+        this.failFastOrdering = failFastOrdering;
+    }
+}
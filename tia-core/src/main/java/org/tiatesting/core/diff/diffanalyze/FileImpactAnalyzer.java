@@ -87,13 +87,32 @@ public class FileImpactAnalyzer {
     public Set<Integer> getMethodsForFilesChanged(final List<SourceFileDiffContext> sourceFileDiffContexts,
                                                   final Map<String, Map<Integer, MethodImpactTracker>> methodsTrackedByFile,
                                                   final List<String> sourceFilesDirs){
+        return getMethodsForFilesChanged(sourceFileDiffContexts, methodsTrackedByFile, sourceFilesDirs, null);
+    }
+
+    /**
+     * For the source files that have changed, do a diff to find the methods that have changed,
+     * and record the changed lines of each impacted method for line-level selection.
+     *
+     * @param sourceFileDiffContexts the set of diff file contexts
+     * @param methodsTrackedByFile the tracked methods (with line ranges) for the changed source
+     *                             files, keyed by mapping-key filename then method id
+     * @param sourceFilesDirs Locations of the source files for the project being tested
+     * @param changedLinesByMethod accumulator for the changed original-file lines of each impacted
+     *                             method, keyed by method id; {@code null} to skip recording them
+     * @return the set of ids for the methods that have changed
+     */
+    public Set<Integer> getMethodsForFilesChanged(final List<SourceFileDiffContext> sourceFileDiffContexts,
+                                                  final Map<String, Map<Integer, MethodImpactTracker>> methodsTrackedByFile,
+                                                  final List<String> sourceFilesDirs,
+                                                  final Map<Integer, BitSet> changedLinesByMethod){
         Set<Integer> methodsInvokedByChanges = new HashSet<>();
 
         for (SourceFileDiffContext sourceFileDiffContext : sourceFileDiffContexts){
             methodImpactAnalyzer.getMethodsForImpactedFile(sourceFileDiffContext.getSourceContentOriginal(),
                     sourceFileDiffContext.getSourceContentNew(), sourceFileDiffContext.getOldFilePath(),
                     sourceFileDiffContext.getNewFilePath(), methodsInvokedByChanges, methodsTrackedByFile,
-                    sourceFilesDirs);
+                    sourceFilesDirs, changedLinesByMethod);
         }
 
         if (log.isDebugEnabled()) {
@@ -10,6 +10,7 @@ import org.tiatesting.core.model.MethodImpactTracker;
 import org.tiatesting.core.sourcefile.SourceFilenameUtil;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -46,6 +47,34 @@ public class MethodImpactAnalyzer {
                                           final Set<Integer> methodsInvokedByChanges,
                                           final Map<String, Map<Integer, MethodImpactTracker>> methodsTrackedByFile,
                                           final List<String> sourceFilesDirs){
+        getMethodsForImpactedFile(originalFileContent, newFilContent, originalFileName, revisedFileName,
+                methodsInvokedByChanges, methodsTrackedByFile, sourceFilesDirs, null);
+    }
+
+    /**
+     * As {@link #getMethodsForImpactedFile(String, String, String, String, Set, Map, List)}, and
+     * additionally record which lines of the original file each impacted method had changed, for
+     * line-level selection. The recorded lines are clipped to the range used to match the method
+     * (one line either side of its body), so a hunk spanning several methods only contributes
+     * each method's own lines.
+     *
+     * @param originalFileContent the original file content
+     * @param newFilContent the new file content
+     * @param originalFileName the original filename
+     * @param revisedFileName the revised filename
+     * @param methodsInvokedByChanges A set of methods that will be invoked by the changes in source code
+     * @param methodsTrackedByFile the tracked methods (with line ranges) for the changed source
+     *                             files, keyed by mapping-key filename then method id
+     * @param sourceFilesDirs Locations of the source files for the project being tested
+     * @param changedLinesByMethod accumulator for the changed original-file lines of each impacted
+     *                             method, keyed by method id; {@code null} to skip recording them
+     */
+    public void getMethodsForImpactedFile(final String originalFileContent, final String newFilContent,
+                                          final String originalFileName, final String revisedFileName,
+                                          final Set<Integer> methodsInvokedByChanges,
+                                          final Map<String, Map<Integer, MethodImpactTracker>> methodsTrackedByFile,
+                                          final List<String> sourceFilesDirs,
+                                          final Map<Integer, BitSet> changedLinesByMethod){
 
         List<String> originalFileLines = Arrays.asList(originalFileContent.split(LINEBREAK_PATTERN));
         List<String> newFileLines = Arrays.asList(newFilContent.split(LINEBREAK_PATTERN));
@@ -72,7 +101,8 @@ public class MethodImpactAnalyzer {
                     setImpactedLineBeginEnd(patchDiff, diffContext);
 
                     if (diffContext.isUnifiedDiff()){
-                        findTrackedMethodsForSourceDiff(diffContext, methodsTrackedForSourceFile, methodsInvokedByChanges);
+                        findTrackedMethodsForSourceDiff(diffContext, methodsTrackedForSourceFile, methodsInvokedByChanges,
+                                changedLinesByMethod);
                     }
                 });
             }
@@ -115,10 +145,13 @@ public class MethodImpactAnalyzer {
      * @param diffContext the parsed diff hunk carrying the impacted line range
      * @param methodsTrackedForSourceFile the tracked methods (by id) for the changed file
      * @param methodsInvokedByChanges accumulator for the ids of methods the diff impacts
+     * @param changedLinesByMethod accumulator for the changed lines of each impacted method, or
+     *                             {@code null} when line-level selection is off
      */
     private void findTrackedMethodsForSourceDiff(final DiffContext diffContext,
                                                  final Map<Integer, MethodImpactTracker> methodsTrackedForSourceFile,
-                                                 final Set<Integer> methodsInvokedByChanges){
+                                                 final Set<Integer> methodsInvokedByChanges,
+                                                 final Map<Integer, BitSet> changedLinesByMethod){
         for (Map.Entry<Integer, MethodImpactTracker> trackedMethod : methodsTrackedForSourceFile.entrySet()) {
             Integer methodHashcode = trackedMethod.getKey();
             MethodImpactTracker methodImpactTracker = trackedMethod.getValue();
@@ -134,12 +167,43 @@ public class MethodImpactAnalyzer {
 
             if (diffBeginIsWithinMethod || diffEndIsWithinMethod || diffRangeCoversMethod) {
                 methodsInvokedByChanges.add(methodHashcode);
+                if (changedLinesByMethod != null){
+                    addChangedLines(diffContext, methodLineBegin, methodLineEnd,
+                            changedLinesByMethod.computeIfAbsent(methodHashcode, id -> new BitSet()));
+                }
                 log.debug("Found stored tracked method: {}, diff line begin: {}, diff line end: {}, stored line begin: {}, stored line end: {}",
                         methodImpactTracker.getMethodName(), diffLineBegin, diffLineEnd, methodLineBegin, methodLineEnd);
             }
         }
     }
 
+    /**
+     * Record the original-file lines a hunk changed within a method's matching range. A pure
+     * insertion has no original lines of its own, so the lines either side of the insertion
+     * point are recorded instead - new code there runs when the flow passes between them.
+     *
+     * @param diffContext the parsed diff hunk
+     * @param methodLineBegin the first line of the method's matching range
+     * @param methodLineEnd the last line of the method's matching range
+     * @param changedLines the method's changed lines to add to
+     */
+    private void addChangedLines(final DiffContext diffContext, final int methodLineBegin, final int methodLineEnd,
+                                 final BitSet changedLines){
+        int changeBegin = diffContext.getImpactedLineNumBegin();
+        int changeEnd = diffContext.getImpactedLineNumEnd();
+        if (diffContext.isInsertion()){
+            // the hunk start is the line next to the insertion point - take a line either side
+            changeBegin = changeBegin - 1;
+            changeEnd = changeEnd + 1;
+        }
+
+        int begin = Math.max(changeBegin, methodLineBegin);
+        int end = Math.min(changeEnd, methodLineEnd);
+        if (begin >= 0 && begin <= end){
+            changedLines.set(begin, end + 1);
+        }
+    }
+
     /**
      * Parse the diff 'hunk' using regex to get the line numbers for the change for the original file.
      * i.e. @@ -11,2 +11,2 @@ i.e. this means old file - line 11, 2 lines (get replaced in new file, starting line 11 for 2 lines).
@@ -159,6 +223,7 @@ public class MethodImpactAnalyzer {
             int revisionLineCount = Integer.parseInt(matcher.group(HUNK_DIFF_ORIG_LINE_START_COUNT_GROUP_INDEX));
 
             // if the hunk line count is 0 (i.e. line added) then treat it as 1 line.
+            sourceFileDiffContext.setInsertion(revisionLineCount <= 0);
             revisionLineCount = revisionLineCount <= 0 ? 1 : revisionLineCount;
 
             sourceFileDiffContext.setImpactedLineNumBegin(revisionLineBegin);
@@ -170,6 +235,7 @@ public class MethodImpactAnalyzer {
 
     private static class DiffContext {
         boolean unifiedDiff;
+        boolean insertion;
         int impactedLineNumBegin;
         int impactedLineNumEnd;
 
@@ -196,5 +262,13 @@ public class MethodImpactAnalyzer {
         public void setUnifiedDiff(boolean unifiedDiff) {
             this.unifiedDiff = unifiedDiff;
         }
+
+        public boolean isInsertion() {
+            return insertion;
+        }
+
+        public void setInsertion(boolean insertion) {
+            this.insertion = insertion;
+        }
     }
 }
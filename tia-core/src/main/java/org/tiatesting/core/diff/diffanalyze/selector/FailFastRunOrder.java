@@ -0,0 +1,44 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders the selected test suites so a failing build fails as early as possible. See the
+ * "Fail-fast test ordering" chapter in WIKI.md.
+ *
+ * <p>Order, first to last:
+ * <ol>
+ *     <li>suites that failed on a previous run - the most likely to fail again;</li>
+ *     <li>suites selected directly by the changes: through an impacted source method, or
+ *     because the test file itself was modified or added;</li>
+ *     <li>everything else (static rules, library drain, previously deferred or unsealed suites).</li>
+ * </ol>
+ * Within each group suites run in ascending estimated run time, so the most suites complete
+ * (and the most chances to fail are taken) in the least time. Ties are broken on the suite name
+ * so the order is stable from run to run.
+ */
+class FailFastRunOrder {
+
+    private FailFastRunOrder() {}
+
+    /**
+     * @param testsToRun the selected test suites
+     * @param runTimesMs the estimated run time (ms) of each selected suite
+     * @param testSuitesFailed the suites that failed on a previous run
+     * @param directlyImpactedTests the suites selected through an impacted method or a changed test file
+     * @return the selected suites in fail-fast run order
+     */
+    static List<String> order(final Set<String> testsToRun, final Map<String, Long> runTimesMs,
+                              final Set<String> testSuitesFailed, final Set<String> directlyImpactedTests){
+        List<String> testRunOrder = new ArrayList<>(testsToRun);
+        testRunOrder.sort(Comparator.comparingInt((String test) -> testSuitesFailed.contains(test) ? 0
+                        : directlyImpactedTests.contains(test) ? 1 : 2)
+                .thenComparingLong(test -> runTimesMs.getOrDefault(test, 0L))
+                .thenComparing(Comparator.naturalOrder()));
+        return testRunOrder;
+    }
+}
@@ -0,0 +1,137 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tiatesting.core.model.TestStats;
+import org.tiatesting.core.model.TestSuiteTracker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cuts a test selection down to a run-time budget. The selected suites are ranked by how much
+ * value they are expected to deliver per millisecond, and the highest-ranked suites are kept
+ * while their estimated run time fits the budget; the rest are deferred. See the "Run-time
+ * budgeted selection" chapter in WIKI.md.
+ *
+ * <p>Ranking, highest first:
+ * <ol>
+ *     <li>suites Tia has no stored mapping for (typically new test files) - Tia never ignores an
+ *     untracked suite, so they always run and their time is taken from the budget first;</li>
+ *     <li>suites deferred by an earlier budgeted run - they are owed a run, so the oldest debt
+ *     is paid first;</li>
+ *     <li>suites that failed on a previous run;</li>
+ *     <li>everything else.</li>
+ * </ol>
+ * Within each tier, suites are ordered by impact density: the number of impacted source methods
+ * the suite covers, weighted up by the suite's historical failure rate, divided by its estimated
+ * run time. Suites selected for a reason other than an impacted method (a modified test file, a
+ * static rule) count as covering one.
+ *
+ * <p>The top-ranked tracked suite always runs, even when it alone exceeds the budget, so a budget
+ * that is too small for any suite still drains the deferred set one suite per run.
+ */
+class RunTimeBudget {
+
+    private static final Logger log = LoggerFactory.getLogger(RunTimeBudget.class);
+
+    private static final int TIER_UNTRACKED = 0;
+    private static final int TIER_DEFERRED = 1;
+    private static final int TIER_FAILED = 2;
+    private static final int TIER_OTHER = 3;
+
+    private final long maxRunTimeMs;
+
+    /**
+     * @param maxRunTimeMs the run-time budget (ms); must be positive
+     */
+    RunTimeBudget(final long maxRunTimeMs){
+        this.maxRunTimeMs = maxRunTimeMs;
+    }
+
+    /**
+     * Pick the suites that don't fit the budget.
+     *
+     * @param testsToRun the selected test suites
+     * @param runTimesMs the estimated run time (ms) of each selected suite
+     * @param overheadPerSuiteMs the extra time (ms) each suite costs on top of its run time, e.g.
+     *                           coverage capture on a mapping-update run; {@code 0} when none
+     * @param impactedMethodCounts the number of impacted source methods each suite was selected
+     *                             through; suites without an entry count as covering one
+     * @param testSuitesTracked the tracked test suites keyed by name, for their failure history
+     * @param testSuitesFailed the suites that failed on a previous run
+     * @param testSuitesDeferred the suites deferred by an earlier budgeted run
+     * @return the suites to defer; empty when the whole selection fits
+     */
+    Set<String> findTestsToDefer(final Set<String> testsToRun, final Map<String, Long> runTimesMs,
+                                 final long overheadPerSuiteMs, final Map<String, Integer> impactedMethodCounts,
+                                 final Map<String, TestSuiteTracker> testSuitesTracked,
+                                 final Set<String> testSuitesFailed, final Set<String> testSuitesDeferred){
+        List<RankedTest> rankedTests = new ArrayList<>(testsToRun.size());
+        for (String testName : testsToRun){
+            long costMs = runTimesMs.getOrDefault(testName, 0L) + overheadPerSuiteMs;
+            int tier = !testSuitesTracked.containsKey(testName) ? TIER_UNTRACKED
+                    : testSuitesDeferred.contains(testName) ? TIER_DEFERRED
+                    : testSuitesFailed.contains(testName) ? TIER_FAILED : TIER_OTHER;
+            double value = Math.max(1, impactedMethodCounts.getOrDefault(testName, 0))
+                    * (1d + failureRate(testSuitesTracked.get(testName)));
+            rankedTests.add(new RankedTest(testName, tier, costMs, value / Math.max(1L, costMs)));
+        }
+        rankedTests.sort(Comparator.comparingInt((RankedTest test) -> test.tier)
+                .thenComparing(Comparator.comparingDouble((RankedTest test) -> test.density).reversed())
+                .thenComparing(test -> test.name));
+
+        Set<String> testsToDefer = new HashSet<>();
+        long budgetUsedMs = 0L;
+        boolean trackedTestKept = false;
+        for (RankedTest test : rankedTests){
+            // keep scanning after a suite doesn't fit - a cheaper one further down may still fit
+            if (test.tier == TIER_UNTRACKED || !trackedTestKept || budgetUsedMs + test.costMs <= maxRunTimeMs){
+                budgetUsedMs += test.costMs;
+                trackedTestKept |= test.tier != TIER_UNTRACKED;
+            } else {
+                testsToDefer.add(test.name);
+            }
+        }
+
+        if (!testsToDefer.isEmpty()){
+            log.info("Run time budget of {}ms selects {} of {} test suites (estimated {}ms). Deferring: {}",
+                    maxRunTimeMs, testsToRun.size() - testsToDefer.size(), testsToRun.size(), budgetUsedMs,
+                    testsToDefer);
+        }
+        return testsToDefer;
+    }
+
+    /**
+     * @param tracker the suite's tracker, or {@code null} for a suite Tia hasn't run before
+     * @return the fraction of the suite's recorded runs that failed, or {@code 0} without history
+     */
+    private static double failureRate(final TestSuiteTracker tracker){
+        if (tracker == null){
+            return 0d;
+        }
+        TestStats stats = tracker.getTestStats();
+        return stats.getNumRuns() > 0 ? (double) stats.getNumFailRuns() / stats.getNumRuns() : 0d;
+    }
+
+    /**
+     * A selected suite with its ranking inputs.
+     */
+    private static class RankedTest {
+        private final String name;
+        private final int tier;
+        private final long costMs;
+        private final double density;
+
+        RankedTest(String name, int tier, long costMs, double density) {
+            this.name = name;
+            this.tier = tier;
+            this.costMs = costMs;
+            this.density = density;
+        }
+    }
+}
@@ -2,7 +2,10 @@ package org.tiatesting.core.diff.diffanalyze.selector;
 
 import org.tiatesting.core.report.ReportUtils;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Builds the user-facing output for the {@code tia-select-tests} task (Maven + Gradle).
@@ -12,8 +15,9 @@ import java.util.Map;
  * <ul>
  *   <li>{@link #formatSelectedTestsList} — the tab-indented list of selected tests with each
  *       test's estimated runtime in brackets after its name.</li>
- *   <li>{@link #formatEstimateBlock} — the total estimated runtime, plus a single-line note
- *       when some selected tests have no recorded run-time data.</li>
+ *   <li>{@link #formatEstimateBlock} — the total estimated runtime, the estimated runtime of
+ *       each shard on a sharded run, plus single-line notes when some impacted tests were
+ *       deferred by the run-time budget or some selected tests have no recorded run-time data.</li>
  * </ul>
  *
  * <p>All durations are formatted with the {@code dropMsWhenAboveSecond} flag on
@@ -29,6 +33,12 @@ public class SelectTestsOutputFormatter {
      * Build the tab-indented list of selected tests with each test's estimated runtime in
      * brackets after the name (e.g. {@code "\tcom.example.FooSpec (1m 30s)"}). Tests with no
      * recorded run-time data and no available median are shown with {@code (no run data)}.
+     * Suites narrowed by per-test-method selection list their selected test cases on the
+     * following rows, indented one level deeper. The runtime shown stays the whole-suite
+     * estimate, since run-time stats are only tracked per suite.
+     *
+     * <p>With fail-fast ordering enabled the tests are listed in their run order
+     * ({@link TestSelectorResult#getTestRunOrder()}).
      *
      * <p>Returns an empty string when no tests are selected.
      *
@@ -44,12 +54,21 @@ public class SelectTestsOutputFormatter {
         Map<String, Long> perTestTimes = result.getSelectedTestRunTimesMs();
         StringBuilder sb = new StringBuilder();
         boolean first = true;
-        for (String testName : result.getTestsToRun()){
+        Collection<String> testNames = result.getTestRunOrder().isEmpty()
+                ? result.getTestsToRun() : result.getTestRunOrder();
+        for (String testName : testNames){
             if (!first){
                 sb.append(lineSep);
             }
             first = false;
             sb.append('\t').append(testName).append(' ').append(formatBracketedTime(perTestTimes, testName));
+
+            Set<String> testCases = result.getTestCasesToRun().get(testName);
+            if (testCases != null){
+                for (String testCase : new TreeSet<>(testCases)){
+                    sb.append(lineSep).append("\t\t").append(testCase);
+                }
+            }
         }
         return sb.toString();
     }
@@ -58,6 +77,9 @@ public class SelectTestsOutputFormatter {
      * Build the estimate-runtime block for a {@link TestSelectorResult}. Returns an empty
      * string when {@code testsToRun} is empty.
      *
+     * <p>On a sharded run the total is for this run's shard, and a line follows with the
+     * estimated run time of every shard so the balance across agents can be checked.
+     *
      * <p>When the result includes selected tests without recorded stats, a single-line note
      * is appended stating the count of new tests and the median run time substituted for
      * them. When no historical stats are available to derive a median, the note instead
@@ -99,7 +121,27 @@ public class SelectTestsOutputFormatter {
             long savingsPercent = Math.round((double) savingsMs / allTestsRunTimeMs * 100);
             sb.append(" (").append(selectedPercent).append("%)");
             sb.append(lineSep).append("Estimated savings: ")
-              .append(formatSavingsDuration(savingsMs)).append(" (").append(savingsPercent).append("%)");
+              .append(formatDurationOrZero(savingsMs)).append(" (").append(savingsPercent).append("%)");
+        }
+
+        TestShards testShards = result.getTestShards();
+        if (testShards != null){
+            sb.append(lineSep).append("Shard ").append(testShards.getShardIndex())
+              .append(" of shards 0-").append(testShards.getShardCount() - 1)
+              .append(". Estimated run time per shard: ");
+            for (int i = 0; i < testShards.getShardCount(); i++){
+                if (i > 0){
+                    sb.append(", ");
+                }
+                sb.append(i).append(": ").append(formatDurationOrZero(testShards.getRunTimeMsForShard(i)));
+            }
+        }
+
+        if (!result.getTestsDeferred().isEmpty()){
+            sb.append(lineSep).append(lineSep);
+            sb.append("Note: ").append(result.getTestsDeferred().size())
+              .append(" impacted test(s) were deferred to a later run to fit the run time budget: ")
+              .append(new TreeSet<>(result.getTestsDeferred()));
         }
 
         if (!result.getSelectedTestsWithoutStats().isEmpty()){
@@ -120,19 +162,19 @@ public class SelectTestsOutputFormatter {
     }
 
     /**
-     * Format the estimated-savings duration. Delegates to
-     * {@link ReportUtils#prettyDuration(long, boolean)} but renders zero (or clamped-to-zero)
-     * savings as {@code "0s"} rather than the empty string that {@code prettyDuration} returns
-     * for a zero duration.
+     * Format a duration that may be zero: the estimated savings, or the estimated run time of a
+     * shard. Delegates to {@link ReportUtils#prettyDuration(long, boolean)} but renders zero (or
+     * clamped-to-zero) durations as {@code "0s"} rather than the empty string that
+     * {@code prettyDuration} returns for a zero duration.
      *
-     * @param savingsMs the savings in milliseconds (never negative)
-     * @return the formatted savings duration, or {@code "0s"} when there is no saving
+     * @param durationMs the duration in milliseconds (never negative)
+     * @return the formatted duration, or {@code "0s"} when it is zero
      */
-    private static String formatSavingsDuration(final long savingsMs){
-        if (savingsMs <= 0){
+    private static String formatDurationOrZero(final long durationMs){
+        if (durationMs <= 0){
             return "0s";
         }
-        return ReportUtils.prettyDuration(savingsMs, true);
+        return ReportUtils.prettyDuration(durationMs, true);
     }
 
     /**
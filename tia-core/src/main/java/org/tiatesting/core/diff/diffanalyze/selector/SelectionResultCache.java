@@ -0,0 +1,144 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Persists the results of {@link TestSelector#selectTestsToIgnore} under a dir, keyed by a
+ * description of every input the selection read, so a later selection with the same inputs is
+ * read back instead of redone. See the "Selection result cache" chapter in WIKI.md.
+ *
+ * <p>Each key is written to its own file, named by a hash of the key. The file holds the key too,
+ * so a hash collision reads as a miss. Only the newest {@link #MAX_ENTRIES} files are kept.
+ */
+class SelectionResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SelectionResultCache.class);
+
+    private static final String CACHE_FILE_SUFFIX = ".selection";
+
+    /**
+     * The most selections kept - enough for the modules and shards of one build, and a few builds back.
+     */
+    static final int MAX_ENTRIES = 32;
+
+    private final File cacheDir;
+
+    /**
+     * @param cacheDir the dir the selections are persisted under
+     */
+    SelectionResultCache(final File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @param key the description of the selection's inputs
+     * @return the selection persisted for the key, or {@code null} on a miss
+     */
+    TestSelectorResult get(final String key) {
+        File cacheFile = getCacheFile(key);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(cacheFile.toPath())))) {
+            Entry entry = (Entry) in.readObject();
+            if (key.equals(entry.key)) {
+                return entry.result;
+            }
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.warn("Ignoring the unreadable selection cache file {}: {}", cacheFile, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Persist the selection for the key. The file is written alongside and moved into place, so a
+     * concurrent reader sees the old or the new selection, never a partial one. A failed write only
+     * costs the next selection a full run, so it's logged rather than thrown.
+     *
+     * @param key the description of the selection's inputs
+     * @param result the selection
+     */
+    void put(final String key, final TestSelectorResult result) {
+        File cacheFile = getCacheFile(key);
+        File tempFile = null;
+        try {
+            Files.createDirectories(cacheDir.toPath());
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDir);
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                out.writeObject(new Entry(key, result));
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write the selection cache file {}: {}", cacheFile, e.getMessage());
+            if (tempFile != null && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+            return;
+        }
+        pruneOldEntries();
+    }
+
+    /**
+     * Delete all but the newest {@link #MAX_ENTRIES} cache files - most keys are never seen again
+     * once the head commit moves on.
+     */
+    private void pruneOldEntries() {
+        File[] cacheFiles = cacheDir.listFiles((dir, name) -> name.endsWith(CACHE_FILE_SUFFIX));
+        if (cacheFiles == null || cacheFiles.length <= MAX_ENTRIES) {
+            return;
+        }
+
+        Arrays.sort(cacheFiles, Comparator.comparingLong(File::lastModified).reversed());
+        for (int i = MAX_ENTRIES; i < cacheFiles.length; i++) {
+            if (!cacheFiles[i].delete()) {
+                log.debug("Couldn't delete the old selection cache file {}", cacheFiles[i]);
+            }
+        }
+    }
+
+    File getCacheFile(final String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                name.append(String.format("%02x", hash[i]));
+            }
+            return new File(cacheDir, name + CACHE_FILE_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A persisted selection and the key it was made for.
+     */
+    private static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final TestSelectorResult result;
+
+        Entry(String key, TestSelectorResult result) {
+            this.key = key;
+            this.result = result;
+        }
+    }
+}
@@ -7,14 +7,19 @@ import org.tiatesting.core.diff.diffanalyze.MethodImpactAnalyzer;
 import org.tiatesting.core.library.LibraryImpactAnalysisConfig;
 import org.tiatesting.core.library.LibraryImpactDrainResult;
 import org.tiatesting.core.library.PendingLibraryImpactedMethodsDrainer;
+import org.tiatesting.core.library.ResolvedSourceProjectLibrary;
 import org.tiatesting.core.library.TrackedLibraryReconciler;
 import org.tiatesting.core.model.MethodImpactTracker;
+import org.tiatesting.core.model.LibraryPublish;
+import org.tiatesting.core.model.MethodLineCoverage;
+import org.tiatesting.core.model.TestStats;
 import org.tiatesting.core.model.TestSuiteTracker;
 import org.tiatesting.core.model.TrackedLibrary;
 import org.tiatesting.core.diff.SourceFileDiffContext;
 import org.tiatesting.core.sourcefile.SourceFilenameUtil;
 import org.tiatesting.core.staticselection.StaticTestSelectionConfig;
 import org.tiatesting.core.staticselection.StaticTestSelectionResolver;
+import org.tiatesting.core.staticselection.StaticTestSelectionRule;
 import org.tiatesting.core.vcs.VCSAnalyzerException;
 import org.tiatesting.core.vcs.VCSReader;
 import org.tiatesting.core.persistence.DataStore;
@@ -24,6 +29,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 import static org.tiatesting.core.sourcefile.FileExtensions.JAVA_FILE_EXT;
 import static org.tiatesting.core.sourcefile.FileExtensions.GROOVY_FILE_EXT;
@@ -32,14 +42,118 @@ public class TestSelector {
 
     private static final Logger log = LoggerFactory.getLogger(TestSelector.class);
 
+    // The most selection stages that run at once: the suite metadata, failed and deferred set
+    // reads alongside the VCS diff.
+    private static final int SELECTION_STAGE_THREADS = 4;
+
+    // Bump when the selection logic or the result format changes, so selections persisted by an
+    // older version aren't reused.
+    private static final int SELECTION_CACHE_VERSION = 1;
+
     private final DataStore dataStore;
 
     FileImpactAnalyzer fileImpactAnalyzer = new FileImpactAnalyzer(new MethodImpactAnalyzer());
 
+    private boolean perTestSelection;
+    private boolean lineLevelSelection;
+    private long maxRunTimeMs;
+    private int shardIndex;
+    private int shardCount;
+    private boolean failFastOrdering;
+    private SelectionResultCache selectionResultCache;
+
     public TestSelector (final DataStore dataStore){
         this.dataStore = dataStore;
     }
 
+    /**
+     * Enable per-test-method selection: suites selected only through impacted source methods
+     * are narrowed to the test cases whose own stored coverage hits those methods (see
+     * {@link TestSelectorResult#getTestCasesToRun()}). Ignored on runs that own the mapping
+     * ({@code updateDBMapping}), which always run whole suites so the stored per-test edges
+     * stay complete. See the "Per-test-method selection" chapter in WIKI.md.
+     *
+     * @param perTestSelection whether to compute the per-test-method filter
+     */
+    public void setPerTestSelection(final boolean perTestSelection){
+        this.perTestSelection = perTestSelection;
+    }
+
+    /**
+     * Enable line-level selection: a suite that covered an impacted method is only selected
+     * through it when the stored line coverage shows the suite executed the changed lines (see
+     * {@link MethodLineCoverage#isHitByChange}). Suites without line coverage stored for the
+     * method fall back to method-level selection. Ignored on runs that own the mapping
+     * ({@code updateDBMapping}), which run every covering suite so the stored lines are
+     * refreshed. See the "Line-level selection" chapter in WIKI.md.
+     *
+     * @param lineLevelSelection whether to narrow method-selected suites by the lines they hit
+     */
+    public void setLineLevelSelection(final boolean lineLevelSelection){
+        this.lineLevelSelection = lineLevelSelection;
+    }
+
+    /**
+     * Enable run-time budgeted selection: when the estimated run time of the selected suites
+     * exceeds the budget, only the highest-value subset that fits is run (see
+     * {@link RunTimeBudget}) and the rest is deferred. On a run that owns the mapping the
+     * deferred suites are recorded in the DB ({@link DataStore#persistTestSuitesDeferred}), since
+     * the stored commit advances past the changes that selected them; every later selection then
+     * forces them until a run executes them. See the "Run-time budgeted selection" chapter in WIKI.md.
+     *
+     * @param maxRunTimeMs the run-time budget (ms); {@code 0} or less disables the budget
+     */
+    public void setMaxRunTimeMs(final long maxRunTimeMs){
+        this.maxRunTimeMs = maxRunTimeMs;
+    }
+
+    /**
+     * Enable test sharding: the selected suites are split into {@code shardCount} shards of
+     * near-equal estimated run time (see {@link TestShards}) and only the suites of shard
+     * {@code shardIndex} are run; the suites of the other shards are added to the ignore list.
+     * Ignored on runs that own the mapping ({@code updateDBMapping}), which must run the whole
+     * selection in one place to keep the stored mapping and failed set consistent. See the
+     * "Test sharding" chapter in WIKI.md.
+     *
+     * @param shardIndex the zero-based index of the shard this run executes
+     * @param shardCount the number of shards; {@code 1} or less disables sharding
+     * @throws IllegalArgumentException if sharding is enabled and {@code shardIndex} is not in
+     *         {@code [0, shardCount)}
+     */
+    public void setShard(final int shardIndex, final int shardCount){
+        if (shardCount > 1 && (shardIndex < 0 || shardIndex >= shardCount)){
+            throw new IllegalArgumentException("Tia shard index " + shardIndex
+                    + " is out of range for a shard count of " + shardCount + " (expected 0 to " + (shardCount - 1) + ")");
+        }
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Enable fail-fast ordering: the result carries a run order for the selected suites (see
+     * {@link TestSelectorResult#getTestRunOrder()}) with the previously failed and directly
+     * impacted suites first, each group in ascending estimated run time (see
+     * {@link FailFastRunOrder}). See the "Fail-fast test ordering" chapter in WIKI.md.
+     *
+     * @param failFastOrdering whether to compute the fail-fast run order
+     */
+    public void setFailFastOrdering(final boolean failFastOrdering){
+        this.failFastOrdering = failFastOrdering;
+    }
+
+    /**
+     * Enable the selection result cache: the selections made by runs that don't own the mapping
+     * are persisted under the dir, keyed by every input they read - the branch, the stored commit
+     * and stats, the failed and deferred suites, the head commit, the local changes, the selection
+     * settings, the static rules and the resolved libraries. A later selection with the same
+     * inputs is read back instead of redone. See the "Selection result cache" chapter in WIKI.md.
+     *
+     * @param selectionCacheDir the dir to persist the selections under; {@code null} disables the cache
+     */
+    public void setSelectionCacheDir(final File selectionCacheDir){
+        this.selectionResultCache = selectionCacheDir != null ? new SelectionResultCache(selectionCacheDir) : null;
+    }
+
     /**
      * Find the list of tests that should not be run.
      * <br>
@@ -79,10 +193,11 @@ public class TestSelector {
                                            final boolean updateDBMapping){
         // Targeted read path: only the single-row core data is loaded up front. The mapping
         // is queried per diff-slice (the changed-files-to-tracked-methods and
-        // methods-to-covering-suites lookups) inside selectTestsToRun, and the suite-level
+        // methods-to-covering-suites lookups) inside the selection stages, and the suite-level
         // metadata (names + stats, no coverage edges) is loaded once below. The full
         // suite-class-method mapping is never bulk-loaded on this path.
-        TiaData tiaCore = dataStore.getTiaCore();
+        long startTime = System.currentTimeMillis();
+        TiaData tiaCore = timeStage("load the stored core data", dataStore::getTiaCore);
 
         if (updateDBMapping) {
             reconcileTrackedLibrariesIfConfigured(libraryConfig);
@@ -95,31 +210,331 @@ public class TestSelector {
                     tiaCore.getTestStats().getAllTestsRunTime(), 0L);
         }
 
-        // Suite names + stats only (no coverage edges): serves the modified-test-file check,
-        // the ignore list and the run-time estimate.
-        Map<String, TestSuiteTracker> testSuitesTracked = dataStore.getTestSuitesTracked();
+        // A run that owns the mapping writes as it selects, so only read-only selections are reused.
+        String selectionCacheKey = selectionResultCache != null && !updateDBMapping
+                ? buildSelectionCacheKey(vcsReader, sourceFilesDirNames, testFilesDirNames, checkLocalChanges,
+                        libraryConfig, staticMappingConfig, tiaCore) : null;
+        if (selectionCacheKey != null){
+            TestSelectorResult cachedResult = selectionResultCache.get(selectionCacheKey);
+            if (cachedResult != null){
+                log.info("Time to read the tests to run from the selection cache (ms): " + (System.currentTimeMillis() - startTime));
+                return cachedResult;
+            }
+        }
 
-        Set<String> testsToRun = selectTestsToRun(vcsReader, sourceFilesDirNames, testFilesDirNames, checkLocalChanges,
-                tiaCore.getCommitValue(), testSuitesTracked, libraryConfig);
+        // The reads below run as a graph of stages so the DB round trips and the VCS I/O overlap:
+        // the suite metadata, failed and deferred sets load while the VCS diff is read, and the
+        // static rules read their changed paths while the tracked methods of the diff are queried.
+        // The VCS reader is only ever called from one stage at a time - the Perforce connection
+        // isn't safe for concurrent commands. See the "Test selection stages" chapter in WIKI.md.
+        ExecutorService executor = Executors.newFixedThreadPool(SELECTION_STAGE_THREADS);
+        try {
+            CompletableFuture<Map<String, TestSuiteTracker>> testSuitesTrackedStage = startStage(executor,
+                    "load the tracked test suites", dataStore::getTestSuitesTracked);
+            CompletableFuture<Set<String>> testSuitesFailedStage = startStage(executor,
+                    "load the failed test suites", dataStore::getTestSuitesFailed);
+            CompletableFuture<Set<String>> testSuitesDeferredStage = startStage(executor,
+                    "load the deferred test suites", dataStore::getTestSuitesDeferred);
+
+            CompletableFuture<ChangedFiles> changedFilesStage = startStage(executor,
+                    "read the changed files from the VCS", () -> readChangedFiles(vcsReader, sourceFilesDirNames,
+                            testFilesDirNames, checkLocalChanges, tiaCore.getCommitValue(), libraryConfig));
+            CompletableFuture<Map<String, Map<Integer, MethodImpactTracker>>> methodsTrackedStage =
+                    changedFilesStage.thenApplyAsync(changedFiles -> timeStage("load the tracked methods for the changed files",
+                            () -> loadMethodsTrackedForDiffs(changedFiles.getModifiedSourceDiffs(),
+                                    changedFiles.sourceFilesDirs)), executor);
+            CompletableFuture<Set<String>> staticChangedPathsStage = changedFilesStage.thenApplyAsync(changedFiles ->
+                    readStaticSelectionChangedPaths(vcsReader, staticMappingConfig, tiaCore.getCommitValue(),
+                            checkLocalChanges), executor);
+
+            // The content fetch waits for the static rules' changed paths so the two VCS reads don't overlap.
+            Map<Integer, BitSet> changedLinesByMethod = lineLevelSelection && !updateDBMapping ? new HashMap<>() : null;
+            CompletableFuture<Set<Integer>> impactedMethodsStage = methodsTrackedStage.thenCombineAsync(
+                    staticChangedPathsStage, (methodsTrackedByFile, staticChangedPaths) ->
+                            timeStage("load and diff the content of the changed tracked files",
+                                    () -> findMethodsImpacted(vcsReader, join(changedFilesStage), methodsTrackedByFile,
+                                            tiaCore.getCommitValue(), checkLocalChanges, libraryConfig,
+                                            changedLinesByMethod)), executor);
+
+            // Impacted-method counts per suite, only gathered to rank suites for a run-time budget.
+            Map<String, Integer> impactedMethodCounts = maxRunTimeMs > 0 ? new HashMap<>() : null;
+            // Per-test-method filter, only filled for non-mapping runs with per-test selection on.
+            Map<String, Set<String>> testCasesToRun = new HashMap<>();
+            boolean findTestCases = perTestSelection && !updateDBMapping;
+            CompletableFuture<Set<String>> methodSelectedTestsStage = impactedMethodsStage.thenApplyAsync(impactedMethods ->
+                    timeStage("load the test suites for the impacted methods", () -> {
+                        Set<String> methodSelectedTests = findTestSuitesForImpactedMethods(impactedMethods,
+                                join(methodsTrackedStage), changedLinesByMethod, impactedMethodCounts);
+                        if (findTestCases){
+                            testCasesToRun.putAll(findTestCasesForImpactedMethods(impactedMethods, methodSelectedTests));
+                        }
+                        return methodSelectedTests;
+                    }), executor);
+
+            CompletableFuture<PendingLibraryImpactedMethodsDrainer.DrainOutcome> drainStage =
+                    libraryConfig != null && libraryConfig.isEnabled()
+                            ? testSuitesTrackedStage.thenApplyAsync(testSuitesTracked -> timeStage("drain the pending library changes",
+                                    () -> drainPendingLibraryMethodsIfConfigured(libraryConfig, testSuitesTracked)), executor)
+                            : CompletableFuture.completedFuture(null);
+
+            Map<String, TestSuiteTracker> testSuitesTracked = join(testSuitesTrackedStage);
+            Set<String> testSuitesFailed = join(testSuitesFailedStage);
+            Set<String> testSuitesDeferred = join(testSuitesDeferredStage);
+
+            // Suites selected directly by the changes, only gathered to order the run fail-fast.
+            Set<String> directlyImpactedTests = failFastOrdering ? new HashSet<>() : null;
+            Set<String> testsToRun = selectTestsToRun(join(changedFilesStage), join(methodSelectedTestsStage),
+                    testSuitesTracked, testSuitesFailed, testSuitesDeferred,
+                    findTestCases ? testCasesToRun : null, directlyImpactedTests);
+
+            // Library drain and static rules select whole suites: their reason to run isn't captured
+            // by any per-test edge, so they are collected separately and drop out of the filter.
+            Set<String> wholeSuiteTests = new HashSet<>();
+            LibraryImpactDrainResult drainResult = null;
+            PendingLibraryImpactedMethodsDrainer.DrainOutcome drainOutcome = join(drainStage);
+            if (drainOutcome != null){
+                wholeSuiteTests.addAll(drainOutcome.getTestsToAdd());
+                drainResult = drainOutcome.getDrainResult();
+            }
 
-        LibraryImpactDrainResult drainResult = drainPendingLibraryMethodsIfConfigured(
-                libraryConfig, testsToRun, testSuitesTracked);
+            applyStaticTestSelection(staticMappingConfig, join(staticChangedPathsStage), testSuitesTracked, wholeSuiteTests);
+            testsToRun.addAll(wholeSuiteTests);
+            testCasesToRun.keySet().removeAll(wholeSuiteTests);
 
-        applyStaticTestSelection(vcsReader, staticMappingConfig, tiaCore.getCommitValue(), testSuitesTracked,
-                testsToRun, checkLocalChanges);
+            Set<String> testsDeferred = Collections.emptySet();
+            if (maxRunTimeMs > 0){
+                testsDeferred = applyRunTimeBudget(testsToRun, testSuitesTracked, impactedMethodCounts,
+                        tiaCore.getTestStats().getAllTestsRunTime(), testSuitesFailed, testSuitesDeferred, updateDBMapping);
+                testCasesToRun.keySet().removeAll(testsDeferred);
+            }
 
-        // Get the list of tests from the stored mapping that aren't in the list of test suites to run.
-        Set<String> testsToIgnore = getTestsToIgnore(testSuitesTracked, testsToRun);
+            TestShards testShards = null;
+            Set<String> testsInOtherShards = Collections.emptySet();
+            if (shardCount > 1){
+                if (updateDBMapping){
+                    log.warn("Tia test sharding is ignored on a run that updates the mapping - running the whole selection.");
+                } else {
+                    testShards = TestShards.partition(testsToRun, estimateRunTime(testsToRun, testSuitesTracked,
+                            tiaCore.getTestStats().getAllTestsRunTime()).getSelectedTestRunTimesMs(), shardIndex, shardCount);
+                    testsInOtherShards = new HashSet<>(testsToRun);
+                    testsInOtherShards.removeAll(testShards.getTestsForShard(shardIndex));
+                    testsToRun.removeAll(testsInOtherShards);
+                    testCasesToRun.keySet().removeAll(testsInOtherShards);
+                    log.info("Running shard {} of {}: {} of the selected test suites", shardIndex, shardCount, testsToRun.size());
+                }
+            }
+
+            // Get the list of tests from the stored mapping that aren't in the list of test suites to run.
+            Set<String> testsToIgnore = getTestsToIgnore(testSuitesTracked, testsToRun);
+            // Suites of another shard are ignored even when untracked - another agent runs them.
+            testsToIgnore.addAll(testsInOtherShards);
+
+            log.debug("Ignoring tests: {}", testsToIgnore);
+
+            RunTimeEstimate estimate = estimateRunTime(testsToRun, testSuitesTracked,
+                    tiaCore.getTestStats().getAllTestsRunTime());
+            List<String> testRunOrder = failFastOrdering
+                    ? FailFastRunOrder.order(testsToRun, estimate.getSelectedTestRunTimesMs(),
+                            testSuitesFailed, directlyImpactedTests)
+                    : Collections.emptyList();
+            log.info("Time to select the tests to run (ms): " + (System.currentTimeMillis() - startTime));
+            TestSelectorResult result = new TestSelectorResult(testsToRun, testsToIgnore, drainResult,
+                    estimate.getEstimatedRunTimeMs(), estimate.getSelectedTestsWithoutStats(),
+                    estimate.getMedianRunTimeMsAppliedToMissing(),
+                    estimate.getSelectedTestRunTimesMs(),
+                    tiaCore.getTestStats().getAllTestsRunTime(), estimate.getMappingOverheadMs(),
+                    testCasesToRun, testsDeferred, testShards, testRunOrder);
+            if (selectionCacheKey != null){
+                selectionResultCache.put(selectionCacheKey, result);
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-        log.debug("Ignoring tests: {}", testsToIgnore);
+    /**
+     * Describe every input a selection reads, as the key for the selection result cache. Two
+     * selections with the same key select the same tests.
+     *
+     * @return the key, or {@code null} when the selection can't be cached - the VCS reader can't
+     *         fingerprint the local changes
+     */
+    private String buildSelectionCacheKey(final VCSReader vcsReader, final List<String> sourceFilesDirNames,
+                                          final List<String> testFilesDirNames, final boolean checkLocalChanges,
+                                          final LibraryImpactAnalysisConfig libraryConfig,
+                                          final StaticTestSelectionConfig staticMappingConfig,
+                                          final TiaData tiaCore){
+        String localChangesFingerprint = null;
+        if (checkLocalChanges){
+            localChangesFingerprint = vcsReader.getLocalChangesFingerprint(tiaCore.getCommitValue());
+            if (localChangesFingerprint == null){
+                log.info("The local changes can't be fingerprinted for this VCS - the selection isn't cached.");
+                return null;
+            }
+        }
 
-        RunTimeEstimate estimate = estimateRunTime(testsToRun, testSuitesTracked,
-                tiaCore.getTestStats().getAllTestsRunTime());
-        return new TestSelectorResult(testsToRun, testsToIgnore, drainResult,
-                estimate.getEstimatedRunTimeMs(), estimate.getSelectedTestsWithoutStats(),
-                estimate.getMedianRunTimeMsAppliedToMissing(),
-                estimate.getSelectedTestRunTimesMs(),
-                tiaCore.getTestStats().getAllTestsRunTime(), estimate.getMappingOverheadMs());
+        // The stats and the failed and deferred sets change with every test run, even a run that
+        // doesn't move the stored commit.
+        TestStats testStats = tiaCore.getTestStats();
+        StringBuilder key = new StringBuilder()
+                .append("version=").append(SELECTION_CACHE_VERSION)
+                .append(";branch=").append(vcsReader.getBranchName())
+                .append(";storedCommit=").append(tiaCore.getCommitValue())
+                .append(";lastUpdated=").append(tiaCore.getLastUpdated())
+                .append(";testStats=").append(testStats.getNumRuns()).append(',').append(testStats.getNumAllTestsRuns())
+                .append(',').append(testStats.getAllTestsRunTime())
+                .append(";failed=").append(new TreeSet<>(dataStore.getTestSuitesFailed()))
+                .append(";deferred=").append(new TreeSet<>(dataStore.getTestSuitesDeferred()))
+                .append(";head=").append(vcsReader.getHeadCommit())
+                .append(";checkLocalChanges=").append(checkLocalChanges)
+                .append(";localChanges=").append(localChangesFingerprint)
+                .append(";sourceFilesDirs=").append(sourceFilesDirNames)
+                .append(";testFilesDirs=").append(testFilesDirNames)
+                .append(";perTestSelection=").append(perTestSelection)
+                .append(";lineLevelSelection=").append(lineLevelSelection)
+                .append(";maxRunTimeMs=").append(maxRunTimeMs)
+                .append(";shard=").append(shardIndex).append('/').append(shardCount)
+                .append(";failFastOrdering=").append(failFastOrdering);
+
+        if (staticMappingConfig != null && staticMappingConfig.isEnabled()){
+            for (StaticTestSelectionRule rule : staticMappingConfig.getRules()){
+                key.append(";staticRule=").append(rule.getName()).append(',').append(rule.getFilePathPattern())
+                        .append(',').append(rule.getMode()).append(',').append(rule.getSuiteNamePatterns());
+            }
+        }
+
+        if (libraryConfig != null && libraryConfig.isEnabled()){
+            appendLibraryInputs(key, libraryConfig);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Describe the library inputs of a selection: the libraries as resolved on the source project,
+     * the tracked libraries' applied stamps and the publish ledger. A new publish or drain changes
+     * the stamps, and a new library jar changes the resolution.
+     */
+    private void appendLibraryInputs(final StringBuilder key, final LibraryImpactAnalysisConfig libraryConfig){
+        key.append(";libraryCoordinates=").append(new TreeSet<>(libraryConfig.getCoordinates()))
+                .append(";libraryProjectDirs=").append(new TreeMap<>(libraryConfig.getLibraryProjectDirs()))
+                .append(";sourceProjectDir=").append(libraryConfig.getSourceProjectDir());
+
+        List<ResolvedSourceProjectLibrary> resolvedLibraries = libraryConfig.getMetadataReader()
+                .resolveLibrariesInSourceProject(libraryConfig.getSourceProjectDir(),
+                        new ArrayList<>(libraryConfig.getCoordinates()));
+        for (ResolvedSourceProjectLibrary resolved : resolvedLibraries){
+            key.append(";resolved=").append(resolved.getGroupArtifact()).append(',').append(resolved.getResolvedVersion());
+            if (resolved.getJarFilePath() != null){
+                // a rebuilt SNAPSHOT jar keeps its version and path
+                File jarFile = new File(resolved.getJarFilePath());
+                key.append(',').append(jarFile.getAbsolutePath()).append(',').append(jarFile.length())
+                        .append(',').append(jarFile.lastModified());
+            }
+        }
+
+        for (TrackedLibrary trackedLibrary : new TreeMap<>(dataStore.readTrackedLibraries()).values()){
+            key.append(";tracked=").append(trackedLibrary.getGroupArtifact())
+                    .append(',').append(trackedLibrary.getMappingBaselineCommit())
+                    .append(',').append(trackedLibrary.getLastAppliedSeq());
+        }
+
+        for (LibraryPublish libraryPublish : dataStore.readAllLibraryPublishes()){
+            key.append(";published=").append(libraryPublish.getGroupArtifact())
+                    .append(',').append(libraryPublish.getPublishSeq())
+                    .append(',').append(libraryPublish.getJarHash());
+        }
+    }
+
+    /**
+     * Start a selection stage on the stage executor.
+     *
+     * @param executor the executor the selection stages run on
+     * @param stageName the stage description for the timing log, e.g. {@code "load the tracked test suites"}
+     * @param stage the stage's work
+     * @param <T> the stage result type
+     * @return the stage
+     */
+    private static <T> CompletableFuture<T> startStage(final ExecutorService executor, final String stageName,
+                                                       final Supplier<T> stage){
+        return CompletableFuture.supplyAsync(() -> timeStage(stageName, stage), executor);
+    }
+
+    /**
+     * Run a selection stage and log how long it took.
+     *
+     * @param stageName the stage description for the timing log
+     * @param stage the stage's work
+     * @param <T> the stage result type
+     * @return the stage result
+     */
+    private static <T> T timeStage(final String stageName, final Supplier<T> stage){
+        long startTime = System.currentTimeMillis();
+        T result = stage.get();
+        log.info("Time to " + stageName + " (ms): " + (System.currentTimeMillis() - startTime));
+        return result;
+    }
+
+    /**
+     * Wait for a selection stage, rethrowing the exception it failed with (a
+     * {@link VCSAnalyzerException} or {@code TiaPersistenceException}) rather than the
+     * {@link CompletionException} wrapping it.
+     *
+     * @param stage the stage to wait for
+     * @param <T> the stage result type
+     * @return the stage result
+     */
+    private static <T> T join(final CompletableFuture<T> stage){
+        try {
+            return stage.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error){
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cut the selection down to the run-time budget, removing the deferred suites from
+     * {@code testsToRun} in place. The per-suite cost is the suite's estimated run time (see
+     * {@link #estimateRunTime}) plus, on a mapping-update run, its share of the coverage overhead.
+     *
+     * <p>On a run that owns the mapping the deferred suites are added to the stored deferred set
+     * before any test runs. This is safe ahead of the seal for the same reason the failed set is:
+     * over-inclusion only forces extra suites next time. Runs that don't own the mapping don't
+     * advance the stored commit, so their deferred suites are re-selected by the next diff anyway
+     * and nothing is recorded.
+     *
+     * @param testsToRun the selected test suites; the deferred suites are removed in place
+     * @param testSuitesTracked the tracked test suites (names + stats) keyed by suite name
+     * @param impactedMethodCounts the number of impacted methods each suite was selected through
+     * @param allTestsRunTimeMs the recorded full-suite run time (ms); the basis for the overhead
+     * @param testSuitesFailed the stored failed test suites
+     * @param testSuitesDeferred the stored deferred test suites; the newly deferred suites are added in place
+     * @param updateDBMapping whether this run owns mapping-DB updates
+     * @return the deferred test suites
+     */
+    private Set<String> applyRunTimeBudget(final Set<String> testsToRun, final Map<String, TestSuiteTracker> testSuitesTracked,
+                                           final Map<String, Integer> impactedMethodCounts,
+                                           final long allTestsRunTimeMs, final Set<String> testSuitesFailed,
+                                           final Set<String> testSuitesDeferred, final boolean updateDBMapping){
+        RunTimeEstimate estimate = estimateRunTime(testsToRun, testSuitesTracked, allTestsRunTimeMs);
+        long overheadPerSuiteMs = updateDBMapping ? computeOverheadPerSuiteMs(testSuitesTracked, allTestsRunTimeMs) : 0L;
+
+        Set<String> testsDeferred = new RunTimeBudget(maxRunTimeMs).findTestsToDefer(testsToRun,
+                estimate.getSelectedTestRunTimesMs(), overheadPerSuiteMs, impactedMethodCounts, testSuitesTracked,
+                testSuitesFailed, testSuitesDeferred);
+        testsToRun.removeAll(testsDeferred);
+
+        if (updateDBMapping && !testSuitesDeferred.containsAll(testsDeferred)){
+            testSuitesDeferred.addAll(testsDeferred);
+            dataStore.persistTestSuitesDeferred(testSuitesDeferred);
+        }
+        return testsDeferred;
     }
 
     /**
@@ -306,33 +721,21 @@ public class TestSelector {
     }
 
     /**
-     * Core test selection logic. When a {@link LibraryImpactAnalysisConfig} is provided and
-     * enabled, modified source diffs are partitioned into source-project vs per-library buckets
-     * and the library-owned diffs are excluded from source selection - under publish-time
-     * stamping the library's own publish records their impacted methods, and the drain selects
-     * the covering tests once the app resolves a build that contains them. In
-     * {@code checkLocalChanges} mode, library diff partitioning is bypassed entirely — all
-     * diffs are treated as source-project diffs so tests run immediately against local changes.
-     *
-     * <p>Mapping reads are targeted to the diff: one changed-files-to-tracked-methods query
-     * ({@link DataStore#getMethodsTrackedForFiles}) resolves the changed files to their tracked
-     * methods, and one methods-to-covering-suites query
-     * ({@link DataStore#getTestSuitesForMethods}) resolves the impacted methods to suites.
+     * Read the changed files (paths + change type, NO content yet) from the VCS. Content is fetched
+     * later, for only the files that turn out to be tracked in the mapping.
      *
      * @param vcsReader the VCS reader used to build the diff contexts
      * @param sourceFilesDirNames the dir names for the source files
      * @param testFilesDirNames the dir names for the test files
      * @param checkLocalChanges should local changes be checked by Tia
      * @param storedCommitValue the commit the stored mapping was built at (diff baseline)
-     * @param testSuitesTracked the tracked test suites (names + stats) keyed by suite name
      * @param libraryConfig the library impact analysis config, or {@code null} if not configured
-     * @return the test suites that should be executed for the current changes
+     * @return the changed files grouped by kind, with the resolved source and test dirs
      */
-    private Set<String> selectTestsToRun(final VCSReader vcsReader, final List<String> sourceFilesDirNames,
-                                         final List<String> testFilesDirNames, final boolean checkLocalChanges,
-                                         final String storedCommitValue,
-                                         final Map<String, TestSuiteTracker> testSuitesTracked,
-                                         final LibraryImpactAnalysisConfig libraryConfig){
+    private ChangedFiles readChangedFiles(final VCSReader vcsReader, final List<String> sourceFilesDirNames,
+                                          final List<String> testFilesDirNames, final boolean checkLocalChanges,
+                                          final String storedCommitValue,
+                                          final LibraryImpactAnalysisConfig libraryConfig){
         List<String> sourceFilesDirs = getFullFilePaths(sourceFilesDirNames);
         List<String> testFilesDirs = getFullFilePaths(testFilesDirNames);
 
@@ -343,20 +746,37 @@ public class TestSelector {
             sourceFilesDirs.addAll(collectTrackedLibraryDirs());
         }
 
-        // Get the changed files (paths + change type, NO content yet). Content is fetched further
-        // down, for only the files that turn out to be tracked in the mapping.
         Set<SourceFileDiffContext> impactedSourceFiles = vcsReader.getDiffFiles(storedCommitValue,
                 sourceFilesDirs, testFilesDirs, checkLocalChanges);
-        Map<String, List<SourceFileDiffContext>> groupedImpactedFiles = fileImpactAnalyzer.groupImpactedTestFiles(impactedSourceFiles, testFilesDirs);
-
-        List<SourceFileDiffContext> modifiedSourceDiffs = groupedImpactedFiles.get(FileImpactAnalyzer.SOURCE_FILE_MODIFIED);
-
-        // Changed-files-to-tracked-methods lookup: one targeted query for the tracked methods of
-        // ALL modified source files (source-project and library buckets alike) - both consumers
-        // below share the result.
-        Map<String, Map<Integer, MethodImpactTracker>> methodsTrackedByFile =
-                loadMethodsTrackedForDiffs(modifiedSourceDiffs, sourceFilesDirs);
+        return new ChangedFiles(sourceFilesDirs, testFilesDirs,
+                fileImpactAnalyzer.groupImpactedTestFiles(impactedSourceFiles, testFilesDirs));
+    }
 
+    /**
+     * Find the tracked methods impacted by the modified source files. When a
+     * {@link LibraryImpactAnalysisConfig} is provided and enabled, modified source diffs are
+     * partitioned into source-project vs per-library buckets and the library-owned diffs are
+     * excluded from source selection - under publish-time stamping the library's own publish
+     * records their impacted methods, and the drain selects the covering tests once the app
+     * resolves a build that contains them. In {@code checkLocalChanges} mode, library diff
+     * partitioning is bypassed entirely — all diffs are treated as source-project diffs so tests
+     * run immediately against local changes.
+     *
+     * @param vcsReader the VCS reader used to load the file content
+     * @param changedFiles the changed files read from the VCS
+     * @param methodsTrackedByFile the changed-files-to-tracked-methods result
+     * @param storedCommitValue the commit the stored mapping was built at (diff baseline)
+     * @param checkLocalChanges should local changes be checked by Tia
+     * @param libraryConfig the library impact analysis config, or {@code null} if not configured
+     * @param changedLinesByMethod accumulator for the changed lines of each impacted method, or
+     *                             {@code null} when line-level selection is off
+     * @return the ids of the impacted methods
+     */
+    private Set<Integer> findMethodsImpacted(final VCSReader vcsReader, final ChangedFiles changedFiles,
+                                             final Map<String, Map<Integer, MethodImpactTracker>> methodsTrackedByFile,
+                                             final String storedCommitValue, final boolean checkLocalChanges,
+                                             final LibraryImpactAnalysisConfig libraryConfig,
+                                             final Map<Integer, BitSet> changedLinesByMethod){
         // Fetch file content only for the modified source files that are actually tracked in the
         // mapping. A changed file with no tracked coverage cannot select any test, so diffing it is
         // wasted work - and on Perforce fetching its content from the server is the dominant cost
@@ -364,8 +784,8 @@ public class TestSelector {
         // here are exactly the ones findMethodsImpacted would have found nothing for (their key is
         // absent from the changed-files-to-tracked-methods result). Test-file diffs need only their
         // path, so they are never content-loaded.
-        List<SourceFileDiffContext> trackedModifiedSourceDiffs =
-                filterToTrackedFiles(modifiedSourceDiffs, methodsTrackedByFile, sourceFilesDirs);
+        List<SourceFileDiffContext> trackedModifiedSourceDiffs = filterToTrackedFiles(
+                changedFiles.getModifiedSourceDiffs(), methodsTrackedByFile, changedFiles.sourceFilesDirs);
         vcsReader.loadContentForDiffs(trackedModifiedSourceDiffs, storedCommitValue, checkLocalChanges);
 
         // Partition source diffs: library diffs are excluded (stamped at publish time by the
@@ -375,26 +795,102 @@ public class TestSelector {
             sourceProjectDiffs = partitionOutLibraryDiffs(trackedModifiedSourceDiffs);
         }
 
-        // Find all test suites that execute the source code methods that have changed
-        Set<Integer> impactedMethods = findMethodsImpacted(sourceProjectDiffs, methodsTrackedByFile, sourceFilesDirs);
-        Set<String> testsToRun = findTestSuitesForImpactedMethods(impactedMethods, methodsTrackedByFile);
+        return fileImpactAnalyzer.getMethodsForFilesChanged(sourceProjectDiffs, methodsTrackedByFile,
+                changedFiles.sourceFilesDirs, changedLinesByMethod);
+    }
+
+    /**
+     * Core test selection logic: combine the suites selected through the impacted methods with the
+     * suites that are selected whole - modified and new test files, previously failed and deferred
+     * suites, and suites with unsealed mapping rows.
+     *
+     * <p>Mapping reads are targeted to the diff: one changed-files-to-tracked-methods query
+     * ({@link DataStore#getMethodsTrackedForFiles}) resolves the changed files to their tracked
+     * methods, and one methods-to-covering-suites query
+     * ({@link DataStore#getTestSuitesForMethods}) resolves the impacted methods to suites. Both run
+     * in the selection stages, before this is called.
+     *
+     * @param changedFiles the changed files read from the VCS
+     * @param methodSelectedTests the suites selected through the impacted methods
+     * @param testSuitesTracked the tracked test suites (names + stats) keyed by suite name
+     * @param testSuitesFailed the stored failed test suites
+     * @param testSuitesDeferred the stored deferred test suites
+     * @param testCasesToRun when non-null, the per-test-method filter for the method-selected
+     *                       suites; the suites selected whole are removed from it
+     * @param directlyImpactedTests when non-null, filled with the suites selected through an
+     *                              impacted method or a modified / added test file, for fail-fast ordering
+     * @return the test suites that should be executed for the current changes
+     */
+    private Set<String> selectTestsToRun(final ChangedFiles changedFiles, final Set<String> methodSelectedTests,
+                                         final Map<String, TestSuiteTracker> testSuitesTracked,
+                                         final Set<String> testSuitesFailed, final Set<String> testSuitesDeferred,
+                                         final Map<String, Set<String>> testCasesToRun,
+                                         final Set<String> directlyImpactedTests){
+        Set<String> testsToRun = new HashSet<>(methodSelectedTests);
+
+        // The remaining sources select whole suites, so they're gathered apart from the
+        // method-selected suites and removed from any per-test-method filter.
+        Set<String> wholeSuiteTests = new HashSet<>();
 
         // If any test suite files were modified, always re-run these. So add them to the run list.
-        addModifiedTestFilesToRunList(groupedImpactedFiles.get(FileImpactAnalyzer.TEST_FILE_MODIFIED), testSuitesTracked, testsToRun, testFilesDirs);
+        addModifiedTestFilesToRunList(changedFiles.groupedImpactedFiles.get(FileImpactAnalyzer.TEST_FILE_MODIFIED),
+                testSuitesTracked, wholeSuiteTests, changedFiles.testFilesDirs);
 
         // Add newly added test files to the run list.
-        addNewTestFilesToRunList(groupedImpactedFiles.get(FileImpactAnalyzer.TEST_FILE_ADDED), testsToRun, testFilesDirs);
+        addNewTestFilesToRunList(changedFiles.groupedImpactedFiles.get(FileImpactAnalyzer.TEST_FILE_ADDED),
+                wholeSuiteTests, changedFiles.testFilesDirs);
+
+        if (directlyImpactedTests != null){
+            directlyImpactedTests.addAll(testsToRun);
+            directlyImpactedTests.addAll(wholeSuiteTests);
+        }
 
         // Re-run tests that failed since the last successful full test run.
-        addPreviouslyFailedTests(testsToRun);
+        addPreviouslyFailedTests(testSuitesFailed, wholeSuiteTests);
+
+        // Run suites a budgeted selection deferred - they're owed a run.
+        addPreviouslyDeferredTests(testSuitesDeferred, wholeSuiteTests);
 
         // Re-run suites whose mapping rows were written by a run that never sealed - those rows
         // describe a later commit than the stored one.
-        addUnsealedTests(testSuitesTracked, testsToRun);
+        addUnsealedTests(testSuitesTracked, wholeSuiteTests);
+
+        testsToRun.addAll(wholeSuiteTests);
+        if (testCasesToRun != null){
+            testCasesToRun.keySet().removeAll(wholeSuiteTests);
+        }
 
         return testsToRun;
     }
 
+    /**
+     * Narrow the method-selected suites to the individual test cases whose own stored coverage
+     * hits the impacted methods ({@link DataStore#getTestCasesForMethods}). A suite only gets a
+     * filter entry when at least one of its test cases matched; a suite selected solely through
+     * shared setup coverage (class-level fixtures, {@code setupSpec}) or with no per-test edges
+     * stored has no entry and therefore runs in full.
+     *
+     * @param methodsImpacted the set of method ids that the diff implicates
+     * @param methodSelectedTests the suites selected through the impacted methods
+     * @return the per-test-method filter keyed by suite name
+     */
+    private Map<String, Set<String>> findTestCasesForImpactedMethods(final Set<Integer> methodsImpacted,
+                                                                     final Set<String> methodSelectedTests){
+        Map<String, Set<String>> testCasesToRun = new HashMap<>();
+        if (methodSelectedTests.isEmpty()){
+            return testCasesToRun;
+        }
+
+        for (Map.Entry<String, Set<String>> entry : dataStore.getTestCasesForMethods(methodsImpacted).entrySet()){
+            if (methodSelectedTests.contains(entry.getKey())){
+                testCasesToRun.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        log.info("Selected test cases to run within suites from per-test-method coverage: {}", testCasesToRun);
+        return testCasesToRun;
+    }
+
     /**
      * Add suites whose stored mapping rows are unsealed - written by a run that did not reach its
      * commit seal, so they describe a later commit than the stored one. Re-running them recaptures
@@ -586,48 +1082,102 @@ public class TestSelector {
         return testFilePath;
     }
 
-    /**
-     * For the source files that have changed, do a diff to find the methods that have changed.
-     *
-     * @param sourceFileDiffContexts the changed-file diff contexts to analyze
-     * @param methodsTrackedByFile the changed-files-to-tracked-methods result: tracked methods for the changed files,
-     *                             keyed by mapping key then method id
-     * @param sourceFilesDirs the configured source root directories
-     * @return set of method (hashcodes) that are impacted by the diff changes
-     */
-    private Set<Integer> findMethodsImpacted(List<SourceFileDiffContext> sourceFileDiffContexts,
-                                             Map<String, Map<Integer, MethodImpactTracker>> methodsTrackedByFile,
-                                             List<String> sourceFilesDirs){
-        return fileImpactAnalyzer.getMethodsForFilesChanged(sourceFileDiffContexts, methodsTrackedByFile, sourceFilesDirs);
-    }
-
     /**
      * Build the list of test suites that need to be run based on the tracked methods that have
      * been changed, using the targeted methods-to-covering-suites query
      * ({@link DataStore#getTestSuitesForMethods}) instead of an in-memory reverse index over
      * the full mapping.
      *
+     * <p>With line-level selection on, a suite with stored line coverage for an impacted method is
+     * only selected through that method when it executed the changed lines; the line coverage is
+     * fetched with one more targeted query ({@link DataStore#getMethodLineCoverage}).
+     *
      * @param methodsImpacted the set of method ids that the diff implicates
-     * @param methodsTrackedByFile the changed-files-to-tracked-methods result, used to resolve method names for debug logging
+     * @param methodsTrackedByFile the changed-files-to-tracked-methods result, used to resolve method names
+     *                             for debug logging and the current line range of each method
+     * @param changedLinesByMethod the changed lines of each impacted method, or {@code null} when
+     *                             line-level selection is off
+     * @param impactedMethodCounts when non-null, filled with the number of impacted methods each
+     *                             selected suite was selected through
      * @return the tests that should be executed based on the methods changed in the source code.
      */
     private Set<String> findTestSuitesForImpactedMethods(Set<Integer> methodsImpacted,
-                                                         Map<String, Map<Integer, MethodImpactTracker>> methodsTrackedByFile){
+                                                         Map<String, Map<Integer, MethodImpactTracker>> methodsTrackedByFile,
+                                                         Map<Integer, BitSet> changedLinesByMethod,
+                                                         Map<String, Integer> impactedMethodCounts){
         Map<Integer, Set<String>> methodTestSuites = dataStore.getTestSuitesForMethods(methodsImpacted);
+        Map<String, Map<Integer, MethodLineCoverage>> lineCoverageBySuite = changedLinesByMethod != null
+                && !methodTestSuites.isEmpty() ? dataStore.getMethodLineCoverage(methodTestSuites.keySet())
+                : Collections.emptyMap();
 
         Set<String> testsToRun = new HashSet<>();
+        Set<String> testsSkippedByLines = new HashSet<>();
         for (Map.Entry<Integer, Set<String>> entry : methodTestSuites.entrySet()){
             if (log.isDebugEnabled()){
                 log.debug("Tests to run ({}) for method {}: {}", entry.getValue().size(),
                         methodNameForId(entry.getKey(), methodsTrackedByFile), entry.getValue());
             }
-            testsToRun.addAll(entry.getValue());
+            if (lineCoverageBySuite.isEmpty()){
+                testsToRun.addAll(entry.getValue());
+                entry.getValue().forEach(testSuite -> countImpactedMethod(impactedMethodCounts, testSuite));
+                continue;
+            }
+
+            MethodImpactTracker method = methodTrackerForId(entry.getKey(), methodsTrackedByFile);
+            BitSet changedLines = changedLinesByMethod.get(entry.getKey());
+            for (String testSuite : entry.getValue()){
+                MethodLineCoverage lineCoverage = lineCoverageBySuite
+                        .getOrDefault(testSuite, Collections.emptyMap()).get(entry.getKey());
+                if (lineCoverage == null || method == null || changedLines == null
+                        || lineCoverage.isHitByChange(changedLines, method.getLineNumberStart(), method.getLineNumberEnd())){
+                    testsToRun.add(testSuite);
+                    countImpactedMethod(impactedMethodCounts, testSuite);
+                } else {
+                    testsSkippedByLines.add(testSuite);
+                }
+            }
+        }
+
+        if (!testsSkippedByLines.isEmpty()){
+            testsSkippedByLines.removeAll(testsToRun);
+            log.info("Tests not selected as they didn't execute the changed lines: {}", testsSkippedByLines);
         }
 
         log.info("Selected tests to run from VCS source changes: {}", testsToRun);
         return testsToRun;
     }
 
+    /**
+     * Count one more impacted method selecting a suite.
+     *
+     * @param impactedMethodCounts the counts per suite, or {@code null} when not gathered
+     * @param testSuite the suite selected through the impacted method
+     */
+    private static void countImpactedMethod(Map<String, Integer> impactedMethodCounts, String testSuite){
+        if (impactedMethodCounts != null){
+            impactedMethodCounts.merge(testSuite, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Resolve a method id to its tracker (and so its current line range) from the
+     * changed-files-to-tracked-methods per-file result map.
+     *
+     * @param methodId the tracked method id to resolve
+     * @param methodsTrackedByFile the tracked methods for the changed files, keyed by filename
+     * @return the method tracker, or {@code null} when not found
+     */
+    private static MethodImpactTracker methodTrackerForId(Integer methodId,
+                                                         Map<String, Map<Integer, MethodImpactTracker>> methodsTrackedByFile){
+        for (Map<Integer, MethodImpactTracker> fileMethods : methodsTrackedByFile.values()){
+            MethodImpactTracker method = fileMethods.get(methodId);
+            if (method != null){
+                return method;
+            }
+        }
+        return null;
+    }
+
     /**
      * Resolve a method id to its display name from the changed-files-to-tracked-methods per-file result map. Debug
      * logging only - the linear scan across the diff's files is acceptable there.
@@ -649,17 +1199,32 @@ public class TestSelector {
 
     /**
      * Add the tests that failed on the previous run - force them to be re-run. The failed
-     * set is read directly from the data store (it is small and changes every run, so it is
-     * not part of the up-front metadata load).
+     * set is read in its own selection stage (it is small and changes every run, so it is
+     * not part of the suite metadata load).
      *
+     * @param testSuitesFailed the stored failed test suites
      * @param testsToRun the run set to add the previously failed tests to
      */
-    private void addPreviouslyFailedTests(Set<String> testsToRun){
-        Set<String> testSuitesFailed = dataStore.getTestSuitesFailed();
+    private void addPreviouslyFailedTests(Set<String> testSuitesFailed, Set<String> testsToRun){
         testsToRun.addAll(testSuitesFailed);
         log.info("Running previously failed tests: {}", testSuitesFailed);
     }
 
+    /**
+     * Add the tests a run-time budgeted selection deferred on an earlier mapping-update run -
+     * force them to run. They stay in the stored deferred set until a mapping-update run
+     * executes them (see {@code TestRunnerService}).
+     *
+     * @param testSuitesDeferred the stored deferred test suites
+     * @param testsToRun the run set to add the deferred tests to
+     */
+    private void addPreviouslyDeferredTests(Set<String> testSuitesDeferred, Set<String> testsToRun){
+        if (!testSuitesDeferred.isEmpty()){
+            testsToRun.addAll(testSuitesDeferred);
+            log.info("Running previously deferred tests: {}", testSuitesDeferred);
+        }
+    }
+
     /**
      * Find the list of all known tracked test suites that are in the list of tests to run. This is the ignore list.
      * i.e. only ignore test suites that we have previously tracked and haven't been impacted by the source changes.
@@ -687,28 +1252,45 @@ public class TestSelector {
     }
 
     /**
-     * Apply static test selection rules. When {@code staticMappingConfig} is non-null and
-     * enabled, fetch the changed file paths from the VCS reader, run each rule's eager
-     * empty-resolution sanity check (logs a WARN per rule that resolves to zero suites in
-     * the current Tia data snapshot), and union the resolver's forced suites into
-     * {@code testsToRun}. Static rules are additive only: they can add suites to the run set
-     * but never remove them.
+     * Read the changed file paths the static test selection rules are matched against. Only
+     * queried when {@code staticMappingConfig} is non-null and enabled.
      *
      * @param vcsReader the VCS reader used to fetch changed file paths.
      * @param staticMappingConfig the static test selection config; may be {@code null}.
      * @param storedCommitValue the commit the stored mapping was built at; the baseline for
      *                          the changed-paths query.
+     * @param checkLocalChanges whether to query the local workspace instead of the commit range.
+     * @return the changed file paths, or an empty set when static selection is off.
+     */
+    private Set<String> readStaticSelectionChangedPaths(final VCSReader vcsReader,
+                                                        final StaticTestSelectionConfig staticMappingConfig,
+                                                        final String storedCommitValue,
+                                                        final boolean checkLocalChanges) {
+        if (staticMappingConfig == null || !staticMappingConfig.isEnabled()) {
+            return Collections.emptySet();
+        }
+
+        return timeStage("read the changed file paths for the static selection rules",
+                () -> vcsReader.getChangedFilePaths(storedCommitValue, checkLocalChanges));
+    }
+
+    /**
+     * Apply static test selection rules. When {@code staticMappingConfig} is non-null and
+     * enabled, run each rule's eager empty-resolution sanity check (logs a WARN per rule that
+     * resolves to zero suites in the current Tia data snapshot), and union the resolver's forced
+     * suites for the changed file paths into {@code testsToRun}. Static rules are additive only:
+     * they can add suites to the run set but never remove them.
+     *
+     * @param staticMappingConfig the static test selection config; may be {@code null}.
+     * @param changedPaths the changed file paths from {@link #readStaticSelectionChangedPaths}.
      * @param testSuitesTracked the tracked test suites (names + stats) keyed by suite name,
      *                          used to resolve each rule's forced suite set.
      * @param testsToRun the dynamic run set; forced suites are added in place.
-     * @param checkLocalChanges whether to query the local workspace instead of the commit range.
      */
-    private void applyStaticTestSelection(final VCSReader vcsReader,
-                                          final StaticTestSelectionConfig staticMappingConfig,
-                                          final String storedCommitValue,
+    private void applyStaticTestSelection(final StaticTestSelectionConfig staticMappingConfig,
+                                          final Set<String> changedPaths,
                                           final Map<String, TestSuiteTracker> testSuitesTracked,
-                                          final Set<String> testsToRun,
-                                          final boolean checkLocalChanges) {
+                                          final Set<String> testsToRun) {
         if (staticMappingConfig == null || !staticMappingConfig.isEnabled()) {
             return;
         }
@@ -716,7 +1298,6 @@ public class TestSelector {
         StaticTestSelectionResolver resolver = new StaticTestSelectionResolver(staticMappingConfig);
         resolver.warnOnEmptyRules(testSuitesTracked);
 
-        Set<String> changedPaths = vcsReader.getChangedFilePaths(storedCommitValue, checkLocalChanges);
         Set<String> forced = resolver.resolve(changedPaths, testSuitesTracked);
         // Always log the static selection outcome when rules are configured - an empty result
         // is as informative as a hit, and this matches the unconditional logging of the other
@@ -870,16 +1451,14 @@ public class TestSelector {
      * the in-memory equivalent of a stamp+drain, with no version identity needed.
      *
      * @param libraryConfig the library impact analysis configuration, or null when not configured
-     * @param testsToRun the run set to add drained tests to
      * @param testSuitesTracked the consumer's currently tracked test suites, forwarded to the
      *                          drainer so drained forced-selection batches resolve
      *                          {@code RUN_ALL} / {@code SUITE_NAMES} against this project's own
      *                          suite set rather than the library's.
-     * @return the drain result for post-run cleanup, or null when draining was skipped
+     * @return the tests to add and the drain result for post-run cleanup, or null when draining was skipped
      */
-    private LibraryImpactDrainResult drainPendingLibraryMethodsIfConfigured(
-            LibraryImpactAnalysisConfig libraryConfig, Set<String> testsToRun,
-            Map<String, TestSuiteTracker> testSuitesTracked) {
+    private PendingLibraryImpactedMethodsDrainer.DrainOutcome drainPendingLibraryMethodsIfConfigured(
+            LibraryImpactAnalysisConfig libraryConfig, Map<String, TestSuiteTracker> testSuitesTracked) {
 
         if (libraryConfig == null || !libraryConfig.isEnabled()) {
             return null;
@@ -891,9 +1470,29 @@ public class TestSelector {
 
         if (!outcome.getTestsToAdd().isEmpty()) {
             log.info("Selected tests to run from pending library changes: {}", outcome.getTestsToAdd());
-            testsToRun.addAll(outcome.getTestsToAdd());
         }
 
-        return outcome.getDrainResult();
+        return outcome;
+    }
+
+    /**
+     * The changed files read from the VCS, grouped by {@link FileImpactAnalyzer#groupImpactedTestFiles},
+     * with the source and test dirs resolved for the read.
+     */
+    private static class ChangedFiles {
+        private final List<String> sourceFilesDirs;
+        private final List<String> testFilesDirs;
+        private final Map<String, List<SourceFileDiffContext>> groupedImpactedFiles;
+
+        ChangedFiles(List<String> sourceFilesDirs, List<String> testFilesDirs,
+                     Map<String, List<SourceFileDiffContext>> groupedImpactedFiles) {
+            this.sourceFilesDirs = sourceFilesDirs;
+            this.testFilesDirs = testFilesDirs;
+            this.groupedImpactedFiles = groupedImpactedFiles;
+        }
+
+        List<SourceFileDiffContext> getModifiedSourceDiffs() {
+            return groupedImpactedFiles.get(FileImpactAnalyzer.SOURCE_FILE_MODIFIED);
+        }
     }
 }
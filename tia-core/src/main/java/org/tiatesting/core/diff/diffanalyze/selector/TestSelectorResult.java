@@ -2,6 +2,9 @@ package org.tiatesting.core.diff.diffanalyze.selector;
 
 import org.tiatesting.core.library.LibraryImpactDrainResult;
 
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -15,8 +18,12 @@ import java.util.Set;
  * to execute. The runtime estimate is derived from the per-test {@code avgRunTime} stored in
  * the {@code tia_test_suite} table; for tests that don't yet have stats (typically newly-added
  * test files) the median {@code avgRunTime} across all tracked test suites is substituted.
+ * On a sharded run the selection and estimates are for this run's shard (see
+ * {@link #getTestShards()}).
  */
-public class TestSelectorResult {
+public class TestSelectorResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final Set<String> testsToRun;
 
@@ -36,6 +43,89 @@ public class TestSelectorResult {
 
     private final long mappingOverheadMs;
 
+    private final Map<String, Set<String>> testCasesToRun;
+
+    private final Set<String> testsDeferred;
+
+    private final TestShards testShards;
+
+    private final List<String> testRunOrder;
+
+    /**
+     * Construct a {@link TestSelectorResult} with no per-test-method filter: every suite in
+     * {@code testsToRun} runs in full. See
+     * {@link #TestSelectorResult(Set, Set, LibraryImpactDrainResult, long, Set, long, Map, long, long, Map)}
+     * for the parameter descriptions.
+     */
+    public TestSelectorResult(Set<String> testsToRun, Set<String> testsToIgnore,
+                               LibraryImpactDrainResult libraryImpactDrainResult,
+                               long estimatedRunTimeMs,
+                               Set<String> selectedTestsWithoutStats,
+                               long medianRunTimeMsAppliedToMissing,
+                               Map<String, Long> selectedTestRunTimesMs,
+                               long allTestsRunTimeMs, long mappingOverheadMs) {
+        this(testsToRun, testsToIgnore, libraryImpactDrainResult, estimatedRunTimeMs, selectedTestsWithoutStats,
+                medianRunTimeMsAppliedToMissing, selectedTestRunTimesMs, allTestsRunTimeMs, mappingOverheadMs,
+                Collections.emptyMap());
+    }
+
+    /**
+     * Construct a {@link TestSelectorResult} with nothing deferred by a run-time budget. See
+     * {@link #TestSelectorResult(Set, Set, LibraryImpactDrainResult, long, Set, long, Map, long, long, Map, Set)}
+     * for the parameter descriptions.
+     */
+    public TestSelectorResult(Set<String> testsToRun, Set<String> testsToIgnore,
+                               LibraryImpactDrainResult libraryImpactDrainResult,
+                               long estimatedRunTimeMs,
+                               Set<String> selectedTestsWithoutStats,
+                               long medianRunTimeMsAppliedToMissing,
+                               Map<String, Long> selectedTestRunTimesMs,
+                               long allTestsRunTimeMs, long mappingOverheadMs,
+                               Map<String, Set<String>> testCasesToRun) {
+        this(testsToRun, testsToIgnore, libraryImpactDrainResult, estimatedRunTimeMs, selectedTestsWithoutStats,
+                medianRunTimeMsAppliedToMissing, selectedTestRunTimesMs, allTestsRunTimeMs, mappingOverheadMs,
+                testCasesToRun, Collections.emptySet());
+    }
+
+    /**
+     * Construct a {@link TestSelectorResult} for an unsharded run. See
+     * {@link #TestSelectorResult(Set, Set, LibraryImpactDrainResult, long, Set, long, Map, long, long, Map, Set, TestShards)}
+     * for the parameter descriptions.
+     */
+    public TestSelectorResult(Set<String> testsToRun, Set<String> testsToIgnore,
+                               LibraryImpactDrainResult libraryImpactDrainResult,
+                               long estimatedRunTimeMs,
+                               Set<String> selectedTestsWithoutStats,
+                               long medianRunTimeMsAppliedToMissing,
+                               Map<String, Long> selectedTestRunTimesMs,
+                               long allTestsRunTimeMs, long mappingOverheadMs,
+                               Map<String, Set<String>> testCasesToRun,
+                               Set<String> testsDeferred) {
+        this(testsToRun, testsToIgnore, libraryImpactDrainResult, estimatedRunTimeMs, selectedTestsWithoutStats,
+                medianRunTimeMsAppliedToMissing, selectedTestRunTimesMs, allTestsRunTimeMs, mappingOverheadMs,
+                testCasesToRun, testsDeferred, null);
+    }
+
+    /**
+     * Construct a {@link TestSelectorResult} with no run order. See
+     * {@link #TestSelectorResult(Set, Set, LibraryImpactDrainResult, long, Set, long, Map, long, long, Map, Set, TestShards, List)}
+     * for the parameter descriptions.
+     */
+    public TestSelectorResult(Set<String> testsToRun, Set<String> testsToIgnore,
+                               LibraryImpactDrainResult libraryImpactDrainResult,
+                               long estimatedRunTimeMs,
+                               Set<String> selectedTestsWithoutStats,
+                               long medianRunTimeMsAppliedToMissing,
+                               Map<String, Long> selectedTestRunTimesMs,
+                               long allTestsRunTimeMs, long mappingOverheadMs,
+                               Map<String, Set<String>> testCasesToRun,
+                               Set<String> testsDeferred,
+                               TestShards testShards) {
+        this(testsToRun, testsToIgnore, libraryImpactDrainResult, estimatedRunTimeMs, selectedTestsWithoutStats,
+                medianRunTimeMsAppliedToMissing, selectedTestRunTimesMs, allTestsRunTimeMs, mappingOverheadMs,
+                testCasesToRun, testsDeferred, testShards, Collections.emptyList());
+    }
+
     /**
      * Construct a {@link TestSelectorResult}.
      *
@@ -62,6 +152,19 @@ public class TestSelectorResult {
      *                          selected suites (per-suite coverage capture + amortised whole-run
      *                          costs). Added to {@code estimatedRunTimeMs} only when the run being
      *                          estimated will collect coverage; {@code 0} when not derivable
+     * @param testCasesToRun the per-test-method filter: for a subset of {@code testsToRun}, the
+     *                       names of the only test cases (JUnit test methods / Spock features)
+     *                       within the suite that need to run. Suites without an entry run in
+     *                       full. Must not be {@code null} (use an empty map instead)
+     * @param testsDeferred the impacted test suites left out of {@code testsToRun} (and so
+     *                      included in {@code testsToIgnore}) to fit the run-time budget. Must not
+     *                      be {@code null} (use an empty set instead)
+     * @param testShards the split of the selection across shards when test sharding is enabled,
+     *                   or {@code null} for an unsharded run. When set, {@code testsToRun} and the
+     *                   estimates cover this run's shard only, and the suites of the other shards
+     *                   are in {@code testsToIgnore}
+     * @param testRunOrder every suite in {@code testsToRun} in the order it should run, when
+     *                     fail-fast ordering is enabled; empty otherwise. Must not be {@code null}
      */
     public TestSelectorResult(Set<String> testsToRun, Set<String> testsToIgnore,
                                LibraryImpactDrainResult libraryImpactDrainResult,
@@ -69,7 +172,11 @@ public class TestSelectorResult {
                                Set<String> selectedTestsWithoutStats,
                                long medianRunTimeMsAppliedToMissing,
                                Map<String, Long> selectedTestRunTimesMs,
-                               long allTestsRunTimeMs, long mappingOverheadMs) {
+                               long allTestsRunTimeMs, long mappingOverheadMs,
+                               Map<String, Set<String>> testCasesToRun,
+                               Set<String> testsDeferred,
+                               TestShards testShards,
+                               List<String> testRunOrder) {
         this.testsToRun = testsToRun;
         this.testsToIgnore = testsToIgnore;
         this.libraryImpactDrainResult = libraryImpactDrainResult;
@@ -79,6 +186,10 @@ public class TestSelectorResult {
         this.selectedTestRunTimesMs = selectedTestRunTimesMs;
         this.allTestsRunTimeMs = allTestsRunTimeMs;
         this.mappingOverheadMs = mappingOverheadMs;
+        this.testCasesToRun = testCasesToRun;
+        this.testsDeferred = testsDeferred;
+        this.testShards = testShards;
+        this.testRunOrder = testRunOrder;
     }
 
     /**
@@ -156,6 +267,42 @@ public class TestSelectorResult {
         return mappingOverheadMs;
     }
 
+    /**
+     * @return the per-test-method filter keyed by test suite name: the only test cases within
+     *         that suite that need to run. Populated only when per-test-method selection is
+     *         enabled; suites in {@link #getTestsToRun()} without an entry run in full. Never
+     *         {@code null}
+     */
+    public Map<String, Set<String>> getTestCasesToRun() {
+        return testCasesToRun;
+    }
+
+    /**
+     * @return the impacted test suites deferred to a later run to fit the run-time budget. Only
+     *         populated when run-time budgeted selection is enabled. Never {@code null}
+     */
+    public Set<String> getTestsDeferred() {
+        return testsDeferred;
+    }
+
+    /**
+     * @return the split of the selection across shards, or {@code null} when test sharding is
+     *         not enabled for this run
+     */
+    public TestShards getTestShards() {
+        return testShards;
+    }
+
+    /**
+     * @return the selected test suites in the order they should run: previously failed and
+     *         directly impacted suites first, then ascending estimated run time. Empty when
+     *         fail-fast ordering is not enabled, in which case the runner's default order applies.
+     *         Never {@code null}
+     */
+    public List<String> getTestRunOrder() {
+        return testRunOrder;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,115 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The split of a test selection across parallel CI agents (shards), balanced on the estimated
+ * run time of each suite. See the "Test sharding" chapter in WIKI.md.
+ *
+ * <p>The suites are packed with the longest-processing-time-first rule: sorted by estimated run
+ * time, longest first, each suite is placed on the shard with the least estimated time so far.
+ * The per-suite estimate is the same one the run-time estimate uses - the suite's
+ * {@code avgRunTime}, or the median across tracked suites for a suite without stats.
+ *
+ * <p>Every agent computes the split independently, so it must be deterministic for the same
+ * selection: ties in run time are broken on the suite name, and ties in shard load on the
+ * number of suites and then the shard index.
+ */
+public class TestShards implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int shardIndex;
+
+    private final List<Set<String>> testsByShard;
+
+    private final List<Long> runTimesMsByShard;
+
+    /**
+     * @param shardIndex the zero-based index of the shard this run executes
+     * @param testsByShard the test suites assigned to each shard, indexed by shard
+     * @param runTimesMsByShard the estimated run time (ms) of each shard, indexed by shard
+     */
+    TestShards(final int shardIndex, final List<Set<String>> testsByShard, final List<Long> runTimesMsByShard){
+        this.shardIndex = shardIndex;
+        this.testsByShard = testsByShard;
+        this.runTimesMsByShard = runTimesMsByShard;
+    }
+
+    /**
+     * Split the selected suites into {@code shardCount} shards of near-equal estimated run time.
+     *
+     * @param testsToRun the selected test suites
+     * @param runTimesMs the estimated run time (ms) of each selected suite
+     * @param shardIndex the zero-based index of the shard this run executes
+     * @param shardCount the number of shards; must be greater than {@code shardIndex}
+     * @return the shards
+     */
+    static TestShards partition(final Set<String> testsToRun, final Map<String, Long> runTimesMs,
+                                final int shardIndex, final int shardCount){
+        List<String> testsLongestFirst = new ArrayList<>(testsToRun);
+        testsLongestFirst.sort(Comparator.comparingLong((String test) -> runTimesMs.getOrDefault(test, 0L))
+                .reversed().thenComparing(Comparator.naturalOrder()));
+
+        List<Set<String>> testsByShard = new ArrayList<>(shardCount);
+        long[] shardRunTimesMs = new long[shardCount];
+        for (int i = 0; i < shardCount; i++){
+            testsByShard.add(new HashSet<>());
+        }
+
+        for (String test : testsLongestFirst){
+            int target = 0;
+            for (int i = 1; i < shardCount; i++){
+                if (shardRunTimesMs[i] < shardRunTimesMs[target] || (shardRunTimesMs[i] == shardRunTimesMs[target]
+                        && testsByShard.get(i).size() < testsByShard.get(target).size())){
+                    target = i;
+                }
+            }
+            testsByShard.get(target).add(test);
+            shardRunTimesMs[target] += runTimesMs.getOrDefault(test, 0L);
+        }
+
+        List<Long> runTimesMsByShard = new ArrayList<>(shardCount);
+        for (long shardRunTimeMs : shardRunTimesMs){
+            runTimesMsByShard.add(shardRunTimeMs);
+        }
+        return new TestShards(shardIndex, testsByShard, runTimesMsByShard);
+    }
+
+    /**
+     * @return the zero-based index of the shard this run executes
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    /**
+     * @return the number of shards the selection was split into
+     */
+    public int getShardCount() {
+        return testsByShard.size();
+    }
+
+    /**
+     * @param index the zero-based shard index
+     * @return the test suites assigned to the shard
+     */
+    public Set<String> getTestsForShard(final int index) {
+        return Collections.unmodifiableSet(testsByShard.get(index));
+    }
+
+    /**
+     * @param index the zero-based shard index
+     * @return the estimated run time (ms) of the suites assigned to the shard
+     */
+    public long getRunTimeMsForShard(final int index) {
+        return runTimesMsByShard.get(index);
+    }
+}
@@ -0,0 +1,155 @@
+package org.tiatesting.core.model;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Line-level coverage of one source method by one test suite, used by line-level selection to
+ * skip suites that covered a changed method but never executed the changed lines. See the
+ * "Line-level selection" chapter in {@code WIKI.md}.
+ *
+ * <p>Lines are held as bitmaps relative to the method's first line (bit {@code i} is line
+ * {@code firstLine + i}). {@code executableLines} marks the lines JaCoCo found bytecode for, and
+ * {@code linesHit} the subset the suite executed. The method's line range at collection time is
+ * kept so a bitmap recorded against an older layout of the file is recognised as stale.
+ *
+ * <p>{@code null} bitmaps mean the lines are unknown; such a coverage entry is treated as
+ * executing every line, so the suite is always selected for a change to the method.
+ */
+public class MethodLineCoverage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int firstLine;
+    private final int lastLine;
+    private final BitSet executableLines;
+    private final BitSet linesHit;
+
+    public MethodLineCoverage(int firstLine, int lastLine, BitSet executableLines, BitSet linesHit) {
+        this.firstLine = firstLine;
+        this.lastLine = lastLine;
+        this.executableLines = executableLines;
+        this.linesHit = linesHit;
+    }
+
+    public int getFirstLine() {
+        return firstLine;
+    }
+
+    public int getLastLine() {
+        return lastLine;
+    }
+
+    /**
+     * @return the executable lines relative to {@link #getFirstLine()}, or {@code null} when unknown
+     */
+    public BitSet getExecutableLines() {
+        return executableLines;
+    }
+
+    /**
+     * @return the executed lines relative to {@link #getFirstLine()}, or {@code null} when unknown
+     */
+    public BitSet getLinesHit() {
+        return linesHit;
+    }
+
+    /**
+     * Combine this coverage with another dump of the same method for the same suite. Dumps of the
+     * same class version are unioned. If the method's line range differs (the class was
+     * recompiled mid-run) the newer dump replaces this one, since the bitmaps can't be aligned.
+     *
+     * @param other the coverage from a later dump
+     * @return the combined coverage
+     */
+    public MethodLineCoverage merge(MethodLineCoverage other) {
+        if (firstLine != other.firstLine || lastLine != other.lastLine) {
+            return other;
+        }
+        if (linesHit == null || other.linesHit == null) {
+            return new MethodLineCoverage(firstLine, lastLine, null, null);
+        }
+
+        BitSet mergedExecutable = (BitSet) executableLines.clone();
+        mergedExecutable.or(other.executableLines);
+        BitSet mergedHit = (BitSet) linesHit.clone();
+        mergedHit.or(other.linesHit);
+        return new MethodLineCoverage(firstLine, lastLine, mergedExecutable, mergedHit);
+    }
+
+    /**
+     * Check whether a change to the method could alter what this suite executed.
+     *
+     * <p>The coverage is treated as hit (the suite must run) when the lines are unknown, when the
+     * recorded line range no longer matches the method's current range in the mapping, or when
+     * any changed line falls outside the method body - a change to the signature or closing brace
+     * affects every caller. A changed executable line is hit when the suite executed it. A changed
+     * line with no bytecode (a comment, a brace, a declaration without an initialiser) is
+     * attributed to the nearest executable line on either side, since code added there runs
+     * whenever the flow passes between them.
+     *
+     * @param changedLines the changed lines of the original file, as absolute line numbers
+     * @param currentFirstLine the method's first line in the stored mapping
+     * @param currentLastLine the method's last line in the stored mapping
+     * @return {@code true} if the suite may be affected by the change
+     */
+    public boolean isHitByChange(BitSet changedLines, int currentFirstLine, int currentLastLine) {
+        if (linesHit == null || executableLines == null
+                || firstLine != currentFirstLine || lastLine != currentLastLine) {
+            return true;
+        }
+
+        for (int line = changedLines.nextSetBit(0); line >= 0; line = changedLines.nextSetBit(line + 1)) {
+            if (line < firstLine || line > lastLine) {
+                return true;
+            }
+
+            int offset = line - firstLine;
+            if (executableLines.get(offset)) {
+                if (linesHit.get(offset)) {
+                    return true;
+                }
+                continue;
+            }
+
+            int previousExecutable = executableLines.previousSetBit(offset);
+            int nextExecutable = executableLines.nextSetBit(offset);
+            if (nextExecutable > lastLine - firstLine) {
+                nextExecutable = -1;
+            }
+            if (previousExecutable < 0 && nextExecutable < 0) {
+                return true;
+            }
+            if ((previousExecutable >= 0 && linesHit.get(previousExecutable))
+                    || (nextExecutable >= 0 && linesHit.get(nextExecutable))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MethodLineCoverage that = (MethodLineCoverage) o;
+        return firstLine == that.firstLine && lastLine == that.lastLine
+                && Objects.equals(executableLines, that.executableLines)
+                && Objects.equals(linesHit, that.linesHit);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(firstLine, lastLine, executableLines, linesHit);
+    }
+
+    @Override
+    public String toString() {
+        return "MethodLineCoverage{" +
+                "firstLine=" + firstLine +
+                ", lastLine=" + lastLine +
+                ", executableLines=" + executableLines +
+                ", linesHit=" + linesHit +
+                '}';
+    }
+}
@@ -2,8 +2,12 @@ package org.tiatesting.core.model;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Object used to track data about a test suite used by Tia.
@@ -23,6 +27,13 @@ public class TestSuiteTracker implements Serializable {
      */
     private List<ClassImpactTracker> classesImpacted = new ArrayList<>();
 
+    /**
+     * Index of {@link #classesImpacted} by source filename, so merging a coverage dump is a lookup
+     * per class rather than a scan of every tracked class. Built on the first merge, and rebuilt
+     * when the list was replaced or added to directly (e.g. while the mapping is loaded).
+     */
+    private transient Map<String, ClassImpactTracker> classesImpactedBySourceFilename;
+
     private TestStats testStats = new TestStats();
 
     /**
@@ -39,6 +50,29 @@ public class TestSuiteTracker implements Serializable {
      */
     private boolean unsealed;
 
+    /**
+     * Per-test-method coverage edges for the suite, keyed by test method name (JUnit) or feature
+     * name (Spock), each holding the ids of the source methods that test executed. Only populated
+     * when per-test selection is enabled for a mapping-update run; see the "Per-test-method
+     * selection" chapter in {@code WIKI.md}.
+     *
+     * <p>{@code null} means the edges are unknown (not loaded, or not collected), in which case
+     * the stored per-test edges for the suite are left untouched on persist. An empty map means
+     * the suite ran without per-test collection, which clears any stored per-test edges so they
+     * can never drift from the suite-level edges.
+     */
+    private Map<String, MethodIdSet> testCasesImpacted;
+
+    /**
+     * Line-level coverage for each source method the suite executed, keyed by method id. Only
+     * populated when line-level selection is enabled for a mapping-update run; see the
+     * "Line-level selection" chapter in {@code WIKI.md}.
+     *
+     * <p>Follows the same {@code null} / empty convention as {@link #testCasesImpacted}:
+     * {@code null} leaves the stored line coverage untouched on persist, empty clears it.
+     */
+    private Map<Integer, MethodLineCoverage> methodLinesHit;
+
     public TestSuiteTracker(){}
 
     public TestSuiteTracker(String name) {
@@ -78,6 +112,37 @@ public class TestSuiteTracker implements Serializable {
 
     public void setClassesImpacted(List<ClassImpactTracker> classesImpacted) {
         this.classesImpacted = classesImpacted;
+        this.classesImpactedBySourceFilename = null;
+    }
+
+    /**
+     * Merge the classes from a coverage dump into the suite's mapping. The methods of a class the
+     * suite already tracks are unioned into it; a new class is tracked with a copy of its methods,
+     * so later merges never change the dump's trackers. Dumps are merged for failed test re-runs,
+     * parameterized test invocations, and per-test coverage, where a suite's mapping is built up
+     * from several dumps.
+     *
+     * @param dumpClassesImpacted the classes with coverage from one coverage dump
+     */
+    public synchronized void addClassesImpacted(Collection<ClassImpactTracker> dumpClassesImpacted) {
+        if (classesImpactedBySourceFilename == null || classesImpactedBySourceFilename.size() != classesImpacted.size()){
+            classesImpactedBySourceFilename = new HashMap<>();
+            for (ClassImpactTracker classImpactTracker : classesImpacted){
+                classesImpactedBySourceFilename.put(classImpactTracker.getSourceFilename(), classImpactTracker);
+            }
+        }
+
+        for (ClassImpactTracker dumpClassImpactTracker : dumpClassesImpacted){
+            ClassImpactTracker classImpactTracker = classesImpactedBySourceFilename.get(dumpClassImpactTracker.getSourceFilename());
+            if (classImpactTracker != null){
+                classImpactTracker.getMethodsImpacted().addAll(dumpClassImpactTracker.getMethodsImpacted());
+            } else {
+                classImpactTracker = new ClassImpactTracker(dumpClassImpactTracker.getSourceFilename(),
+                        new MethodIdSet(dumpClassImpactTracker.getMethodsImpacted()));
+                classesImpacted.add(classImpactTracker);
+                classesImpactedBySourceFilename.put(classImpactTracker.getSourceFilename(), classImpactTracker);
+            }
+        }
     }
 
     public TestStats getTestStats() {
@@ -121,6 +186,53 @@ public class TestSuiteTracker implements Serializable {
         this.unsealed = unsealed;
     }
 
+    /**
+     * @return the per-test-method coverage edges keyed by test name, or {@code null} when unknown
+     */
+    public Map<String, MethodIdSet> getTestCasesImpacted() {
+        return testCasesImpacted;
+    }
+
+    /**
+     * @param testCasesImpacted the per-test-method coverage edges keyed by test name; {@code null}
+     *                          to leave the stored edges untouched, empty to clear them
+     */
+    public void setTestCasesImpacted(Map<String, MethodIdSet> testCasesImpacted) {
+        this.testCasesImpacted = testCasesImpacted;
+    }
+
+    /**
+     * @return the line-level coverage keyed by method id, or {@code null} when unknown
+     */
+    public Map<Integer, MethodLineCoverage> getMethodLinesHit() {
+        return methodLinesHit;
+    }
+
+    /**
+     * @param methodLinesHit the line-level coverage keyed by method id; {@code null} to leave the
+     *                       stored line coverage untouched, empty to clear it
+     */
+    public void setMethodLinesHit(Map<Integer, MethodLineCoverage> methodLinesHit) {
+        this.methodLinesHit = methodLinesHit;
+    }
+
+    /**
+     * Merge the line-level coverage from a coverage dump into the suite's line coverage. Dumps
+     * for the same method are unioned (see {@link MethodLineCoverage#merge}). Does nothing when
+     * the dump carries no line coverage, i.e. line-level selection is off.
+     *
+     * @param dumpLinesHit the line-level coverage from one coverage dump, keyed by method id
+     */
+    public synchronized void addMethodLinesHit(Map<Integer, MethodLineCoverage> dumpLinesHit) {
+        if (dumpLinesHit.isEmpty()){
+            return;
+        }
+        if (methodLinesHit == null){
+            methodLinesHit = new ConcurrentHashMap<>();
+        }
+        dumpLinesHit.forEach((methodId, lineCoverage) -> methodLinesHit.merge(methodId, lineCoverage, MethodLineCoverage::merge));
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -35,6 +35,12 @@ public class TiaData implements Serializable {
      */
     private Set<String> testSuitesFailed = new HashSet<>();
 
+    /**
+     * The set of test suites a run-time budgeted selection deferred on a run that advanced the stored commit. These
+     * tests are forced into the next selection until a run executes them.
+     */
+    private Set<String> testSuitesDeferred = new HashSet<>();
+
     /**
      * The set of source code methods that are tracked in the DB due to having been part of the test suite coverage.
      * We store the methods keyed by the method name hashcode as an index for storage optimization.
@@ -158,6 +164,14 @@ public class TiaData implements Serializable {
         this.testSuitesFailed = testSuitesFailed;
     }
 
+    public Set<String> getTestSuitesDeferred() {
+        return testSuitesDeferred;
+    }
+
+    public void setTestSuitesDeferred(Set<String> testSuitesDeferred) {
+        this.testSuitesDeferred = testSuitesDeferred;
+    }
+
     public Instant getLastUpdated() {
         return lastUpdated;
     }
@@ -2,6 +2,7 @@ package org.tiatesting.core.persistence;
 
 import org.tiatesting.core.model.LibraryPublish;
 import org.tiatesting.core.model.MethodImpactTracker;
+import org.tiatesting.core.model.MethodLineCoverage;
 import org.tiatesting.core.model.PendingLibraryForcedSelection;
 import org.tiatesting.core.model.PendingLibraryImpactedMethod;
 import org.tiatesting.core.model.TestRunHistoryEntry;
@@ -97,6 +98,37 @@ public interface DataStore extends AutoCloseable {
      */
     Map<Integer, Set<String>> getTestSuitesForMethods(final Set<Integer> methodIds);
 
+    /**
+     * Targeted read for per-test-method selection: retrieve the individual test cases (JUnit
+     * test method names or Spock feature names) whose own coverage includes any of the given
+     * method ids, keyed by the owning test suite name. Only populated when the mapping was
+     * last written by a run with per-test-method selection enabled - see the "Per-test-method
+     * selection" chapter in WIKI.md.
+     *
+     * <p>Suites with no stored per-test edges for the given methods simply have no entry in
+     * the result. Callers must treat a missing entry as "run the whole suite".
+     *
+     * @param methodIds the tracked method ids to find covering test cases for
+     * @return map of test suite name to the names of its test cases covering any of the
+     *         methods; empty when the input is null or empty
+     */
+    Map<String, Set<String>> getTestCasesForMethods(final Set<Integer> methodIds);
+
+    /**
+     * Targeted read for line-level selection: retrieve the stored line-level coverage of the
+     * given method ids, keyed by the covering test suite name and then method id. Only populated
+     * when the mapping was last written by a run with line-level selection enabled - see the
+     * "Line-level selection" chapter in WIKI.md.
+     *
+     * <p>A suite with no entry in the result has no stored line coverage, and callers must keep
+     * selecting it at method level.
+     *
+     * @param methodIds the tracked method ids to read line coverage for
+     * @return map of test suite name to its line coverage keyed by method id; empty when the
+     *         input is null or empty
+     */
+    Map<String, Map<Integer, MethodLineCoverage>> getMethodLineCoverage(final Set<Integer> methodIds);
+
     /**
      * Get the number of test suites tracked by Tia in the DB.
      *
@@ -132,6 +164,23 @@ public interface DataStore extends AutoCloseable {
      */
     void persistTestSuitesFailed(final Set<String> testSuitesFailed);
 
+    /**
+     * Get the test suites a run-time budgeted selection deferred: suites that were impacted by a
+     * change but didn't fit the budget of a run that advanced the stored commit. They are forced
+     * into the next selection until a run executes them. See the "Run-time budgeted selection"
+     * chapter in WIKI.md.
+     *
+     * @return the deferred test suites
+     */
+    Set<String> getTestSuitesDeferred();
+
+    /**
+     * Persist the deferred test suites, replacing the stored set.
+     *
+     * @param testSuitesDeferred the full set of deferred test suites
+     */
+    void persistTestSuitesDeferred(final Set<String> testSuitesDeferred);
+
     /**
      * Clear the unsealed flag from every flagged test suite. Called as part of the seal, once the
      * commit value those mapping rows describe is about to become the stored commit.
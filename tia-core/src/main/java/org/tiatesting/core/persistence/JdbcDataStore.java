@@ -8,6 +8,7 @@ import org.tiatesting.core.model.ClassImpactTracker;
 import org.tiatesting.core.model.LibraryPublish;
 import org.tiatesting.core.model.MethodIdSet;
 import org.tiatesting.core.model.MethodImpactTracker;
+import org.tiatesting.core.model.MethodLineCoverage;
 import org.tiatesting.core.model.PendingLibraryForcedSelection;
 import org.tiatesting.core.model.PendingLibraryImpactedMethod;
 import org.tiatesting.core.model.TestRunHistoryEntry;
@@ -35,6 +36,7 @@ public class JdbcDataStore implements DataStore {
     private static final String TABLE_TIA_CORE = "tia_core";
     private static final String TABLE_TIA_TEST_SUITE = "tia_test_suite";
     private static final String TABLE_TIA_TEST_SUITES_FAILED = TABLE_TIA_TEST_SUITE + "s_failed";
+    private static final String TABLE_TIA_TEST_SUITES_DEFERRED = TABLE_TIA_TEST_SUITE + "s_deferred";
     private static final String TABLE_TIA_SOURCE_METHOD = "tia_source_method";
     private static final String COL_NAME = "name";
     private static final String COL_SOURCE_FILENAME = "source_file" + COL_NAME;
@@ -79,6 +81,15 @@ public class JdbcDataStore implements DataStore {
     private static final String COL_BLOCK_NAME = "block_name";
     private static final String COL_NEXT_VALUE = "next_value";
     private static final String ID_BLOCK_SOURCE_CLASS = TABLE_TIA_SOURCE_CLASS;
+    private static final String TABLE_TIA_TEST_CASE_METHOD = "tia_test_case_method";
+    private static final String COL_TEST_CASE_NAME = "test_case_" + COL_NAME;
+    private static final String TABLE_TIA_SOURCE_METHOD_LINE = "tia_source_method_line";
+    private static final String COL_EXECUTABLE_LINES = "executable_lines";
+    private static final String COL_LINES_HIT = "lines_hit";
+    // Stored in place of a line bitmap that is unknown, or too long for the column; read back as
+    // "every line hit" so the suite is always selected for a change to the method.
+    private static final String LINES_UNKNOWN = "*";
+    private static final int LINE_BITMAP_MAX_LENGTH = 12000;
 
     // H2's executeBatch sends one wire round trip per row, so on a remote server a seed persist of
     // millions of rows is dominated by round trips. Multi-row INSERT (... VALUES (?,?),(?,?),...)
@@ -91,6 +102,13 @@ public class JdbcDataStore implements DataStore {
             buildMultiRowInsertSql(TABLE_TIA_SOURCE_CLASS, SOURCE_CLASS_COLS, 3, INSERT_CHUNK);
     private static final String INSERT_SOURCE_CLASS_METHOD_CHUNK_SQL =
             buildMultiRowInsertSql(TABLE_TIA_SOURCE_CLASS_METHOD, SOURCE_CLASS_METHOD_COLS, 2, INSERT_CHUNK);
+    private static final String TEST_CASE_METHOD_COLS = COL_TIA_TEST_SUITE_ID + ", " + COL_TEST_CASE_NAME + ", " + COL_TIA_SOURCE_METHOD_ID;
+    private static final String INSERT_TEST_CASE_METHOD_CHUNK_SQL =
+            buildMultiRowInsertSql(TABLE_TIA_TEST_CASE_METHOD, TEST_CASE_METHOD_COLS, 3, INSERT_CHUNK);
+    private static final String SOURCE_METHOD_LINE_COLS = COL_TIA_TEST_SUITE_ID + ", " + COL_TIA_SOURCE_METHOD_ID + ", "
+            + COL_LINE_NUMBER_START + ", " + COL_LINE_NUMBER_END + ", " + COL_EXECUTABLE_LINES + ", " + COL_LINES_HIT;
+    private static final String INSERT_SOURCE_METHOD_LINE_CHUNK_SQL =
+            buildMultiRowInsertSql(TABLE_TIA_SOURCE_METHOD_LINE, SOURCE_METHOD_LINE_COLS, 6, INSERT_CHUNK);
 
     /**
      * Build a multi-row {@code INSERT ... VALUES (?,..),(?,..),...} statement with {@code rows}
@@ -384,6 +402,171 @@ public class JdbcDataStore implements DataStore {
         }
     }
 
+    /**
+     * Per-test-method read: resolve a set of impacted method ids to the individual test cases
+     * whose own coverage includes them, grouped by owning suite, with one indexed query per
+     * {@value #IN_CLAUSE_CHUNK_SIZE}-id chunk over {@code tia_test_case_method}. The table is
+     * only populated by mapping runs with per-test-method selection enabled - see the
+     * "Per-test-method selection" chapter in {@code WIKI.md}.
+     *
+     * @param methodIds the tracked method ids to find covering test cases for
+     * @return map of test suite name to covering test-case names; empty when the input is null
+     *         or empty
+     */
+    @Override
+    public Map<String, Set<String>> getTestCasesForMethods(final Set<Integer> methodIds){
+        Map<String, Set<String>> testCasesBySuite = new HashMap<>();
+        if (methodIds == null || methodIds.isEmpty()){
+            return testCasesBySuite;
+        }
+
+        try (Connection connection = getConnection()){
+            ensureSchema(connection);
+            List<Integer> ids = new ArrayList<>(methodIds);
+            for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE){
+                List<Integer> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+                queryTestCasesForMethods(connection, chunk, testCasesBySuite);
+            }
+        } catch (SQLException e) {
+            throw new TiaPersistenceException(e);
+        }
+
+        return testCasesBySuite;
+    }
+
+    /**
+     * Run the per-test-method query for one chunk of method ids and merge the rows into the
+     * caller's result map. {@code SELECT DISTINCT} collapses a test case hitting several of the
+     * impacted methods into one row.
+     *
+     * @param connection the open connection to query on
+     * @param methodIds the chunk of method ids (sized within the IN-clause limit)
+     * @param testCasesBySuite the result map to merge rows into, keyed by suite name
+     * @throws SQLException if the query fails
+     */
+    private void queryTestCasesForMethods(Connection connection, List<Integer> methodIds,
+                                          Map<String, Set<String>> testCasesBySuite) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(methodIds.size(), "?"));
+        String sql = "SELECT DISTINCT ts." + COL_NAME + " AS suite_name, " +
+                "tcm." + COL_TEST_CASE_NAME + " AS test_case_name " +
+                "FROM " + TABLE_TIA_TEST_CASE_METHOD + " tcm " +
+                "JOIN " + TABLE_TIA_TEST_SUITE + " ts ON ts." + COL_ID + " = tcm." + COL_TIA_TEST_SUITE_ID + " " +
+                "WHERE tcm." + COL_TIA_SOURCE_METHOD_ID + " IN (" + placeholders + ")";
+
+        try (PreparedStatement statement = connection.prepareStatement(sql)){
+            int paramIndex = 1;
+            for (Integer methodId : methodIds){
+                statement.setInt(paramIndex++, methodId);
+            }
+
+            try (ResultSet resultSet = statement.executeQuery()){
+                while (resultSet.next()){
+                    testCasesBySuite.computeIfAbsent(resultSet.getString("suite_name"), key -> new HashSet<>())
+                            .add(resultSet.getString("test_case_name"));
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Issues one {@code tia_source_method_line} query per {@value #IN_CLAUSE_CHUNK_SIZE}-id
+     * chunk, joined to {@code tia_test_suite} for the suite name. The table is only populated by
+     * mapping runs with line-level selection enabled - see the "Line-level selection" chapter in
+     * {@code WIKI.md}.
+     *
+     * @param methodIds the tracked method ids to read line coverage for
+     * @return map of test suite name to its line coverage keyed by method id; empty when the
+     *         input is null or empty
+     */
+    @Override
+    public Map<String, Map<Integer, MethodLineCoverage>> getMethodLineCoverage(final Set<Integer> methodIds){
+        Map<String, Map<Integer, MethodLineCoverage>> lineCoverageBySuite = new HashMap<>();
+        if (methodIds == null || methodIds.isEmpty()){
+            return lineCoverageBySuite;
+        }
+
+        try (Connection connection = getConnection()){
+            ensureSchema(connection);
+            List<Integer> ids = new ArrayList<>(methodIds);
+            for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE){
+                List<Integer> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+                queryMethodLineCoverage(connection, chunk, lineCoverageBySuite);
+            }
+        } catch (SQLException e) {
+            throw new TiaPersistenceException(e);
+        }
+
+        return lineCoverageBySuite;
+    }
+
+    /**
+     * Run the line-coverage query for one chunk of method ids and merge the rows into the
+     * caller's result map.
+     *
+     * @param connection the open connection to query on
+     * @param methodIds the chunk of method ids (sized within the IN-clause limit)
+     * @param lineCoverageBySuite the result map to merge rows into, keyed by suite name
+     * @throws SQLException if the query fails
+     */
+    private void queryMethodLineCoverage(Connection connection, List<Integer> methodIds,
+                                         Map<String, Map<Integer, MethodLineCoverage>> lineCoverageBySuite) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(methodIds.size(), "?"));
+        String sql = "SELECT ts." + COL_NAME + " AS suite_name, sml." + COL_TIA_SOURCE_METHOD_ID + ", " +
+                "sml." + COL_LINE_NUMBER_START + ", sml." + COL_LINE_NUMBER_END + ", " +
+                "sml." + COL_EXECUTABLE_LINES + ", sml." + COL_LINES_HIT + " " +
+                "FROM " + TABLE_TIA_SOURCE_METHOD_LINE + " sml " +
+                "JOIN " + TABLE_TIA_TEST_SUITE + " ts ON ts." + COL_ID + " = sml." + COL_TIA_TEST_SUITE_ID + " " +
+                "WHERE sml." + COL_TIA_SOURCE_METHOD_ID + " IN (" + placeholders + ")";
+
+        try (PreparedStatement statement = connection.prepareStatement(sql)){
+            int paramIndex = 1;
+            for (Integer methodId : methodIds){
+                statement.setInt(paramIndex++, methodId);
+            }
+
+            try (ResultSet resultSet = statement.executeQuery()){
+                while (resultSet.next()){
+                    MethodLineCoverage lineCoverage = new MethodLineCoverage(
+                            resultSet.getInt(COL_LINE_NUMBER_START),
+                            resultSet.getInt(COL_LINE_NUMBER_END),
+                            decodeLineBitmap(resultSet.getString(COL_EXECUTABLE_LINES)),
+                            decodeLineBitmap(resultSet.getString(COL_LINES_HIT)));
+                    lineCoverageBySuite.computeIfAbsent(resultSet.getString("suite_name"), key -> new HashMap<>())
+                            .put(resultSet.getInt(COL_TIA_SOURCE_METHOD_ID), lineCoverage);
+                }
+            }
+        }
+    }
+
+    /**
+     * Encode a line bitmap for storage as Base64 text, which every supported dialect stores in a
+     * plain {@code VARCHAR} column. An unknown bitmap, or one too long for the column, is stored
+     * as {@value #LINES_UNKNOWN}.
+     *
+     * @param lines the line bitmap, or {@code null} when unknown
+     * @return the stored form of the bitmap
+     */
+    private static String encodeLineBitmap(BitSet lines){
+        if (lines == null){
+            return LINES_UNKNOWN;
+        }
+        String encoded = Base64.getEncoder().encodeToString(lines.toByteArray());
+        return encoded.length() > LINE_BITMAP_MAX_LENGTH ? LINES_UNKNOWN : encoded;
+    }
+
+    /**
+     * @param stored the stored form of a line bitmap
+     * @return the decoded bitmap, or {@code null} when it was stored as unknown
+     */
+    private static BitSet decodeLineBitmap(String stored){
+        if (stored == null || LINES_UNKNOWN.equals(stored)){
+            return null;
+        }
+        return BitSet.valueOf(Base64.getDecoder().decode(stored));
+    }
+
     @Override
     public int getNumTestSuites(){
         int numTestSuites = 0;
@@ -456,6 +639,27 @@ public class JdbcDataStore implements DataStore {
         return testSuitesFailed;
     }
 
+    @Override
+    public Set<String> getTestSuitesDeferred(){
+        Set<String> testSuitesDeferred;
+        Connection connection = getConnection();
+
+        try {
+            ensureSchema(connection);
+            testSuitesDeferred = getTestSuiteNames(connection, TABLE_TIA_TEST_SUITES_DEFERRED);
+        } catch (SQLException e) {
+            throw new TiaPersistenceException(e);
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                throw new TiaPersistenceException(e);
+            }
+        }
+
+        return testSuitesDeferred;
+    }
+
     @Override
     public void persistCoreData(final TiaData tiaData){
         long startTime = System.currentTimeMillis();
@@ -567,7 +771,7 @@ public class JdbcDataStore implements DataStore {
         Connection connection = getConnection();
 
         try {
-            persistTestSuitesFailed(connection, testSuitesFailed);
+            persistTestSuiteNames(connection, TABLE_TIA_TEST_SUITES_FAILED, testSuitesFailed);
         } catch (SQLException e) {
             throw new TiaPersistenceException(e);
         }finally {
@@ -581,6 +785,27 @@ public class JdbcDataStore implements DataStore {
         log.debug("Time to save the failed test suites data to disk (ms): " + (System.currentTimeMillis() - startTime));
     }
 
+    @Override
+    public void persistTestSuitesDeferred(final Set<String> testSuitesDeferred){
+        long startTime = System.currentTimeMillis();
+        Connection connection = getConnection();
+
+        try {
+            ensureSchema(connection);
+            persistTestSuiteNames(connection, TABLE_TIA_TEST_SUITES_DEFERRED, testSuitesDeferred);
+        } catch (SQLException e) {
+            throw new TiaPersistenceException(e);
+        }finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                throw new TiaPersistenceException(e);
+            }
+        }
+
+        log.debug("Time to save the deferred test suites data to disk (ms): " + (System.currentTimeMillis() - startTime));
+    }
+
     /**
      * Clear the unsealed flag from every currently-flagged test suite, opening and closing its
      * own connection. Called as part of the seal, once the commit value those mapping rows
@@ -1494,9 +1719,23 @@ public class JdbcDataStore implements DataStore {
     }
 
     private void deleteTestSuites(Connection connection, final Set<String> testSuites) throws SQLException {
+        if (!testSuites.isEmpty()){
+            // the per-test-method edges and line coverage are keyed by suite id, so clear them
+            // before the suite row goes
+            ensureTestCaseMethodTableExists(connection);
+            ensureSourceMethodLineTableExists(connection);
+        }
         Statement statement = connection.createStatement();
 
         for (String testSuite : testSuites){
+            String deleteTestCaseMethodsSql = "DELETE FROM " + TABLE_TIA_TEST_CASE_METHOD + " WHERE " + COL_TIA_TEST_SUITE_ID
+                    + " IN (SELECT " + COL_ID + " FROM " + TABLE_TIA_TEST_SUITE + " WHERE " + COL_NAME + " = '" + testSuite + "')";
+            statement.executeUpdate(deleteTestCaseMethodsSql);
+
+            String deleteMethodLinesSql = "DELETE FROM " + TABLE_TIA_SOURCE_METHOD_LINE + " WHERE " + COL_TIA_TEST_SUITE_ID
+                    + " IN (SELECT " + COL_ID + " FROM " + TABLE_TIA_TEST_SUITE + " WHERE " + COL_NAME + " = '" + testSuite + "')";
+            statement.executeUpdate(deleteMethodLinesSql);
+
             String deleteTestSuiteSql = "DELETE FROM " + TABLE_TIA_TEST_SUITE + " WHERE " + COL_NAME + " = '" + testSuite +"'";
             log.debug("Deleting test suite: {}", deleteTestSuiteSql);
 
@@ -1605,6 +1844,8 @@ public class JdbcDataStore implements DataStore {
         long[] nextSourceClassId = null;
         PreparedStatement classChunkPs = null;
         PreparedStatement edgeChunkPs = null;
+        PreparedStatement testCaseChunkPs = null;
+        PreparedStatement methodLineChunkPs = null;
         if (includeClassMappings){
             // Reserve exactly the ids this persist needs, in one atomic allocation, so a
             // concurrent writer cannot be handed the same range. See the "Persist flow and crash
@@ -1613,6 +1854,17 @@ public class JdbcDataStore implements DataStore {
             nextSourceClassId = new long[]{ idsNeeded > 0 ? allocateSourceClassIdBlock(connection, idsNeeded) : 0L };
             classChunkPs = connection.prepareStatement(INSERT_SOURCE_CLASS_CHUNK_SQL);
             edgeChunkPs = connection.prepareStatement(INSERT_SOURCE_CLASS_METHOD_CHUNK_SQL);
+            if (hasTestCaseMappings(testSuites)){
+                // Per-test-method edges are only written when the run collected them; the table
+                // is created on demand so a DB predating it migrates on its first per-test run.
+                ensureTestCaseMethodTableExists(connection);
+                testCaseChunkPs = connection.prepareStatement(INSERT_TEST_CASE_METHOD_CHUNK_SQL);
+            }
+            if (hasMethodLineMappings(testSuites)){
+                // Same on-demand migration for the line-level coverage table.
+                ensureSourceMethodLineTableExists(connection);
+                methodLineChunkPs = connection.prepareStatement(INSERT_SOURCE_METHOD_LINE_CHUNK_SQL);
+            }
         }
 
         PreparedStatement suitePs = connection.prepareStatement(mergeSql, Statement.RETURN_GENERATED_KEYS);
@@ -1637,16 +1889,54 @@ public class JdbcDataStore implements DataStore {
                     ResultSet rs = suitePs.getGeneratedKeys();
                     rs.next();
                     persistTestSuiteClasses(connection, rs.getLong(COL_ID),
-                            testSuite.getClassesImpacted(), classChunkPs, edgeChunkPs, nextSourceClassId);
+                            testSuite.getClassesImpacted(), testSuite.getTestCasesImpacted(),
+                            testSuite.getMethodLinesHit(), classChunkPs, edgeChunkPs, testCaseChunkPs,
+                            methodLineChunkPs, nextSourceClassId);
                 }
             }
         } finally {
             suitePs.close();
             if (classChunkPs != null){ classChunkPs.close(); }
             if (edgeChunkPs != null){ edgeChunkPs.close(); }
+            if (testCaseChunkPs != null){ testCaseChunkPs.close(); }
+            if (methodLineChunkPs != null){ methodLineChunkPs.close(); }
         }
     }
 
+    /**
+     * Whether any suite in the persist carries per-test-method edges (a non-null
+     * {@link TestSuiteTracker#getTestCasesImpacted()}), i.e. whether the
+     * {@code tia_test_case_method} rows need rewriting at all.
+     *
+     * @param testSuites the suites being persisted
+     * @return {@code true} if at least one suite has per-test-method edges to write or clear
+     */
+    private static boolean hasTestCaseMappings(Collection<TestSuiteTracker> testSuites){
+        for (TestSuiteTracker testSuite : testSuites){
+            if (testSuite.getTestCasesImpacted() != null){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether any suite in the persist carries line-level coverage (a non-null
+     * {@link TestSuiteTracker#getMethodLinesHit()}), i.e. whether the
+     * {@code tia_source_method_line} rows need rewriting at all.
+     *
+     * @param testSuites the suites being persisted
+     * @return {@code true} if at least one suite has line-level coverage to write or clear
+     */
+    private static boolean hasMethodLineMappings(Collection<TestSuiteTracker> testSuites){
+        for (TestSuiteTracker testSuite : testSuites){
+            if (testSuite.getMethodLinesHit() != null){
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Read the highest existing {@code tia_source_class} id, or {@code 0} when the table is empty.
      * Ids are auto-increment starting at 1, so {@code 0} unambiguously means "empty" - used to
@@ -1836,17 +2126,34 @@ public class JdbcDataStore implements DataStore {
      * safety" chapter in {@code WIKI.md}. Kept inside a per-suite transaction so a failure leaves
      * the suite's previous mapping (and flag) intact.
      *
+     * <p>When the suite carries per-test-method edges ({@code testCases} non-null) its
+     * {@code tia_test_case_method} rows are rewritten in the same transaction, so the per-test
+     * filter can never disagree with the suite-level mapping it refines. Line-level coverage
+     * ({@code methodLinesHit} non-null) is rewritten in {@code tia_source_method_line} the same
+     * way. A {@code null} map leaves the corresponding stored rows untouched.
+     *
      * @param connection the H2 connection
      * @param testSuiteId the id of the suite these classes belong to; also used to flag it as unsealed
      * @param sourceClasses the suite's impacted classes (each with its method-id set)
+     * @param testCases the suite's per-test-method edges keyed by test case name, or {@code null}
+     *                  when the run did not collect them
+     * @param methodLinesHit the suite's line-level coverage keyed by method id, or {@code null}
+     *                       when the run did not collect it
      * @param classChunkPs reused full-chunk multi-row insert for {@code tia_source_class}
      * @param edgeChunkPs reused full-chunk multi-row insert for {@code tia_source_class_method}
+     * @param testCaseChunkPs reused full-chunk multi-row insert for {@code tia_test_case_method};
+     *                        non-null whenever any suite in the persist has a non-null {@code testCases}
+     * @param methodLineChunkPs reused full-chunk multi-row insert for {@code tia_source_method_line};
+     *                          non-null whenever any suite in the persist has a non-null {@code methodLinesHit}
      * @param nextId one-element holder for the next application-assigned class id; advanced in place
      * @throws SQLException if any insert/delete/flag write fails (the suite's transaction is rolled back first)
      */
     private void persistTestSuiteClasses(Connection connection, long testSuiteId,
                                          List<ClassImpactTracker> sourceClasses,
+                                         Map<String, MethodIdSet> testCases,
+                                         Map<Integer, MethodLineCoverage> methodLinesHit,
                                          PreparedStatement classChunkPs, PreparedStatement edgeChunkPs,
+                                         PreparedStatement testCaseChunkPs, PreparedStatement methodLineChunkPs,
                                          long[] nextId) throws SQLException {
         if (sourceClasses.isEmpty()){
             return;
@@ -1883,6 +2190,32 @@ public class JdbcDataStore implements DataStore {
             insertRowsChunked(connection, classChunkPs, TABLE_TIA_SOURCE_CLASS, SOURCE_CLASS_COLS, 3, classRows);
             insertRowsChunked(connection, edgeChunkPs, TABLE_TIA_SOURCE_CLASS_METHOD, SOURCE_CLASS_METHOD_COLS, 2, edgeRows);
 
+            if (testCases != null){
+                statement.executeUpdate("DELETE FROM " + TABLE_TIA_TEST_CASE_METHOD + " WHERE "
+                        + COL_TIA_TEST_SUITE_ID + " = " + testSuiteId);
+                List<Object[]> testCaseRows = new ArrayList<>();
+                for (Map.Entry<String, MethodIdSet> testCase : testCases.entrySet()){
+                    for (Integer methodId : testCase.getValue()){
+                        testCaseRows.add(new Object[]{ testSuiteId, testCase.getKey(), methodId });
+                    }
+                }
+                insertRowsChunked(connection, testCaseChunkPs, TABLE_TIA_TEST_CASE_METHOD, TEST_CASE_METHOD_COLS, 3, testCaseRows);
+            }
+
+            if (methodLinesHit != null){
+                statement.executeUpdate("DELETE FROM " + TABLE_TIA_SOURCE_METHOD_LINE + " WHERE "
+                        + COL_TIA_TEST_SUITE_ID + " = " + testSuiteId);
+                List<Object[]> methodLineRows = new ArrayList<>(methodLinesHit.size());
+                for (Map.Entry<Integer, MethodLineCoverage> methodLines : methodLinesHit.entrySet()){
+                    MethodLineCoverage lineCoverage = methodLines.getValue();
+                    methodLineRows.add(new Object[]{ testSuiteId, methodLines.getKey(),
+                            lineCoverage.getFirstLine(), lineCoverage.getLastLine(),
+                            encodeLineBitmap(lineCoverage.getExecutableLines()),
+                            encodeLineBitmap(lineCoverage.getLinesHit()) });
+                }
+                insertRowsChunked(connection, methodLineChunkPs, TABLE_TIA_SOURCE_METHOD_LINE, SOURCE_METHOD_LINE_COLS, 6, methodLineRows);
+            }
+
             // Flag this suite as unsealed in the same transaction as its edge rewrite, before the
             // commit, so the two can never land apart: either both are visible after a crash or
             // neither is. This is the only statement in the class that sets the column to TRUE;
@@ -1968,19 +2301,20 @@ public class JdbcDataStore implements DataStore {
     }
 
     /**
-     * Rewrite {@code tia_test_suites_failed} on a caller-supplied connection: clear the previous
-     * failed-suite set and insert the new one in one transaction, so a failure partway through the
-     * insert leaves the previously persisted rows intact rather than half-written. The clear-out
-     * uses {@link SqlDialect#clearTableTransactionallySql} so the statement stays transactional on
+     * Rewrite a suite-name set table ({@code tia_test_suites_failed} or
+     * {@code tia_test_suites_deferred}) on a caller-supplied connection: clear the previous set and
+     * insert the new one in one transaction, so a failure partway through the insert leaves the
+     * previously persisted rows intact rather than half-written. The clear-out uses
+     * {@link SqlDialect#clearTableTransactionallySql} so the statement stays transactional on
      * whichever vendor the datastore is configured for - see the pluggable-datastore WIKI chapter.
      *
      * @param connection the connection to write on; owns and commits/rolls back its own transaction
-     * @param testSuitesFailed the full set of currently-failed test suite names to persist; a null
-     *                         set is a no-op
+     * @param table the suite-name set table to rewrite
+     * @param testSuiteNames the full set of test suite names to persist; a null set is a no-op
      * @throws SQLException if the clear-out or the insert fails
      */
-    private void persistTestSuitesFailed(Connection connection, Set<String> testSuitesFailed) throws SQLException {
-        if (testSuitesFailed == null){
+    private void persistTestSuiteNames(Connection connection, String table, Set<String> testSuiteNames) throws SQLException {
+        if (testSuiteNames == null){
             return;
         }
 
@@ -1991,23 +2325,23 @@ public class JdbcDataStore implements DataStore {
         connection.setAutoCommit(false);
 
         try (Statement statement = connection.createStatement()) {
-            String clearSql = dialect.clearTableTransactionallySql(TABLE_TIA_TEST_SUITES_FAILED);
-            log.debug("Clearing failed test suites: {}", clearSql);
+            String clearSql = dialect.clearTableTransactionallySql(table);
+            log.debug("Clearing test suites: {}", clearSql);
             statement.executeUpdate(clearSql);
 
-            if (testSuitesFailed.isEmpty()){
+            if (testSuiteNames.isEmpty()){
                 connection.commit();
                 return;
             }
 
-            StringBuilder insertSqlBuilder = new StringBuilder("INSERT INTO " + TABLE_TIA_TEST_SUITES_FAILED + " (" + COL_TEST_SUITE_NAME + ") values ");
-            for (String testSuite : testSuitesFailed){
+            StringBuilder insertSqlBuilder = new StringBuilder("INSERT INTO " + table + " (" + COL_TEST_SUITE_NAME + ") values ");
+            for (String testSuite : testSuiteNames){
                 insertSqlBuilder.append("('" + testSuite + "'),");
             }
             String insertSql = insertSqlBuilder.toString();
             insertSql = insertSql.substring(0, insertSql.length()-1);
 
-            log.debug("Persisting failed test suites: {}", insertSql);
+            log.debug("Persisting test suites: {}", insertSql);
             statement.executeUpdate(insertSql);
 
             connection.commit();
@@ -2144,6 +2478,7 @@ public class JdbcDataStore implements DataStore {
                 log.debug("SQL query time for test suites: {}", (System.currentTimeMillis() - startQueryTime) / 1000);
                 startQueryTime = System.currentTimeMillis();
                 tiaData.setTestSuitesFailed(getTestSuitesFailed(connection));
+                tiaData.setTestSuitesDeferred(getTestSuiteNames(connection, TABLE_TIA_TEST_SUITES_DEFERRED));
                 log.debug("SQL query time for failed tests: {}", (System.currentTimeMillis() - startQueryTime) / 1000);
                 startQueryTime = System.currentTimeMillis();
                 tiaData.setMethodsTracked(getMethodsTracked(connection));
@@ -2197,16 +2532,28 @@ public class JdbcDataStore implements DataStore {
     }
 
     private Set<String> getTestSuitesFailed(Connection connection) throws SQLException {
-        Set<String> testSuitesFailed = new HashSet<>();
-        String sql = "SELECT * FROM " + TABLE_TIA_TEST_SUITES_FAILED;
+        return getTestSuiteNames(connection, TABLE_TIA_TEST_SUITES_FAILED);
+    }
+
+    /**
+     * Read a suite-name set table ({@code tia_test_suites_failed} or {@code tia_test_suites_deferred}).
+     *
+     * @param connection the connection to read on
+     * @param table the suite-name set table to read
+     * @return the test suite names stored in the table
+     * @throws SQLException if the query fails
+     */
+    private Set<String> getTestSuiteNames(Connection connection, String table) throws SQLException {
+        Set<String> testSuiteNames = new HashSet<>();
+        String sql = "SELECT * FROM " + table;
         Statement statement = connection.createStatement();
         ResultSet resultSet = statement.executeQuery(sql);
 
         while(resultSet.next()){
-            testSuitesFailed.add(resultSet.getString(COL_TEST_SUITE_NAME));
+            testSuiteNames.add(resultSet.getString(COL_TEST_SUITE_NAME));
         }
 
-        return testSuitesFailed;
+        return testSuiteNames;
     }
 
     private Map<Integer, MethodImpactTracker> getMethodsTracked(Connection connection) throws SQLException {
@@ -2371,6 +2718,8 @@ public class JdbcDataStore implements DataStore {
         String createTestSuitesFailedTableSql = "CREATE TABLE IF NOT EXISTS " + TABLE_TIA_TEST_SUITES_FAILED + " " +
                 "(" + COL_TEST_SUITE_NAME + " VARCHAR(255) PRIMARY KEY)";
 
+        String createTestSuitesDeferredTableSql = buildCreateTestSuitesDeferredTableSql();
+
         String createSourceMethodTableSql = "CREATE TABLE IF NOT EXISTS " + TABLE_TIA_SOURCE_METHOD + " " +
                 "(" + COL_ID + " INT PRIMARY KEY, " +
                 COL_METHOD_NAME + " VARCHAR(2000), " +
@@ -2424,6 +2773,10 @@ public class JdbcDataStore implements DataStore {
         String createLibraryPublishTableSql = buildCreateLibraryPublishTableSql();
         String createTestRunHistoryTableSql = buildCreateTestRunHistoryTableSql();
         String createTestRunHistoryIndexSql = buildCreateTestRunHistoryIndexSql();
+        String createTestCaseMethodTableSql = buildCreateTestCaseMethodTableSql();
+        String createTestCaseMethodMethodIdIndexSql = buildCreateTestCaseMethodMethodIdIndexSql();
+        String createSourceMethodLineTableSql = buildCreateSourceMethodLineTableSql();
+        String createSourceMethodLineMethodIdIndexSql = buildCreateSourceMethodLineMethodIdIndexSql();
 
         try {
             Connection connection = getConnection();
@@ -2431,6 +2784,7 @@ public class JdbcDataStore implements DataStore {
             statement.executeUpdate(createCoreTableSql);
             statement.executeUpdate(createSourceMethodTableSql);
             statement.executeUpdate(createTestSuitesFailedTableSql);
+            statement.executeUpdate(createTestSuitesDeferredTableSql);
             statement.executeUpdate(createTestSuiteTableSql);
             statement.executeUpdate(createTestSuiteNameIndexSql);
             statement.executeUpdate(createSourceClassTableSql);
@@ -2444,6 +2798,10 @@ public class JdbcDataStore implements DataStore {
             statement.executeUpdate(createLibraryPublishTableSql);
             statement.executeUpdate(createTestRunHistoryTableSql);
             statement.executeUpdate(createTestRunHistoryIndexSql);
+            statement.executeUpdate(createTestCaseMethodTableSql);
+            statement.executeUpdate(createTestCaseMethodMethodIdIndexSql);
+            statement.executeUpdate(createSourceMethodLineTableSql);
+            statement.executeUpdate(createSourceMethodLineMethodIdIndexSql);
             connection.close();
         } catch (SQLException e) {
             throw new TiaPersistenceException(e);
@@ -2753,6 +3111,118 @@ public class JdbcDataStore implements DataStore {
         }
     }
 
+    /**
+     * DDL for the {@code tia_test_case_method} table holding the per-test-method edges: one row
+     * per (suite, test case, source method) covered by that test case's own execution. Shared
+     * fixture setup (class-level {@code @BeforeAll}, Spock {@code setupSpec}) is not attributed
+     * to any test case and only lives in the suite-level mapping.
+     *
+     * @return the {@code CREATE TABLE IF NOT EXISTS} statement for the per-test edge table
+     */
+    private static String buildCreateTestCaseMethodTableSql() {
+        return "CREATE TABLE IF NOT EXISTS " + TABLE_TIA_TEST_CASE_METHOD + " ("
+                + COL_TIA_TEST_SUITE_ID + " BIGINT, "
+                + COL_TEST_CASE_NAME + " VARCHAR(1000), "
+                + COL_TIA_SOURCE_METHOD_ID + " INT, "
+                + "PRIMARY KEY (" + COL_TIA_TEST_SUITE_ID + ", " + COL_TEST_CASE_NAME + ", " + COL_TIA_SOURCE_METHOD_ID + "))";
+    }
+
+    /**
+     * DDL for the index on {@code tia_test_case_method.tia_source_method_id}, backing the
+     * per-test-method select-tests lookup. As with {@code tia_source_class_method}, the primary
+     * key does not lead with the method id so it cannot serve that lookup.
+     *
+     * @return the {@code CREATE INDEX IF NOT EXISTS} statement for the method-id index
+     */
+    private static String buildCreateTestCaseMethodMethodIdIndexSql() {
+        return "CREATE INDEX IF NOT EXISTS idx_test_case_method_method_id ON "
+                + TABLE_TIA_TEST_CASE_METHOD + " (" + COL_TIA_SOURCE_METHOD_ID + ")";
+    }
+
+    /**
+     * Migration: ensure the {@code tia_test_case_method} table and its method-id index exist on
+     * an already-populated DB created before per-test-method selection was added. Idempotent via
+     * {@code IF NOT EXISTS}; an existing DB simply has no per-test edges until the next mapping
+     * run with per-test-method selection enabled.
+     *
+     * @param connection the connection to issue the DDL on
+     * @throws SQLException if either DDL statement fails
+     */
+    private void ensureTestCaseMethodTableExists(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(buildCreateTestCaseMethodTableSql());
+            statement.executeUpdate(buildCreateTestCaseMethodMethodIdIndexSql());
+        }
+    }
+
+    /**
+     * DDL for the {@code tia_source_method_line} table holding line-level coverage: one row per
+     * (suite, source method) with the method's line range at collection time and Base64-encoded
+     * bitmaps of its executable and executed lines.
+     *
+     * @return the {@code CREATE TABLE IF NOT EXISTS} statement for the line coverage table
+     */
+    private static String buildCreateSourceMethodLineTableSql() {
+        return "CREATE TABLE IF NOT EXISTS " + TABLE_TIA_SOURCE_METHOD_LINE + " ("
+                + COL_TIA_TEST_SUITE_ID + " BIGINT, "
+                + COL_TIA_SOURCE_METHOD_ID + " INT, "
+                + COL_LINE_NUMBER_START + " INT, "
+                + COL_LINE_NUMBER_END + " INT, "
+                + COL_EXECUTABLE_LINES + " VARCHAR(" + LINE_BITMAP_MAX_LENGTH + "), "
+                + COL_LINES_HIT + " VARCHAR(" + LINE_BITMAP_MAX_LENGTH + "), "
+                + "PRIMARY KEY (" + COL_TIA_TEST_SUITE_ID + ", " + COL_TIA_SOURCE_METHOD_ID + "))";
+    }
+
+    /**
+     * DDL for the index on {@code tia_source_method_line.tia_source_method_id}, backing the
+     * line-level select-tests lookup.
+     *
+     * @return the {@code CREATE INDEX IF NOT EXISTS} statement for the method-id index
+     */
+    private static String buildCreateSourceMethodLineMethodIdIndexSql() {
+        return "CREATE INDEX IF NOT EXISTS idx_source_method_line_method_id ON "
+                + TABLE_TIA_SOURCE_METHOD_LINE + " (" + COL_TIA_SOURCE_METHOD_ID + ")";
+    }
+
+    /**
+     * Migration: ensure the {@code tia_source_method_line} table and its method-id index exist on
+     * an already-populated DB created before line-level selection was added. Idempotent via
+     * {@code IF NOT EXISTS}.
+     *
+     * @param connection the connection to issue the DDL on
+     * @throws SQLException if either DDL statement fails
+     */
+    private void ensureSourceMethodLineTableExists(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(buildCreateSourceMethodLineTableSql());
+            statement.executeUpdate(buildCreateSourceMethodLineMethodIdIndexSql());
+        }
+    }
+
+    /**
+     * Build the DDL for the {@code tia_test_suites_deferred} table - the suites a run-time budgeted
+     * selection deferred, keyed by name like {@code tia_test_suites_failed}.
+     *
+     * @return the {@code CREATE TABLE IF NOT EXISTS} statement for the deferred-suite table
+     */
+    private static String buildCreateTestSuitesDeferredTableSql() {
+        return "CREATE TABLE IF NOT EXISTS " + TABLE_TIA_TEST_SUITES_DEFERRED + " "
+                + "(" + COL_TEST_SUITE_NAME + " VARCHAR(255) PRIMARY KEY)";
+    }
+
+    /**
+     * Migration: ensure the {@code tia_test_suites_deferred} table exists on an already-populated
+     * DB created before run-time budgeted selection was added. Idempotent via {@code IF NOT EXISTS}.
+     *
+     * @param connection the connection to issue the DDL on
+     * @throws SQLException if the DDL statement fails
+     */
+    private void ensureTestSuitesDeferredTableExists(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(buildCreateTestSuitesDeferredTableSql());
+        }
+    }
+
     /**
      * Migration: ensure the {@code tia_core.all_tests_run_time} and {@code tia_core.num_all_tests_runs}
      * columns exist on an already-populated DB created before the all-tests-run stats were added.
@@ -2799,6 +3269,9 @@ public class JdbcDataStore implements DataStore {
         ensureTestSuiteUnsealedColumnExists(connection);
         ensureTiaCoreAllTestsStatsColumnsExist(connection);
         ensureIdBlockTableExists(connection);
+        ensureTestCaseMethodTableExists(connection);
+        ensureSourceMethodLineTableExists(connection);
+        ensureTestSuitesDeferredTableExists(connection);
 
         schemaEnsured = true;
         return dbExisted;
@@ -5,6 +5,8 @@ import org.slf4j.LoggerFactory;
 import org.tiatesting.core.library.LibraryImpactDrainResult;
 import org.tiatesting.core.model.ClassImpactTracker;
 import org.tiatesting.core.model.LibraryPublish;
+import org.tiatesting.core.model.MethodIdSet;
+import org.tiatesting.core.model.MethodLineCoverage;
 import org.tiatesting.core.model.MethodImpactTracker;
 import org.tiatesting.core.model.PendingLibraryForcedSelection;
 import org.tiatesting.core.model.PendingLibraryImpactedMethod;
@@ -142,6 +144,64 @@ public class SerializedDataStore implements DataStore {
         return suitesByMethodId;
     }
 
+    /**
+     * Per-test-method read over the in-memory data: collect, per test suite, the test cases
+     * whose own coverage includes any of the given method ids.
+     *
+     * @param methodIds the tracked method ids to find covering test cases for
+     * @return map of test suite name to covering test-case names; empty when the input is
+     *         null or empty
+     */
+    @Override
+    public Map<String, Set<String>> getTestCasesForMethods(final Set<Integer> methodIds) {
+        Map<String, Set<String>> testCasesBySuite = new HashMap<>();
+        if (methodIds == null || methodIds.isEmpty()) {
+            return testCasesBySuite;
+        }
+
+        for (TestSuiteTracker testSuiteTracker : getTiaData(false).getTestSuitesTracked().values()) {
+            Map<String, MethodIdSet> testCasesImpacted = testSuiteTracker.getTestCasesImpacted();
+            if (testCasesImpacted == null) {
+                continue;
+            }
+            for (Map.Entry<String, MethodIdSet> testCase : testCasesImpacted.entrySet()) {
+                for (Integer methodId : testCase.getValue()) {
+                    if (methodIds.contains(methodId)) {
+                        testCasesBySuite.computeIfAbsent(testSuiteTracker.getName(), key -> new HashSet<>())
+                                .add(testCase.getKey());
+                        break;
+                    }
+                }
+            }
+        }
+
+        return testCasesBySuite;
+    }
+
+    @Override
+    public Map<String, Map<Integer, MethodLineCoverage>> getMethodLineCoverage(final Set<Integer> methodIds) {
+        Map<String, Map<Integer, MethodLineCoverage>> lineCoverageBySuite = new HashMap<>();
+        if (methodIds == null || methodIds.isEmpty()) {
+            return lineCoverageBySuite;
+        }
+
+        for (TestSuiteTracker testSuiteTracker : getTiaData(false).getTestSuitesTracked().values()) {
+            Map<Integer, MethodLineCoverage> methodLinesHit = testSuiteTracker.getMethodLinesHit();
+            if (methodLinesHit == null) {
+                continue;
+            }
+            for (Integer methodId : methodIds) {
+                MethodLineCoverage lineCoverage = methodLinesHit.get(methodId);
+                if (lineCoverage != null) {
+                    lineCoverageBySuite.computeIfAbsent(testSuiteTracker.getName(), key -> new HashMap<>())
+                            .put(methodId, lineCoverage);
+                }
+            }
+        }
+
+        return lineCoverageBySuite;
+    }
+
     @Override
     public int getNumTestSuites() {
         return getTiaData(false).getTestSuitesTracked().size();
@@ -157,6 +217,13 @@ public class SerializedDataStore implements DataStore {
         return getTiaData(false).getTestSuitesFailed();
     }
 
+    @Override
+    public Set<String> getTestSuitesDeferred() {
+        Set<String> testSuitesDeferred = getTiaData(false).getTestSuitesDeferred();
+        // files written before budgeted selection was added deserialize the field as null
+        return testSuitesDeferred != null ? testSuitesDeferred : new HashSet<>();
+    }
+
     @Override
     public void persistCoreData(TiaData tiaData) {
         long startTime = System.currentTimeMillis();
@@ -173,6 +240,15 @@ public class SerializedDataStore implements DataStore {
         log.info("Time to save the failed test suites data to disk (ms): " + (System.currentTimeMillis() - startTime));
     }
 
+    @Override
+    public void persistTestSuitesDeferred(Set<String> testSuitesDeferred) {
+        TiaData tiaData = getTiaData(false);
+        tiaData.setTestSuitesDeferred(testSuitesDeferred);
+        long startTime = System.currentTimeMillis();
+        writeTiaDataToDisk(tiaData);
+        log.info("Time to save the deferred test suites data to disk (ms): " + (System.currentTimeMillis() - startTime));
+    }
+
     /**
      * Clear the unsealed flag from every tracked test suite and write the whole file back to
      * disk. The serialized store has no per-row update, so clearing the flag on the in-memory
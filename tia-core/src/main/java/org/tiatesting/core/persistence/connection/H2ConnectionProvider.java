@@ -249,7 +249,7 @@ public class H2ConnectionProvider implements ConnectionProvider {
 
         long cacheSizeKB = Runtime.getRuntime().maxMemory() / 1024 / 2; // use half of the available memory
         long pageSizeByte = 1024 * 4 * 100; //4KB is the default, set it to 10 times the size
-        return "jdbc:h2:" + settings.getDbFilePath() + "/tiadb"
+        return "jdbc:h2:" + settings.getDbFilePath() + "/" + H2ConnectionSettings.DB_NAME
                 + ";PAGE_SIZE=" + pageSizeByte
                 + ";CACHE_SIZE=" + cacheSizeKB
                 + ";DB_CLOSE_DELAY=-1"
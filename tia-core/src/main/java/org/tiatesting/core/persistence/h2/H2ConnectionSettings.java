@@ -2,6 +2,7 @@ package org.tiatesting.core.persistence.h2;
 
 import org.tiatesting.core.persistence.JdbcDataStore;
 
+import java.io.File;
 import java.util.function.Function;
 
 /**
@@ -44,6 +45,12 @@ public class H2ConnectionSettings {
     /** Environment variable consulted for the server-mode password when none is configured. */
     public static final String ENV_DB_PASSWORD = "TIA_DB_PASSWORD";
 
+    /** The name of the single database, in both modes. */
+    public static final String DB_NAME = "tiadb";
+
+    /** The suffix H2 gives the file holding an embedded database. */
+    private static final String EMBEDDED_DB_FILE_SUFFIX = ".mv.db";
+
     private final String dbFilePath;
     private final String dbUrl;
     private final String username;
@@ -209,6 +216,13 @@ public class H2ConnectionSettings {
         return dbFilePath;
     }
 
+    /**
+     * @return the file H2 keeps the embedded database in, or {@code null} in server mode
+     */
+    public File getEmbeddedDbFile() {
+        return dbFilePath != null ? new File(dbFilePath, DB_NAME + EMBEDDED_DB_FILE_SUFFIX) : null;
+    }
+
     /**
      * @return the server-mode JDBC URL used verbatim, or {@code null} in embedded mode
      */
@@ -1,5 +1,6 @@
 package org.tiatesting.core.staticselection;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -16,7 +17,9 @@ import java.util.List;
  * <p>Mirrors the shape of {@link org.tiatesting.core.library.LibraryImpactAnalysisConfig}:
  * immutable, {@code isEnabled()} false when no rules are configured.
  */
-public class StaticTestSelectionConfig {
+public class StaticTestSelectionConfig implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * Singleton empty/disabled config. Useful for callers that want a non-null placeholder
@@ -1,5 +1,6 @@
 package org.tiatesting.core.staticselection;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -18,7 +19,9 @@ import java.util.regex.PatternSyntaxException;
  * dynamic selection from method-impact analysis. A rule can only cause more tests to run; it
  * can never cause a test to be skipped.
  */
-public class StaticTestSelectionRule {
+public class StaticTestSelectionRule implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * Optional user-supplied name for this rule, used in log messages. When {@code null} or
@@ -0,0 +1,219 @@
+package org.tiatesting.core.testrunner;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tiatesting.core.sourcefile.FileExtensions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The test classes in a test classes dir, kept up to date incrementally between test runs. See the
+ * "Test class inventory" chapter in WIKI.md.
+ *
+ * <p>Adding, removing or renaming a file in a dir updates the dir's modification time, and only
+ * whether a class file exists matters here, not its content. So the inventory records each dir's
+ * modification time with the classes and subdirs it holds, and a refresh lists only the dirs whose
+ * modification time has moved since. An unchanged tree costs one stat per dir rather than one per
+ * class file.
+ *
+ * <p>A dir modified within {@link #MTIME_GRANULARITY_MILLIS} of being listed may change again
+ * without its modification time moving, so it's recorded as untrusted and listed again next time.
+ *
+ * <p>Without an inventory file, every refresh lists the whole tree.
+ */
+class TestClassInventory {
+
+    private static final Logger log = LoggerFactory.getLogger(TestClassInventory.class);
+
+    /**
+     * The coarsest modification time resolution of the file systems the test classes might be on.
+     */
+    static final long MTIME_GRANULARITY_MILLIS = 2000;
+
+    private static final long UNTRUSTED = -1;
+
+    private static final String CLASS_FILE_EXT = "." + FileExtensions.CLASS_FILE_EXT;
+
+    private final File inventoryFile;
+
+    /**
+     * @param inventoryFile the file the inventory is persisted in between runs, or {@code null} to
+     *                      list the whole tree on every refresh
+     */
+    TestClassInventory(final File inventoryFile) {
+        this.inventoryFile = inventoryFile;
+    }
+
+    /**
+     * Refresh the inventory for the dir and persist it.
+     *
+     * @param testClassesDir the directory containing the test class files
+     * @return the names of the test classes in the dir
+     */
+    Set<String> getTestClasses(final Path testClassesDir) {
+        String root = testClassesDir.toAbsolutePath().normalize().toString();
+        Map<String, DirEntry> previous = readInventory(root);
+        Map<String, DirEntry> current = new HashMap<>();
+        long scanStart = System.currentTimeMillis();
+        int dirsListed = 0;
+
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push("");
+        while (!pending.isEmpty()) {
+            String relativeDir = pending.pop();
+            Path dir = relativeDir.isEmpty() ? testClassesDir : testClassesDir.resolve(relativeDir);
+            long lastModified;
+            try {
+                lastModified = Files.getLastModifiedTime(dir).toMillis();
+            } catch (NoSuchFileException e) {
+                // deleted since its parent was listed
+                continue;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            DirEntry entry = previous.get(relativeDir);
+            if (entry == null || entry.lastModified == UNTRUSTED || entry.lastModified != lastModified) {
+                entry = listDir(dir, relativeDir, lastModified, scanStart);
+                dirsListed++;
+            }
+            current.put(relativeDir, entry);
+            for (String subDir : entry.subDirs) {
+                pending.push(relativeDir.isEmpty() ? subDir : relativeDir + "/" + subDir);
+            }
+        }
+
+        Set<String> testClasses = new HashSet<>();
+        for (DirEntry entry : current.values()) {
+            testClasses.addAll(entry.classNames);
+        }
+        log.debug("Test class inventory for {}: listed {} of {} dirs, {} test classes", root, dirsListed,
+                current.size(), testClasses.size());
+
+        if (dirsListed > 0 || current.size() != previous.size()) {
+            writeInventory(new Inventory(root, current));
+        }
+        return testClasses;
+    }
+
+    private DirEntry listDir(final Path dir, final String relativeDir, final long lastModified, final long scanStart) {
+        String packagePrefix = relativeDir.isEmpty() ? "" : relativeDir.replace('/', '.') + ".";
+        List<String> classNames = new ArrayList<>();
+        List<String> subDirs = new ArrayList<>();
+
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    subDirs.add(name);
+                } else if (name.toLowerCase().endsWith(CLASS_FILE_EXT)) {
+                    classNames.add(packagePrefix + name.substring(0, name.length() - CLASS_FILE_EXT.length()));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return new DirEntry(UNTRUSTED, classNames, subDirs);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        boolean trusted = lastModified < scanStart - MTIME_GRANULARITY_MILLIS;
+        return new DirEntry(trusted ? lastModified : UNTRUSTED, classNames, subDirs);
+    }
+
+    private Map<String, DirEntry> readInventory(final String root) {
+        if (inventoryFile == null || !inventoryFile.isFile()) {
+            return new HashMap<>();
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(inventoryFile.toPath())))) {
+            Inventory inventory = (Inventory) in.readObject();
+            if (root.equals(inventory.root)) {
+                return inventory.dirs;
+            }
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.warn("Ignoring the unreadable test class inventory {}: {}", inventoryFile, e.getMessage());
+        }
+        return new HashMap<>();
+    }
+
+    /**
+     * Persist the inventory. The file is written alongside and moved into place, so a concurrent
+     * test JVM reads the old or the new inventory, never a partial one. A failed write only costs
+     * the next run a full listing, so it's logged rather than thrown.
+     */
+    private void writeInventory(final Inventory inventory) {
+        if (inventoryFile == null) {
+            return;
+        }
+
+        File dir = inventoryFile.getAbsoluteFile().getParentFile();
+        File tempFile = null;
+        try {
+            Files.createDirectories(dir.toPath());
+            tempFile = File.createTempFile(inventoryFile.getName(), ".tmp", dir);
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                out.writeObject(inventory);
+            }
+            Files.move(tempFile.toPath(), inventoryFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write the test class inventory {}: {}", inventoryFile, e.getMessage());
+            if (tempFile != null && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * The persisted inventory: the dirs under the root, keyed by their path relative to it with
+     * {@code /} separators.
+     */
+    private static class Inventory implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String root;
+        private final HashMap<String, DirEntry> dirs;
+
+        Inventory(String root, Map<String, DirEntry> dirs) {
+            this.root = root;
+            this.dirs = new HashMap<>(dirs);
+        }
+    }
+
+    /**
+     * A dir's modification time when it was listed, and the classes and subdirs it held.
+     */
+    private static class DirEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final long lastModified;
+        private final List<String> classNames;
+        private final List<String> subDirs;
+
+        DirEntry(long lastModified, List<String> classNames, List<String> subDirs) {
+            this.lastModified = lastModified;
+            this.classNames = classNames;
+            this.subDirs = subDirs;
+        }
+    }
+}
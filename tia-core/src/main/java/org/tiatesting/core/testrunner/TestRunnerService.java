@@ -3,6 +3,8 @@ package org.tiatesting.core.testrunner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tiatesting.core.library.LibraryImpactDrainResult;
+import org.tiatesting.core.model.MethodIdSet;
+import org.tiatesting.core.model.MethodLineCoverage;
 import org.tiatesting.core.model.MethodImpactTracker;
 import org.tiatesting.core.model.TestRunHistoryEntry;
 import org.tiatesting.core.report.ReportUtils;
@@ -11,10 +13,8 @@ import org.tiatesting.core.model.TiaData;
 import org.tiatesting.core.model.TrackedLibrary;
 import org.tiatesting.core.persistence.DataStore;
 import org.tiatesting.core.persistence.SealedRunData;
-import org.tiatesting.core.sourcefile.FileExtensions;
 
 import java.io.File;
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -28,8 +28,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class TestRunnerService {
 
@@ -98,6 +96,10 @@ public class TestRunnerService {
             // 2. The failed set is incremental and safe to be ahead of the commit; over-inclusion
             //    only force-runs extra suites next time.
             updateTestSuitesFailed(tiaData, testRunResult.getSelectedTests(), testRunResult.getTestSuitesFailed());
+            //    Deferred suites that were selected this run have had the run they were owed, so
+            //    they're cleared from the deferred set. Like the failed set this only depends on
+            //    which suites ran, not on the commit, so it's safe ahead of the seal.
+            updateTestSuitesDeferred(testRunResult.getSelectedTests());
         }
 
         // 3. The seal bundle: catalogue, library drain cleanup and the commit value, written in
@@ -356,6 +358,20 @@ public class TestRunnerService {
         dataStore.persistTestSuitesFailed(tiaData.getTestSuitesFailed());
     }
 
+    /**
+     * Remove the suites selected for this run from the stored deferred set - they've now run, so
+     * the later run a budgeted selection promised them has happened. The set is only rewritten
+     * when it changes, so runs without budgeted selection pay a single read.
+     *
+     * @param selectedTests the tests selected to run by Tia
+     */
+    private void updateTestSuitesDeferred(final Set<String> selectedTests){
+        Set<String> testSuitesDeferred = dataStore.getTestSuitesDeferred();
+        if (selectedTests != null && testSuitesDeferred.removeAll(selectedTests)){
+            dataStore.persistTestSuitesDeferred(testSuitesDeferred);
+        }
+    }
+
     /**
      * Collect the tracked-library rows whose state changes as part of this seal, without writing
      * them - the caller hands them to the data store inside the seal transaction.
@@ -494,6 +510,13 @@ public class TestRunnerService {
      * For each test suite, set the new tracker including the new test to source code mappings.
      * If the test suite has an existing tracker then update it to use the new tracker.
      *
+     * <p>The per-test-method edges are replaced alongside the suite mapping. A suite that ran
+     * without per-test collection gets an empty (rather than {@code null}) map so any per-test
+     * edges left by an earlier per-test run are cleared instead of going stale against the new
+     * suite mapping - see the "Per-test-method selection" chapter in WIKI.md. The line-level
+     * coverage follows the same rule, so line bitmaps are never left describing an older
+     * suite mapping (the "Line-level selection" chapter).
+     *
      * @param storedTestSuiteTrackers the test suites stored in the Tia DB
      * @param newTestSuiteTrackers the test suites with coverage data from the current run
      * @return mergedTestMappings
@@ -505,13 +528,22 @@ public class TestRunnerService {
         newTestSuiteTrackers.forEach((testSuiteName, newTestSuiteTracker) -> {
             TestSuiteTracker storedTestSuiteTracker = storedTestSuiteTrackers.get(testSuiteName);
 
+            Map<String, MethodIdSet> testCasesImpacted = newTestSuiteTracker.getTestCasesImpacted() != null
+                    ? newTestSuiteTracker.getTestCasesImpacted() : new HashMap<>();
+            Map<Integer, MethodLineCoverage> methodLinesHit = newTestSuiteTracker.getMethodLinesHit() != null
+                    ? newTestSuiteTracker.getMethodLinesHit() : new HashMap<>();
+
             if (storedTestSuiteTracker != null){
                 storedTestSuiteTracker.setClassesImpacted(newTestSuiteTracker.getClassesImpacted());
+                storedTestSuiteTracker.setTestCasesImpacted(testCasesImpacted);
+                storedTestSuiteTracker.setMethodLinesHit(methodLinesHit);
             } else {
                 TestSuiteTracker newTestSuiteTrackerToAdd = new TestSuiteTracker();
                 // Add a new test suite tracker but don't add the stats, this gets updated separately
                 newTestSuiteTrackerToAdd.setName(newTestSuiteTracker.getName());
                 newTestSuiteTrackerToAdd.setClassesImpacted(newTestSuiteTracker.getClassesImpacted());
+                newTestSuiteTrackerToAdd.setTestCasesImpacted(testCasesImpacted);
+                newTestSuiteTrackerToAdd.setMethodLinesHit(methodLinesHit);
                 mergedTestMappings.put(testSuiteName, newTestSuiteTrackerToAdd);
             }
         });
@@ -552,27 +584,27 @@ public class TestRunnerService {
      * @return a set of test suite names based on test classes found in the directory
      */
     public Set<String> getTestClassesFromDir(final String testClassesDir) {
+        return getTestClassesFromDir(testClassesDir, null);
+    }
+
+    /**
+     * Compile a set of test suite names based on test classes found in the test class directory,
+     * refreshing the test class inventory persisted in the given file. Only the dirs modified since
+     * the inventory was last refreshed are listed. See the "Test class inventory" chapter in
+     * {@code WIKI.md}.
+     *
+     * @param testClassesDir the directory containing the test class files
+     * @param inventoryFile the file the inventory is persisted in, or {@code null} to list the whole dir
+     * @return a set of test suite names based on test classes found in the directory
+     */
+    public Set<String> getTestClassesFromDir(final String testClassesDir, final String inventoryFile) {
         Path path = Paths.get(testClassesDir);
         if (!Files.isDirectory(path)) {
             throw new IllegalArgumentException("Test classes path must be a directory - " + testClassesDir);
         }
 
-        Set<String> testClasses;
-        String classFileExt = "." + FileExtensions.CLASS_FILE_EXT;
-
-        try (Stream<Path> walk = Files.walk(path)) {
-            testClasses = walk
-                    .filter(p -> !Files.isDirectory(p))
-                    // convert from the full file system path for the class files into the class name
-                    .map(Path::toString)
-                    .filter(f -> f.toLowerCase().endsWith(classFileExt))
-                    .map(p -> p.replace(testClassesDir, "").replace(classFileExt, ""))
-                    .map(p -> p.substring((p.startsWith(File.separator) ? 1 : 0)).replace(File.separator, "."))
-                    .collect(Collectors.toSet());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
+        TestClassInventory inventory = new TestClassInventory(inventoryFile == null ? null : new File(inventoryFile));
+        Set<String> testClasses = inventory.getTestClasses(path);
         log.debug("Test classes found: " + testClasses);
         return testClasses;
     }
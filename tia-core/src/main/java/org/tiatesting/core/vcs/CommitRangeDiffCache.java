@@ -0,0 +1,368 @@
+package org.tiatesting.core.vcs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tiatesting.core.diff.ChangeType;
+import org.tiatesting.core.diff.SourceFileDiffContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Caches what a {@link VCSReader} reads for a commit range - the changed file paths, the diff
+ * contexts for a set of source and test dirs, and the loaded file content - keyed by the range's
+ * {@code (from, to)} commit ids. See the "Commit-range diff cache" chapter in WIKI.md.
+ *
+ * <p>The same stored commit to head range is read several times in one invocation: by test
+ * selection, by the library publish stamper (two diff reads and a changed-paths read) and by
+ * static selection. A commit range is immutable, so every read after the first is served from
+ * memory. With a persist dir set ({@link VCSReader#setDiffCacheDir}), each range is also written
+ * to a dir under it and read back by later invocations, so the repeat invocations of one pipeline
+ * (select-tests, the test run, the publish stamp) read the VCS once.
+ *
+ * <p>Each read that misses adds one part file to the range's dir holding only what it read, so a
+ * range is never rewritten whole. Only the {@link #MAX_ENTRIES} most recently used range dirs are
+ * kept.
+ *
+ * <p>Only commit ranges are cached - local changes can change between reads. Diff contexts are
+ * handed out as fresh copies, as callers set content on them.
+ */
+public class CommitRangeDiffCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CommitRangeDiffCache.class);
+
+    private static final String RANGE_DIR_SUFFIX = ".diffcache";
+
+    private static final String PART_FILE_SUFFIX = ".part";
+
+    /**
+     * The most ranges kept in the persist dir - a pipeline reads one range per head, and a range
+     * is never read again once the head moves on.
+     */
+    static final int MAX_ENTRIES = 16;
+
+    private final Map<String, RangeEntry> rangeEntries = new HashMap<>();
+
+    private File persistDir;
+
+    /**
+     * @param persistDir the dir to persist the cached ranges under; {@code null} to cache in memory only
+     */
+    public void setPersistDir(final File persistDir) {
+        this.persistDir = persistDir;
+    }
+
+    /**
+     * Return the changed file paths for the range, reading them on a miss.
+     *
+     * @param from the oldest commit in the range
+     * @param to the head commit of the range
+     * @param reader reads the changed file paths on a miss
+     * @return the changed file paths
+     */
+    public Set<String> getChangedFilePaths(final String from, final String to, final Supplier<Set<String>> reader) {
+        RangeEntry entry = getEntry(from, to);
+        if (entry.changedFilePaths == null) {
+            entry.changedFilePaths = new HashSet<>(reader.get());
+            RangeEntry part = new RangeEntry(from, to);
+            part.changedFilePaths = entry.changedFilePaths;
+            persist(from, to, part);
+        } else {
+            log.debug("Changed file paths for {} to {} served from the diff cache", from, to);
+        }
+        return new HashSet<>(entry.changedFilePaths);
+    }
+
+    /**
+     * Return the diff contexts for the range and dirs, reading them on a miss. The contexts carry
+     * no content, as returned by {@link VCSReader#getDiffFiles}.
+     *
+     * @param from the oldest commit in the range
+     * @param to the head commit of the range
+     * @param sourceAndTestDirs the source and test dirs the diff is for
+     * @param reader reads the diff contexts on a miss
+     * @return new diff contexts for the changed files
+     */
+    public Set<SourceFileDiffContext> getDiffFiles(final String from, final String to,
+                                                   final List<String> sourceAndTestDirs,
+                                                   final Supplier<Set<SourceFileDiffContext>> reader) {
+        RangeEntry entry = getEntry(from, to);
+        String dirsKey = String.join(",", sourceAndTestDirs);
+        List<CachedDiff> cachedDiffs = entry.diffsByDirs.get(dirsKey);
+        if (cachedDiffs == null) {
+            Set<SourceFileDiffContext> diffs = reader.get();
+            cachedDiffs = new ArrayList<>(diffs.size());
+            for (SourceFileDiffContext diff : diffs) {
+                cachedDiffs.add(new CachedDiff(diff));
+            }
+            entry.diffsByDirs.put(dirsKey, cachedDiffs);
+            RangeEntry part = new RangeEntry(from, to);
+            part.diffsByDirs.put(dirsKey, cachedDiffs);
+            persist(from, to, part);
+            return diffs;
+        }
+
+        log.debug("Diff files for {} to {} served from the diff cache", from, to);
+        Set<SourceFileDiffContext> diffs = new HashSet<>();
+        for (CachedDiff cachedDiff : cachedDiffs) {
+            diffs.add(cachedDiff.toDiffContext());
+        }
+        return diffs;
+    }
+
+    /**
+     * Load the before/after content onto the diff contexts. Content already cached for a context's
+     * fetch key is set directly; the rest is read in one call and added to the cache.
+     *
+     * @param from the oldest commit in the range
+     * @param to the head commit of the range
+     * @param diffs the diff contexts to load content onto
+     * @param reader loads the content onto the diff contexts that missed the cache
+     */
+    public void loadContentForDiffs(final String from, final String to, final Collection<SourceFileDiffContext> diffs,
+                                    final Consumer<Collection<SourceFileDiffContext>> reader) {
+        RangeEntry entry = getEntry(from, to);
+        List<SourceFileDiffContext> misses = new ArrayList<>();
+        for (SourceFileDiffContext diff : diffs) {
+            CachedContent content = entry.contentByFetchKey.get(diff.getVcsFetchKey());
+            if (content == null) {
+                misses.add(diff);
+            } else {
+                diff.setSourceContentOriginal(content.original);
+                diff.setSourceContentNew(content.updated);
+            }
+        }
+        log.debug("Content for {} of {} diffs from {} to {} served from the diff cache",
+                diffs.size() - misses.size(), diffs.size(), from, to);
+
+        if (misses.isEmpty()) {
+            return;
+        }
+        reader.accept(misses);
+        RangeEntry part = new RangeEntry(from, to);
+        for (SourceFileDiffContext diff : misses) {
+            part.contentByFetchKey.put(diff.getVcsFetchKey(),
+                    new CachedContent(diff.getSourceContentOriginal(), diff.getSourceContentNew()));
+        }
+        entry.contentByFetchKey.putAll(part.contentByFetchKey);
+        persist(from, to, part);
+    }
+
+    private RangeEntry getEntry(final String from, final String to) {
+        String rangeKey = from + ".." + to;
+        RangeEntry entry = rangeEntries.get(rangeKey);
+        if (entry == null) {
+            entry = readPersisted(from, to);
+            rangeEntries.put(rangeKey, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Read the range back from the part files in its dir. An unreadable part is skipped, so only
+     * what it held is read from the VCS again.
+     */
+    private RangeEntry readPersisted(final String from, final String to) {
+        RangeEntry entry = new RangeEntry(from, to);
+        File rangeDir = getRangeDir(from, to);
+        File[] partFiles = rangeDir != null ? rangeDir.listFiles((dir, name) -> name.endsWith(PART_FILE_SUFFIX)) : null;
+        if (partFiles == null || partFiles.length == 0) {
+            return entry;
+        }
+
+        for (File partFile : partFiles) {
+            try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(partFile.toPath())))) {
+                RangeEntry part = (RangeEntry) in.readObject();
+                if (from.equals(part.from) && to.equals(part.to)) {
+                    entry.merge(part);
+                }
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                log.warn("Ignoring the unreadable diff cache file {}: {}", partFile, e.getMessage());
+            }
+        }
+        touch(rangeDir);
+        log.info("Read the diff cache for {} to {} from {}", from, to, rangeDir);
+        return entry;
+    }
+
+    /**
+     * Add a part file holding what the range gained to the range's dir. The file is written
+     * alongside and moved into place, so a concurrent reader never sees a partial one. A failed
+     * write only costs the next invocation a VCS read, so it's logged rather than thrown.
+     */
+    private void persist(final String from, final String to, final RangeEntry part) {
+        File rangeDir = getRangeDir(from, to);
+        if (rangeDir == null) {
+            return;
+        }
+
+        File tempFile = null;
+        try {
+            boolean newRange = !rangeDir.isDirectory();
+            if (rangeDir.isFile()) {
+                // the whole range was written to one file by an older version
+                Files.delete(rangeDir.toPath());
+            }
+            Files.createDirectories(rangeDir.toPath());
+            tempFile = File.createTempFile("part", ".tmp", rangeDir);
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                out.writeObject(part);
+            }
+            Files.move(tempFile.toPath(), new File(rangeDir, UUID.randomUUID() + PART_FILE_SUFFIX).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            touch(rangeDir);
+            if (newRange) {
+                evictOldRanges();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write the diff cache dir {}: {}", rangeDir, e.getMessage());
+            if (tempFile != null && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Delete all but the {@link #MAX_ENTRIES} most recently used range dirs. Recency is the dir's
+     * modified time, touched on every read and write, so it's shared by every invocation using the
+     * persist dir. Called only when a range is added, as it lists the persist dir.
+     */
+    private void evictOldRanges() {
+        File[] rangeDirs = persistDir.listFiles((dir, name) -> name.endsWith(RANGE_DIR_SUFFIX));
+        if (rangeDirs == null || rangeDirs.length <= MAX_ENTRIES) {
+            return;
+        }
+
+        Arrays.sort(rangeDirs, Comparator.comparingLong(File::lastModified).reversed());
+        for (int i = MAX_ENTRIES; i < rangeDirs.length; i++) {
+            File[] partFiles = rangeDirs[i].listFiles();
+            if (partFiles != null) {
+                for (File partFile : partFiles) {
+                    if (!partFile.delete()) {
+                        log.debug("Couldn't delete the old diff cache file {}", partFile);
+                    }
+                }
+            }
+            if (!rangeDirs[i].delete()) {
+                log.debug("Couldn't delete the old diff cache dir {}", rangeDirs[i]);
+            }
+        }
+    }
+
+    private static void touch(final File rangeDir) {
+        if (!rangeDir.setLastModified(System.currentTimeMillis())) {
+            log.debug("Couldn't update the last used time of {}", rangeDir);
+        }
+    }
+
+    /**
+     * The range's dir name is a hash of the range - a {@code from} value can be any revision the
+     * VCS accepts, which isn't always safe in a file name.
+     */
+    File getRangeDir(final String from, final String to) {
+        if (persistDir == null) {
+            return null;
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest((from + ".." + to).getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                name.append(String.format("%02x", hash[i]));
+            }
+            return new File(persistDir, name + RANGE_DIR_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new VCSAnalyzerException(e);
+        }
+    }
+
+    /**
+     * Everything cached for one commit range, or the part of it one read added.
+     */
+    private static class RangeEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String from;
+        private final String to;
+        private Set<String> changedFilePaths;
+        private final Map<String, List<CachedDiff>> diffsByDirs = new HashMap<>();
+        private final Map<String, CachedContent> contentByFetchKey = new HashMap<>();
+
+        RangeEntry(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        void merge(RangeEntry part) {
+            if (changedFilePaths == null) {
+                changedFilePaths = part.changedFilePaths;
+            }
+            part.diffsByDirs.forEach(diffsByDirs::putIfAbsent);
+            contentByFetchKey.putAll(part.contentByFetchKey);
+        }
+    }
+
+    /**
+     * The content-free part of a {@link SourceFileDiffContext}.
+     */
+    private static class CachedDiff implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String oldFilePath;
+        private final String newFilePath;
+        private final ChangeType changeType;
+        private final String vcsFetchKey;
+        private final String localContentPath;
+
+        CachedDiff(SourceFileDiffContext diff) {
+            this.oldFilePath = diff.getOldFilePath();
+            this.newFilePath = diff.getNewFilePath();
+            this.changeType = diff.getChangeType();
+            this.vcsFetchKey = diff.getVcsFetchKey();
+            this.localContentPath = diff.getLocalContentPath();
+        }
+
+        SourceFileDiffContext toDiffContext() {
+            SourceFileDiffContext diff = new SourceFileDiffContext(oldFilePath, newFilePath, changeType);
+            diff.setVcsFetchKey(vcsFetchKey);
+            diff.setLocalContentPath(localContentPath);
+            return diff;
+        }
+    }
+
+    /**
+     * A file's content at the two ends of the range; {@code null} for a side the file doesn't exist on.
+     */
+    private static class CachedContent implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String original;
+        private final String updated;
+
+        CachedContent(String original, String updated) {
+            this.original = original;
+            this.updated = updated;
+        }
+    }
+}
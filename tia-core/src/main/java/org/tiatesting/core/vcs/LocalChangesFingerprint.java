@@ -0,0 +1,69 @@
+package org.tiatesting.core.vcs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Fingerprints the local workspace changes for {@link VCSReader#getLocalChangesFingerprint}: a
+ * hash of every locally changed path and its current content in the work tree. Two selections
+ * made for the same fingerprint saw the same local changes. See the "Selection result cache"
+ * chapter in WIKI.md.
+ */
+public final class LocalChangesFingerprint {
+
+    private static final String DELETED = "<deleted>";
+
+    private LocalChangesFingerprint() {
+    }
+
+    /**
+     * @param workTree the work tree the paths are relative to
+     * @param changedPaths the work-tree-relative paths of the locally changed files, as returned by
+     *                     {@link VCSReader#getChangedFilePaths} for the local workspace
+     * @return the hex SHA-256 fingerprint of the paths and their content
+     */
+    public static String compute(final File workTree, final Collection<String> changedPaths) {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        // sorted, so the fingerprint doesn't depend on the order the VCS listed the changes in
+        for (String path : new TreeSet<>(changedPaths)) {
+            digest.update(path.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            File file = new File(workTree, path);
+            if (!file.isFile()) {
+                digest.update(DELETED.getBytes(StandardCharsets.UTF_8));
+            } else {
+                try (InputStream in = Files.newInputStream(file.toPath())) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, read);
+                    }
+                } catch (IOException e) {
+                    throw new VCSAnalyzerException("Failed to read the locally changed file " + file, e);
+                }
+            }
+            digest.update((byte) 0);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new VCSAnalyzerException(e);
+        }
+    }
+}
@@ -2,14 +2,18 @@ package org.tiatesting.core.vcs;
 
 import org.tiatesting.core.diff.SourceFileDiffContext;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
 /**
  * Interface used to define the common version control system read operations used by Tia.
+ *
+ * <p>A reader may hold connections or child processes open, so it's closed once the VCS has been
+ * read - with try-with-resources where it's used within one method.
  */
-public interface VCSReader {
+public interface VCSReader extends AutoCloseable {
 
     /**
      * Find the name of the current branch used by local version control system.
@@ -76,8 +80,40 @@ public interface VCSReader {
      */
     Set<String> getChangedFilePaths(final String baseChangeNum, final boolean checkLocalChanges);
 
+    /**
+     * Persist the reader's {@link CommitRangeDiffCache commit-range diff cache} under the given
+     * dir, so a later invocation reading the same commit range is served from disk rather than
+     * the VCS. Readers without a diff cache ignore it.
+     *
+     * @param diffCacheDir the dir to persist the cache under; {@code null} to cache in memory only
+     */
+    default void setDiffCacheDir(final File diffCacheDir) {
+    }
+
+    /**
+     * Fingerprint the local workspace changes since the given commit: the changed paths and their
+     * current content. A persisted test selection made for local changes is only reused when the
+     * fingerprint is unchanged (see the "Selection result cache" chapter in WIKI.md).
+     *
+     * @param baseChangeNum the current commit number stored in the mapping
+     * @return the fingerprint, or {@code null} when the reader can't fingerprint its local changes,
+     *         in which case selections for local changes aren't reused
+     */
+    default String getLocalChangesFingerprint(final String baseChangeNum) {
+        return null;
+    }
+
+    /**
+     * Read the branch name and head commit again. A reader reads them once, when it's opened; a
+     * reader held open while the repository's HEAD moves - a commit, checkout or pull - calls this
+     * before each use to see the move. Readers that don't hold them ignore it.
+     */
+    default void refreshHead() {
+    }
+
     /**
      * Do any clean up action when no further interactions with the VCS are needed.
      */
+    @Override
     void close();
 }
@@ -3,6 +3,8 @@ package org.tiatesting.core.agent;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests that {@link AgentOptions} carries the {@code forkPropertiesFile} option through the
@@ -33,4 +35,36 @@ class AgentOptionsTest {
         // when / then
         assertEquals("", options.getForkPropertiesFile());
     }
+
+    @Test
+    void ignoreTestsDiscoveryFilterSurvivesCommandLineRoundTrip() {
+        // given
+        AgentOptions options = new AgentOptions();
+        options.setIgnoreTestsFile("/build/tia/ignore-tests.txt");
+        options.setIgnoreTestsDiscoveryFilter(true);
+
+        // when
+        AgentOptions parsed = new AgentOptions(options.toCommandLineOptionsString());
+
+        // then
+        assertEquals("/build/tia/ignore-tests.txt", parsed.getIgnoreTestsFile());
+        assertTrue(parsed.isIgnoreTestsDiscoveryFilter());
+        assertFalse(new AgentOptions().isIgnoreTestsDiscoveryFilter());
+    }
+
+    @Test
+    void handoffFileSurvivesCommandLineRoundTrip() {
+        // given
+        AgentOptions options = new AgentOptions();
+        options.setHandoffFile("/build/tia/selection.tiah");
+        options.setIgnoreTestsDiscoveryFilter(true);
+
+        // when
+        AgentOptions parsed = new AgentOptions(options.toCommandLineOptionsString());
+
+        // then
+        assertEquals("/build/tia/selection.tiah", parsed.getHandoffFile());
+        assertTrue(parsed.isIgnoreTestsDiscoveryFilter());
+        assertEquals("", new AgentOptions().getHandoffFile());
+    }
 }
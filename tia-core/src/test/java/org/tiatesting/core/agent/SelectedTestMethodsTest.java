@@ -0,0 +1,91 @@
+package org.tiatesting.core.agent;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round-trip tests for {@link SelectedTestMethods} - the per-test-method filter file the build
+ * plugin writes and the agent reads in the forked JVM.
+ */
+class SelectedTestMethodsTest {
+
+    @Test
+    void linesRoundTripToTheSameFilter() {
+        // given
+        Map<String, Set<String>> testCasesToRun = new HashMap<>();
+        testCasesToRun.put("com.example.FooTest", new HashSet<>(Arrays.asList("first", "second")));
+        testCasesToRun.put("com.example.BarTest", new HashSet<>(Arrays.asList("only")));
+
+        // when
+        Map<String, Set<String>> decoded = SelectedTestMethods.fromLines(SelectedTestMethods.toLines(testCasesToRun));
+
+        // then
+        assertEquals(testCasesToRun, decoded);
+    }
+
+    @Test
+    void malformedLinesAreIgnored() {
+        // when
+        Map<String, Set<String>> decoded = SelectedTestMethods.fromLines(
+                Arrays.asList("", "com.example.FooTest", "#first", "com.example.FooTest#", "com.example.FooTest#ok"));
+
+        // then
+        assertEquals(1, decoded.size());
+        assertEquals(new HashSet<>(Arrays.asList("ok")), decoded.get("com.example.FooTest"));
+    }
+
+    @Test
+    void readsTheFilterFileWrittenByThePlugin() throws Exception {
+        // given
+        File file = Files.createTempFile("tia-selected-methods-", ".txt").toFile();
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList("com.example.FooTest#first"), StandardCharsets.UTF_8);
+
+        // when
+        Map<String, Set<String>> decoded = SelectedTestMethods.read(file.getAbsolutePath());
+
+        // then
+        assertEquals(new HashSet<>(Arrays.asList("first")), decoded.get("com.example.FooTest"));
+    }
+
+    @Test
+    void aBlankPathMeansNoFilter() throws Exception {
+        assertTrue(SelectedTestMethods.read(null).isEmpty());
+        assertTrue(SelectedTestMethods.read("").isEmpty());
+    }
+
+    @Test
+    void testMethodsWithParametersAreKeyedByTheirParameterTypes() {
+        // when
+        String noArgs = SelectedTestMethods.testMethodKey("total", "");
+        String overload = SelectedTestMethods.testMethodKey("total", "int, java.lang.String");
+
+        // then
+        assertEquals("total", noArgs);
+        assertEquals("total(int, java.lang.String)", overload);
+    }
+
+    @Test
+    void parameterizedKeysRoundTripThroughTheFilterLines() {
+        // given
+        Map<String, Set<String>> testCasesToRun = new HashMap<>();
+        testCasesToRun.put("com.example.FooTest", new HashSet<>(Arrays.asList("total", "total(int, [I)")));
+
+        // when
+        Map<String, Set<String>> decoded = SelectedTestMethods.fromLines(SelectedTestMethods.toLines(testCasesToRun));
+
+        // then
+        assertEquals(testCasesToRun, decoded);
+    }
+}
@@ -0,0 +1,160 @@
+package org.tiatesting.core.agent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+import org.tiatesting.core.library.LibraryImpactDrainResult;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round-trip tests for {@link SelectionHandoff} - the file the Maven plugin hands the test
+ * selection to the forked test JVM in. See the "Selection handoff file" chapter in
+ * {@code WIKI.md}.
+ */
+class SelectionHandoffTest {
+
+    @TempDir
+    File tempDir;
+
+    /**
+     * Every part of the selection is read back as written, the run order and library JARs in order.
+     */
+    @Test
+    void selectionIsReadBackAsWritten() throws Exception {
+        // given
+        Map<String, String> forkProperties = new LinkedHashMap<>();
+        forkProperties.put("tiaProjectDir", "/work/acme");
+        forkProperties.put("tiaClassFilesDirs", "target/classes,target/generated=classes");
+        forkProperties.put("tiaDBUrl", null);
+        Map<String, Set<String>> testCasesToRun = new HashMap<>();
+        testCasesToRun.put("com.acme.OrderServiceTest", new HashSet<>(Arrays.asList("placesOrder", "cancelsOrder")));
+        TestSelectorResult result = new TestSelectorResult(
+                new HashSet<>(Arrays.asList("com.acme.OrderServiceTest", "com.acme.PaymentServiceTest")),
+                new HashSet<>(Collections.singletonList("com.acme.ShippingServiceTest")), null,
+                0L, Collections.emptySet(), 0L, Collections.emptyMap(), 0L, 0L, testCasesToRun,
+                Collections.emptySet(), null, Arrays.asList("com.acme.PaymentServiceTest", "com.acme.OrderServiceTest"));
+        File file = new File(tempDir, "selection.tiah");
+
+        // when
+        SelectionHandoff.write(file, forkProperties, result, Arrays.asList("/repo/b.jar", "/repo/a.jar"));
+        SelectionHandoff handoff = SelectionHandoff.open(file.getAbsolutePath());
+
+        // then
+        Map<String, String> expectedProperties = new LinkedHashMap<>();
+        expectedProperties.put("tiaProjectDir", "/work/acme");
+        expectedProperties.put("tiaClassFilesDirs", "target/classes,target/generated=classes");
+        assertEquals(expectedProperties, handoff.getForkProperties());
+        assertEquals(result.getTestsToRun(), handoff.getTestsToRun());
+        assertEquals(result.getTestsToIgnore(), handoff.getTestsToIgnore());
+        assertEquals(testCasesToRun, handoff.getTestCasesToRun());
+        assertEquals(Arrays.asList("com.acme.PaymentServiceTest", "com.acme.OrderServiceTest"), handoff.getTestRunOrder());
+        assertEquals(Arrays.asList("/repo/b.jar", "/repo/a.jar"), handoff.getLibraryJars());
+        assertNull(handoff.getLibraryImpactDrainResult());
+    }
+
+    /**
+     * A large set is looked up in place: every name written is found, and no other name is.
+     */
+    @Test
+    void testSuitesAreLookedUpInPlace() throws Exception {
+        // given
+        Set<String> testsToIgnore = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            testsToIgnore.add("com.acme.module" + (i % 50) + ".Generated" + i + "Test");
+        }
+        File file = new File(tempDir, "selection.tiah");
+        SelectionHandoff.write(file, Collections.emptyMap(), result(Collections.emptySet(), testsToIgnore),
+                Collections.emptyList());
+
+        // when
+        Set<String> mapped = SelectionHandoff.open(file.getAbsolutePath()).getTestsToIgnore();
+
+        // then
+        assertEquals(testsToIgnore.size(), mapped.size());
+        for (String testSuite : testsToIgnore) {
+            assertTrue(mapped.contains(testSuite), testSuite);
+        }
+        assertFalse(mapped.contains("com.acme.module1.Generated2Test"));
+        assertFalse(mapped.contains("com.acme.OrderServiceTest"));
+    }
+
+    /**
+     * An empty selection reads back as empty sets.
+     */
+    @Test
+    void emptySelectionIsReadBackEmpty() throws Exception {
+        // given
+        File file = new File(tempDir, "selection.tiah");
+        SelectionHandoff.write(file, Collections.emptyMap(), result(Collections.emptySet(), Collections.emptySet()),
+                Collections.emptyList());
+
+        // when
+        SelectionHandoff handoff = SelectionHandoff.open(file.getAbsolutePath());
+
+        // then
+        assertTrue(handoff.getTestsToRun().isEmpty());
+        assertFalse(handoff.getTestsToIgnore().contains("com.acme.OrderServiceTest"));
+        assertTrue(handoff.getTestCasesToRun().isEmpty());
+        assertTrue(handoff.getTestRunOrder().isEmpty());
+    }
+
+    /**
+     * The library drain result survives the round trip.
+     */
+    @Test
+    void drainResultIsReadBack() throws Exception {
+        // given
+        LibraryImpactDrainResult drainResult = new LibraryImpactDrainResult();
+        drainResult.addDrainedBatch("com.example:lib", 1L);
+        drainResult.setAppliedSeq("com.example:lib", 1L);
+        TestSelectorResult result = new TestSelectorResult(Collections.emptySet(), Collections.emptySet(), drainResult,
+                0L, Collections.emptySet(), 0L, Collections.emptyMap(), 0L, 0L);
+        File file = new File(tempDir, "selection.tiah");
+
+        // when
+        SelectionHandoff.write(file, Collections.emptyMap(), result, Collections.emptyList());
+        LibraryImpactDrainResult readBack = SelectionHandoff.open(file.getAbsolutePath()).getLibraryImpactDrainResult();
+
+        // then
+        assertEquals(1, readBack.getDrainedBatchKeys().size());
+        assertEquals(Long.valueOf(1L), readBack.getAppliedSeqByLibrary().get("com.example:lib"));
+    }
+
+    /**
+     * A file of another version fails to open rather than being misread.
+     */
+    @Test
+    void otherVersionFailsToOpen() throws Exception {
+        // given
+        File file = new File(tempDir, "selection.tiah");
+        SelectionHandoff.write(file, Collections.emptyMap(), result(Collections.emptySet(), Collections.emptySet()),
+                Collections.emptyList());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.writeInt(SelectionHandoff.VERSION + 1);
+        }
+
+        // when / then
+        assertThrows(IllegalStateException.class, () -> SelectionHandoff.open(file.getAbsolutePath()));
+    }
+
+    private static TestSelectorResult result(Set<String> testsToRun, Set<String> testsToIgnore) {
+        return new TestSelectorResult(testsToRun, testsToIgnore, null, 0L, Collections.emptySet(), 0L,
+                Collections.emptyMap(), 0L, 0L);
+    }
+}
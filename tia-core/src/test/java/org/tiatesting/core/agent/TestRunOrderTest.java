@@ -0,0 +1,54 @@
+package org.tiatesting.core.agent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies the decoding of the {@code tiaTestRunOrder} system property shared by the runner
+ * orderers: suites sort by their position in the order, and suites outside it sort last.
+ */
+class TestRunOrderTest {
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(TestRunOrder.SYSTEM_PROPERTY);
+    }
+
+    @Test
+    void positionsFollowTheEncodedOrder() {
+        // when
+        Map<String, Integer> positions = TestRunOrder.positions("com.b.Test,com.a.Test");
+
+        // then
+        assertEquals(Integer.valueOf(0), positions.get("com.b.Test"));
+        assertEquals(Integer.valueOf(1), positions.get("com.a.Test"));
+    }
+
+    @Test
+    void noOrderGivesNoPositions() {
+        // expect
+        assertTrue(TestRunOrder.positions(null).isEmpty());
+        assertTrue(TestRunOrder.positions("").isEmpty());
+    }
+
+    @Test
+    void comparatorSortsUnorderedSuitesLastInTheirOriginalOrder() {
+        // given
+        System.setProperty(TestRunOrder.SYSTEM_PROPERTY, "com.c.Test,com.a.Test");
+        List<String> suites = new ArrayList<>(Arrays.asList("com.z.Ignored", "com.a.Test", "com.y.Ignored", "com.c.Test"));
+
+        // when
+        suites.sort(TestRunOrder.comparator());
+
+        // then
+        assertEquals(Arrays.asList("com.c.Test", "com.a.Test", "com.z.Ignored", "com.y.Ignored"), suites);
+    }
+}
@@ -0,0 +1,161 @@
+package org.tiatesting.core.daemon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+import org.tiatesting.core.staticselection.StaticTestSelectionConfig;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link SelectionDaemonClient} verifying it returns the daemon's selection, and falls
+ * back (returns {@code null}) when no daemon is running, the daemon refuses the request or it
+ * doesn't answer in time.
+ */
+class SelectionDaemonClientTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void endpointSurvivesTheFileRoundTrip() throws IOException {
+        // given
+        File endpointFile = new File(tempDir, "tia/tia-daemon.endpoint");
+        SelectionDaemonEndpoint endpoint = SelectionDaemonEndpoint.newEndpoint(6301);
+
+        // when
+        endpoint.write(endpointFile);
+        SelectionDaemonEndpoint read = SelectionDaemonEndpoint.read(endpointFile);
+
+        // then
+        assertEquals(6301, read.getPort());
+        assertEquals(endpoint.getToken(), read.getToken());
+    }
+
+    @Test
+    void fallsBackWhenNoDaemonIsRunning() {
+        // given
+        File endpointFile = new File(tempDir, "tia-daemon.endpoint");
+
+        // when
+        TestSelectorResult testSelectorResult = SelectionDaemonClient.select(endpointFile, newRequest());
+
+        // then
+        assertNull(testSelectorResult);
+    }
+
+    /**
+     * The client presents the token, sends the request and reads back the daemon's selection.
+     */
+    @Test
+    void returnsTheDaemonsSelection() throws Exception {
+        // given
+        File endpointFile = new File(tempDir, "tia-daemon.endpoint");
+        TestSelectorResult daemonSelection = new TestSelectorResult(Collections.singleton("com.acme.OrderServiceTest"),
+                Collections.singleton("com.acme.PaymentServiceTest"), null, 0, Collections.emptySet(), 0,
+                Collections.emptyMap(), 0, 0);
+
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            SelectionDaemonEndpoint endpoint = SelectionDaemonEndpoint.newEndpoint(serverSocket.getLocalPort());
+            endpoint.write(endpointFile);
+            CompletableFuture<String> tokenReceived = CompletableFuture.supplyAsync(() -> serveOnce(serverSocket, daemonSelection));
+
+            // when
+            TestSelectorResult testSelectorResult = SelectionDaemonClient.select(endpointFile, newRequest());
+
+            // then
+            assertEquals(endpoint.getToken(), tokenReceived.get());
+            assertEquals(daemonSelection.getTestsToRun(), testSelectorResult.getTestsToRun());
+            assertEquals(daemonSelection.getTestsToIgnore(), testSelectorResult.getTestsToIgnore());
+        }
+    }
+
+    @Test
+    void fallsBackWhenTheDaemonRefusesTheRequest() throws Exception {
+        // given
+        File endpointFile = new File(tempDir, "tia-daemon.endpoint");
+
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            SelectionDaemonEndpoint.newEndpoint(serverSocket.getLocalPort()).write(endpointFile);
+            CompletableFuture.supplyAsync(() -> serveOnce(serverSocket, null));
+
+            // when
+            TestSelectorResult testSelectorResult = SelectionDaemonClient.select(endpointFile, newRequest());
+
+            // then
+            assertNull(testSelectorResult);
+        }
+    }
+
+    /**
+     * A daemon that accepts the connection but never answers doesn't hold up the build.
+     */
+    @Test
+    void fallsBackWhenTheDaemonDoesNotAnswer() throws Exception {
+        // given
+        File endpointFile = new File(tempDir, "tia-daemon.endpoint");
+        CountDownLatch clientDone = new CountDownLatch(1);
+
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            SelectionDaemonEndpoint.newEndpoint(serverSocket.getLocalPort()).write(endpointFile);
+            CompletableFuture.runAsync(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    clientDone.await();
+                } catch (IOException | InterruptedException e) {
+                    // the test is over
+                }
+            });
+
+            // when
+            TestSelectorResult testSelectorResult = SelectionDaemonClient.select(endpointFile, newRequest(), 200);
+            clientDone.countDown();
+
+            // then
+            assertNull(testSelectorResult);
+        }
+    }
+
+    private static SelectionDaemonRequest newRequest() {
+        return new SelectionDaemonRequest("/work/acme", "/work/acme/tiadb", null,
+                Collections.singletonList("src/main/java"), Collections.singletonList("src/test/java"), true,
+                StaticTestSelectionConfig.EMPTY);
+    }
+
+    /**
+     * Serve one request the way the daemon does, answering with the given selection or refusing
+     * the request when it's {@code null}.
+     */
+    private static String serveOnce(ServerSocket serverSocket, TestSelectorResult selection) {
+        try (Socket socket = serverSocket.accept()) {
+            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+            String token = in.readUTF();
+            byte[] requestBytes = new byte[in.readInt()];
+            new DataInputStream(in).readFully(requestBytes);
+
+            ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+            out.writeBoolean(selection != null);
+            if (selection != null) {
+                out.writeObject(selection);
+            } else {
+                out.writeUTF("The daemon serves another project");
+            }
+            out.flush();
+            return token;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies the run order of {@link FailFastRunOrder}: previously failed suites first, then the
+ * suites selected directly by the changes, then the rest, each group in ascending run time. See
+ * the "Fail-fast test ordering" chapter in {@code WIKI.md}.
+ */
+class FailFastRunOrderTest {
+
+    /**
+     * The groups come in order whatever the run times, so a slow failed suite still runs before a
+     * fast suite that was only forced in.
+     */
+    @Test
+    void failedThenDirectlyImpactedThenTheRest(){
+        // given
+        Map<String, Long> runTimes = runTimes("forced", 10L, "impacted", 500L, "failed", 1000L);
+        Set<String> testsToRun = runTimes.keySet();
+
+        // when
+        List<String> order = FailFastRunOrder.order(testsToRun, runTimes, Collections.singleton("failed"),
+                Collections.singleton("impacted"));
+
+        // then
+        assertEquals(Arrays.asList("failed", "impacted", "forced"), order);
+    }
+
+    /**
+     * Within a group the fastest suites run first, with the name breaking ties.
+     */
+    @Test
+    void ascendingRunTimeWithinAGroup(){
+        // given
+        Map<String, Long> runTimes = runTimes("slow", 900L, "fast", 100L, "b", 300L, "a", 300L);
+        Set<String> directlyImpacted = new HashSet<>(runTimes.keySet());
+
+        // when
+        List<String> order = FailFastRunOrder.order(runTimes.keySet(), runTimes, Collections.emptySet(),
+                directlyImpacted);
+
+        // then
+        assertEquals(Arrays.asList("fast", "a", "b", "slow"), order);
+    }
+
+    private static Map<String, Long> runTimes(Object... nameAndTimes){
+        Map<String, Long> runTimes = new HashMap<>();
+        for (int i = 0; i < nameAndTimes.length; i += 2){
+            runTimes.put((String) nameAndTimes[i], (Long) nameAndTimes[i + 1]);
+        }
+        return runTimes;
+    }
+}
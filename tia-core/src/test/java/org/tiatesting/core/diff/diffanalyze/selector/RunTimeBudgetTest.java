@@ -0,0 +1,184 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import org.junit.jupiter.api.Test;
+import org.tiatesting.core.model.TestSuiteTracker;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies the ranking and packing rules of {@link RunTimeBudget}: suites are kept in order of
+ * impact per millisecond while they fit, previously deferred and untracked suites come first, and
+ * the top-ranked suite always runs. See the "Run-time budgeted selection" chapter in
+ * {@code WIKI.md}.
+ */
+class RunTimeBudgetTest {
+
+    /**
+     * A selection that fits the budget defers nothing.
+     */
+    @Test
+    void nothingIsDeferredWhenTheSelectionFits(){
+        // given
+        Map<String, TestSuiteTracker> tracked = trackedSuites("a", "b");
+        Map<String, Long> runTimes = runTimes("a", 100L, "b", 200L);
+
+        // when
+        Set<String> deferred = new RunTimeBudget(300L).findTestsToDefer(runTimes.keySet(), runTimes, 0L,
+                Collections.emptyMap(), tracked, Collections.emptySet(), Collections.emptySet());
+
+        // then
+        assertTrue(deferred.isEmpty());
+    }
+
+    /**
+     * Suites with more impacted methods per millisecond are kept first; the suite that no longer
+     * fits is deferred.
+     */
+    @Test
+    void keepsTheSuitesWithTheHighestImpactDensity(){
+        // given - dense covers 4 methods in 100ms, sparse 1 method in 100ms
+        Map<String, TestSuiteTracker> tracked = trackedSuites("dense", "sparse");
+        Map<String, Long> runTimes = runTimes("dense", 100L, "sparse", 100L);
+        Map<String, Integer> impactedMethodCounts = new HashMap<>();
+        impactedMethodCounts.put("dense", 4);
+        impactedMethodCounts.put("sparse", 1);
+
+        // when
+        Set<String> deferred = new RunTimeBudget(150L).findTestsToDefer(runTimes.keySet(), runTimes, 0L,
+                impactedMethodCounts, tracked, Collections.emptySet(), Collections.emptySet());
+
+        // then
+        assertEquals(Collections.singleton("sparse"), deferred);
+    }
+
+    /**
+     * A cheaper suite further down the ranking still uses the time a costlier one couldn't.
+     */
+    @Test
+    void aCheaperSuiteFillsTheRemainingBudget(){
+        // given - ranked: first (100ms), costly (500ms), cheap (50ms)
+        Map<String, TestSuiteTracker> tracked = trackedSuites("first", "costly", "cheap");
+        Map<String, Long> runTimes = runTimes("first", 100L, "costly", 500L, "cheap", 50L);
+        Map<String, Integer> impactedMethodCounts = new HashMap<>();
+        impactedMethodCounts.put("first", 10);
+        impactedMethodCounts.put("costly", 40);
+        impactedMethodCounts.put("cheap", 1);
+
+        // when
+        Set<String> deferred = new RunTimeBudget(200L).findTestsToDefer(runTimes.keySet(), runTimes, 0L,
+                impactedMethodCounts, tracked, Collections.emptySet(), Collections.emptySet());
+
+        // then
+        assertEquals(Collections.singleton("costly"), deferred);
+    }
+
+    /**
+     * A previously deferred suite outranks a denser one, so deferred work drains.
+     */
+    @Test
+    void previouslyDeferredSuitesRunFirst(){
+        // given
+        Map<String, TestSuiteTracker> tracked = trackedSuites("owed", "dense");
+        Map<String, Long> runTimes = runTimes("owed", 100L, "dense", 100L);
+        Map<String, Integer> impactedMethodCounts = Collections.singletonMap("dense", 10);
+
+        // when
+        Set<String> deferred = new RunTimeBudget(100L).findTestsToDefer(runTimes.keySet(), runTimes, 0L,
+                impactedMethodCounts, tracked, Collections.emptySet(), Collections.singleton("owed"));
+
+        // then
+        assertEquals(Collections.singleton("dense"), deferred);
+    }
+
+    /**
+     * A previously failed suite outranks a denser one that hasn't failed.
+     */
+    @Test
+    void previouslyFailedSuitesRunBeforeOthers(){
+        // given
+        Map<String, TestSuiteTracker> tracked = trackedSuites("failed", "dense");
+        Map<String, Long> runTimes = runTimes("failed", 100L, "dense", 100L);
+        Map<String, Integer> impactedMethodCounts = Collections.singletonMap("dense", 10);
+
+        // when
+        Set<String> deferred = new RunTimeBudget(100L).findTestsToDefer(runTimes.keySet(), runTimes, 0L,
+                impactedMethodCounts, tracked, Collections.singleton("failed"), Collections.emptySet());
+
+        // then
+        assertEquals(Collections.singleton("dense"), deferred);
+    }
+
+    /**
+     * The top-ranked suite runs even when it alone is over budget.
+     */
+    @Test
+    void theTopRankedSuiteAlwaysRuns(){
+        // given
+        Map<String, TestSuiteTracker> tracked = trackedSuites("big", "bigger");
+        Map<String, Long> runTimes = runTimes("big", 1000L, "bigger", 2000L);
+
+        // when
+        Set<String> deferred = new RunTimeBudget(10L).findTestsToDefer(runTimes.keySet(), runTimes, 0L,
+                Collections.emptyMap(), tracked, Collections.emptySet(), Collections.emptySet());
+
+        // then
+        assertEquals(Collections.singleton("bigger"), deferred);
+    }
+
+    /**
+     * An untracked suite can't be ignored, so it's never deferred and its time comes off the
+     * budget first.
+     */
+    @Test
+    void untrackedSuitesAreNeverDeferred(){
+        // given - only "tracked" has a stored mapping
+        Map<String, TestSuiteTracker> tracked = trackedSuites("tracked");
+        Map<String, Long> runTimes = runTimes("tracked", 100L, "newTest", 100L);
+
+        // when
+        Set<String> deferred = new RunTimeBudget(150L).findTestsToDefer(runTimes.keySet(), runTimes, 0L,
+                Collections.emptyMap(), tracked, Collections.emptySet(), Collections.emptySet());
+
+        // then - the tracked suite still runs as the top-ranked tracked suite
+        assertTrue(deferred.isEmpty());
+    }
+
+    /**
+     * The per-suite overhead of a mapping-update run counts against the budget.
+     */
+    @Test
+    void theMappingOverheadCountsAgainstTheBudget(){
+        // given
+        Map<String, TestSuiteTracker> tracked = trackedSuites("a", "b");
+        Map<String, Long> runTimes = runTimes("a", 100L, "b", 100L);
+
+        // when
+        Set<String> deferred = new RunTimeBudget(250L).findTestsToDefer(runTimes.keySet(), runTimes, 50L,
+                Collections.emptyMap(), tracked, Collections.emptySet(), Collections.emptySet());
+
+        // then
+        assertEquals(1, deferred.size());
+    }
+
+    private static Map<String, TestSuiteTracker> trackedSuites(String... names){
+        Map<String, TestSuiteTracker> tracked = new HashMap<>();
+        for (String name : names){
+            tracked.put(name, new TestSuiteTracker(name));
+        }
+        return tracked;
+    }
+
+    private static Map<String, Long> runTimes(Object... nameAndTimes){
+        Map<String, Long> runTimes = new HashMap<>();
+        for (int i = 0; i < nameAndTimes.length; i += 2){
+            runTimes.put((String) nameAndTimes[i], (Long) nameAndTimes[i + 1]);
+        }
+        return runTimes;
+    }
+}
@@ -325,6 +325,28 @@ class SelectTestsOutputFormatterTest {
         assertEquals("\tnewTest (no run data)", output);
     }
 
+    /**
+     * On a sharded run the total is this shard's, followed by the estimate of every shard so the
+     * balance across agents is visible.
+     */
+    @Test
+    void formatEstimateBlock_shardedRun_addsPerShardEstimates(){
+        // given - shard 1 of 2 runs test2 (1s); shard 0 runs test1 (2s)
+        Map<String, Long> allRunTimes = perTestMap("test1", 2000L, "test2", 1000L);
+        TestShards testShards = TestShards.partition(setOf("test1", "test2"), allRunTimes, 1, 2);
+        TestSelectorResult result = new TestSelectorResult(setOf("test2"), Collections.emptySet(), null,
+                1000L, setOf(), 0L, perTestMap("test2", 1000L), 0L, 0L, Collections.emptyMap(),
+                Collections.emptySet(), testShards);
+
+        // when
+        String output = SelectTestsOutputFormatter.formatEstimateBlock(result, LINE_SEP, false);
+
+        // then
+        String expected = LINE_SEP + "Estimated total run time: 1s"
+                + LINE_SEP + "Shard 1 of shards 0-1. Estimated run time per shard: 0: 2s, 1: 1s";
+        assertEquals(expected, output);
+    }
+
     /**
      * Build a {@link TestSelectorResult} with the given selection state. {@code testsToIgnore}
      * is fixed to an empty set since the formatter doesn't consult it.
@@ -0,0 +1,111 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Verifies that {@link SelectionResultCache} reads back the selection persisted for a key, misses
+ * on any other key or an unreadable file, and keeps only the newest selections. See the "Selection
+ * result cache" chapter in {@code WIKI.md}.
+ */
+class SelectionResultCacheTest {
+
+    @TempDir
+    File tempDir;
+
+    /**
+     * A selection persisted for a key is read back by a new cache over the same dir.
+     */
+    @Test
+    void selectionIsReadBackForTheSameKey(){
+        // given
+        new SelectionResultCache(tempDir).put("head=b", result("com.acme.OrderServiceIT"));
+
+        // when
+        TestSelectorResult cached = new SelectionResultCache(tempDir).get("head=b");
+
+        // then
+        assertEquals(new HashSet<>(Collections.singletonList("com.acme.OrderServiceIT")), cached.getTestsToRun());
+        assertEquals(new HashSet<>(Collections.singletonList("com.acme.PaymentServiceIT")), cached.getTestsToIgnore());
+    }
+
+    /**
+     * A key the cache has no selection for is a miss.
+     */
+    @Test
+    void differentKeyIsAMiss(){
+        // given
+        SelectionResultCache cache = new SelectionResultCache(tempDir);
+        cache.put("head=b", result("com.acme.OrderServiceIT"));
+
+        // when
+        TestSelectorResult cached = cache.get("head=c");
+
+        // then
+        assertNull(cached);
+    }
+
+    /**
+     * A cache file that can't be read is ignored rather than failing the selection.
+     */
+    @Test
+    void unreadableCacheFileIsAMiss() throws Exception {
+        // given
+        SelectionResultCache cache = new SelectionResultCache(tempDir);
+        cache.put("head=b", result("com.acme.OrderServiceIT"));
+        File[] cacheFiles = tempDir.listFiles();
+        Files.write(cacheFiles[0].toPath(), "not a selection".getBytes(StandardCharsets.UTF_8));
+
+        // when
+        TestSelectorResult cached = cache.get("head=b");
+
+        // then
+        assertNull(cached);
+    }
+
+    /**
+     * Only the newest selections are kept.
+     */
+    @Test
+    void oldestSelectionsArePruned(){
+        // given
+        SelectionResultCache cache = new SelectionResultCache(tempDir);
+        for (int i = 0; i < SelectionResultCache.MAX_ENTRIES; i++){
+            cache.put("head=" + i, result("com.acme.OrderServiceIT"));
+            backdate(cache, "head=" + i, SelectionResultCache.MAX_ENTRIES - i);
+        }
+
+        // when
+        cache.put("head=new", result("com.acme.OrderServiceIT"));
+
+        // then
+        assertEquals(SelectionResultCache.MAX_ENTRIES, tempDir.listFiles().length);
+        assertNull(cache.get("head=0"));
+        assertEquals(result("com.acme.OrderServiceIT"), cache.get("head=1"));
+        assertEquals(result("com.acme.OrderServiceIT"), cache.get("head=new"));
+    }
+
+    /**
+     * Move the key's cache file the given number of minutes into the past - the files written in
+     * one test are too close together to order them by their file times.
+     */
+    private static void backdate(SelectionResultCache cache, String key, int minutes){
+        cache.getCacheFile(key).setLastModified(System.currentTimeMillis() - minutes * 60_000L);
+    }
+
+    private static TestSelectorResult result(String testToRun){
+        return new TestSelectorResult(new HashSet<>(Collections.singletonList(testToRun)),
+                new HashSet<>(Arrays.asList("com.acme.PaymentServiceIT")), null,
+                0L, Collections.emptySet(), 0L, Collections.emptyMap(), 0L, 0L);
+    }
+}
@@ -0,0 +1,257 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tiatesting.core.diff.ChangeType;
+import org.tiatesting.core.diff.SourceFileDiffContext;
+import org.tiatesting.core.model.ClassImpactTracker;
+import org.tiatesting.core.model.MethodImpactTracker;
+import org.tiatesting.core.model.MethodLineCoverage;
+import org.tiatesting.core.model.TestSuiteTracker;
+import org.tiatesting.core.model.TiaData;
+import org.tiatesting.core.persistence.h2.H2ConnectionSettings;
+import org.tiatesting.core.persistence.BranchSchema;
+import org.tiatesting.core.persistence.JdbcDataStore;
+import org.tiatesting.core.persistence.connection.H2ConnectionProvider;
+import org.tiatesting.core.persistence.dialect.H2Dialect;
+import org.tiatesting.core.vcs.VCSReader;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies line-level selection in {@link TestSelector#selectTestsToIgnore}: a suite that covered
+ * the changed method but never executed the changed line is not selected, while suites that
+ * executed it, or have no line coverage stored, still are. See the "Line-level selection" chapter
+ * in {@code WIKI.md}.
+ *
+ * <p>Modeled on {@code TestSelectorPerTestSelectionTest} in this package: an embedded H2-backed
+ * {@link JdbcDataStore} seeded directly via the persist methods, driven with a stub
+ * {@link VCSReader} whose diff changes line 5 of {@code com/example/Foo.java}.
+ */
+class TestSelectorLineLevelSelectionTest {
+
+    private static final String FILE_KEY = "com/example/Foo.java";
+    private static final String HIT_SUITE = "com.example.FooHitTest";
+    private static final String MISSED_SUITE = "com.example.FooMissTest";
+    private static final String NO_LINES_SUITE = "com.example.FooNoLinesTest";
+    private static final int CHANGED_METHOD_ID = 4242;
+    private static final int METHOD_FIRST_LINE = 2;
+    private static final int METHOD_LAST_LINE = 8;
+
+    private JdbcDataStore dataStore;
+    private File tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tempDir = File.createTempFile("tia-linelevel-", "");
+        tempDir.delete();
+        tempDir.mkdirs();
+        dataStore = new JdbcDataStore(new H2Dialect(), new H2ConnectionProvider(H2ConnectionSettings.embedded(tempDir.getAbsolutePath())), BranchSchema.schemaName("test"));
+        dataStore.getTiaData(true);
+        seedMapping();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataStore.close();
+        if (tempDir != null && tempDir.exists()) {
+            for (File f : tempDir.listFiles()) {
+                f.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    /**
+     * With the mode on, the suite that never executed the changed line is ignored, while the
+     * suite that executed it and the suite without line coverage both run.
+     */
+    @Test
+    void skipsASuiteThatNeverExecutedTheChangedLine() {
+        // given
+        TestSelector selector = new TestSelector(dataStore);
+        selector.setLineLevelSelection(true);
+
+        // when
+        TestSelectorResult result = selector.selectTestsToIgnore(new StubVCSReader(modifiedDiff()),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, false);
+
+        // then
+        assertTrue(result.getTestsToRun().contains(HIT_SUITE));
+        assertTrue(result.getTestsToRun().contains(NO_LINES_SUITE));
+        assertFalse(result.getTestsToRun().contains(MISSED_SUITE));
+        assertTrue(result.getTestsToIgnore().contains(MISSED_SUITE));
+    }
+
+    /**
+     * A mapping-owning run selects every covering suite so their stored lines are refreshed.
+     */
+    @Test
+    void doesNotNarrowOnAMappingOwningRun() {
+        // given
+        TestSelector selector = new TestSelector(dataStore);
+        selector.setLineLevelSelection(true);
+
+        // when
+        TestSelectorResult result = selector.selectTestsToIgnore(new StubVCSReader(modifiedDiff()),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, true);
+
+        // then
+        assertTrue(result.getTestsToRun().contains(MISSED_SUITE));
+    }
+
+    /**
+     * With the mode left at its default the selection is method-level, even when line coverage
+     * is stored.
+     */
+    @Test
+    void doesNotNarrowWhenTheModeIsOff() {
+        // given
+        TestSelector selector = new TestSelector(dataStore);
+
+        // when
+        TestSelectorResult result = selector.selectTestsToIgnore(new StubVCSReader(modifiedDiff()),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, false);
+
+        // then
+        assertTrue(result.getTestsToRun().contains(MISSED_SUITE));
+    }
+
+    /**
+     * A mapping run without line coverage persists an empty line map, which must clear the stale
+     * rows so a later run selects the suite at method level again.
+     */
+    @Test
+    void anEmptyLineMapClearsTheStoredLines() {
+        // given - re-persist the suite with method-level coverage only
+        TiaData tiaData = dataStore.getTiaData(true);
+        TestSuiteTracker suite = tiaData.getTestSuitesTracked().get(MISSED_SUITE);
+        suite.setMethodLinesHit(new HashMap<Integer, MethodLineCoverage>());
+        dataStore.persistTestSuites(Collections.singletonMap(MISSED_SUITE, suite));
+        dataStore.clearUnsealedTestSuites();
+
+        TestSelector selector = new TestSelector(dataStore);
+        selector.setLineLevelSelection(true);
+
+        // when
+        TestSelectorResult result = selector.selectTestsToIgnore(new StubVCSReader(modifiedDiff()),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, false);
+
+        // then
+        assertTrue(result.getTestsToRun().contains(MISSED_SUITE));
+    }
+
+    /**
+     * Seed a mapping where {@code com/example/Foo.java} has one tracked method on lines 2-8 with
+     * executable lines 3, 5 and 7. All three suites cover it: {@code FooHitTest} executed lines 3
+     * and 5, {@code FooMissTest} only line 3, and {@code FooNoLinesTest} has no line coverage.
+     */
+    private void seedMapping() {
+        TiaData tiaData = dataStore.getTiaData(true);
+        tiaData.setCommitValue("seed-commit");
+        tiaData.setLastUpdated(Instant.now());
+
+        Map<Integer, MethodImpactTracker> methods = new HashMap<>();
+        methods.put(CHANGED_METHOD_ID, new MethodImpactTracker("com/example/Foo.method.()V",
+                METHOD_FIRST_LINE, METHOD_LAST_LINE));
+
+        Map<String, TestSuiteTracker> testSuites = new HashMap<>();
+        testSuites.put(HIT_SUITE, trackedSuite(HIT_SUITE, lineCoverage(3, 5)));
+        testSuites.put(MISSED_SUITE, trackedSuite(MISSED_SUITE, lineCoverage(3)));
+        testSuites.put(NO_LINES_SUITE, trackedSuite(NO_LINES_SUITE, null));
+
+        tiaData.setTestSuitesTracked(testSuites);
+        tiaData.setMethodsTracked(methods);
+        dataStore.persistCoreData(tiaData);
+        dataStore.persistTestSuites(testSuites);
+        dataStore.persistSourceMethods(methods);
+        dataStore.clearUnsealedTestSuites();
+    }
+
+    private static TestSuiteTracker trackedSuite(String suiteName, MethodLineCoverage lineCoverage) {
+        TestSuiteTracker suite = new TestSuiteTracker(suiteName);
+        suite.setClassesImpacted(Collections.singletonList(
+                new ClassImpactTracker(FILE_KEY, new HashSet<>(Collections.singleton(CHANGED_METHOD_ID)))));
+        if (lineCoverage != null) {
+            Map<Integer, MethodLineCoverage> methodLinesHit = new HashMap<>();
+            methodLinesHit.put(CHANGED_METHOD_ID, lineCoverage);
+            suite.setMethodLinesHit(methodLinesHit);
+        }
+        return suite;
+    }
+
+    private static MethodLineCoverage lineCoverage(int... linesHit) {
+        BitSet executable = new BitSet();
+        for (int line : new int[]{3, 5, 7}) {
+            executable.set(line - METHOD_FIRST_LINE);
+        }
+        BitSet hit = new BitSet();
+        for (int line : linesHit) {
+            hit.set(line - METHOD_FIRST_LINE);
+        }
+        return new MethodLineCoverage(METHOD_FIRST_LINE, METHOD_LAST_LINE, executable, hit);
+    }
+
+    /**
+     * Build a MODIFY diff for the tracked file. The leading slash + empty source dirs means the
+     * selector's normalization ({@code substring(1)}) yields the mapping key verbatim.
+     *
+     * @return a content-less MODIFY diff context for {@code com/example/Foo.java}
+     */
+    private static SourceFileDiffContext modifiedDiff() {
+        String path = "/" + FILE_KEY;
+        return new SourceFileDiffContext(path, path, ChangeType.MODIFY);
+    }
+
+    /**
+     * Stub reader that returns a fixed diff set and, on content load, supplies original/changed
+     * content that differs on line 5 only.
+     */
+    private static final class StubVCSReader implements VCSReader {
+        private final Set<SourceFileDiffContext> diffs;
+
+        StubVCSReader(SourceFileDiffContext diff) {
+            this.diffs = Collections.singleton(diff);
+        }
+
+        @Override public String getBranchName() { return "test"; }
+        @Override public String getHeadCommit() { return "head"; }
+
+        @Override
+        public Set<SourceFileDiffContext> getDiffFiles(String baseChangeNum, List<String> sourceFilesDirs,
+                                                       List<String> testFilesDirs, boolean checkLocalChanges) {
+            return diffs;
+        }
+
+        @Override
+        public void loadContentForDiffs(Collection<SourceFileDiffContext> diffsToLoad, String baseChangeNum,
+                                        boolean checkLocalChanges) {
+            String original = "l1\nl2\nl3\nl4\nl5-old\nl6\nl7\nl8\nl9\nl10\n";
+            String changed = "l1\nl2\nl3\nl4\nl5-new\nl6\nl7\nl8\nl9\nl10\n";
+            for (SourceFileDiffContext diff : diffsToLoad) {
+                diff.setSourceContentOriginal(original);
+                diff.setSourceContentNew(changed);
+            }
+        }
+
+        @Override
+        public Set<String> getChangedFilePaths(String baseChangeNum, boolean checkLocalChanges) {
+            return new HashSet<>();
+        }
+
+        @Override public void close() { }
+    }
+}
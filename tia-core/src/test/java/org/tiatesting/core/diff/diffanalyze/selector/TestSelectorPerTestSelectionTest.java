@@ -0,0 +1,277 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tiatesting.core.diff.ChangeType;
+import org.tiatesting.core.diff.SourceFileDiffContext;
+import org.tiatesting.core.model.ClassImpactTracker;
+import org.tiatesting.core.model.MethodIdSet;
+import org.tiatesting.core.model.MethodImpactTracker;
+import org.tiatesting.core.model.TestSuiteTracker;
+import org.tiatesting.core.model.TiaData;
+import org.tiatesting.core.persistence.h2.H2ConnectionSettings;
+import org.tiatesting.core.persistence.BranchSchema;
+import org.tiatesting.core.persistence.JdbcDataStore;
+import org.tiatesting.core.persistence.connection.H2ConnectionProvider;
+import org.tiatesting.core.persistence.dialect.H2Dialect;
+import org.tiatesting.core.vcs.VCSReader;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies per-test-method selection in {@link TestSelector#selectTestsToIgnore}: a suite selected
+ * through the coverage mapping is narrowed to the test cases whose own stored coverage hits the
+ * changed method, and is left whole whenever narrowing would be unsafe. See the
+ * "Per-test-method selection" chapter in {@code WIKI.md}.
+ *
+ * <p>Modeled on {@code TestSelectorTrackedFileFilterTest} in this package: an embedded H2-backed
+ * {@link JdbcDataStore} seeded directly via the persist methods, driven with a stub
+ * {@link VCSReader} whose diff changes line 5 of {@code com/example/Foo.java}.
+ */
+class TestSelectorPerTestSelectionTest {
+
+    private static final String FILE_KEY = "com/example/Foo.java";
+    private static final String NARROWED_SUITE = "com.example.FooTest";
+    private static final String SETUP_ONLY_SUITE = "com.example.FooSetupTest";
+    private static final int CHANGED_METHOD_ID = 4242;
+    private static final int OTHER_METHOD_ID = 4343;
+
+    private JdbcDataStore dataStore;
+    private File tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tempDir = File.createTempFile("tia-pertest-", "");
+        tempDir.delete();
+        tempDir.mkdirs();
+        dataStore = new JdbcDataStore(new H2Dialect(), new H2ConnectionProvider(H2ConnectionSettings.embedded(tempDir.getAbsolutePath())), BranchSchema.schemaName("test"));
+        dataStore.getTiaData(true);
+        seedMapping();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataStore.close();
+        if (tempDir != null && tempDir.exists()) {
+            for (File f : tempDir.listFiles()) {
+                f.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    /**
+     * With the mode on for a preview run, the suite is narrowed to the one test case whose own
+     * coverage hit the changed method, while the suite itself is still in the run set.
+     */
+    @Test
+    void narrowsAMethodSelectedSuiteToItsImpactedTestCases() {
+        // given
+        TestSelector selector = new TestSelector(dataStore);
+        selector.setPerTestSelection(true);
+
+        // when
+        TestSelectorResult result = selector.selectTestsToIgnore(new StubVCSReader(modifiedDiff()),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, false);
+
+        // then
+        assertTrue(result.getTestsToRun().contains(NARROWED_SUITE));
+        assertEquals(Collections.singleton("changedMethodIsCalled"),
+                result.getTestCasesToRun().get(NARROWED_SUITE));
+    }
+
+    /**
+     * A suite that reached the changed method only from shared setup has no test case recorded
+     * against it, so it must run whole rather than being narrowed to nothing.
+     */
+    @Test
+    void aSuiteHitOnlyFromSharedSetupRunsWhole() {
+        // given
+        TestSelector selector = new TestSelector(dataStore);
+        selector.setPerTestSelection(true);
+
+        // when
+        TestSelectorResult result = selector.selectTestsToIgnore(new StubVCSReader(modifiedDiff()),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, false);
+
+        // then
+        assertTrue(result.getTestsToRun().contains(SETUP_ONLY_SUITE));
+        assertFalse(result.getTestCasesToRun().containsKey(SETUP_ONLY_SUITE));
+    }
+
+    /**
+     * A mapping-owning run must run its suites whole, otherwise the suite-level edges it persists
+     * would be recorded from a partial run.
+     */
+    @Test
+    void doesNotNarrowOnAMappingOwningRun() {
+        // given
+        TestSelector selector = new TestSelector(dataStore);
+        selector.setPerTestSelection(true);
+
+        // when
+        TestSelectorResult result = selector.selectTestsToIgnore(new StubVCSReader(modifiedDiff()),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, true);
+
+        // then
+        assertTrue(result.getTestsToRun().contains(NARROWED_SUITE));
+        assertTrue(result.getTestCasesToRun().isEmpty());
+    }
+
+    /**
+     * With the mode left at its default the selection is suite-level only, even when per-test
+     * edges are stored.
+     */
+    @Test
+    void doesNotNarrowWhenTheModeIsOff() {
+        // given
+        TestSelector selector = new TestSelector(dataStore);
+
+        // when
+        TestSelectorResult result = selector.selectTestsToIgnore(new StubVCSReader(modifiedDiff()),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, false);
+
+        // then
+        assertTrue(result.getTestsToRun().contains(NARROWED_SUITE));
+        assertTrue(result.getTestCasesToRun().isEmpty());
+    }
+
+    /**
+     * A mapping run without per-test coverage persists an empty per-test map, which must clear the
+     * stale edges so a later preview run no longer narrows the suite.
+     */
+    @Test
+    void anEmptyPerTestMapClearsTheStoredEdges() {
+        // given - re-persist the suite with suite-level coverage only
+        TiaData tiaData = dataStore.getTiaData(true);
+        TestSuiteTracker suite = tiaData.getTestSuitesTracked().get(NARROWED_SUITE);
+        suite.setTestCasesImpacted(new HashMap<String, MethodIdSet>());
+        dataStore.persistTestSuites(Collections.singletonMap(NARROWED_SUITE, suite));
+        dataStore.clearUnsealedTestSuites();
+
+        TestSelector selector = new TestSelector(dataStore);
+        selector.setPerTestSelection(true);
+
+        // when
+        TestSelectorResult result = selector.selectTestsToIgnore(new StubVCSReader(modifiedDiff()),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, false);
+
+        // then
+        assertTrue(result.getTestsToRun().contains(NARROWED_SUITE));
+        assertFalse(result.getTestCasesToRun().containsKey(NARROWED_SUITE));
+    }
+
+    /**
+     * Seed a mapping where {@code com/example/Foo.java} has two tracked methods. {@code FooTest}
+     * covers both, with per-test edges splitting them across two test cases; {@code FooSetupTest}
+     * covers the changed method (lines 2-8) but only from setup, so its one test case records just
+     * the other method. The unsealed flag set as a side effect of the edge write is cleared so the
+     * fixture models an already-sealed mapping.
+     */
+    private void seedMapping() {
+        TiaData tiaData = dataStore.getTiaData(true);
+        tiaData.setCommitValue("seed-commit");
+        tiaData.setLastUpdated(Instant.now());
+
+        Map<Integer, MethodImpactTracker> methods = new HashMap<>();
+        methods.put(CHANGED_METHOD_ID, new MethodImpactTracker("com/example/Foo.method.()V", 2, 8));
+        methods.put(OTHER_METHOD_ID, new MethodImpactTracker("com/example/Foo.other.()V", 12, 18));
+
+        Map<String, MethodIdSet> fooTestCases = new HashMap<>();
+        fooTestCases.put("changedMethodIsCalled", methodIds(CHANGED_METHOD_ID));
+        fooTestCases.put("otherMethodIsCalled", methodIds(OTHER_METHOD_ID));
+
+        Map<String, MethodIdSet> setupTestCases = new HashMap<>();
+        setupTestCases.put("otherMethodIsCalled", methodIds(OTHER_METHOD_ID));
+
+        Map<String, TestSuiteTracker> testSuites = new HashMap<>();
+        testSuites.put(NARROWED_SUITE, trackedSuite(NARROWED_SUITE, fooTestCases));
+        testSuites.put(SETUP_ONLY_SUITE, trackedSuite(SETUP_ONLY_SUITE, setupTestCases));
+
+        tiaData.setTestSuitesTracked(testSuites);
+        tiaData.setMethodsTracked(methods);
+        dataStore.persistCoreData(tiaData);
+        dataStore.persistTestSuites(testSuites);
+        dataStore.persistSourceMethods(methods);
+        dataStore.clearUnsealedTestSuites();
+    }
+
+    private static TestSuiteTracker trackedSuite(String suiteName, Map<String, MethodIdSet> testCases) {
+        TestSuiteTracker suite = new TestSuiteTracker(suiteName);
+        suite.setClassesImpacted(Collections.singletonList(
+                new ClassImpactTracker(FILE_KEY, new HashSet<>(methodIds(CHANGED_METHOD_ID, OTHER_METHOD_ID)))));
+        suite.setTestCasesImpacted(testCases);
+        return suite;
+    }
+
+    private static MethodIdSet methodIds(int... ids) {
+        MethodIdSet methodIds = new MethodIdSet();
+        for (int id : ids) {
+            methodIds.add(id);
+        }
+        return methodIds;
+    }
+
+    /**
+     * Build a MODIFY diff for the tracked file. The leading slash + empty source dirs means the
+     * selector's normalization ({@code substring(1)}) yields the mapping key verbatim.
+     *
+     * @return a content-less MODIFY diff context for {@code com/example/Foo.java}
+     */
+    private static SourceFileDiffContext modifiedDiff() {
+        String path = "/" + FILE_KEY;
+        return new SourceFileDiffContext(path, path, ChangeType.MODIFY);
+    }
+
+    /**
+     * Stub reader that returns a fixed diff set and, on content load, supplies original/changed
+     * content that differs on line 5 - inside the changed method's 2-8 range only.
+     */
+    private static final class StubVCSReader implements VCSReader {
+        private final Set<SourceFileDiffContext> diffs;
+
+        StubVCSReader(SourceFileDiffContext diff) {
+            this.diffs = Collections.singleton(diff);
+        }
+
+        @Override public String getBranchName() { return "test"; }
+        @Override public String getHeadCommit() { return "head"; }
+
+        @Override
+        public Set<SourceFileDiffContext> getDiffFiles(String baseChangeNum, List<String> sourceFilesDirs,
+                                                       List<String> testFilesDirs, boolean checkLocalChanges) {
+            return diffs;
+        }
+
+        @Override
+        public void loadContentForDiffs(Collection<SourceFileDiffContext> diffsToLoad, String baseChangeNum,
+                                        boolean checkLocalChanges) {
+            String original = "l1\nl2\nl3\nl4\nl5-old\nl6\nl7\nl8\nl9\nl10\n";
+            String changed = "l1\nl2\nl3\nl4\nl5-new\nl6\nl7\nl8\nl9\nl10\n";
+            for (SourceFileDiffContext diff : diffsToLoad) {
+                diff.setSourceContentOriginal(original);
+                diff.setSourceContentNew(changed);
+            }
+        }
+
+        @Override
+        public Set<String> getChangedFilePaths(String baseChangeNum, boolean checkLocalChanges) {
+            return new HashSet<>();
+        }
+
+        @Override public void close() { }
+    }
+}
@@ -0,0 +1,197 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tiatesting.core.diff.ChangeType;
+import org.tiatesting.core.diff.SourceFileDiffContext;
+import org.tiatesting.core.model.ClassImpactTracker;
+import org.tiatesting.core.model.MethodImpactTracker;
+import org.tiatesting.core.model.TestSuiteTracker;
+import org.tiatesting.core.model.TiaData;
+import org.tiatesting.core.persistence.h2.H2ConnectionSettings;
+import org.tiatesting.core.persistence.BranchSchema;
+import org.tiatesting.core.persistence.JdbcDataStore;
+import org.tiatesting.core.persistence.connection.H2ConnectionProvider;
+import org.tiatesting.core.persistence.dialect.H2Dialect;
+import org.tiatesting.core.vcs.VCSReader;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies run-time budgeted selection in {@link TestSelector#selectTestsToIgnore}: an impacted
+ * suite that doesn't fit the budget is deferred and ignored, recorded in the DB only on a run that
+ * owns the mapping, and forced into later selections until it has run. See the "Run-time budgeted
+ * selection" chapter in {@code WIKI.md}.
+ *
+ * <p>Modeled on {@code TestSelectorPerTestSelectionTest} in this package: an embedded H2-backed
+ * {@link JdbcDataStore} seeded directly via the persist methods, driven with a stub
+ * {@link VCSReader} whose diff changes a method both seeded suites cover.
+ */
+class TestSelectorRunTimeBudgetTest {
+
+    private static final String FILE_KEY = "com/example/Foo.java";
+    private static final String FAST_SUITE = "com.example.FooFastTest";
+    private static final String SLOW_SUITE = "com.example.FooSlowTest";
+    private static final int CHANGED_METHOD_ID = 4242;
+
+    private JdbcDataStore dataStore;
+    private File tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tempDir = File.createTempFile("tia-budget-", "");
+        tempDir.delete();
+        tempDir.mkdirs();
+        dataStore = new JdbcDataStore(new H2Dialect(), new H2ConnectionProvider(H2ConnectionSettings.embedded(tempDir.getAbsolutePath())), BranchSchema.schemaName("test"));
+        dataStore.getTiaData(true);
+        seedMapping();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataStore.close();
+        if (tempDir != null && tempDir.exists()) {
+            for (File f : tempDir.listFiles()) {
+                f.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    /**
+     * The suite that doesn't fit the budget is deferred and ignored. A run that doesn't own the
+     * mapping records nothing - its diff will select the suite again.
+     */
+    @Test
+    void defersTheSuiteThatDoesNotFitWithoutRecordingIt() {
+        // given
+        TestSelector selector = new TestSelector(dataStore);
+        selector.setMaxRunTimeMs(150L);
+
+        // when
+        TestSelectorResult result = selector.selectTestsToIgnore(new StubVCSReader(modifiedDiff()),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, false);
+
+        // then
+        assertEquals(Collections.singleton(FAST_SUITE), result.getTestsToRun());
+        assertEquals(Collections.singleton(SLOW_SUITE), result.getTestsDeferred());
+        assertTrue(result.getTestsToIgnore().contains(SLOW_SUITE));
+        assertTrue(dataStore.getTestSuitesDeferred().isEmpty());
+    }
+
+    /**
+     * A mapping-owning run records its deferred suite, and a later selection with no impacting
+     * changes still forces it.
+     */
+    @Test
+    void aMappingOwningRunRecordsTheDeferredSuiteForALaterRun() {
+        // given
+        TestSelector budgeted = new TestSelector(dataStore);
+        budgeted.setMaxRunTimeMs(150L);
+        budgeted.selectTestsToIgnore(new StubVCSReader(modifiedDiff()),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, true);
+
+        // when
+        TestSelectorResult later = new TestSelector(dataStore).selectTestsToIgnore(new StubVCSReader(null),
+                Collections.emptyList(), Collections.emptyList(), false, null, null, false);
+
+        // then
+        assertEquals(Collections.singleton(SLOW_SUITE), dataStore.getTestSuitesDeferred());
+        assertEquals(Collections.singleton(SLOW_SUITE), later.getTestsToRun());
+    }
+
+    /**
+     * Seed a mapping where both suites cover the one tracked method of {@code com/example/Foo.java};
+     * {@code FooFastTest} takes 100ms and {@code FooSlowTest} 1000ms.
+     */
+    private void seedMapping() {
+        TiaData tiaData = dataStore.getTiaData(true);
+        tiaData.setCommitValue("seed-commit");
+        tiaData.setLastUpdated(Instant.now());
+
+        Map<Integer, MethodImpactTracker> methods = new HashMap<>();
+        methods.put(CHANGED_METHOD_ID, new MethodImpactTracker("com/example/Foo.method.()V", 2, 8));
+
+        Map<String, TestSuiteTracker> testSuites = new HashMap<>();
+        testSuites.put(FAST_SUITE, trackedSuite(FAST_SUITE, 100L));
+        testSuites.put(SLOW_SUITE, trackedSuite(SLOW_SUITE, 1000L));
+
+        tiaData.setTestSuitesTracked(testSuites);
+        tiaData.setMethodsTracked(methods);
+        dataStore.persistCoreData(tiaData);
+        dataStore.persistTestSuites(testSuites);
+        dataStore.persistSourceMethods(methods);
+        dataStore.clearUnsealedTestSuites();
+    }
+
+    private static TestSuiteTracker trackedSuite(String suiteName, long avgRunTimeMs) {
+        TestSuiteTracker suite = new TestSuiteTracker(suiteName);
+        suite.setClassesImpacted(Collections.singletonList(
+                new ClassImpactTracker(FILE_KEY, new HashSet<>(Collections.singleton(CHANGED_METHOD_ID)))));
+        suite.getTestStats().setNumRuns(1);
+        suite.getTestStats().setAvgRunTime(avgRunTimeMs);
+        return suite;
+    }
+
+    /**
+     * Build a MODIFY diff for the tracked file. The leading slash + empty source dirs means the
+     * selector's normalization ({@code substring(1)}) yields the mapping key verbatim.
+     *
+     * @return a content-less MODIFY diff context for {@code com/example/Foo.java}
+     */
+    private static SourceFileDiffContext modifiedDiff() {
+        String path = "/" + FILE_KEY;
+        return new SourceFileDiffContext(path, path, ChangeType.MODIFY);
+    }
+
+    /**
+     * Stub reader that returns a fixed diff set (empty for a {@code null} diff) and, on content
+     * load, supplies original/changed content that differs on line 5 - inside the tracked method.
+     */
+    private static final class StubVCSReader implements VCSReader {
+        private final Set<SourceFileDiffContext> diffs;
+
+        StubVCSReader(SourceFileDiffContext diff) {
+            this.diffs = diff != null ? Collections.singleton(diff) : Collections.<SourceFileDiffContext>emptySet();
+        }
+
+        @Override public String getBranchName() { return "test"; }
+        @Override public String getHeadCommit() { return "head"; }
+
+        @Override
+        public Set<SourceFileDiffContext> getDiffFiles(String baseChangeNum, List<String> sourceFilesDirs,
+                                                       List<String> testFilesDirs, boolean checkLocalChanges) {
+            return diffs;
+        }
+
+        @Override
+        public void loadContentForDiffs(Collection<SourceFileDiffContext> diffsToLoad, String baseChangeNum,
+                                        boolean checkLocalChanges) {
+            String original = "l1\nl2\nl3\nl4\nl5-old\nl6\nl7\nl8\nl9\nl10\n";
+            String changed = "l1\nl2\nl3\nl4\nl5-new\nl6\nl7\nl8\nl9\nl10\n";
+            for (SourceFileDiffContext diff : diffsToLoad) {
+                diff.setSourceContentOriginal(original);
+                diff.setSourceContentNew(changed);
+            }
+        }
+
+        @Override
+        public Set<String> getChangedFilePaths(String baseChangeNum, boolean checkLocalChanges) {
+            return new HashSet<>();
+        }
+
+        @Override public void close() { }
+    }
+}
@@ -0,0 +1,231 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tiatesting.core.diff.SourceFileDiffContext;
+import org.tiatesting.core.model.TestSuiteTracker;
+import org.tiatesting.core.model.TiaData;
+import org.tiatesting.core.persistence.BranchSchema;
+import org.tiatesting.core.persistence.JdbcDataStore;
+import org.tiatesting.core.persistence.connection.H2ConnectionProvider;
+import org.tiatesting.core.persistence.dialect.H2Dialect;
+import org.tiatesting.core.persistence.h2.H2ConnectionSettings;
+import org.tiatesting.core.vcs.VCSReader;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Verifies that {@link TestSelector#selectTestsToIgnore} reads a selection back from the selection
+ * result cache only when nothing it reads has changed, and never caches a run that owns the
+ * mapping. See the "Selection result cache" chapter in {@code WIKI.md}.
+ */
+class TestSelectorSelectionCacheTest {
+
+    private JdbcDataStore dataStore;
+
+    @TempDir
+    File dbDir;
+
+    @TempDir
+    File cacheDir;
+
+    @BeforeEach
+    void setUp() {
+        dataStore = new JdbcDataStore(new H2Dialect(), new H2ConnectionProvider(H2ConnectionSettings.embedded(dbDir.getAbsolutePath())), BranchSchema.schemaName("test"));
+        dataStore.getTiaData(true);
+        seedTrackedSuites("com.acme.OrderServiceIT", "com.acme.PaymentServiceIT");
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataStore.close();
+    }
+
+    /**
+     * A second selection with the same inputs is read from the cache without reading the VCS diff.
+     */
+    @Test
+    void repeatedSelectionIsReadFromTheCache() {
+        // given
+        CountingVCSReader vcsReader = new CountingVCSReader("head", null);
+        TestSelectorResult first = select(vcsReader, false, false);
+
+        // when
+        TestSelectorResult second = select(vcsReader, false, false);
+
+        // then
+        assertEquals(1, vcsReader.diffReads);
+        assertEquals(first.getTestsToRun(), second.getTestsToRun());
+        assertEquals(first.getTestsToIgnore(), second.getTestsToIgnore());
+    }
+
+    /**
+     * A suite failing since the previous selection is selected again rather than read from the cache.
+     */
+    @Test
+    void newFailedSuiteMissesTheCache() {
+        // given
+        CountingVCSReader vcsReader = new CountingVCSReader("head", null);
+        select(vcsReader, false, false);
+        dataStore.persistTestSuitesFailed(Collections.singleton("com.acme.OrderServiceIT"));
+
+        // when
+        TestSelectorResult result = select(vcsReader, false, false);
+
+        // then
+        assertEquals(2, vcsReader.diffReads);
+        assertEquals(Collections.singleton("com.acme.OrderServiceIT"), result.getTestsToRun());
+    }
+
+    /**
+     * A new head commit misses the cache.
+     */
+    @Test
+    void newHeadCommitMissesTheCache() {
+        // given
+        select(new CountingVCSReader("head", null), false, false);
+        CountingVCSReader vcsReader = new CountingVCSReader("new-head", null);
+
+        // when
+        select(vcsReader, false, false);
+
+        // then
+        assertEquals(1, vcsReader.diffReads);
+    }
+
+    /**
+     * Changed local content misses the cache, the same local changes hit it.
+     */
+    @Test
+    void localChangesAreKeyedByTheirFingerprint() {
+        // given
+        select(new CountingVCSReader("head", "local-1"), true, false);
+        CountingVCSReader sameChanges = new CountingVCSReader("head", "local-1");
+        CountingVCSReader newChanges = new CountingVCSReader("head", "local-2");
+
+        // when
+        select(sameChanges, true, false);
+        select(newChanges, true, false);
+
+        // then
+        assertEquals(0, sameChanges.diffReads);
+        assertEquals(1, newChanges.diffReads);
+    }
+
+    /**
+     * Local changes the VCS reader can't fingerprint are never cached.
+     */
+    @Test
+    void localChangesWithoutAFingerprintAreNotCached() {
+        // given
+        CountingVCSReader vcsReader = new CountingVCSReader("head", null);
+
+        // when
+        select(vcsReader, true, false);
+        select(vcsReader, true, false);
+
+        // then
+        assertEquals(2, vcsReader.diffReads);
+        assertEquals(0, cacheDir.listFiles().length);
+    }
+
+    /**
+     * A run that owns the mapping is never cached.
+     */
+    @Test
+    void mappingRunIsNotCached() {
+        // given
+        CountingVCSReader vcsReader = new CountingVCSReader("head", null);
+
+        // when
+        select(vcsReader, false, true);
+        select(vcsReader, false, true);
+
+        // then
+        assertEquals(2, vcsReader.diffReads);
+        assertFalse(cacheDir.listFiles().length > 0);
+    }
+
+    private TestSelectorResult select(VCSReader vcsReader, boolean checkLocalChanges, boolean updateDBMapping) {
+        TestSelector testSelector = new TestSelector(dataStore);
+        testSelector.setSelectionCacheDir(cacheDir);
+        return testSelector.selectTestsToIgnore(vcsReader, Collections.emptyList(), Collections.emptyList(),
+                checkLocalChanges, null, null, updateDBMapping);
+    }
+
+    private void seedTrackedSuites(String... suiteNames) {
+        TiaData tiaData = dataStore.getTiaData(true);
+        tiaData.setCommitValue("abc123");
+        tiaData.setLastUpdated(Instant.now());
+
+        Map<String, TestSuiteTracker> testSuites = new HashMap<>();
+        for (String suiteName : suiteNames) {
+            testSuites.put(suiteName, new TestSuiteTracker(suiteName));
+        }
+        tiaData.setTestSuitesTracked(testSuites);
+        dataStore.persistCoreData(tiaData);
+        dataStore.persistTestSuites(testSuites);
+    }
+
+    /**
+     * VCS reader with no changes, counting its diff reads.
+     */
+    private static final class CountingVCSReader implements VCSReader {
+        private final String headCommit;
+        private final String localChangesFingerprint;
+        private int diffReads;
+
+        CountingVCSReader(String headCommit, String localChangesFingerprint) {
+            this.headCommit = headCommit;
+            this.localChangesFingerprint = localChangesFingerprint;
+        }
+
+        @Override
+        public String getBranchName() {
+            return "test";
+        }
+
+        @Override
+        public String getHeadCommit() {
+            return headCommit;
+        }
+
+        @Override
+        public Set<SourceFileDiffContext> getDiffFiles(String baseChangeNum, List<String> sourceFilesDirs,
+                                                       List<String> testFilesDirs, boolean checkLocalChanges) {
+            diffReads++;
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void loadContentForDiffs(Collection<SourceFileDiffContext> diffs, String baseChangeNum,
+                                        boolean checkLocalChanges) {
+        }
+
+        @Override
+        public Set<String> getChangedFilePaths(String baseChangeNum, boolean checkLocalChanges) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public String getLocalChangesFingerprint(String baseChangeNum) {
+            return localChangesFingerprint;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
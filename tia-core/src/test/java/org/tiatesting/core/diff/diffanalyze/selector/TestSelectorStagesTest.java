@@ -0,0 +1,184 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tiatesting.core.diff.SourceFileDiffContext;
+import org.tiatesting.core.model.TestSuiteTracker;
+import org.tiatesting.core.model.TiaData;
+import org.tiatesting.core.persistence.BranchSchema;
+import org.tiatesting.core.persistence.JdbcDataStore;
+import org.tiatesting.core.persistence.connection.H2ConnectionProvider;
+import org.tiatesting.core.persistence.dialect.H2Dialect;
+import org.tiatesting.core.persistence.h2.H2ConnectionSettings;
+import org.tiatesting.core.staticselection.StaticTestSelectionConfig;
+import org.tiatesting.core.staticselection.StaticTestSelectionRule;
+import org.tiatesting.core.staticselection.StaticTestSelectionRuleMode;
+import org.tiatesting.core.vcs.VCSAnalyzerException;
+import org.tiatesting.core.vcs.VCSReader;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Verifies the stage graph {@link TestSelector#selectTestsToIgnore} runs its reads as: the VCS
+ * reader is never called from two stages at once, the results of the overlapping stages are
+ * combined as before, and a failing stage fails the selection with its own exception. See the
+ * "Test selection stages" chapter in {@code WIKI.md}.
+ */
+class TestSelectorStagesTest {
+
+    private JdbcDataStore dataStore;
+    private File tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tempDir = File.createTempFile("tia-stages-", "");
+        tempDir.delete();
+        tempDir.mkdirs();
+        dataStore = new JdbcDataStore(new H2Dialect(), new H2ConnectionProvider(H2ConnectionSettings.embedded(tempDir.getAbsolutePath())), BranchSchema.schemaName("test"));
+        dataStore.getTiaData(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataStore.close();
+        if (tempDir != null && tempDir.exists()) {
+            for (File f : tempDir.listFiles()) {
+                f.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    /**
+     * The diff, static-rule and content reads run in different stages but one after the other,
+     * while the failed suites and the static rule's forced suites are still combined into the run.
+     */
+    @Test
+    void vcsReadsNeverOverlapAndStageResultsAreCombined() {
+        // given - a failed suite and a static rule forcing every suite, with slow VCS reads
+        seedTrackedSuites("com.acme.OrderServiceIT", "com.acme.PaymentServiceIT");
+        dataStore.persistTestSuitesFailed(Collections.singleton("com.acme.FailedIT"));
+        StaticTestSelectionConfig config = new StaticTestSelectionConfig(Collections.singletonList(
+                new StaticTestSelectionRule("sql-migrations", ".*\\.sql$",
+                        StaticTestSelectionRuleMode.RUN_ALL, null)));
+        SlowVCSReader vcsReader = new SlowVCSReader(null);
+
+        // when
+        TestSelectorResult result = new TestSelector(dataStore).selectTestsToIgnore(
+                vcsReader, Collections.emptyList(), Collections.emptyList(),
+                false, null, config, false);
+
+        // then
+        assertEquals(1, vcsReader.maxReadsInFlight.get());
+        assertEquals(new HashSet<>(Arrays.asList("com.acme.OrderServiceIT", "com.acme.PaymentServiceIT",
+                "com.acme.FailedIT")), result.getTestsToRun());
+    }
+
+    /**
+     * A VCS read failing in its stage fails the selection with the VCS exception itself, not the
+     * {@code CompletionException} the stage wraps it in.
+     */
+    @Test
+    void failingStageFailsSelectionWithItsOwnException() {
+        // given
+        seedTrackedSuites("com.acme.OrderServiceIT");
+        SlowVCSReader vcsReader = new SlowVCSReader(new VCSAnalyzerException("Unknown commit abc123"));
+
+        // when
+        VCSAnalyzerException thrown = assertThrows(VCSAnalyzerException.class, () ->
+                new TestSelector(dataStore).selectTestsToIgnore(vcsReader, Collections.emptyList(),
+                        Collections.emptyList(), false, null, null, false));
+
+        // then
+        assertEquals("Unknown commit abc123", thrown.getMessage());
+    }
+
+    private void seedTrackedSuites(String... suiteNames) {
+        TiaData tiaData = dataStore.getTiaData(true);
+        tiaData.setCommitValue("abc123");
+        tiaData.setLastUpdated(Instant.now());
+
+        Map<String, TestSuiteTracker> testSuites = new HashMap<>();
+        for (String suiteName : suiteNames) {
+            testSuites.put(suiteName, new TestSuiteTracker(suiteName));
+        }
+        tiaData.setTestSuitesTracked(testSuites);
+        dataStore.persistCoreData(tiaData);
+        dataStore.persistTestSuites(testSuites);
+    }
+
+    /**
+     * VCS reader whose reads each take a while, recording the most reads it served at once. It
+     * reports a changed {@code .sql} file to the static rules and no source diffs.
+     */
+    private static final class SlowVCSReader implements VCSReader {
+        private final VCSAnalyzerException diffFailure;
+        private final AtomicInteger readsInFlight = new AtomicInteger();
+        private final AtomicInteger maxReadsInFlight = new AtomicInteger();
+
+        SlowVCSReader(VCSAnalyzerException diffFailure) {
+            this.diffFailure = diffFailure;
+        }
+
+        @Override
+        public String getBranchName() {
+            return "test";
+        }
+
+        @Override
+        public String getHeadCommit() {
+            return "head";
+        }
+
+        @Override
+        public Set<SourceFileDiffContext> getDiffFiles(String baseChangeNum, List<String> sourceFilesDirs,
+                                                       List<String> testFilesDirs, boolean checkLocalChanges) {
+            read();
+            if (diffFailure != null) {
+                throw diffFailure;
+            }
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void loadContentForDiffs(Collection<SourceFileDiffContext> diffs, String baseChangeNum,
+                                        boolean checkLocalChanges) {
+            read();
+        }
+
+        @Override
+        public Set<String> getChangedFilePaths(String baseChangeNum, boolean checkLocalChanges) {
+            read();
+            return Collections.singleton("src/main/resources/db/V001.sql");
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void read() {
+            maxReadsInFlight.accumulateAndGet(readsInFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                readsInFlight.decrementAndGet();
+            }
+        }
+    }
+}
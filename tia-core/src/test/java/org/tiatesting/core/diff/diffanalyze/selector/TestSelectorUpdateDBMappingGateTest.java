@@ -12,6 +12,7 @@ import org.tiatesting.core.model.ClassImpactTracker;
 import org.tiatesting.core.model.LibraryBuildMetadata;
 import org.tiatesting.core.model.LibraryPublish;
 import org.tiatesting.core.model.MethodImpactTracker;
+import org.tiatesting.core.model.MethodLineCoverage;
 import org.tiatesting.core.model.PendingLibraryForcedSelection;
 import org.tiatesting.core.model.PendingLibraryImpactedMethod;
 import org.tiatesting.core.model.TestRunHistoryEntry;
@@ -370,11 +371,15 @@ class TestSelectorUpdateDBMappingGateTest {
         @Override public Set<Integer> getUniqueMethodIdsTracked() { return delegate.getUniqueMethodIdsTracked(); }
         @Override public Map<String, Map<Integer, MethodImpactTracker>> getMethodsTrackedForFiles(Set<String> sourceFilenames) { return delegate.getMethodsTrackedForFiles(sourceFilenames); }
         @Override public Map<Integer, Set<String>> getTestSuitesForMethods(Set<Integer> methodIds) { return delegate.getTestSuitesForMethods(methodIds); }
+        @Override public Map<String, Set<String>> getTestCasesForMethods(Set<Integer> methodIds) { return delegate.getTestCasesForMethods(methodIds); }
+        @Override public Map<String, Map<Integer, MethodLineCoverage>> getMethodLineCoverage(Set<Integer> methodIds) { return delegate.getMethodLineCoverage(methodIds); }
         @Override public int getNumTestSuites() { return delegate.getNumTestSuites(); }
         @Override public int getNumSourceMethods() { return delegate.getNumSourceMethods(); }
         @Override public Set<String> getTestSuitesFailed() { return delegate.getTestSuitesFailed(); }
+        @Override public Set<String> getTestSuitesDeferred() { return delegate.getTestSuitesDeferred(); }
         @Override public void persistCoreData(TiaData tiaData) { delegate.persistCoreData(tiaData); }
         @Override public void persistTestSuitesFailed(Set<String> testSuitesFailed) { delegate.persistTestSuitesFailed(testSuitesFailed); }
+        @Override public void persistTestSuitesDeferred(Set<String> testSuitesDeferred) { delegate.persistTestSuitesDeferred(testSuitesDeferred); }
         @Override public void clearUnsealedTestSuites() { delegate.clearUnsealedTestSuites(); }
         @Override public void persistSourceMethods(Map<Integer, MethodImpactTracker> methodsTracked) { delegate.persistSourceMethods(methodsTracked); }
         @Override public void persistSealedRunData(SealedRunData sealedRunData) { delegate.persistSealedRunData(sealedRunData); }
@@ -0,0 +1,106 @@
+package org.tiatesting.core.diff.diffanalyze.selector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies the run-time balanced split of {@link TestShards#partition}: longest suites are
+ * placed first on the least-loaded shard, every selected suite lands on exactly one shard, and
+ * the split doesn't depend on the iteration order of the selection. See the "Test sharding"
+ * chapter in {@code WIKI.md}.
+ */
+class TestShardsTest {
+
+    /**
+     * The longest suites are spread first and the short ones fill in behind them, so the shards
+     * end up level where a round-robin split would not.
+     */
+    @Test
+    void balancesTheShardsOnRunTime(){
+        // given - round-robin by name would give shard 0 a + c (900ms) and shard 1 b + d (200ms)
+        Map<String, Long> runTimes = runTimes("a", 800L, "b", 100L, "c", 100L, "d", 100L);
+
+        // when
+        TestShards shards = TestShards.partition(runTimes.keySet(), runTimes, 0, 2);
+
+        // then
+        assertEquals(Collections.singleton("a"), shards.getTestsForShard(0));
+        assertEquals(new HashSet<>(Arrays.asList("b", "c", "d")), shards.getTestsForShard(1));
+        assertEquals(800L, shards.getRunTimeMsForShard(0));
+        assertEquals(300L, shards.getRunTimeMsForShard(1));
+    }
+
+    /**
+     * Suites without any run time still spread across the shards instead of all landing on the
+     * first one.
+     */
+    @Test
+    void spreadsSuitesWithoutRunTimesByCount(){
+        // given
+        Map<String, Long> runTimes = runTimes("a", 0L, "b", 0L, "c", 0L, "d", 0L);
+
+        // when
+        TestShards shards = TestShards.partition(runTimes.keySet(), runTimes, 0, 2);
+
+        // then
+        assertEquals(2, shards.getTestsForShard(0).size());
+        assertEquals(2, shards.getTestsForShard(1).size());
+    }
+
+    /**
+     * Every agent computes the split on its own, so the same selection must give the same split
+     * whatever order the selected suites are iterated in.
+     */
+    @Test
+    void theSplitIsIndependentOfSelectionOrder(){
+        // given
+        Map<String, Long> runTimes = runTimes("a", 100L, "b", 100L, "c", 100L, "d", 50L, "e", 50L);
+        Set<String> forwards = new LinkedHashSet<>(Arrays.asList("a", "b", "c", "d", "e"));
+        Set<String> backwards = new LinkedHashSet<>(Arrays.asList("e", "d", "c", "b", "a"));
+
+        // when
+        TestShards first = TestShards.partition(forwards, runTimes, 0, 3);
+        TestShards second = TestShards.partition(backwards, runTimes, 0, 3);
+
+        // then
+        for (int i = 0; i < 3; i++){
+            assertEquals(first.getTestsForShard(i), second.getTestsForShard(i));
+        }
+    }
+
+    /**
+     * More shards than selected suites leaves the extra shards empty.
+     */
+    @Test
+    void extraShardsAreEmpty(){
+        // given
+        Map<String, Long> runTimes = runTimes("a", 100L);
+
+        // when
+        TestShards shards = TestShards.partition(runTimes.keySet(), runTimes, 2, 3);
+
+        // then
+        assertEquals(3, shards.getShardCount());
+        assertEquals(2, shards.getShardIndex());
+        assertEquals(Collections.singleton("a"), shards.getTestsForShard(0));
+        assertEquals(Collections.emptySet(), shards.getTestsForShard(2));
+        assertEquals(0L, shards.getRunTimeMsForShard(2));
+    }
+
+    private static Map<String, Long> runTimes(Object... nameAndTimes){
+        Map<String, Long> runTimes = new HashMap<>();
+        for (int i = 0; i < nameAndTimes.length; i += 2){
+            runTimes.put((String) nameAndTimes[i], (Long) nameAndTimes[i + 1]);
+        }
+        return runTimes;
+    }
+}
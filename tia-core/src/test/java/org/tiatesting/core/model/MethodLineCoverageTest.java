@@ -0,0 +1,201 @@
+package org.tiatesting.core.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies the line-level hit rules of {@link MethodLineCoverage}: changed executable lines are
+ * matched against the lines hit, non-executable lines are attributed to their nearest executable
+ * neighbours, and unknown or stale coverage is always treated as hit. See the "Line-level
+ * selection" chapter in {@code WIKI.md}.
+ *
+ * <p>The fixture method spans lines 10-20 with executable lines 11, 13, 15 and 17; the suite
+ * executed 11 and 13 only (the first branch).
+ */
+class MethodLineCoverageTest {
+
+    private static final int FIRST_LINE = 10;
+    private static final int LAST_LINE = 20;
+
+    /**
+     * A change to an executable line the suite executed selects the suite.
+     */
+    @Test
+    void aChangedExecutedLineIsHit(){
+        // given
+        MethodLineCoverage coverage = firstBranchCoverage();
+
+        // when
+        boolean hit = coverage.isHitByChange(lines(13), FIRST_LINE, LAST_LINE);
+
+        // then
+        assertTrue(hit);
+    }
+
+    /**
+     * A change to an executable line the suite never executed doesn't select the suite.
+     */
+    @Test
+    void aChangedUnexecutedLineIsNotHit(){
+        // given
+        MethodLineCoverage coverage = firstBranchCoverage();
+
+        // when
+        boolean hit = coverage.isHitByChange(lines(15, 17), FIRST_LINE, LAST_LINE);
+
+        // then
+        assertFalse(hit);
+    }
+
+    /**
+     * A changed line without bytecode between an executed and an unexecuted line is attributed to
+     * the executed neighbour, since code added there runs when the flow passes between them.
+     */
+    @Test
+    void aNonExecutableLineNextToAnExecutedLineIsHit(){
+        // given
+        MethodLineCoverage coverage = firstBranchCoverage();
+
+        // when
+        boolean hit = coverage.isHitByChange(lines(14), FIRST_LINE, LAST_LINE);
+
+        // then
+        assertTrue(hit);
+    }
+
+    /**
+     * A changed line without bytecode between two unexecuted lines isn't hit.
+     */
+    @Test
+    void aNonExecutableLineBetweenUnexecutedLinesIsNotHit(){
+        // given
+        MethodLineCoverage coverage = firstBranchCoverage();
+
+        // when
+        boolean hit = coverage.isHitByChange(lines(16), FIRST_LINE, LAST_LINE);
+
+        // then
+        assertFalse(hit);
+    }
+
+    /**
+     * A change just outside the recorded range (the signature or closing brace) affects every
+     * caller, so it is always hit.
+     */
+    @Test
+    void aChangeOutsideTheRecordedRangeIsHit(){
+        // given
+        MethodLineCoverage coverage = firstBranchCoverage();
+
+        // when
+        boolean hit = coverage.isHitByChange(lines(LAST_LINE + 1), FIRST_LINE, LAST_LINE);
+
+        // then
+        assertTrue(hit);
+    }
+
+    /**
+     * Coverage recorded against a different line range for the method is stale and always hit.
+     */
+    @Test
+    void staleCoverageIsHit(){
+        // given
+        MethodLineCoverage coverage = firstBranchCoverage();
+
+        // when
+        boolean hit = coverage.isHitByChange(lines(17), FIRST_LINE, LAST_LINE + 2);
+
+        // then
+        assertTrue(hit);
+    }
+
+    /**
+     * Coverage with unknown lines is always hit.
+     */
+    @Test
+    void unknownLinesAreHit(){
+        // given
+        MethodLineCoverage coverage = new MethodLineCoverage(FIRST_LINE, LAST_LINE, null, null);
+
+        // when
+        boolean hit = coverage.isHitByChange(lines(17), FIRST_LINE, LAST_LINE);
+
+        // then
+        assertTrue(hit);
+    }
+
+    /**
+     * Two dumps of the same method version are unioned.
+     */
+    @Test
+    void mergeUnionsTheLinesHit(){
+        // given
+        MethodLineCoverage secondBranch = new MethodLineCoverage(FIRST_LINE, LAST_LINE,
+                offsets(11, 13, 15, 17), offsets(11, 15));
+
+        // when
+        MethodLineCoverage merged = firstBranchCoverage().merge(secondBranch);
+
+        // then
+        assertEquals(offsets(11, 13, 15), merged.getLinesHit());
+        assertEquals(offsets(11, 13, 15, 17), merged.getExecutableLines());
+    }
+
+    /**
+     * A dump with a different line range (the class was recompiled mid-run) replaces the earlier one.
+     */
+    @Test
+    void mergeWithADifferentRangeKeepsTheLaterDump(){
+        // given
+        MethodLineCoverage later = new MethodLineCoverage(FIRST_LINE, LAST_LINE + 1,
+                offsets(11), offsets(11));
+
+        // when
+        MethodLineCoverage merged = firstBranchCoverage().merge(later);
+
+        // then
+        assertSame(later, merged);
+    }
+
+    /**
+     * Merging with unknown lines leaves the lines unknown.
+     */
+    @Test
+    void mergeWithUnknownLinesIsUnknown(){
+        // given
+        MethodLineCoverage unknown = new MethodLineCoverage(FIRST_LINE, LAST_LINE, null, null);
+
+        // when
+        MethodLineCoverage merged = firstBranchCoverage().merge(unknown);
+
+        // then
+        assertNull(merged.getLinesHit());
+    }
+
+    private static MethodLineCoverage firstBranchCoverage(){
+        return new MethodLineCoverage(FIRST_LINE, LAST_LINE, offsets(11, 13, 15, 17), offsets(11, 13));
+    }
+
+    private static BitSet lines(int... lineNumbers){
+        BitSet lines = new BitSet();
+        for (int line : lineNumbers){
+            lines.set(line);
+        }
+        return lines;
+    }
+
+    private static BitSet offsets(int... lineNumbers){
+        BitSet offsets = new BitSet();
+        for (int line : lineNumbers){
+            offsets.set(line - FIRST_LINE);
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,58 @@
+package org.tiatesting.core.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies {@link TestSuiteTracker#addClassesImpacted} merges coverage dumps into the suite's
+ * mapping by source filename, including classes added to the mapping list directly.
+ */
+class TestSuiteTrackerClassesImpactedTest {
+
+    /**
+     * A class in two dumps is tracked once with the union of its methods, and the first dump's
+     * tracker isn't changed by the second merge.
+     */
+    @Test
+    void dumpsAreMergedBySourceFilename(){
+        // given
+        TestSuiteTracker tracker = new TestSuiteTracker("com.example.FooTest");
+        ClassImpactTracker firstDumpFoo = new ClassImpactTracker("com/example/Foo.java", Arrays.asList(1, 2));
+
+        // when
+        tracker.addClassesImpacted(Collections.singletonList(firstDumpFoo));
+        tracker.addClassesImpacted(Arrays.asList(
+                new ClassImpactTracker("com/example/Foo.java", Arrays.asList(2, 3)),
+                new ClassImpactTracker("com/example/Bar.java", Collections.singletonList(4))));
+
+        // then
+        assertEquals(2, tracker.getClassesImpacted().size());
+        assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), new HashSet<>(tracker.getClassesImpacted().get(0).getMethodsImpacted()));
+        assertEquals(new HashSet<>(Collections.singletonList(4)), new HashSet<>(tracker.getClassesImpacted().get(1).getMethodsImpacted()));
+        assertEquals(new HashSet<>(Arrays.asList(1, 2)), new HashSet<>(firstDumpFoo.getMethodsImpacted()));
+    }
+
+    /**
+     * A class added to the mapping list after a merge (as the data store does when loading) is
+     * still found by the next merge.
+     */
+    @Test
+    void classesAddedToTheListDirectlyAreMergedInto(){
+        // given
+        TestSuiteTracker tracker = new TestSuiteTracker("com.example.FooTest");
+        tracker.addClassesImpacted(Collections.singletonList(new ClassImpactTracker("com/example/Foo.java", Arrays.asList(1))));
+        tracker.getClassesImpacted().add(new ClassImpactTracker("com/example/Bar.java", Arrays.asList(4)));
+
+        // when
+        tracker.addClassesImpacted(Collections.singletonList(new ClassImpactTracker("com/example/Bar.java", Arrays.asList(5))));
+
+        // then
+        assertEquals(2, tracker.getClassesImpacted().size());
+        assertEquals(new HashSet<>(Arrays.asList(4, 5)), new HashSet<>(tracker.getClassesImpacted().get(1).getMethodsImpacted()));
+    }
+}
@@ -0,0 +1,153 @@
+package org.tiatesting.core.testrunner;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that {@link TestClassInventory} finds the same test classes as a full listing, and only
+ * lists again the dirs modified since the inventory was persisted. See the "Test class inventory"
+ * chapter in {@code WIKI.md}.
+ */
+class TestClassInventoryTest {
+
+    private static final long AN_HOUR_AGO = System.currentTimeMillis() - 3_600_000L;
+
+    @TempDir
+    Path testClassesDir;
+
+    @TempDir
+    File buildDir;
+
+    /**
+     * Every class file is named by its package, including nested classes; other files are skipped.
+     */
+    @Test
+    void classFilesAreNamedByTheirPackage() throws Exception {
+        // given
+        write("com/acme/OrderServiceTest.class");
+        write("com/acme/OrderServiceTest$Nested.class");
+        write("com/acme/payment/PaymentServiceTest.class");
+        write("com/acme/test.properties");
+        write("RootTest.class");
+
+        // when
+        Set<String> testClasses = new TestClassInventory(null).getTestClasses(testClassesDir);
+
+        // then
+        assertEquals(new HashSet<>(Arrays.asList("com.acme.OrderServiceTest", "com.acme.OrderServiceTest$Nested",
+                "com.acme.payment.PaymentServiceTest", "RootTest")), testClasses);
+    }
+
+    /**
+     * A dir whose modification time hasn't moved is read from the inventory, not listed again.
+     */
+    @Test
+    void unmodifiedDirIsNotListedAgain() throws Exception {
+        // given
+        write("com/acme/OrderServiceTest.class");
+        ageAllDirs();
+        TestClassInventory inventory = new TestClassInventory(inventoryFile());
+        inventory.getTestClasses(testClassesDir);
+
+        // when - a class file is added without the dir's modification time moving
+        write("com/acme/PaymentServiceTest.class");
+        ageAllDirs();
+
+        // then
+        assertFalse(inventory.getTestClasses(testClassesDir).contains("com.acme.PaymentServiceTest"));
+    }
+
+    /**
+     * A dir whose modification time has moved is listed again, picking up added and removed classes.
+     */
+    @Test
+    void modifiedDirIsListedAgain() throws Exception {
+        // given
+        write("com/acme/OrderServiceTest.class");
+        ageAllDirs();
+        new TestClassInventory(inventoryFile()).getTestClasses(testClassesDir);
+
+        // when
+        write("com/acme/PaymentServiceTest.class");
+        Files.delete(testClassesDir.resolve("com/acme/OrderServiceTest.class"));
+        Set<String> testClasses = new TestClassInventory(inventoryFile()).getTestClasses(testClassesDir);
+
+        // then
+        assertEquals(new HashSet<>(Arrays.asList("com.acme.PaymentServiceTest")), testClasses);
+    }
+
+    /**
+     * A new package under an unmodified package is found, and a deleted package is dropped.
+     */
+    @Test
+    void addedAndDeletedPackagesAreFollowed() throws Exception {
+        // given
+        write("com/acme/OrderServiceTest.class");
+        write("com/acme/legacy/LegacyTest.class");
+        ageAllDirs();
+        new TestClassInventory(inventoryFile()).getTestClasses(testClassesDir);
+
+        // when
+        write("com/acme/payment/PaymentServiceTest.class");
+        Files.delete(testClassesDir.resolve("com/acme/legacy/LegacyTest.class"));
+        Files.delete(testClassesDir.resolve("com/acme/legacy"));
+        Set<String> testClasses = new TestClassInventory(inventoryFile()).getTestClasses(testClassesDir);
+
+        // then
+        assertEquals(new HashSet<>(Arrays.asList("com.acme.OrderServiceTest", "com.acme.payment.PaymentServiceTest")),
+                testClasses);
+    }
+
+    /**
+     * A dir listed within the modification time granularity is listed again next time, as it may
+     * have changed since without its modification time moving.
+     */
+    @Test
+    void recentlyModifiedDirIsListedAgain() throws Exception {
+        // given - the dirs were just written, so the inventory can't trust their modification times
+        write("com/acme/OrderServiceTest.class");
+        new TestClassInventory(inventoryFile()).getTestClasses(testClassesDir);
+        FileTime listed = Files.getLastModifiedTime(testClassesDir.resolve("com/acme"));
+
+        // when
+        write("com/acme/PaymentServiceTest.class");
+        Files.setLastModifiedTime(testClassesDir.resolve("com/acme"), listed);
+        Set<String> testClasses = new TestClassInventory(inventoryFile()).getTestClasses(testClassesDir);
+
+        // then
+        assertTrue(testClasses.contains("com.acme.PaymentServiceTest"));
+    }
+
+    private File inventoryFile() {
+        return new File(buildDir, "test-class-inventory.ser");
+    }
+
+    private void write(String path) throws Exception {
+        Path file = testClassesDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[0]);
+    }
+
+    private void ageAllDirs() throws Exception {
+        try (Stream<Path> paths = Files.walk(testClassesDir)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(path)) {
+                    Files.setLastModifiedTime(path, FileTime.fromMillis(AN_HOUR_AGO));
+                }
+            }
+        }
+    }
+}
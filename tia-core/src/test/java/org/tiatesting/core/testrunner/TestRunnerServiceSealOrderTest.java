@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.tiatesting.core.model.ClassImpactTracker;
 import org.tiatesting.core.model.LibraryPublish;
 import org.tiatesting.core.model.MethodImpactTracker;
+import org.tiatesting.core.model.MethodLineCoverage;
 import org.tiatesting.core.model.PendingLibraryForcedSelection;
 import org.tiatesting.core.model.PendingLibraryImpactedMethod;
 import org.tiatesting.core.model.TestRunHistoryEntry;
@@ -355,11 +356,17 @@ class TestRunnerServiceSealOrderTest {
         @Override
         public Map<Integer, Set<String>> getTestSuitesForMethods(Set<Integer> methodIds) { return delegate.getTestSuitesForMethods(methodIds); }
         @Override
+        public Map<String, Set<String>> getTestCasesForMethods(Set<Integer> methodIds) { return delegate.getTestCasesForMethods(methodIds); }
+        @Override
+        public Map<String, Map<Integer, MethodLineCoverage>> getMethodLineCoverage(Set<Integer> methodIds) { return delegate.getMethodLineCoverage(methodIds); }
+        @Override
         public int getNumTestSuites() { return delegate.getNumTestSuites(); }
         @Override
         public int getNumSourceMethods() { return delegate.getNumSourceMethods(); }
         @Override
         public Set<String> getTestSuitesFailed() { return delegate.getTestSuitesFailed(); }
+        @Override
+        public Set<String> getTestSuitesDeferred() { return delegate.getTestSuitesDeferred(); }
 
         @Override
         public void persistCoreData(TiaData tiaData) {
@@ -375,6 +382,11 @@ class TestRunnerServiceSealOrderTest {
             delegate.persistTestSuitesFailed(testSuitesFailed);
         }
         @Override
+        public void persistTestSuitesDeferred(Set<String> testSuitesDeferred) {
+            callOrder.add("persistTestSuitesDeferred");
+            delegate.persistTestSuitesDeferred(testSuitesDeferred);
+        }
+        @Override
         public void clearUnsealedTestSuites() {
             callOrder.add("clearUnsealedTestSuites");
             delegate.clearUnsealedTestSuites();
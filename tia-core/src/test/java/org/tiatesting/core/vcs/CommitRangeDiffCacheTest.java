@@ -0,0 +1,223 @@
+package org.tiatesting.core.vcs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tiatesting.core.diff.ChangeType;
+import org.tiatesting.core.diff.SourceFileDiffContext;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Verifies that {@link CommitRangeDiffCache} reads each commit range from the VCS once - in memory
+ * within one reader, and across readers when persisted - and loads content only for the files
+ * that missed the cache, and that the persisted ranges are bounded. See the "Commit-range diff
+ * cache" chapter in {@code WIKI.md}.
+ */
+class CommitRangeDiffCacheTest {
+
+    private static final List<String> DIRS = Collections.singletonList("src/main/java");
+
+    @TempDir
+    File tempDir;
+
+    /**
+     * A second read of the same range and dirs is served from memory, as new diff contexts.
+     */
+    @Test
+    void diffFilesAreReadOncePerRangeAndDirs(){
+        // given
+        CommitRangeDiffCache cache = new CommitRangeDiffCache();
+        AtomicInteger reads = new AtomicInteger();
+
+        // when
+        Set<SourceFileDiffContext> first = cache.getDiffFiles("a", "b", DIRS, () -> {
+            reads.incrementAndGet();
+            return diffs("Foo.java");
+        });
+        first.iterator().next().setSourceContentNew("set by the caller");
+        Set<SourceFileDiffContext> second = cache.getDiffFiles("a", "b", DIRS, () -> {
+            reads.incrementAndGet();
+            return diffs("Foo.java");
+        });
+
+        // then
+        assertEquals(1, reads.get());
+        SourceFileDiffContext cached = second.iterator().next();
+        assertEquals("Foo.java", cached.getVcsFetchKey());
+        assertEquals(ChangeType.MODIFY, cached.getChangeType());
+        assertNull(cached.getSourceContentNew());
+    }
+
+    /**
+     * A different range is a miss.
+     */
+    @Test
+    void aDifferentRangeIsReadAgain(){
+        // given
+        CommitRangeDiffCache cache = new CommitRangeDiffCache();
+        AtomicInteger reads = new AtomicInteger();
+
+        // when
+        cache.getChangedFilePaths("a", "b", () -> pathsRead(reads));
+        cache.getChangedFilePaths("a", "c", () -> pathsRead(reads));
+        cache.getChangedFilePaths("a", "b", () -> pathsRead(reads));
+
+        // then
+        assertEquals(2, reads.get());
+    }
+
+    /**
+     * Only the files without cached content are passed to the content reader.
+     */
+    @Test
+    void contentIsLoadedOnlyForTheMisses(){
+        // given - Foo's content was loaded by an earlier call
+        CommitRangeDiffCache cache = new CommitRangeDiffCache();
+        cache.loadContentForDiffs("a", "b", diffs("Foo.java"), CommitRangeDiffCacheTest::loadContent);
+        Set<SourceFileDiffContext> diffs = diffs("Foo.java", "Bar.java");
+        List<String> loaded = new ArrayList<>();
+
+        // when
+        cache.loadContentForDiffs("a", "b", diffs, misses -> {
+            for (SourceFileDiffContext miss : misses) {
+                loaded.add(miss.getVcsFetchKey());
+            }
+            loadContent(misses);
+        });
+
+        // then
+        assertEquals(Collections.singletonList("Bar.java"), loaded);
+        for (SourceFileDiffContext diff : diffs) {
+            assertEquals("old " + diff.getVcsFetchKey(), diff.getSourceContentOriginal());
+            assertEquals("new " + diff.getVcsFetchKey(), diff.getSourceContentNew());
+        }
+    }
+
+    /**
+     * With a persist dir, a new cache (a later invocation) reads the range from disk.
+     */
+    @Test
+    void aPersistedRangeIsReadByALaterInvocation(){
+        // given
+        CommitRangeDiffCache cache = new CommitRangeDiffCache();
+        cache.setPersistDir(tempDir);
+        cache.getChangedFilePaths("a", "b", () -> new HashSet<>(Collections.singletonList("pom.xml")));
+        cache.getDiffFiles("a", "b", DIRS, () -> diffs("Foo.java"));
+        cache.loadContentForDiffs("a", "b", diffs("Foo.java"), CommitRangeDiffCacheTest::loadContent);
+
+        CommitRangeDiffCache laterCache = new CommitRangeDiffCache();
+        laterCache.setPersistDir(tempDir);
+        AtomicInteger reads = new AtomicInteger();
+
+        // when
+        Set<String> paths = laterCache.getChangedFilePaths("a", "b", () -> pathsRead(reads));
+        Set<SourceFileDiffContext> diffs = laterCache.getDiffFiles("a", "b", DIRS, () -> {
+            reads.incrementAndGet();
+            return diffs("Foo.java");
+        });
+        laterCache.loadContentForDiffs("a", "b", diffs, misses -> reads.incrementAndGet());
+
+        // then
+        assertEquals(0, reads.get());
+        assertEquals(Collections.singleton("pom.xml"), paths);
+        assertEquals("new Foo.java", diffs.iterator().next().getSourceContentNew());
+    }
+
+    /**
+     * A read that misses persists only what it read, leaving the range's earlier parts as written.
+     */
+    @Test
+    void aMissPersistsOnlyWhatItRead() throws Exception {
+        // given
+        CommitRangeDiffCache cache = new CommitRangeDiffCache();
+        cache.setPersistDir(tempDir);
+        cache.loadContentForDiffs("a", "b", diffs("Foo.java"), CommitRangeDiffCacheTest::loadContent);
+        File rangeDir = cache.getRangeDir("a", "b");
+        File firstPart = rangeDir.listFiles()[0];
+        byte[] firstPartBytes = Files.readAllBytes(firstPart.toPath());
+
+        // when
+        cache.loadContentForDiffs("a", "b", diffs("Foo.java", "Bar.java"), CommitRangeDiffCacheTest::loadContent);
+
+        // then
+        assertEquals(2, rangeDir.listFiles().length);
+        assertArrayEquals(firstPartBytes, Files.readAllBytes(firstPart.toPath()));
+
+        CommitRangeDiffCache laterCache = new CommitRangeDiffCache();
+        laterCache.setPersistDir(tempDir);
+        AtomicInteger reads = new AtomicInteger();
+        laterCache.loadContentForDiffs("a", "b", diffs("Foo.java", "Bar.java"), misses -> reads.incrementAndGet());
+        assertEquals(0, reads.get());
+    }
+
+    /**
+     * Once a new range takes the persist dir over the limit, the least recently used range is
+     * deleted and a later invocation reads it from the VCS again.
+     */
+    @Test
+    void leastRecentlyUsedRangesAreEvicted(){
+        // given
+        CommitRangeDiffCache cache = new CommitRangeDiffCache();
+        cache.setPersistDir(tempDir);
+        for (int i = 0; i < CommitRangeDiffCache.MAX_ENTRIES; i++){
+            cache.getChangedFilePaths("a", "head" + i, () -> Collections.singleton("Foo.java"));
+            backdate(cache.getRangeDir("a", "head" + i), CommitRangeDiffCache.MAX_ENTRIES - i);
+        }
+
+        // when
+        cache.getChangedFilePaths("a", "new", () -> Collections.singleton("Foo.java"));
+
+        // then
+        assertEquals(CommitRangeDiffCache.MAX_ENTRIES, tempDir.listFiles().length);
+
+        CommitRangeDiffCache laterCache = new CommitRangeDiffCache();
+        laterCache.setPersistDir(tempDir);
+        AtomicInteger reads = new AtomicInteger();
+        laterCache.getChangedFilePaths("a", "head1", () -> pathsRead(reads));
+        laterCache.getChangedFilePaths("a", "new", () -> pathsRead(reads));
+        assertEquals(0, reads.get());
+        laterCache.getChangedFilePaths("a", "head0", () -> pathsRead(reads));
+        assertEquals(1, reads.get());
+    }
+
+    /**
+     * Move a range dir the given number of minutes into the past - the dirs written in one test
+     * are too close together to order them by their file times.
+     */
+    private static void backdate(File rangeDir, int minutes){
+        rangeDir.setLastModified(System.currentTimeMillis() - minutes * 60_000L);
+    }
+
+    private static Set<String> pathsRead(AtomicInteger reads){
+        reads.incrementAndGet();
+        return Collections.singleton("Foo.java");
+    }
+
+    private static Set<SourceFileDiffContext> diffs(String... fetchKeys){
+        Set<SourceFileDiffContext> diffs = new HashSet<>();
+        for (String fetchKey : fetchKeys){
+            SourceFileDiffContext diff = new SourceFileDiffContext(fetchKey, fetchKey, ChangeType.MODIFY);
+            diff.setVcsFetchKey(fetchKey);
+            diffs.add(diff);
+        }
+        return diffs;
+    }
+
+    private static void loadContent(Iterable<SourceFileDiffContext> diffs){
+        for (SourceFileDiffContext diff : diffs){
+            diff.setSourceContentOriginal("old " + diff.getVcsFetchKey());
+            diff.setSourceContentNew("new " + diff.getVcsFetchKey());
+        }
+    }
+}
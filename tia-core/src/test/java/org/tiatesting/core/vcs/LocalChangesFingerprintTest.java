@@ -0,0 +1,83 @@
+package org.tiatesting.core.vcs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Verifies that {@link LocalChangesFingerprint} changes with the content of the locally changed
+ * files, and not with the order the VCS lists them in. See the "Selection result cache" chapter
+ * in {@code WIKI.md}.
+ */
+class LocalChangesFingerprintTest {
+
+    @TempDir
+    File workTree;
+
+    /**
+     * The same changes give the same fingerprint, whatever order they're listed in.
+     */
+    @Test
+    void fingerprintIgnoresTheOrderOfThePaths() throws Exception {
+        // given
+        write("src/main/java/com/acme/Order.java", "class Order {}");
+        write("src/main/java/com/acme/Payment.java", "class Payment {}");
+
+        // when
+        String first = LocalChangesFingerprint.compute(workTree,
+                Arrays.asList("src/main/java/com/acme/Order.java", "src/main/java/com/acme/Payment.java"));
+        String second = LocalChangesFingerprint.compute(workTree,
+                Arrays.asList("src/main/java/com/acme/Payment.java", "src/main/java/com/acme/Order.java"));
+
+        // then
+        assertEquals(first, second);
+    }
+
+    /**
+     * Editing a changed file again changes the fingerprint, though the changed paths are the same.
+     */
+    @Test
+    void fingerprintChangesWithTheContent() throws Exception {
+        // given
+        write("src/main/java/com/acme/Order.java", "class Order {}");
+        String before = LocalChangesFingerprint.compute(workTree, Arrays.asList("src/main/java/com/acme/Order.java"));
+
+        // when
+        write("src/main/java/com/acme/Order.java", "class Order { int total; }");
+        String after = LocalChangesFingerprint.compute(workTree, Arrays.asList("src/main/java/com/acme/Order.java"));
+
+        // then
+        assertNotEquals(before, after);
+    }
+
+    /**
+     * A deleted file is fingerprinted as deleted, so deleting a changed file changes the fingerprint.
+     */
+    @Test
+    void fingerprintChangesWhenAChangedFileIsDeleted() throws Exception {
+        // given
+        File order = write("src/main/java/com/acme/Order.java", "");
+        String before = LocalChangesFingerprint.compute(workTree, Arrays.asList("src/main/java/com/acme/Order.java"));
+
+        // when
+        Files.delete(order.toPath());
+        String after = LocalChangesFingerprint.compute(workTree, Arrays.asList("src/main/java/com/acme/Order.java"));
+
+        // then
+        assertNotEquals(before, after);
+    }
+
+    private File write(String path, String content) throws Exception {
+        File file = new File(workTree, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,382 @@
+package org.tiatesting.daemon;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tiatesting.core.daemon.SelectionDaemonEndpoint;
+import org.tiatesting.core.daemon.SelectionDaemonRequest;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelector;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+import org.tiatesting.core.persistence.DataStore;
+import org.tiatesting.core.persistence.DataStoreFactory;
+import org.tiatesting.core.persistence.dialect.SqlDialectRegistry;
+import org.tiatesting.core.persistence.h2.H2ConnectionSettings;
+import org.tiatesting.core.vcs.VCSReader;
+import org.tiatesting.vcs.git.GitReaderFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A long-lived process that selects the tests for a developer's local workspace, so each local
+ * {@code mvn test} / {@code gradle test} doesn't pay the JVM startup, DB open, schema checks and
+ * VCS scanning from scratch. See the "Selection daemon" chapter in WIKI.md.
+ *
+ * <p>The daemon serves one Git project and its Tia DB. It keeps the JGit repository (and its
+ * commit-range diff cache) open, keeps a server-mode DB connection open, and watches the working
+ * tree. The branch and head commit are read again for each request. A request with the same
+ * settings as the previous one, made while the working tree, branch, head commit, local changes and
+ * embedded DB file are unchanged, is answered with the previous selection without reading the DB
+ * at all. The watcher's events arrive asynchronously and can lag a save, so the local changes are
+ * also compared by their fingerprint rather than by the watcher alone.
+ *
+ * <p>An embedded H2 DB is opened per request rather than held open: the test JVM opens the same
+ * file to persist the test run, and H2 locks the file to one process at a time.
+ *
+ * <p>Requests are served one at a time - the selection reads the VCS through a single reader. A
+ * connection that doesn't send its request within {@link #REQUEST_READ_TIMEOUT_MS} is dropped.
+ * The daemon never updates the mapping, so the plugins only consult it for runs that don't either.
+ *
+ * <p>Started with {@code key=value} arguments:
+ * <pre>
+ *   java -jar tia-daemon-runtime.jar projectDir=/path/to/project endpointFile=/path/to/tia-daemon.endpoint \
+ *       dbFilePath=/path/to/db [dbUrl=... dbUser=... dbPassword=... dbDialect=...] [gitNativeCli=true]
+ * </pre>
+ */
+public class TiaSelectionDaemon {
+
+    private static final Logger log = LoggerFactory.getLogger(TiaSelectionDaemon.class);
+
+    /**
+     * Refuse requests bigger than any real selection settings could be, before allocating for them.
+     */
+    private static final int MAX_REQUEST_BYTES = 1024 * 1024;
+
+    /**
+     * Drop a connection that doesn't send its request promptly - requests are served one at a
+     * time, so an idle connection would otherwise hold up every build.
+     */
+    static final int REQUEST_READ_TIMEOUT_MS = 5000;
+
+    private static final String NO_LOCAL_CHANGES_CHECKED = "";
+
+    private final File projectDir;
+    private final File endpointFile;
+    private final String dbFilePath;
+    private final String dbUrl;
+    private final String dbUser;
+    private final String dbPassword;
+    private final String dbDialect;
+    private final VCSReader vcsReader;
+    private final WorkingTreeWatcher workingTreeWatcher;
+
+    private DataStore serverModeDataStore;
+    private String serverModeDataStoreBranch;
+    private CachedSelection cachedSelection;
+
+    TiaSelectionDaemon(final Map<String, String> options) throws IOException {
+        this.projectDir = new File(requireOption(options, "projectDir")).getCanonicalFile();
+        this.endpointFile = new File(requireOption(options, "endpointFile"));
+        this.dbFilePath = options.get("dbFilePath") != null
+                ? new File(options.get("dbFilePath")).getCanonicalPath() : null;
+        this.dbUrl = options.get("dbUrl");
+        this.dbUser = options.get("dbUser");
+        this.dbPassword = options.get("dbPassword");
+        this.dbDialect = options.get("dbDialect");
+        this.vcsReader = GitReaderFactory.newReader(projectDir.getPath(),
+                Boolean.parseBoolean(options.get("gitNativeCli")));
+
+        List<Path> ignoredDirs = new ArrayList<>();
+        if (dbFilePath != null) {
+            // the DB file changes on every test run; it's compared by its own stamp
+            ignoredDirs.add(Paths.get(dbFilePath));
+        }
+        this.workingTreeWatcher = new WorkingTreeWatcher(projectDir.toPath(), ignoredDirs);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        new TiaSelectionDaemon(options).serve();
+    }
+
+    /**
+     * Listen on a loopback port, publish it to the endpoint file and serve requests until the
+     * process is stopped.
+     */
+    void serve() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            SelectionDaemonEndpoint endpoint = SelectionDaemonEndpoint.newEndpoint(serverSocket.getLocalPort());
+            endpoint.write(endpointFile);
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "tia-selection-daemon-shutdown"));
+            log.info("Tia selection daemon for {} listening on port {}", projectDir, endpoint.getPort());
+
+            byte[] token = endpoint.getToken().getBytes(StandardCharsets.UTF_8);
+            while (true) {
+                try (Socket socket = serverSocket.accept()) {
+                    socket.setSoTimeout(REQUEST_READ_TIMEOUT_MS);
+                    handle(socket, token);
+                } catch (SocketTimeoutException e) {
+                    log.warn("Dropped a connection that didn't send a request within {} ms", REQUEST_READ_TIMEOUT_MS);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to serve a Tia selection request", e);
+                }
+            }
+        }
+    }
+
+    private void handle(final Socket socket, final byte[] token) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+        if (!MessageDigest.isEqual(token, in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Refused a request without the daemon's token");
+            return;
+        }
+
+        int requestLength = in.readInt();
+        if (requestLength < 0 || requestLength > MAX_REQUEST_BYTES) {
+            log.warn("Refused a request of {} bytes", requestLength);
+            return;
+        }
+        byte[] requestBytes = new byte[requestLength];
+        in.readFully(requestBytes);
+
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        try {
+            TestSelectorResult testSelectorResult = select(readRequest(requestBytes), requestBytes);
+            out.writeBoolean(true);
+            out.writeObject(testSelectorResult);
+        } catch (RuntimeException e) {
+            log.warn("Failed to select the tests", e);
+            out.writeBoolean(false);
+            out.writeUTF(String.valueOf(e.getMessage()));
+        }
+        out.flush();
+    }
+
+    private static SelectionDaemonRequest readRequest(final byte[] requestBytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(requestBytes))) {
+            return (SelectionDaemonRequest) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new IllegalArgumentException("Not a Tia selection request: " + e, e);
+        }
+    }
+
+    /**
+     * Select the tests for the request, reusing the previous selection when nothing it depends on
+     * changed since.
+     */
+    TestSelectorResult select(final SelectionDaemonRequest request, final byte[] requestBytes) {
+        long startTime = System.currentTimeMillis();
+        checkServedProject(request);
+
+        // read the generation before the VCS and DB: a change made while selecting makes the selection stale
+        long generation = workingTreeWatcher.getGeneration();
+        // the reader outlives commits, checkouts and pulls, which the watcher doesn't see
+        vcsReader.refreshHead();
+        String branch = vcsReader.getBranchName();
+        String headCommit = vcsReader.getHeadCommit();
+
+        if (cachedSelection != null && workingTreeWatcher.isWatching() && isEmbeddedH2()
+                && cachedSelection.isFor(requestBytes, branch, headCommit, generation, getDbFileStamp())
+                // the DB file is unchanged, so the stored commit the fingerprint is taken against is too
+                && cachedSelection.hasLocalChanges(getLocalChangesFingerprint(request, cachedSelection.storedCommit))) {
+            log.info("Reused the previous test selection, nothing changed since (ms): "
+                    + (System.currentTimeMillis() - startTime));
+            return cachedSelection.testSelectorResult;
+        }
+
+        TestSelectorResult testSelectorResult;
+        String storedCommit = null;
+        String localChangesFingerprint = null;
+        if (isServerMode()) {
+            testSelectorResult = selectTests(request, getServerModeDataStore(branch));
+        } else {
+            // release the H2 file lock straight after, for the test JVM
+            try (DataStore dataStore = DataStoreFactory.fromConfig(dbFilePath, dbUrl, dbUser, dbPassword, dbDialect, branch)) {
+                // fingerprint before selecting: a change made while selecting makes the selection stale
+                storedCommit = dataStore.getTiaCore().getCommitValue();
+                localChangesFingerprint = getLocalChangesFingerprint(request, storedCommit);
+                testSelectorResult = selectTests(request, dataStore);
+            }
+        }
+
+        // stamp the DB file after closing it, so the daemon's own open doesn't invalidate the selection
+        cachedSelection = new CachedSelection(requestBytes, branch, headCommit, generation, getDbFileStamp(),
+                storedCommit, localChangesFingerprint, testSelectorResult);
+        log.info("Time to select the tests (ms): " + (System.currentTimeMillis() - startTime));
+        return testSelectorResult;
+    }
+
+    /**
+     * Fingerprint the local changes the request's selection depends on.
+     *
+     * @return the fingerprint; a constant when the request doesn't check local changes; {@code null}
+     *         when there's no stored commit or the reader can't fingerprint, so no selection is reused
+     */
+    private String getLocalChangesFingerprint(final SelectionDaemonRequest request, final String storedCommit) {
+        if (!request.isCheckLocalChanges()) {
+            return NO_LOCAL_CHANGES_CHECKED;
+        }
+        return storedCommit != null ? vcsReader.getLocalChangesFingerprint(storedCommit) : null;
+    }
+
+    private TestSelectorResult selectTests(final SelectionDaemonRequest request, final DataStore dataStore) {
+        TestSelector testSelector = new TestSelector(dataStore);
+        testSelector.setPerTestSelection(request.isPerTestSelection());
+        testSelector.setLineLevelSelection(request.isLineLevelSelection());
+        testSelector.setMaxRunTimeMs(request.getMaxRunTimeMs());
+        testSelector.setShard(request.getShardIndex(), request.getShardCount());
+        testSelector.setFailFastOrdering(request.isFailFastOrdering());
+        // the daemon never updates the mapping, and library impact analysis needs the build tool's dependency resolution
+        return testSelector.selectTestsToIgnore(vcsReader, request.getSourceFilesDirs(), request.getTestFilesDirs(),
+                request.isCheckLocalChanges(), null, request.getStaticTestSelectionConfig(), false);
+    }
+
+    /**
+     * Refuse a request for another project or DB than the daemon was started for.
+     */
+    private void checkServedProject(final SelectionDaemonRequest request) {
+        try {
+            if (request.getProjectDir() == null
+                    || !projectDir.equals(new File(request.getProjectDir()).getCanonicalFile())) {
+                throw new IllegalArgumentException("The daemon serves the project " + projectDir
+                        + ", not " + request.getProjectDir());
+            }
+            String requestDbFilePath = isBlank(request.getDbFilePath()) ? null
+                    : new File(request.getDbFilePath()).getCanonicalPath();
+            boolean sameDb = isServerMode()
+                    ? dbUrl.equals(request.getDbUrl())
+                    : isBlank(request.getDbUrl()) && Objects.equals(dbFilePath, requestDbFilePath);
+            if (!sameDb) {
+                throw new IllegalArgumentException("The daemon serves the Tia DB "
+                        + (isServerMode() ? dbUrl : dbFilePath) + ", not the one the build is configured with");
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private DataStore getServerModeDataStore(final String branch) {
+        if (serverModeDataStore != null && !branch.equals(serverModeDataStoreBranch)) {
+            // the schema is per branch
+            serverModeDataStore.close();
+            serverModeDataStore = null;
+        }
+        if (serverModeDataStore == null) {
+            serverModeDataStore = DataStoreFactory.fromConfig(dbFilePath, dbUrl, dbUser, dbPassword, dbDialect, branch);
+            serverModeDataStoreBranch = branch;
+        }
+        return serverModeDataStore;
+    }
+
+    /**
+     * @return the last modified time and size of the embedded H2 DB file, or {@code null} for any
+     *         other store, whose changes can't be stamped
+     */
+    private String getDbFileStamp() {
+        if (!isEmbeddedH2()) {
+            return null;
+        }
+        File dbFile = H2ConnectionSettings.embedded(dbFilePath).getEmbeddedDbFile();
+        return dbFile.lastModified() + ":" + dbFile.length();
+    }
+
+    private boolean isServerMode() {
+        return !isBlank(dbUrl);
+    }
+
+    /**
+     * @return whether the DB is an embedded H2 file - the only store a selection can be reused
+     *         against, as its changes show in the file's stamp
+     */
+    private boolean isEmbeddedH2() {
+        return !isServerMode() && dbFilePath != null && "h2".equals(SqlDialectRegistry.forUrl(dbUrl, dbDialect).id());
+    }
+
+    void shutdown() {
+        endpointFile.delete();
+        try {
+            workingTreeWatcher.close();
+        } catch (IOException e) {
+            log.debug("Failed to close the working tree watcher", e);
+        }
+        if (serverModeDataStore != null) {
+            serverModeDataStore.close();
+        }
+        vcsReader.close();
+    }
+
+    private static String requireOption(final Map<String, String> options, final String key) {
+        String value = options.get(key);
+        if (isBlank(value)) {
+            throw new IllegalArgumentException("The " + key + " option is required");
+        }
+        return value;
+    }
+
+    private static boolean isBlank(final String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * The selection made for the previous request, and the state of everything it depends on.
+     */
+    private static class CachedSelection {
+        private final byte[] requestBytes;
+        private final String branch;
+        private final String headCommit;
+        private final long generation;
+        private final String dbFileStamp;
+        private final String storedCommit;
+        private final String localChangesFingerprint;
+        private final TestSelectorResult testSelectorResult;
+
+        CachedSelection(final byte[] requestBytes, final String branch, final String headCommit, final long generation,
+                        final String dbFileStamp, final String storedCommit, final String localChangesFingerprint,
+                        final TestSelectorResult testSelectorResult) {
+            this.requestBytes = requestBytes;
+            this.branch = branch;
+            this.headCommit = headCommit;
+            this.generation = generation;
+            this.dbFileStamp = dbFileStamp;
+            this.storedCommit = storedCommit;
+            this.localChangesFingerprint = localChangesFingerprint;
+            this.testSelectorResult = testSelectorResult;
+        }
+
+        boolean isFor(final byte[] requestBytes, final String branch, final String headCommit, final long generation,
+                      final String dbFileStamp) {
+            return Arrays.equals(this.requestBytes, requestBytes) && this.branch.equals(branch)
+                    && Objects.equals(this.headCommit, headCommit) && this.generation == generation
+                    && Objects.equals(this.dbFileStamp, dbFileStamp);
+        }
+
+        boolean hasLocalChanges(final String localChangesFingerprint) {
+            return this.localChangesFingerprint != null && this.localChangesFingerprint.equals(localChangesFingerprint);
+        }
+    }
+}
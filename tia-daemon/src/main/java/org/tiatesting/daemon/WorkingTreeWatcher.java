@@ -0,0 +1,172 @@
+package org.tiatesting.daemon;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches a project's working tree for changes, so the selection daemon can tell whether the
+ * selection it made for the previous request still holds. Every change in the tree bumps a
+ * generation counter; a selection made at one generation is stale once the generation moves on.
+ *
+ * <p>The build output and VCS metadata dirs aren't watched - a build rewrites them without
+ * changing the local diff. The head commit is compared by the daemon per request instead. They're
+ * only recognised at a project root - the project dir, or a module dir holding a build file - so
+ * a source package that happens to be named e.g. {@code build} is still watched.
+ */
+class WorkingTreeWatcher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkingTreeWatcher.class);
+
+    private static final Set<String> IGNORED_DIR_NAMES = new HashSet<>(Arrays.asList(
+            ".git", ".gradle", ".idea", "target", "build", "node_modules"));
+
+    private static final Set<String> BUILD_FILE_NAMES = new HashSet<>(Arrays.asList(
+            "pom.xml", "build.gradle", "build.gradle.kts", "settings.gradle", "settings.gradle.kts"));
+
+    private final Path projectDir;
+
+    private final WatchService watchService;
+    private final Set<Path> ignoredDirs;
+    private final AtomicLong generation = new AtomicLong();
+    private final Thread watchThread;
+    private volatile boolean watching = true;
+
+    /**
+     * Register the project dir tree with the file system's watch service and start watching it.
+     *
+     * @param projectDir the project dir
+     * @param ignoredDirs further dirs not to watch, e.g. an embedded DB dir inside the project
+     * @throws IOException when the tree can't be registered
+     */
+    WorkingTreeWatcher(final Path projectDir, final Collection<Path> ignoredDirs) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.projectDir = projectDir.toAbsolutePath().normalize();
+        this.ignoredDirs = new HashSet<>();
+        for (Path ignoredDir : ignoredDirs) {
+            this.ignoredDirs.add(ignoredDir.toAbsolutePath().normalize());
+        }
+
+        long startTime = System.currentTimeMillis();
+        registerTree(this.projectDir);
+        log.info("Time to register the working tree with the watch service (ms): " + (System.currentTimeMillis() - startTime));
+
+        this.watchThread = new Thread(this::watch, "tia-working-tree-watcher");
+        this.watchThread.setDaemon(true);
+        this.watchThread.start();
+    }
+
+    /**
+     * @return the current generation of the working tree
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @return whether the whole tree is still watched. When a dir couldn't be watched its changes
+     *         would go unseen, so no selection can be reused.
+     */
+    boolean isWatching() {
+        return watching;
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    generation.incrementAndGet();
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        // watch the dirs created in the tree too, e.g. a new package
+                        Path created = dir.resolve((Path) event.context());
+                        if (Files.isDirectory(created)) {
+                            registerCreatedTree(created);
+                        }
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // the daemon is shutting down
+        }
+        watching = false;
+    }
+
+    private void registerCreatedTree(final Path created) {
+        try {
+            registerTree(created);
+        } catch (IOException e) {
+            // a dir removed straight after it was created (e.g. a temp dir) doesn't need watching
+            if (Files.isDirectory(created)) {
+                log.error("Couldn't watch " + created + " - every request will be selected afresh", e);
+                watching = false;
+            }
+        }
+    }
+
+    private void registerTree(final Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (isIgnored(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.OVERFLOW);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean isIgnored(final Path dir) {
+        if (ignoredDirs.contains(dir)) {
+            return true;
+        }
+        Path fileName = dir.getFileName();
+        Path parent = dir.getParent();
+        return fileName != null && parent != null && IGNORED_DIR_NAMES.contains(fileName.toString())
+                && isProjectRoot(parent);
+    }
+
+    /**
+     * @return whether the dir is the project dir or a module of it, i.e. holds a build file
+     */
+    private boolean isProjectRoot(final Path dir) {
+        if (dir.equals(projectDir)) {
+            return true;
+        }
+        for (String buildFileName : BUILD_FILE_NAMES) {
+            if (Files.isRegularFile(dir.resolve(buildFileName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        watchThread.interrupt();
+    }
+}
@@ -0,0 +1,153 @@
+package org.tiatesting.daemon;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tiatesting.core.daemon.SelectionDaemonRequest;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+import org.tiatesting.core.model.TiaData;
+import org.tiatesting.core.persistence.DataStore;
+import org.tiatesting.core.persistence.DataStoreFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Verifies that {@link TiaSelectionDaemon} reuses the previous selection only while the head
+ * commit and the local changes are unchanged. Builds a throwaway on-disk Git repository and embedded Tia DB per test.
+ * See the "Selection daemon" chapter in {@code WIKI.md}.
+ */
+class TiaSelectionDaemonTest {
+
+    private File projectDir;
+    private File dbDir;
+    private Git git;
+    private TiaSelectionDaemon daemon;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        projectDir = Files.createTempDirectory("tia-daemon-project-").toFile();
+        dbDir = Files.createTempDirectory("tia-daemon-db-").toFile();
+        git = Git.init().setDirectory(projectDir).setInitialBranch("main").call();
+        Files.write(new File(projectDir, "README.md").toPath(), "init".getBytes(StandardCharsets.UTF_8));
+        git.add().addFilepattern(".").call();
+        commit("init");
+
+        Map<String, String> options = new HashMap<>();
+        options.put("projectDir", projectDir.getAbsolutePath());
+        options.put("endpointFile", new File(dbDir, "tia-daemon.endpoint").getAbsolutePath());
+        options.put("dbFilePath", dbDir.getAbsolutePath());
+        daemon = new TiaSelectionDaemon(options);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (daemon != null) {
+            daemon.shutdown();
+        }
+        if (git != null) {
+            git.getRepository().close();
+            git.close();
+        }
+        FileUtils.deleteDirectory(projectDir);
+        FileUtils.deleteDirectory(dbDir);
+    }
+
+    /**
+     * A repeated request with nothing changed is answered with the previous selection.
+     */
+    @Test
+    void unchangedRequestReusesThePreviousSelection() throws Exception {
+        // given
+        SelectionDaemonRequest request = newRequest();
+        byte[] requestBytes = serialize(request);
+        TestSelectorResult first = daemon.select(request, requestBytes);
+
+        // when
+        TestSelectorResult second = daemon.select(request, requestBytes);
+
+        // then
+        assertSame(first, second);
+    }
+
+    /**
+     * A commit moves the head without touching the watched working tree; the next request must
+     * see the new head and select afresh.
+     */
+    @Test
+    void commitBetweenRequestsMissesThePreviousSelection() throws Exception {
+        // given
+        SelectionDaemonRequest request = newRequest();
+        byte[] requestBytes = serialize(request);
+        TestSelectorResult first = daemon.select(request, requestBytes);
+
+        // when - an empty commit only writes under .git, which the watcher ignores
+        commit("second");
+        TestSelectorResult second = daemon.select(request, requestBytes);
+
+        // then
+        assertNotSame(first, second);
+    }
+
+    /**
+     * A local edit made straight before the next request misses the previous selection, even
+     * before the working tree watcher reports it.
+     */
+    @Test
+    void localEditBeforeTheNextRequestMissesThePreviousSelection() throws Exception {
+        // given - a stored commit to fingerprint the local changes against
+        storeCommit(git.getRepository().resolve("HEAD").getName());
+        SelectionDaemonRequest request = newRequest(true);
+        byte[] requestBytes = serialize(request);
+        TestSelectorResult first = daemon.select(request, requestBytes);
+
+        // when
+        Files.write(new File(projectDir, "README.md").toPath(), "edited".getBytes(StandardCharsets.UTF_8));
+        TestSelectorResult second = daemon.select(request, requestBytes);
+
+        // then
+        assertNotSame(first, second);
+    }
+
+    private void storeCommit(final String commit) {
+        try (DataStore dataStore = DataStoreFactory.fromConfig(dbDir.getAbsolutePath(), null, null, null, null, "main")) {
+            TiaData tiaData = dataStore.getTiaCore();
+            tiaData.setCommitValue(commit);
+            dataStore.persistCoreData(tiaData);
+        }
+    }
+
+    private void commit(final String message) throws Exception {
+        git.commit().setMessage(message).setAllowEmpty(true).setAuthor("tia", "tia@example.com")
+                .setCommitter("tia", "tia@example.com").setSign(false).call();
+    }
+
+    private SelectionDaemonRequest newRequest() {
+        return newRequest(false);
+    }
+
+    private SelectionDaemonRequest newRequest(final boolean checkLocalChanges) {
+        return new SelectionDaemonRequest(projectDir.getAbsolutePath(), dbDir.getAbsolutePath(), null,
+                Collections.singletonList("src/main/java"), Collections.singletonList("src/test/java"),
+                checkLocalChanges, null);
+    }
+
+    private static byte[] serialize(final SelectionDaemonRequest request) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(request);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package org.tiatesting.daemon;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that {@link WorkingTreeWatcher} skips the build output dirs only at a project root,
+ * so a source package with the same name is still watched. See the "Selection daemon" chapter in
+ * {@code WIKI.md}.
+ */
+class WorkingTreeWatcherTest {
+
+    private static final long EVENT_WAIT_MS = 10_000;
+
+    private File projectDir;
+    private WorkingTreeWatcher watcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        projectDir = Files.createTempDirectory("tia-watcher-project-").toFile();
+        Files.write(new File(projectDir, "pom.xml").toPath(), "<project/>".getBytes(StandardCharsets.UTF_8));
+        new File(projectDir, "target").mkdirs();
+        new File(projectDir, "src/main/java/com/acme/build").mkdirs();
+        watcher = new WorkingTreeWatcher(projectDir.toPath(), Collections.emptyList());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        watcher.close();
+        FileUtils.deleteDirectory(projectDir);
+    }
+
+    @Test
+    void editInASourcePackageNamedBuildIsSeen() throws Exception {
+        // given
+        long generation = watcher.getGeneration();
+
+        // when
+        write("src/main/java/com/acme/build/Foo.java", "class Foo {}");
+
+        // then
+        assertTrue(awaitGenerationAfter(generation));
+    }
+
+    @Test
+    void editInTheProjectBuildOutputIsIgnored() throws Exception {
+        // given
+        long generation = watcher.getGeneration();
+
+        // when
+        write("target/Foo.class", "compiled");
+        Thread.sleep(500);
+
+        // then
+        assertEquals(generation, watcher.getGeneration());
+    }
+
+    private void write(final String path, final String content) throws Exception {
+        Files.write(new File(projectDir, path).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean awaitGenerationAfter(final long generation) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + EVENT_WAIT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            if (watcher.getGeneration() > generation) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+}
@@ -42,6 +42,16 @@ public abstract class TiaBasePlugin implements Plugin<Project> {
 
     private static final Logger LOGGER = Logging.getLogger(TiaBasePlugin.class);
 
+    /**
+     * The dir under the build dir the commit-range diff cache is persisted in.
+     */
+    private static final String DIFF_CACHE_DIR = "tia" + File.separator + "diff-cache";
+
+    /**
+     * The dir under the build dir the selection result cache is persisted in.
+     */
+    private static final String SELECTION_CACHE_DIR = "tia" + File.separator + "selection-cache";
+
     private TiaBaseTaskExtension tiaTaskExtension;
     private Project project;
 
@@ -148,10 +158,20 @@ public abstract class TiaBasePlugin implements Plugin<Project> {
                 List<String> testFilesDirs = getTestFilesDirs() != null ? Arrays.asList(getTestFilesDirs().split(",")) : null;
                 StringUtil.sanitizeInputArray(testFilesDirs);
                 TestSelector testSelector = new TestSelector(dataStore);
+                // A mapping-update run always runs whole suites, so only preview the per-test
+                // filter and line-level narrowing when the run being previewed would apply them.
+                testSelector.setPerTestSelection(Boolean.TRUE.equals(getPerTestSelection())
+                        && !Boolean.TRUE.equals(getUpdateDBMapping()));
+                testSelector.setLineLevelSelection(Boolean.TRUE.equals(getLineLevelSelection())
+                        && !Boolean.TRUE.equals(getUpdateDBMapping()));
+                testSelector.setMaxRunTimeMs(getMaxRunTimeMs() != null ? getMaxRunTimeMs() : 0L);
+                testSelector.setShard(getShardIndex() != null ? getShardIndex() : 0,
+                        getShardCount() != null ? getShardCount() : 1);
+                testSelector.setSelectionCacheDir(isPersistSelectionCache() ? getSelectionCacheDir(project) : null);
                 LibraryImpactAnalysisConfig libraryConfig = buildLibraryImpactAnalysisConfig();
                 StaticTestSelectionConfig staticMappingConfig = buildStaticTestSelectionConfig();
                 // Read-only preview: no mapping writes (updateDBMapping=false).
-                TestSelectorResult result = testSelector.selectTestsToIgnore(getVCSReader(), sourceFilesDirs,
+                TestSelectorResult result = testSelector.selectTestsToIgnore(buildVCSReader(), sourceFilesDirs,
                         testFilesDirs, isCheckLocalChanges(), libraryConfig, staticMappingConfig, false);
                 Set<String> testsToRun = result.getTestsToRun();
                 String lineSep = System.lineSeparator();
@@ -240,7 +260,7 @@ public abstract class TiaBasePlugin implements Plugin<Project> {
         String publishedVersion = String.valueOf(project.getVersion());
         String jarFilePath = resolveBuiltArchivePath();
 
-        VCSReader vcsReader = getVCSReader();
+        VCSReader vcsReader = buildVCSReader();
         StaticTestSelectionConfig staticConfig = buildStaticTestSelectionConfig();
         try (DataStore dataStore = buildDataStore(vcsReader.getBranchName())) {
             LibraryPublishStamper.PublishStampResult result = new LibraryPublishStamper()
@@ -274,6 +294,36 @@ public abstract class TiaBasePlugin implements Plugin<Project> {
 
     public abstract VCSReader getVCSReader();
 
+    /**
+     * Create the {@link VCSReader} for a task via {@link #getVCSReader()}, with its commit-range
+     * diff cache persisted under the build dir when {@code persistDiffCache} is enabled.
+     *
+     * @return the VCS reader
+     */
+    protected VCSReader buildVCSReader() {
+        VCSReader vcsReader = getVCSReader();
+        if (isPersistDiffCache()) {
+            vcsReader.setDiffCacheDir(getDiffCacheDir(project));
+        }
+        return vcsReader;
+    }
+
+    /**
+     * @param project the Gradle project
+     * @return the dir the commit-range diff cache is persisted in
+     */
+    public static File getDiffCacheDir(Project project) {
+        return new File(project.getLayout().getBuildDirectory().getAsFile().get(), DIFF_CACHE_DIR);
+    }
+
+    /**
+     * @param project the Gradle project
+     * @return the dir the selection result cache is persisted in
+     */
+    public static File getSelectionCacheDir(Project project) {
+        return new File(project.getLayout().getBuildDirectory().getAsFile().get(), SELECTION_CACHE_DIR);
+    }
+
     public String getProjectDir() {
         return tiaTaskExtension.getProjectDir();
     }
@@ -388,6 +438,62 @@ public abstract class TiaBasePlugin implements Plugin<Project> {
         return tiaTaskExtension.getCheckLocalChanges();
     }
 
+    /**
+     * @return whether per-test-method selection is enabled.
+     */
+    public Boolean getPerTestSelection() {
+        return tiaTaskExtension.getPerTestSelection();
+    }
+
+    /**
+     * @return whether line-level selection is enabled.
+     */
+    public Boolean getLineLevelSelection() {
+        return tiaTaskExtension.getLineLevelSelection();
+    }
+
+    /**
+     * @return the run-time budget (ms) for the selected tests, or {@code null} for no budget.
+     */
+    public Long getMaxRunTimeMs() {
+        return tiaTaskExtension.getMaxRunTimeMs();
+    }
+
+    /**
+     * @return the zero-based index of the shard this build runs, or {@code null} for shard {@code 0}.
+     */
+    public Integer getShardIndex() {
+        return tiaTaskExtension.getShardIndex();
+    }
+
+    /**
+     * @return the number of shards to split the selected tests across, or {@code null} for none.
+     */
+    public Integer getShardCount() {
+        return tiaTaskExtension.getShardCount();
+    }
+
+    /**
+     * @return whether a Git project is read with the native {@code git} executable rather than JGit.
+     */
+    public boolean isGitNativeCli() {
+        return Boolean.TRUE.equals(tiaTaskExtension.getGitNativeCli());
+    }
+
+    /**
+     * @return whether the commit-range diff cache is persisted under the build dir.
+     */
+    public boolean isPersistDiffCache() {
+        return Boolean.TRUE.equals(tiaTaskExtension.getPersistDiffCache());
+    }
+
+    /**
+     * @return whether the selection result cache is persisted under the build dir.
+     */
+    public boolean isPersistSelectionCache() {
+        return Boolean.TRUE.equals(tiaTaskExtension.getPersistSelectionCache());
+    }
+
     public String getSourceLibs() {
         return tiaTaskExtension.getSourceLibs();
     }
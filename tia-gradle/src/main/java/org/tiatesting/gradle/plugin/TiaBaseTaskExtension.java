@@ -26,6 +26,16 @@ public class TiaBaseTaskExtension {
     private Boolean updateDBStats;
     private Boolean updateDBTestRunHistory = Boolean.TRUE;
     private Boolean checkLocalChanges;
+    private Boolean perTestSelection;
+    private Boolean lineLevelSelection;
+    private Long maxRunTimeMs;
+    private Integer shardIndex;
+    private Integer shardCount;
+    private Boolean gitNativeCli;
+    private Boolean persistDiffCache;
+    private Boolean persistSelectionCache;
+    private Boolean parallelSelection;
+    private String selectionDaemonEndpointFile;
     private File reportOutputDir;
     private List<GradleStaticTestSelectionRule> staticTestSelectionRules = new ArrayList<>();
 
@@ -213,6 +223,188 @@ public class TiaBaseTaskExtension {
         this.checkLocalChanges = checkLocalChanges;
     }
 
+    /**
+     * @return whether per-test-method selection is enabled: mapping runs also collect coverage
+     *         per feature and selection runs only execute the impacted features of a spec. See
+     *         the "Per-test-method selection" chapter in WIKI.md.
+     */
+    @Input
+    @org.gradle.api.tasks.Optional
+    public Boolean getPerTestSelection() {
+        return perTestSelection;
+    }
+
+    /**
+     * @param perTestSelection whether to enable per-test-method selection.
+     */
+    public void setPerTestSelection(Boolean perTestSelection) {
+        this.perTestSelection = perTestSelection;
+    }
+
+    /**
+     * @return whether line-level selection is enabled: mapping runs also store the lines each
+     *         spec executed per method and selection runs skip specs that never executed the
+     *         changed lines. See the "Line-level selection" chapter in WIKI.md.
+     */
+    @Input
+    @org.gradle.api.tasks.Optional
+    public Boolean getLineLevelSelection() {
+        return lineLevelSelection;
+    }
+
+    /**
+     * @param lineLevelSelection whether to enable line-level selection.
+     */
+    public void setLineLevelSelection(Boolean lineLevelSelection) {
+        this.lineLevelSelection = lineLevelSelection;
+    }
+
+    /**
+     * @return the run-time budget (ms) for the selected tests: when the selection's estimated run
+     *         time exceeds it, only the highest-value specs that fit are run and the rest are
+     *         deferred to a later run. {@code null} or {@code 0} means no budget. See the
+     *         "Run-time budgeted selection" chapter in WIKI.md.
+     */
+    @Input
+    @org.gradle.api.tasks.Optional
+    public Long getMaxRunTimeMs() {
+        return maxRunTimeMs;
+    }
+
+    /**
+     * @param maxRunTimeMs the run-time budget (ms) for the selected tests.
+     */
+    public void setMaxRunTimeMs(Long maxRunTimeMs) {
+        this.maxRunTimeMs = maxRunTimeMs;
+    }
+
+    /**
+     * @return the zero-based index of the shard this build runs when the selected tests are split
+     *         across {@code shardCount} parallel CI agents. {@code null} means shard {@code 0}.
+     *         See the "Test sharding" chapter in WIKI.md.
+     */
+    @Input
+    @org.gradle.api.tasks.Optional
+    public Integer getShardIndex() {
+        return shardIndex;
+    }
+
+    /**
+     * @param shardIndex the zero-based index of the shard this build runs.
+     */
+    public void setShardIndex(Integer shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+
+    /**
+     * @return the number of parallel CI agents (shards) to split the selected tests across,
+     *         balanced on their recorded run times. {@code null}, {@code 0} or {@code 1} means no
+     *         sharding. See the "Test sharding" chapter in WIKI.md.
+     */
+    @Input
+    @org.gradle.api.tasks.Optional
+    public Integer getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @param shardCount the number of shards to split the selected tests across.
+     */
+    public void setShardCount(Integer shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * @return whether a Git project is read with the native {@code git} executable rather than
+     *         JGit. Faster on very large repositories, especially the local-changes scan. Requires
+     *         {@code git} on the {@code PATH}. See the "Native Git backend" chapter in WIKI.md.
+     */
+    @Input
+    @org.gradle.api.tasks.Optional
+    public Boolean getGitNativeCli() {
+        return gitNativeCli;
+    }
+
+    /**
+     * @param gitNativeCli whether to read a Git project with the native {@code git} executable.
+     */
+    public void setGitNativeCli(Boolean gitNativeCli) {
+        this.gitNativeCli = gitNativeCli;
+    }
+
+    /**
+     * @return whether the VCS reader's commit-range diff cache is persisted under
+     *         {@code build/tia/diff-cache}, so later tasks in the same build reading the same
+     *         commit range are served from disk rather than the VCS. See the "Commit-range diff
+     *         cache" chapter in WIKI.md.
+     */
+    @Input
+    @org.gradle.api.tasks.Optional
+    public Boolean getPersistDiffCache() {
+        return persistDiffCache;
+    }
+
+    /**
+     * @param persistDiffCache whether to persist the commit-range diff cache under the build dir.
+     */
+    public void setPersistDiffCache(Boolean persistDiffCache) {
+        this.persistDiffCache = persistDiffCache;
+    }
+
+    /**
+     * @return whether the test selections of runs that don't update the mapping are persisted under
+     *         {@code build/tia/selection-cache}, so a rerun with nothing changed reads the selection
+     *         back rather than redoing it. See the "Selection result cache" chapter in WIKI.md.
+     */
+    @Input
+    @org.gradle.api.tasks.Optional
+    public Boolean getPersistSelectionCache() {
+        return persistSelectionCache;
+    }
+
+    /**
+     * @param persistSelectionCache whether to persist the selection result cache under the build dir.
+     */
+    public void setPersistSelectionCache(Boolean persistSelectionCache) {
+        this.persistSelectionCache = persistSelectionCache;
+    }
+
+    /**
+     * @return whether the test selection of each test task runs as a Gradle worker item in a task of
+     *         its own ahead of the test task, so the selections of the test tasks across the build
+     *         run in parallel. See the "Parallel test selection across projects" chapter in WIKI.md.
+     */
+    @Input
+    @org.gradle.api.tasks.Optional
+    public Boolean getParallelSelection() {
+        return parallelSelection;
+    }
+
+    /**
+     * @param parallelSelection whether to select the tests of each test task as a Gradle worker item.
+     */
+    public void setParallelSelection(Boolean parallelSelection) {
+        this.parallelSelection = parallelSelection;
+    }
+
+    /**
+     * @return the endpoint file of a running Tia selection daemon. When set, the test task asks the
+     *         daemon to select the tests for a local run first, and selects them itself when no
+     *         daemon answers. See the "Selection daemon" chapter in WIKI.md.
+     */
+    @Input
+    @org.gradle.api.tasks.Optional
+    public String getSelectionDaemonEndpointFile() {
+        return selectionDaemonEndpointFile;
+    }
+
+    /**
+     * @param selectionDaemonEndpointFile the endpoint file of the Tia selection daemon.
+     */
+    public void setSelectionDaemonEndpointFile(String selectionDaemonEndpointFile) {
+        this.selectionDaemonEndpointFile = selectionDaemonEndpointFile;
+    }
+
     @Input
     @OutputDirectory
     public File getReportOutputDir() {
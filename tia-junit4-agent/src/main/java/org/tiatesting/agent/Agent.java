@@ -6,11 +6,14 @@ import org.slf4j.LoggerFactory;
 import org.tiatesting.core.agent.instrumentation.IgnoreTestInstrumentor;
 import org.tiatesting.core.agent.AgentOptions;
 import org.tiatesting.core.agent.ForkSystemProperties;
+import org.tiatesting.core.agent.SelectionHandoff;
+import org.tiatesting.core.agent.TestRunOrder;
 
 import java.io.IOException;
 import java.lang.instrument.Instrumentation;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -21,13 +24,40 @@ public class Agent {
 
     public static void premain(String agentArgs, Instrumentation instrumentation) {
         final AgentOptions agentOptions = new AgentOptions(agentArgs);
+        if (!agentOptions.getHandoffFile().isEmpty()) {
+            applySelectionHandoff(instrumentation, agentOptions.getHandoffFile());
+            return;
+        }
+
         applyForkSystemProperties(agentOptions.getForkPropertiesFile());
         instrumentIgnoredTests(instrumentation, agentOptions.getIgnoreTestsFile());
         setSelectedTestsSystemProperty(agentOptions.getSelectedTestsFile());
+        setTestRunOrderSystemProperty(agentOptions.getTestRunOrderFile());
         setLibraryJarsSystemProperty(agentOptions.getLibraryJarsFile());
         setDrainResultFileSystemProperty(agentOptions.getDrainResultFile());
     }
 
+    /**
+     * Apply the test selection from the selection handoff file the Maven plugin wrote. The file is
+     * mapped in place and only its path is published, as the {@code tiaHandoffFile} system property,
+     * for the test listener and the sorter to read their parts from. See the "Selection handoff
+     * file" chapter in WIKI.md.
+     *
+     * @param instrumentation the JVM instrumentation handle from {@code premain}
+     * @param handoffFile path to the selection handoff file written during selection
+     */
+    private static void applySelectionHandoff(Instrumentation instrumentation, String handoffFile) {
+        log.trace("Setting system property for {}: {}", SelectionHandoff.SYSTEM_PROPERTY, handoffFile);
+        System.setProperty(SelectionHandoff.SYSTEM_PROPERTY, handoffFile);
+        SelectionHandoff handoff = SelectionHandoff.fromSystemProperty();
+
+        ForkSystemProperties.applyEntriesToSystemProperties(handoff.getForkProperties());
+        Set<String> testsToIgnore = handoff.getTestsToIgnore();
+        new IgnoreTestInstrumentor().ignoreTests(testsToIgnore, instrumentation, Ignore.class);
+        setIgnoredTestSuiteCountSystemProperty(testsToIgnore);
+        setLibraryJarsSystemProperty(handoff.getLibraryJars());
+    }
+
     /**
      * Publish the system properties the build tool forwarded for the forked test JVM (database
      * connection, project dirs, update flags) from the fork properties file. Done first in
@@ -62,6 +92,10 @@ public class Agent {
             throw new RuntimeException(e);
         }
         new IgnoreTestInstrumentor().ignoreTests(testsToIgnore, instrumentation, Ignore.class);
+        setIgnoredTestSuiteCountSystemProperty(testsToIgnore);
+    }
+
+    private static void setIgnoredTestSuiteCountSystemProperty(Set<String> testsToIgnore) {
         String count = Integer.toString(testsToIgnore.size());
         log.trace("Setting system property for tiaIgnoredTestSuiteCount: {}", count);
         System.setProperty("tiaIgnoredTestSuiteCount", count);
@@ -77,12 +111,17 @@ public class Agent {
         if (libraryJarsFile == null || libraryJarsFile.isEmpty()){
             return;
         }
-        String csv;
-        try (Stream<String> lines = Files.lines(Paths.get(libraryJarsFile))) {
-            csv = lines.filter(l -> !l.isEmpty()).collect(Collectors.joining(","));
+        List<String> libraryJars;
+        try {
+            libraryJars = Files.readAllLines(Paths.get(libraryJarsFile));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        setLibraryJarsSystemProperty(libraryJars);
+    }
+
+    private static void setLibraryJarsSystemProperty(List<String> libraryJars){
+        String csv = libraryJars.stream().filter(l -> !l.isEmpty()).collect(Collectors.joining(","));
         if (!csv.isEmpty()){
             log.trace("Setting system property for tiaLibraryJars: {}", csv);
             System.setProperty("tiaLibraryJars", csv);
@@ -123,4 +162,24 @@ public class Agent {
         System.setProperty("tiaSelectedTests", selectedTestsSystemProp);
     }
 
-}
\ No newline at end of file
+    /**
+     * Read the fail-fast run order file written by the select-tests step and publish it as the
+     * {@code tiaTestRunOrder} system property (CSV, first to run first) for {@code TiaJunit4Sorter}.
+     * Skips silently when the option is unset (fail-fast ordering off).
+     *
+     * @param testRunOrderFile path to the run order file written during selection
+     */
+    private static void setTestRunOrderSystemProperty(String testRunOrderFile) {
+        if (testRunOrderFile == null || testRunOrderFile.isEmpty()) {
+            return;
+        }
+        String testRunOrder;
+        try (Stream<String> lines = Files.lines(Paths.get(testRunOrderFile))) {
+            testRunOrder = lines.filter(l -> !l.isEmpty()).collect(Collectors.joining(","));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        log.trace("Setting system property for tiaTestRunOrder: {}", testRunOrder);
+        System.setProperty(TestRunOrder.SYSTEM_PROPERTY, testRunOrder);
+    }
+}
@@ -6,7 +6,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.tiatesting.core.vcs.VCSReader;
-import org.tiatesting.vcs.git.GitReader;
+import org.tiatesting.vcs.git.GitReaderFactory;
 
 import java.util.Map;
 
@@ -34,6 +34,6 @@ public class AgentMojo extends AbstractTiaAgentMojo {
 
     @Override
     public VCSReader getVCSReader() {
-        return new GitReader(getTiaProjectDir());
+        return GitReaderFactory.newReader(getTiaProjectDir(), isTiaGitNativeCli());
     }
 }
\ No newline at end of file
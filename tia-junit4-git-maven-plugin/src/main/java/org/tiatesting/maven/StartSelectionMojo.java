@@ -0,0 +1,14 @@
+package org.tiatesting.maven;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.tiatesting.core.vcs.VCSReader;
+import org.tiatesting.vcs.git.GitReaderFactory;
+
+@Mojo(name = "start-selection", defaultPhase = LifecyclePhase.INITIALIZE, threadSafe = true)
+public class StartSelectionMojo extends AbstractStartSelectionMojo {
+    @Override
+    public VCSReader getVCSReader() {
+        return GitReaderFactory.newReader(getTiaProjectDir(), isTiaGitNativeCli());
+    }
+}
@@ -36,7 +36,8 @@ public class AgentMojo extends AbstractTiaAgentMojo {
 
     @Override
     public VCSReader getVCSReader() {
-        return new P4Reader(true, getTiaVcsServerUri(), getTiaVcsUserName(), getTiaVcsPassword(), getTiaVcsClientName());
+        return new P4Reader(true, getTiaVcsServerUri(), getTiaVcsUserName(), getTiaVcsPassword(), getTiaVcsClientName(),
+                getTiaP4PrintParallelism(), getTiaP4ContentCacheDir(), getTiaP4ContentCacheMaxSizeBytes());
     }
 
     @Override
@@ -9,6 +9,7 @@ import org.tiatesting.vcs.perforce.P4Reader;
 public class LibrariesMojo extends AbstractLibrariesMojo {
     @Override
     public VCSReader getVCSReader() {
-        return new P4Reader(isTiaEnabled(), getTiaVcsServerUri(), getTiaVcsUserName(), getTiaVcsPassword(), getTiaVcsClientName());
+        return new P4Reader(isTiaEnabled(), getTiaVcsServerUri(), getTiaVcsUserName(), getTiaVcsPassword(), getTiaVcsClientName(),
+                getTiaP4PrintParallelism(), getTiaP4ContentCacheDir(), getTiaP4ContentCacheMaxSizeBytes());
     }
 }
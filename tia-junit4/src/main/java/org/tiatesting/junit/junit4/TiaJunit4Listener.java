@@ -6,6 +6,7 @@ import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tiatesting.core.agent.SelectionHandoff;
 import org.tiatesting.core.coverage.client.JacocoClient;
 import org.tiatesting.core.coverage.result.CoverageResult;
 import org.tiatesting.core.library.LibraryImpactDrainResult;
@@ -39,6 +40,7 @@ public class TiaJunit4Listener extends RunListener {
     private final Map<Integer, MethodImpactTracker> testRunMethodsImpacted;
     private final Set<String> testSuitesFailed;
     private final String testClassesDir;
+    private final String testClassInventoryFile;
     /*
     Track all the test suites that were executed by the test runner. This includes those that were skipped/ignored.
     Track how many times the test suite was executed (hit the finish hook, this doesn't happen for ignored tests).
@@ -90,6 +92,7 @@ public class TiaJunit4Listener extends RunListener {
         DataStore dataStore = enabled ? DataStoreFactory.fromSystemProperties(this.branch) : null;
         this.testRunnerService = new TestRunnerService(dataStore);
         this.testClassesDir = System.getProperty("testClassesDir");
+        this.testClassInventoryFile = System.getProperty("tiaTestClassInventoryFile");
         vcsReader.close();
         setSelectedTests();
         setIgnoredTestSuiteCount();
@@ -145,7 +148,18 @@ public class TiaJunit4Listener extends RunListener {
         return enabled && (updateDBMapping || updateDBStats || updateDBTestRunHistory);
     }
 
+    /**
+     * Read the suites Tia selected to run from the selection handoff file when the agent was given
+     * one, or else from the {@code tiaSelectedTests} system property.
+     */
     private void setSelectedTests(){
+        SelectionHandoff handoff = SelectionHandoff.fromSystemProperty();
+        if (handoff != null){
+            this.selectedTests = handoff.getTestsToRun();
+            log.trace("Reading the selected tests from the selection handoff file: {} tests", selectedTests.size());
+            return;
+        }
+
         String selectedTestsStr = System.getProperty("tiaSelectedTests");
         if (selectedTestsStr != null && !selectedTestsStr.trim().isEmpty()){
             this.selectedTests = Stream.of(selectedTestsStr.split(",")).collect(Collectors.toSet());
@@ -281,8 +295,10 @@ public class TiaJunit4Listener extends RunListener {
             log.debug("Collecting coverage and adding the mapping for the test suite: " + testSuiteName);
             CoverageResult coverageResult = this.coverageClient.collectCoverage();
             List<ClassImpactTracker> classImpactTrackers = coverageResult.getClassesInvoked();
-            addClassTrackersToTestSuiteTracker(testSuiteTracker, classImpactTrackers);
-            testRunMethodsImpacted.putAll(coverageResult.getAllMethodsClassesInvoked());
+            // a parameterized test's invocations are all merged into its parent class's mapping
+            testSuiteTracker.addClassesImpacted(classImpactTrackers);
+            testSuiteTracker.addMethodLinesHit(coverageResult.getMethodLinesHit());
+            testRunMethodsImpacted.putAll(coverageResult.getMethodCatalogueDelta());
         }
 
         // only track the test has run once all the individual param tests have completed and its executing testSuiteFinished for the overall test suite
@@ -311,8 +327,7 @@ public class TiaJunit4Listener extends RunListener {
         log.info("Test run finished. Persisting the DB.");
         Set<String> runnerTestSuites = getRunnerTestSuites();
         TestStats testStats = updateDBStats ? getStatsForTestRun() : null;
-        LibraryImpactDrainResult drainResult = LibraryImpactDrainResultSerializer.deserialize(
-                System.getProperty("tiaDrainResultFile"));
+        LibraryImpactDrainResult drainResult = getDrainResult();
         TestRunResult testRunResult = new TestRunResult(testSuiteTrackers, testSuitesFailed, runnerTestSuites,
                 selectedTests, testRunMethodsImpacted, testStats, drainResult, ignoredTestSuiteCount,
                 suitesFinishedThisAttempt.size());
@@ -328,6 +343,20 @@ public class TiaJunit4Listener extends RunListener {
         }
     }
 
+    /**
+     * Read the library drain result from the selection handoff file when the agent was given one,
+     * or else from the file named by the {@code tiaDrainResultFile} system property.
+     *
+     * @return the drain result, or {@code null} when no library drain occurred
+     */
+    private LibraryImpactDrainResult getDrainResult(){
+        SelectionHandoff handoff = SelectionHandoff.fromSystemProperty();
+        if (handoff != null){
+            return handoff.getLibraryImpactDrainResult();
+        }
+        return LibraryImpactDrainResultSerializer.deserialize(System.getProperty("tiaDrainResultFile"));
+    }
+
     private TestStats getStatsForTestRun(){
         if (testRunStats.getNumRuns() > 0){
             // Don't increment the stats for this test run if we have already done so.
@@ -372,33 +401,6 @@ public class TiaJunit4Listener extends RunListener {
         return testSuiteFirstRun && !isParameterizedTest(description);
     }
 
-    /**
-     * If the test suite is a parameterized test, we may already have a testSuiteTracker for the parent class
-     * group the coverage for all parameterized tests into its parent class.
-     *
-     * @param testSuiteTracker the test suite being executed
-     * @param classImpactTrackers the class trackers with coverage info for the test suite being executed
-     */
-    private static void addClassTrackersToTestSuiteTracker(TestSuiteTracker testSuiteTracker,
-                                                           List<ClassImpactTracker> classImpactTrackers) {
-        // merge parameterized class coverage
-        for (ClassImpactTracker newClassImpactTracker : classImpactTrackers){
-            // check if the class is already tracked for the test suite
-            boolean classTrackerAdded = false;
-            for (ClassImpactTracker classImpactTracker : testSuiteTracker.getClassesImpacted()){
-                if (classImpactTracker.getSourceFilename().equals(newClassImpactTracker.getSourceFilename())){
-                    classImpactTracker.getMethodsImpacted().addAll(newClassImpactTracker.getMethodsImpacted());
-                    classTrackerAdded = true;
-                    break;
-                }
-            }
-
-            if (!classTrackerAdded){
-                testSuiteTracker.getClassesImpacted().add(newClassImpactTracker);
-            }
-        }
-    }
-
     private String getTestSuiteName(Description description){
         if (isParameterizedTest(description) && !description.getChildren().isEmpty()){
             //parameterized test, get the name of the class containing the test being executed rather than the generated parameter classes
@@ -437,6 +439,9 @@ public class TiaJunit4Listener extends RunListener {
      * deleted and so we treat it as still value (even if it's disabled or filtered out via 'groups').
      * This was we don't delete the tests that are being filtered from Tia. We only delete from Tia when the test class
      * has been removed.
+     * <p>
+     * When the build names a test class inventory file ({@code tiaTestClassInventoryFile}), only the dirs modified
+     * since the previous run are listed. See the "Test class inventory" chapter in WIKI.md.
      *
      * @return the set of all test suite names for the project that Tia is aware of.
      */
@@ -445,7 +450,7 @@ public class TiaJunit4Listener extends RunListener {
             return runnerTestSuites.keySet();
         }
 
-        return testRunnerService.getTestClassesFromDir(testClassesDir);
+        return testRunnerService.getTestClassesFromDir(testClassesDir, testClassInventoryFile);
     }
 
     private void updateTrackerStatsForFailedRun(String testSuiteName) {
@@ -0,0 +1,47 @@
+package org.tiatesting.junit.junit4;
+
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Ordering;
+import org.junit.runner.manipulation.Sorter;
+import org.tiatesting.core.agent.TestRunOrder;
+
+import java.util.Comparator;
+
+/**
+ * JUnit 4 {@link Sorter} that orders test classes by Tia's fail-fast run order: the previously
+ * failed and directly impacted classes first, then ascending average run time. See the "Fail-fast
+ * test ordering" chapter in WIKI.md.
+ *
+ * <p>Surefire's JUnit 4 provider runs each test class on its own in its own {@code runOrder}, so
+ * the sorter applies where JUnit 4 runs several classes under one runner: annotate a suite class
+ * with {@code @OrderWith(TiaJunit4Sorter.Factory.class)}, or sort a {@code Request} with
+ * {@code sortWith(new TiaJunit4Sorter())}. The order is read from the selection handoff file, or
+ * else the {@code tiaTestRunOrder} system property the Tia agent publishes. Classes outside the
+ * order keep their relative order after the ordered ones.
+ */
+public class TiaJunit4Sorter extends Sorter {
+
+    public TiaJunit4Sorter() {
+        super(byTestRunOrder());
+    }
+
+    private static Comparator<Description> byTestRunOrder() {
+        Comparator<String> testRunOrder = TestRunOrder.comparator();
+        return (first, second) -> testRunOrder.compare(nullToEmpty(first.getClassName()),
+                nullToEmpty(second.getClassName()));
+    }
+
+    private static String nullToEmpty(String className) {
+        return className != null ? className : "";
+    }
+
+    /**
+     * Factory for {@code @OrderWith}.
+     */
+    public static class Factory implements Ordering.Factory {
+        @Override
+        public Ordering create(Ordering.Context context) {
+            return new TiaJunit4Sorter();
+        }
+    }
+}
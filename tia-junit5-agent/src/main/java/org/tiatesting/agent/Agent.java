@@ -5,12 +5,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tiatesting.core.agent.AgentOptions;
 import org.tiatesting.core.agent.ForkSystemProperties;
+import org.tiatesting.core.agent.SelectedTestMethods;
+import org.tiatesting.core.agent.SelectionHandoff;
+import org.tiatesting.core.agent.TestRunOrder;
 import org.tiatesting.core.agent.instrumentation.IgnoreTestInstrumentor;
 
 import java.io.IOException;
 import java.lang.instrument.Instrumentation;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -19,15 +24,65 @@ public class Agent {
 
     private static final Logger log = LoggerFactory.getLogger(Agent.class);
 
+    /**
+     * JUnit Jupiter configuration parameter naming the default {@code ClassOrderer}.
+     */
+    private static final String DEFAULT_CLASS_ORDERER_PROPERTY = "junit.jupiter.testclass.order.default";
+
+    private static final String TIA_CLASS_ORDERER = "org.tiatesting.junit.junit5.TiaClassOrderer";
+
     public static void premain(String agentArgs, Instrumentation instrumentation) {
         final AgentOptions agentOptions = new AgentOptions(agentArgs);
+        if (!agentOptions.getHandoffFile().isEmpty()) {
+            applySelectionHandoff(instrumentation, agentOptions);
+            return;
+        }
+
         applyForkSystemProperties(agentOptions.getForkPropertiesFile());
-        instrumentIgnoredTests(instrumentation, agentOptions.getIgnoreTestsFile());
+        if (agentOptions.isIgnoreTestsDiscoveryFilter()) {
+            setIgnoreTestsFileSystemProperty(agentOptions.getIgnoreTestsFile());
+        } else {
+            instrumentIgnoredTests(instrumentation, agentOptions.getIgnoreTestsFile());
+        }
+        instrumentIgnoredTestMethods(instrumentation, agentOptions.getSelectedTestMethodsFile());
         setSelectedTestsSystemProperty(agentOptions.getSelectedTestsFile());
+        setTestRunOrderSystemProperties(agentOptions.getTestRunOrderFile());
         setLibraryJarsSystemProperty(agentOptions.getLibraryJarsFile());
         setDrainResultFileSystemProperty(agentOptions.getDrainResultFile());
     }
 
+    /**
+     * Apply the test selection from the selection handoff file the Maven plugin wrote. The file is
+     * mapped in place and only its path is published, as the {@code tiaHandoffFile} system property,
+     * for the test listener, the discovery filter and the class orderer to read their parts from.
+     * See the "Selection handoff file" chapter in WIKI.md.
+     *
+     * @param instrumentation the JVM instrumentation handle from {@code premain}
+     * @param agentOptions the agent options naming the handoff file
+     */
+    private static void applySelectionHandoff(Instrumentation instrumentation, AgentOptions agentOptions) {
+        log.trace("Setting system property for {}: {}", SelectionHandoff.SYSTEM_PROPERTY, agentOptions.getHandoffFile());
+        System.setProperty(SelectionHandoff.SYSTEM_PROPERTY, agentOptions.getHandoffFile());
+        SelectionHandoff handoff = SelectionHandoff.fromSystemProperty();
+
+        ForkSystemProperties.applyEntriesToSystemProperties(handoff.getForkProperties());
+        Set<String> testsToIgnore = handoff.getTestsToIgnore();
+        if (agentOptions.isIgnoreTestsDiscoveryFilter()) {
+            log.trace("Setting system property for tiaIgnoreTestsDiscoveryFilter: true");
+            System.setProperty("tiaIgnoreTestsDiscoveryFilter", "true");
+        } else {
+            new IgnoreTestInstrumentor().ignoreTests(testsToIgnore, instrumentation, Disabled.class);
+        }
+        setIgnoredTestSuiteCountSystemProperty(testsToIgnore);
+        Map<String, Set<String>> selectedTestMethods = handoff.getTestCasesToRun();
+        log.trace("Per-test-method selection, test methods to run: {}", selectedTestMethods);
+        new IgnoreTestInstrumentor().ignoreTestMethods(selectedTestMethods, instrumentation, Disabled.class);
+        if (!handoff.getTestRunOrder().isEmpty()) {
+            System.setProperty(DEFAULT_CLASS_ORDERER_PROPERTY, TIA_CLASS_ORDERER);
+        }
+        setLibraryJarsSystemProperty(handoff.getLibraryJars());
+    }
+
     /**
      * Publish the system properties the build tool forwarded for the forked test JVM (database
      * connection, project dirs, update flags) from the fork properties file. Done first in
@@ -55,18 +110,60 @@ public class Agent {
      * @param ignoreTestsFile path to the newline-separated ignore-tests file written during selection
      */
     private static void instrumentIgnoredTests(Instrumentation instrumentation, String ignoreTestsFile) {
-        Set<String> testsToIgnore;
+        Set<String> testsToIgnore = readIgnoredTests(ignoreTestsFile);
+        new IgnoreTestInstrumentor().ignoreTests(testsToIgnore, instrumentation, Disabled.class);
+        setIgnoredTestSuiteCountSystemProperty(testsToIgnore);
+    }
+
+    /**
+     * Discovery filter mode: publish the ignore-tests file as the {@code tiaIgnoreTestsFile} system
+     * property for the Tia {@code PostDiscoveryFilter}, which prunes the ignored suites from the test
+     * plan. No transformer is installed, so class loading in the fork isn't matched against the
+     * ignored suites. The count is published as for the instrumentation. See the "JUnit 5 discovery
+     * filter" chapter in WIKI.md.
+     *
+     * @param ignoreTestsFile path to the newline-separated ignore-tests file written during selection
+     */
+    private static void setIgnoreTestsFileSystemProperty(String ignoreTestsFile) {
+        Set<String> testsToIgnore = readIgnoredTests(ignoreTestsFile);
+        log.trace("Setting system property for tiaIgnoreTestsFile: {}", ignoreTestsFile);
+        System.setProperty("tiaIgnoreTestsFile", ignoreTestsFile);
+        setIgnoredTestSuiteCountSystemProperty(testsToIgnore);
+    }
+
+    private static Set<String> readIgnoredTests(String ignoreTestsFile) {
         try (Stream<String> lines = Files.lines(Paths.get(ignoreTestsFile))) {
-            testsToIgnore = lines.collect(Collectors.toSet());
+            return lines.collect(Collectors.toSet());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        new IgnoreTestInstrumentor().ignoreTests(testsToIgnore, instrumentation, Disabled.class);
+    }
+
+    private static void setIgnoredTestSuiteCountSystemProperty(Set<String> testsToIgnore) {
         String count = Integer.toString(testsToIgnore.size());
         log.trace("Setting system property for tiaIgnoredTestSuiteCount: {}", count);
         System.setProperty("tiaIgnoredTestSuiteCount", count);
     }
 
+    /**
+     * Read the per-test-method filter file written by the select-tests step and apply the
+     * {@code @Disabled} bytecode instrumentation to the test methods of the narrowed suites that were
+     * not selected to run. Skips silently when the option is unset (per-test-method selection off).
+     *
+     * @param instrumentation the JVM instrumentation handle from {@code premain}
+     * @param selectedTestMethodsFile path to the {@code suite#testMethod} filter file written during selection
+     */
+    private static void instrumentIgnoredTestMethods(Instrumentation instrumentation, String selectedTestMethodsFile) {
+        Map<String, Set<String>> selectedTestMethods;
+        try {
+            selectedTestMethods = SelectedTestMethods.read(selectedTestMethodsFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        log.trace("Per-test-method selection, test methods to run: {}", selectedTestMethods);
+        new IgnoreTestInstrumentor().ignoreTestMethods(selectedTestMethods, instrumentation, Disabled.class);
+    }
+
     /**
      * Read the library JARs file (one absolute JAR path per line) and publish the joined CSV
      * as the {@code tiaLibraryJars} system property so {@code JacocoClient} picks it up in the
@@ -77,19 +174,48 @@ public class Agent {
         if (libraryJarsFile == null || libraryJarsFile.isEmpty()){
             return;
         }
-        String csv;
-
-        try (Stream<String> lines = Files.lines(Paths.get(libraryJarsFile))) {
-            csv = lines.filter(l -> !l.isEmpty()).collect(Collectors.joining(","));
+        List<String> libraryJars;
+        try {
+            libraryJars = Files.readAllLines(Paths.get(libraryJarsFile));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        setLibraryJarsSystemProperty(libraryJars);
+    }
+
+    private static void setLibraryJarsSystemProperty(List<String> libraryJars){
+        String csv = libraryJars.stream().filter(l -> !l.isEmpty()).collect(Collectors.joining(","));
         if (!csv.isEmpty()){
             log.trace("Setting system property for tiaLibraryJars: {}", csv);
             System.setProperty("tiaLibraryJars", csv);
         }
     }
 
+    /**
+     * Read the fail-fast run order file written by the select-tests step and publish it as the
+     * {@code tiaTestRunOrder} system property (CSV, first to run first), then register
+     * {@code TiaClassOrderer} as Jupiter's default class orderer so the test classes run in that
+     * order. Jupiter reads configuration parameters from system properties ahead of
+     * {@code junit-platform.properties}, so fail-fast ordering takes precedence over a class orderer
+     * configured there. Skips silently when the option is unset (fail-fast ordering off).
+     *
+     * @param testRunOrderFile path to the run order file written during selection
+     */
+    private static void setTestRunOrderSystemProperties(String testRunOrderFile) {
+        if (testRunOrderFile == null || testRunOrderFile.isEmpty()) {
+            return;
+        }
+        String testRunOrder;
+        try (Stream<String> lines = Files.lines(Paths.get(testRunOrderFile))) {
+            testRunOrder = lines.filter(l -> !l.isEmpty()).collect(Collectors.joining(","));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        log.trace("Setting system property for tiaTestRunOrder: {}", testRunOrder);
+        System.setProperty(TestRunOrder.SYSTEM_PROPERTY, testRunOrder);
+        System.setProperty(DEFAULT_CLASS_ORDERER_PROPERTY, TIA_CLASS_ORDERER);
+    }
+
     /**
      * Set the drain result file path as a system property so the test listener can deserialize
      * the drain result for post-test-run cleanup. Skips silently when the option is unset.
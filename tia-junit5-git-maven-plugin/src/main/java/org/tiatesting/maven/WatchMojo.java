@@ -0,0 +1,15 @@
+package org.tiatesting.maven;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.tiatesting.core.vcs.VCSReader;
+import org.tiatesting.vcs.git.GitReaderFactory;
+
+@Mojo(name = "watch", defaultPhase = LifecyclePhase.NONE, requiresDependencyResolution = ResolutionScope.TEST)
+public class WatchMojo extends AbstractWatchMojo {
+    @Override
+    public VCSReader getVCSReader() {
+        return GitReaderFactory.newReader(getTiaProjectDir(), isTiaGitNativeCli());
+    }
+}
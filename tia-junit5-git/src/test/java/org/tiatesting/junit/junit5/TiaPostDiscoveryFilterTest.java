@@ -0,0 +1,148 @@
+package org.tiatesting.junit.junit5;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.request;
+
+/**
+ * Tests for {@link TiaPostDiscoveryFilter} verifying the ignored test suites are pruned from the
+ * test plan discovered by a real launcher and recorded as known to the runner, and that the filter
+ * includes everything when the agent didn't publish an ignore-tests file. The filter is registered
+ * with the launcher through the META-INF/services descriptor, as in a test run.
+ */
+class TiaPostDiscoveryFilterTest {
+
+    private static final String ORDER_SERVICE_IT = OrderServiceIT.class.getName();
+    private static final String INVENTORY_SERVICE_IT = InventoryServiceIT.class.getName();
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void clearIgnoreTestsFile() {
+        System.clearProperty(TiaIgnoredTestSuitesFilter.IGNORE_TESTS_FILE_PROPERTY);
+    }
+
+    /**
+     * An ignored suite has no tests left in the test plan - including its nested classes and
+     * test factories - and is recorded in the runner's test suites; other suites keep their tests.
+     */
+    @Test
+    void ignoredTestSuitesArePrunedAndKnownToTheRunner() throws IOException {
+        // given
+        Path ignoreTestsFile = tempDir.resolve("ignore-tests.txt");
+        Files.write(ignoreTestsFile, Collections.singletonList(ORDER_SERVICE_IT));
+        System.setProperty(TiaIgnoredTestSuitesFilter.IGNORE_TESTS_FILE_PROPERTY, ignoreTestsFile.toString());
+
+        // when
+        TestPlan testPlan = discover();
+
+        // then
+        Set<String> classesInPlan = classNamesInPlan(testPlan);
+        assertFalse(classesInPlan.contains(ORDER_SERVICE_IT));
+        assertFalse(classesInPlan.contains(OrderServiceIT.Cancellation.class.getName()));
+        assertTrue(classesInPlan.contains(INVENTORY_SERVICE_IT));
+        assertEquals(1, testPlan.countTestIdentifiers(TestIdentifier::isTest));
+        assertTrue(TiaLauncherSessionListener.sharedTestRunData.getRunnerTestSuites().contains(ORDER_SERVICE_IT));
+        assertFalse(TiaLauncherSessionListener.sharedTestRunData.getRunnerTestSuites().contains(INVENTORY_SERVICE_IT));
+    }
+
+    /**
+     * Without the {@code tiaIgnoreTestsFile} system property (instrumentation mode, or no Tia)
+     * every suite stays in the test plan.
+     */
+    @Test
+    void includesEverythingWhenIgnoreTestsFileUnset() {
+        // given
+        System.clearProperty(TiaIgnoredTestSuitesFilter.IGNORE_TESTS_FILE_PROPERTY);
+
+        // when
+        TestPlan testPlan = discover();
+
+        // then
+        Set<String> classesInPlan = classNamesInPlan(testPlan);
+        assertTrue(classesInPlan.contains(ORDER_SERVICE_IT));
+        assertTrue(classesInPlan.contains(OrderServiceIT.Cancellation.class.getName()));
+        assertTrue(classesInPlan.contains(INVENTORY_SERVICE_IT));
+    }
+
+    private static TestPlan discover() {
+        return LauncherFactory.create().discover(request()
+                .selectors(selectClass(OrderServiceIT.class), selectClass(InventoryServiceIT.class))
+                .build());
+    }
+
+    /**
+     * The classes of the class and method sources left in the test plan.
+     */
+    private static Set<String> classNamesInPlan(TestPlan testPlan) {
+        Set<String> classNames = new HashSet<>();
+        for (TestIdentifier root : testPlan.getRoots()) {
+            for (TestIdentifier testIdentifier : testPlan.getDescendants(root)) {
+                TestSource source = testIdentifier.getSource().orElse(null);
+                if (source instanceof ClassSource) {
+                    classNames.add(((ClassSource) source).getClassName());
+                } else if (source instanceof MethodSource) {
+                    classNames.add(((MethodSource) source).getClassName());
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * A suite Tia ignores in the tests above.
+     */
+    static class OrderServiceIT {
+
+        @Test
+        void placesOrder() {
+        }
+
+        @TestFactory
+        Stream<DynamicTest> pricesOrders() {
+            return Stream.of(DynamicTest.dynamicTest("single item", () -> { }));
+        }
+
+        @Nested
+        class Cancellation {
+
+            @Test
+            void cancelsOrder() {
+            }
+        }
+    }
+
+    /**
+     * A suite Tia selects in the tests above.
+     */
+    static class InventoryServiceIT {
+
+        @Test
+        void reservesStock() {
+        }
+    }
+}
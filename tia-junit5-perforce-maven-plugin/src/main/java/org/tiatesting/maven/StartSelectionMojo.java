@@ -0,0 +1,15 @@
+package org.tiatesting.maven;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.tiatesting.core.vcs.VCSReader;
+import org.tiatesting.vcs.perforce.P4Reader;
+
+@Mojo(name = "start-selection", defaultPhase = LifecyclePhase.INITIALIZE, threadSafe = true)
+public class StartSelectionMojo extends AbstractStartSelectionMojo {
+    @Override
+    public VCSReader getVCSReader() {
+        return new P4Reader(true, getTiaVcsServerUri(), getTiaVcsUserName(), getTiaVcsPassword(), getTiaVcsClientName(),
+                getTiaP4PrintParallelism(), getTiaP4ContentCacheDir(), getTiaP4ContentCacheMaxSizeBytes());
+    }
+}
@@ -0,0 +1,16 @@
+package org.tiatesting.maven;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.tiatesting.core.vcs.VCSReader;
+import org.tiatesting.vcs.perforce.P4Reader;
+
+@Mojo(name = "watch", defaultPhase = LifecyclePhase.NONE, requiresDependencyResolution = ResolutionScope.TEST)
+public class WatchMojo extends AbstractWatchMojo {
+    @Override
+    public VCSReader getVCSReader() {
+        return new P4Reader(true, getTiaVcsServerUri(), getTiaVcsUserName(), getTiaVcsPassword(), getTiaVcsClientName(),
+                getTiaP4PrintParallelism(), getTiaP4ContentCacheDir(), getTiaP4ContentCacheMaxSizeBytes());
+    }
+}
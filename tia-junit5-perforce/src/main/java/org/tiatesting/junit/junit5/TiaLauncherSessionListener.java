@@ -8,7 +8,8 @@ import org.slf4j.LoggerFactory;
 public class TiaLauncherSessionListener implements LauncherSessionListener {
     private static final Logger log = LoggerFactory.getLogger(TiaLauncherSessionListener.class);
 
-    private static final SharedTestRunData sharedTestRunData = new SharedTestRunData();
+    // shared with the TiaPostDiscoveryFilter loaded by the same launcher
+    static final SharedTestRunData sharedTestRunData = new SharedTestRunData();
 
     /**
      * Invoked by JUnit Platform when a new launcher session opens. Registers the
@@ -0,0 +1,13 @@
+package org.tiatesting.junit.junit5;
+
+/**
+ * The {@link TiaIgnoredTestSuitesFilter} registered with the JUnit Platform launcher through the
+ * META-INF/services descriptor. It shares the test run data of the {@link TiaLauncherSessionListener},
+ * so the test suites it prunes are known to the Tia test listener.
+ */
+public class TiaPostDiscoveryFilter extends TiaIgnoredTestSuitesFilter {
+
+    public TiaPostDiscoveryFilter() {
+        super(TiaLauncherSessionListener.sharedTestRunData);
+    }
+}
@@ -0,0 +1,30 @@
+package org.tiatesting.junit.junit5;
+
+import org.junit.jupiter.api.ClassDescriptor;
+import org.junit.jupiter.api.ClassOrderer;
+import org.junit.jupiter.api.ClassOrdererContext;
+import org.tiatesting.core.agent.TestRunOrder;
+
+import java.util.Comparator;
+
+/**
+ * Jupiter {@link ClassOrderer} that runs the test classes in Tia's fail-fast run order: the
+ * previously failed and directly impacted classes first, then ascending average run time. See the
+ * "Fail-fast test ordering" chapter in WIKI.md.
+ *
+ * <p>The Tia agent registers it as the default class orderer
+ * ({@code junit.jupiter.testclass.order.default}) when fail-fast ordering is enabled. The order is
+ * read from the selection handoff file, or else the {@code tiaTestRunOrder} system property the
+ * agent publishes. Classes outside the
+ * order - those Tia ignores, and {@code @Nested} classes - keep Jupiter's default order after the
+ * ordered ones.
+ */
+public class TiaClassOrderer implements ClassOrderer {
+
+    @Override
+    public void orderClasses(ClassOrdererContext context) {
+        Comparator<String> testRunOrder = TestRunOrder.comparator();
+        context.getClassDescriptors().sort(
+                Comparator.comparing((ClassDescriptor descriptor) -> descriptor.getTestClass().getName(), testRunOrder));
+    }
+}
@@ -0,0 +1,133 @@
+package org.tiatesting.junit.junit5;
+
+import org.junit.platform.engine.FilterResult;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.PostDiscoveryFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tiatesting.core.agent.SelectionHandoff;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Prunes the test suites Tia chose to ignore from the JUnit 5 test plan after discovery, in place
+ * of the agent disabling them by bytecode instrumentation. See the "JUnit 5 discovery filter"
+ * chapter in WIKI.md.
+ *
+ * <p>The agent publishes the ignore-tests file as the {@code tiaIgnoreTestsFile} system property
+ * when the discovery filter mode is on. Given the selection handoff file, it sets the
+ * {@code tiaIgnoreTestsDiscoveryFilter} system property instead and the ignored suites are looked up
+ * in the handoff file. When neither property is set the filter includes everything,
+ * so the shipped service descriptor doesn't affect runs without Tia or in the instrumentation mode.
+ *
+ * <p>A pruned suite is never executed, so the test listener doesn't see it as skipped. The filter
+ * records it in the runner's test suites instead, so Tia doesn't treat it as deleted from the
+ * workspace when the test run is persisted.
+ */
+public class TiaIgnoredTestSuitesFilter implements PostDiscoveryFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(TiaIgnoredTestSuitesFilter.class);
+
+    static final String IGNORE_TESTS_FILE_PROPERTY = "tiaIgnoreTestsFile";
+
+    static final String IGNORE_TESTS_DISCOVERY_FILTER_PROPERTY = "tiaIgnoreTestsDiscoveryFilter";
+
+    private final Set<String> runnerTestSuites;
+    private final Set<String> testSuitesToIgnore;
+
+    public TiaIgnoredTestSuitesFilter(final SharedTestRunData sharedTestRunData) {
+        this.runnerTestSuites = sharedTestRunData.getRunnerTestSuites();
+        this.testSuitesToIgnore = findTestSuitesToIgnore();
+    }
+
+    /**
+     * Look the ignored suites up in the selection handoff file when the agent set the discovery
+     * filter property, otherwise read the ignore-tests file. A handoff file that isn't published
+     * falls back to the ignore-tests file too, rather than failing the discovery of the whole run.
+     */
+    private static Set<String> findTestSuitesToIgnore() {
+        if (Boolean.parseBoolean(System.getProperty(IGNORE_TESTS_DISCOVERY_FILTER_PROPERTY))) {
+            SelectionHandoff handoff = SelectionHandoff.fromSystemProperty();
+            if (handoff != null) {
+                return handoff.getTestsToIgnore();
+            }
+            log.warn("The {} property is set without a Tia selection handoff file - pruning only the suites in the ignore-tests file, if any.",
+                    IGNORE_TESTS_DISCOVERY_FILTER_PROPERTY);
+        }
+        return readTestSuitesToIgnore(System.getProperty(IGNORE_TESTS_FILE_PROPERTY));
+    }
+
+    /**
+     * Exclude the descriptors of the ignored test suites. The launcher only removes an excluded
+     * descriptor that has no children, so excluding a class descriptor alone would leave its tests
+     * in the plan. Every test method, and every nested class, of an ignored suite is excluded
+     * instead; the class containers left without tests are then pruned by the launcher.
+     *
+     * @param testDescriptor the discovered descriptor
+     * @return excluded for a descriptor of an ignored test suite, otherwise included
+     */
+    @Override
+    public FilterResult apply(final TestDescriptor testDescriptor) {
+        if (testSuitesToIgnore.isEmpty()) {
+            return FilterResult.included(null);
+        }
+
+        String testSuiteName = findIgnoredTestSuite(testDescriptor);
+        if (testSuiteName == null) {
+            return FilterResult.included(null);
+        }
+
+        // track the test suite was known to the runner but not executed
+        runnerTestSuites.add(testSuiteName);
+        return FilterResult.excluded("Tia did not select the test suite to run");
+    }
+
+    /**
+     * Walk up from the descriptor to find the ignored test suite it belongs to - the class of a
+     * method source, or of a class source for the class and its nested classes.
+     *
+     * @param testDescriptor the discovered descriptor
+     * @return the name of the ignored test suite, or null if the descriptor isn't part of one
+     */
+    private String findIgnoredTestSuite(final TestDescriptor testDescriptor) {
+        Optional<TestDescriptor> current = Optional.of(testDescriptor);
+        while (current.isPresent()) {
+            TestSource source = current.get().getSource().orElse(null);
+            String className = null;
+            if (source instanceof MethodSource) {
+                className = ((MethodSource) source).getClassName();
+            } else if (source instanceof ClassSource) {
+                className = ((ClassSource) source).getClassName();
+            }
+            if (className != null && testSuitesToIgnore.contains(className)) {
+                return className;
+            }
+            current = current.get().getParent();
+        }
+        return null;
+    }
+
+    private static Set<String> readTestSuitesToIgnore(final String ignoreTestsFile) {
+        if (ignoreTestsFile == null || ignoreTestsFile.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        try (Stream<String> lines = Files.lines(Paths.get(ignoreTestsFile))) {
+            Set<String> testSuitesToIgnore = lines.filter(l -> !l.isEmpty()).collect(Collectors.toSet());
+            log.trace("Pruning the ignored test suites from the test plan: {}", testSuitesToIgnore);
+            return testSuitesToIgnore;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
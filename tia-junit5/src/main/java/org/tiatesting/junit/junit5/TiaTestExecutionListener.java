@@ -1,6 +1,7 @@
 package org.tiatesting.junit.junit5;
 
 import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
 import org.junit.platform.engine.support.descriptor.ClassSource;
 import org.junit.platform.engine.support.descriptor.MethodSource;
 import org.junit.platform.launcher.TestExecutionListener;
@@ -8,11 +9,14 @@ import org.junit.platform.launcher.TestIdentifier;
 import org.junit.platform.launcher.TestPlan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tiatesting.core.agent.SelectedTestMethods;
+import org.tiatesting.core.agent.SelectionHandoff;
 import org.tiatesting.core.coverage.client.JacocoClient;
 import org.tiatesting.core.coverage.result.CoverageResult;
 import org.tiatesting.core.library.LibraryImpactDrainResult;
 import org.tiatesting.core.library.LibraryImpactDrainResultSerializer;
 import org.tiatesting.core.model.ClassImpactTracker;
+import org.tiatesting.core.model.MethodIdSet;
 import org.tiatesting.core.model.MethodImpactTracker;
 import org.tiatesting.core.model.TestStats;
 import org.tiatesting.core.model.TestSuiteTracker;
@@ -26,6 +30,7 @@ import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
@@ -53,6 +58,7 @@ public class TiaTestExecutionListener implements TestExecutionListener {
     private final Map<Integer, MethodImpactTracker> testRunMethodsImpacted;
     private final Set<String> testSuitesFailed;
     private final String testClassesDir;
+    private final String testClassInventoryFile;
     /*
     Track all the test suites that were executed by the test runner. This includes those that were skipped/ignored.
      */
@@ -78,17 +84,37 @@ public class TiaTestExecutionListener implements TestExecutionListener {
     private final boolean updateDBMapping;
     private final boolean updateDBStats;
     private final boolean updateDBTestRunHistory;
+    /*
+    Collect coverage per test method (in addition to per suite) so the mapping stores per-test
+    edges for per-test-method selection. Only applies to mapping-update runs. Switched off in
+    testPlanExecutionStarted when the test plan runs its tests in parallel.
+     */
+    private volatile boolean perTestCoverage;
+    /*
+    The test plan being executed, used to find the test suite and test method a dynamic test was
+    generated by.
+     */
+    private volatile TestPlan testPlan;
     private long testRunStartTime;
     private final TestStats testRunStats;
 
     public TiaTestExecutionListener(final SharedTestRunData sharedTestRunData, VCSReader vcsReader) {
+        this(sharedTestRunData, vcsReader, new JacocoClient());
+    }
+
+    /**
+     * Test seam: build the listener with a given coverage client rather than one connecting to
+     * the JaCoCo agent.
+     */
+    TiaTestExecutionListener(final SharedTestRunData sharedTestRunData, VCSReader vcsReader, JacocoClient coverageClient) {
         this.updateDBMapping = Boolean.parseBoolean(System.getProperty("tiaUpdateDBMapping"));
         this.updateDBStats = Boolean.parseBoolean(System.getProperty("tiaUpdateDBStats"));
         // updateDBTestRunHistory defaults to TRUE — log a row unless explicitly switched off.
         // The inverse predicate handles a missing system property as "enabled".
         this.updateDBTestRunHistory = !"false".equalsIgnoreCase(System.getProperty("tiaUpdateDBTestRunHistory"));
         this.enabled = isEnabled();
-        this.coverageClient = new JacocoClient();
+        this.perTestCoverage = enabled && updateDBMapping && isPerTestCoverageRequested();
+        this.coverageClient = coverageClient;
 
         if (enabled && updateDBMapping){
             this.coverageClient.initialize();
@@ -104,6 +130,7 @@ public class TiaTestExecutionListener implements TestExecutionListener {
         DataStore dataStore = enabled ? DataStoreFactory.fromSystemProperties(this.branch) : null;
         this.testRunnerService = new TestRunnerService(dataStore);
         this.testClassesDir = System.getProperty("testClassesDir");
+        this.testClassInventoryFile = System.getProperty("tiaTestClassInventoryFile");
         vcsReader.close();
         setSelectedTests();
         setIgnoredTestSuiteCount();
@@ -159,7 +186,51 @@ public class TiaTestExecutionListener implements TestExecutionListener {
         return enabled && (updateDBMapping || updateDBStats || updateDBTestRunHistory);
     }
 
+    /**
+     * Whether per-test-method coverage was requested for this run. Whether it can be collected
+     * also depends on the test plan's parallel execution setting, checked once the plan starts.
+     *
+     * @return whether per-test-method coverage was requested
+     */
+    private boolean isPerTestCoverageRequested(){
+        return Boolean.parseBoolean(System.getProperty("tiaPerTestSelection"));
+    }
+
+    /**
+     * Per-test coverage is collected by dumping the JVM-wide JaCoCo counters around each test, so
+     * it can only attribute coverage correctly when tests run one at a time. The parallel flag is
+     * read from the test plan's configuration parameters, so it's honoured whether it was set as a
+     * system property, in {@code junit-platform.properties} or by the build tool. When JUnit
+     * Jupiter parallel execution is enabled the mapping falls back to suite-level coverage only.
+     *
+     * @param testPlan the test plan about to be executed
+     * @return whether per-test-method coverage can be collected for the test plan
+     */
+    private boolean isPerTestCoverageSupported(TestPlan testPlan){
+        boolean parallel = testPlan.getConfigurationParameters()
+                .getBoolean("junit.jupiter.execution.parallel.enabled").orElse(false);
+        if (parallel){
+            log.warn("Tia per-test-method selection is enabled but JUnit parallel execution is on. Per-test coverage " +
+                    "can't be attributed to individual tests when they run concurrently, only collecting coverage per test suite.");
+            return false;
+        }
+
+        log.info("Tia TestExecutionListener: collecting coverage per test method");
+        return true;
+    }
+
+    /**
+     * Read the suites Tia selected to run from the selection handoff file when the agent was given
+     * one, or else from the {@code tiaSelectedTests} system property.
+     */
     private void setSelectedTests(){
+        SelectionHandoff handoff = SelectionHandoff.fromSystemProperty();
+        if (handoff != null){
+            this.selectedTests = handoff.getTestsToRun();
+            log.trace("Reading the selected tests from the selection handoff file: {} tests", selectedTests.size());
+            return;
+        }
+
         String selectedTestsStr = System.getProperty("tiaSelectedTests");
         if (selectedTestsStr != null && !selectedTestsStr.trim().isEmpty()){
             this.selectedTests = Stream.of(selectedTestsStr.split(",")).collect(Collectors.toSet());
@@ -181,6 +252,11 @@ public class TiaTestExecutionListener implements TestExecutionListener {
             return;
         }
         testRunStartTime = System.currentTimeMillis();
+        this.testPlan = testPlan;
+
+        if (perTestCoverage){
+            perTestCoverage = isPerTestCoverageSupported(testPlan);
+        }
 
         // If the tests are being re-run due to failure retry,reset stats (but not mappings) between re-runs.
         // We don't want to keep the stats from the first test run for the subsequent test runs.
@@ -206,6 +282,23 @@ public class TiaTestExecutionListener implements TestExecutionListener {
 
         if (isExecutionForTestSuite(testIdentifier)){
             testSuiteStarted(testIdentifier);
+        } else if (perTestCoverage && isExecutionForTest(testIdentifier)){
+            testStarted(testIdentifier);
+        }
+    }
+
+    /**
+     * Per-test coverage: dump the coverage collected since the previous dump (suite-level
+     * fixtures such as {@code @BeforeAll}, or the previous suite's tail) into the suite mapping
+     * only, so the test's own dump on finish is limited to what it executed.
+     *
+     * @param testIdentifier the test about to be executed
+     */
+    private void testStarted(TestIdentifier testIdentifier){
+        String testSuiteName = getTestSuiteName(testIdentifier);
+        TestSuiteTracker testSuiteTracker = testSuiteName != null ? this.testSuiteTrackers.get(testSuiteName) : null;
+        if (testSuiteTracker != null){
+            collectCoverageForTestSuite(testSuiteTracker);
         }
     }
 
@@ -223,6 +316,10 @@ public class TiaTestExecutionListener implements TestExecutionListener {
             this.testSuiteTrackers.put(testSuiteName, testSuiteTracker);
         }
 
+        if (perTestCoverage && testSuiteTracker.getTestCasesImpacted() == null){
+            testSuiteTracker.setTestCasesImpacted(new ConcurrentHashMap<>());
+        }
+
         if (updateDBStats){
             // assume the test suite will run and succeed. Explicitly set to false on failure, or no runs if ignored.
             testSuiteTracker.getTestStats().setNumSuccessRuns(1);
@@ -274,6 +371,9 @@ public class TiaTestExecutionListener implements TestExecutionListener {
         }
 
         if (isExecutionForTest(testIdentifier)){
+            if (perTestCoverage){
+                testFinished(testIdentifier);
+            }
             if (testExecutionResult.getStatus() != TestExecutionResult.Status.SUCCESSFUL){
                 testFailure(testIdentifier);
             }
@@ -282,8 +382,69 @@ public class TiaTestExecutionListener implements TestExecutionListener {
         }
     }
 
+    /**
+     * Per-test coverage: dump the coverage the test executed and record it both in the suite
+     * mapping and as the test's own per-test edges, keyed by the test method's name and parameter
+     * types so overloads sharing a name keep their own edges. Invocations of the same method
+     * (parameterized, repeated or dynamic tests, failed-test re-runs) are unioned, since the
+     * per-test filter selects whole test methods.
+     *
+     * @param testIdentifier the test that finished executing
+     */
+    private void testFinished(TestIdentifier testIdentifier){
+        String testSuiteName = getTestSuiteName(testIdentifier);
+        TestSuiteTracker testSuiteTracker = testSuiteName != null ? this.testSuiteTrackers.get(testSuiteName) : null;
+        if (testSuiteTracker == null || testSuiteTracker.getTestCasesImpacted() == null){
+            return;
+        }
+
+        List<ClassImpactTracker> classImpactTrackers = collectCoverageForTestSuite(testSuiteTracker);
+        MethodIdSet testMethodsImpacted = new MethodIdSet();
+        for (ClassImpactTracker classImpactTracker : classImpactTrackers){
+            testMethodsImpacted.addAll(classImpactTracker.getMethodsImpacted());
+        }
+
+        String testName = getTestMethodKey(testIdentifier);
+        if (testName == null){
+            return;
+        }
+        testSuiteTracker.getTestCasesImpacted().merge(testName, testMethodsImpacted, (existing, added) -> {
+            MethodIdSet merged = new MethodIdSet(existing);
+            merged.addAll(added);
+            return merged;
+        });
+    }
+
+    /**
+     * Find the per-test key of the test method that produced the given test. Parameterized and
+     * repeated test invocations carry the method as their source. Dynamic tests usually carry no
+     * method source of their own, so the test plan is walked up to the {@code @TestFactory} method.
+     *
+     * @param testIdentifier the test that finished executing
+     * @return the per-test key of the test method, or null if no ancestor has a method source
+     */
+    private String getTestMethodKey(TestIdentifier testIdentifier){
+        Optional<TestIdentifier> current = Optional.of(testIdentifier);
+        while (current.isPresent()){
+            TestSource source = current.get().getSource().orElse(null);
+            if (source instanceof MethodSource){
+                MethodSource methodSource = (MethodSource) source;
+                return SelectedTestMethods.testMethodKey(methodSource.getMethodName(), methodSource.getMethodParameterTypes());
+            }
+            current = getParent(current.get());
+        }
+        return null;
+    }
+
+    private Optional<TestIdentifier> getParent(TestIdentifier testIdentifier){
+        return testPlan == null ? Optional.empty() : testPlan.getParent(testIdentifier);
+    }
+
     private void testFailure(TestIdentifier testIdentifier) {
         String testSuiteName = getTestSuiteName(testIdentifier);
+        if (testSuiteName == null){
+            return;
+        }
         this.testSuitesFailed.add(testSuiteName);
         updateTrackerStatsForFailedRun(testSuiteName);
     }
@@ -302,15 +463,7 @@ public class TiaTestExecutionListener implements TestExecutionListener {
 
         if (updateDBMapping) {
             log.debug("Collecting coverage and adding the mapping for the test suite: " + testSuiteName);
-            CoverageResult coverageResult = null;
-            try {
-                coverageResult = this.coverageClient.collectCoverage();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-            List<ClassImpactTracker> classImpactTrackers = coverageResult.getClassesInvoked();
-            addClassTrackersToTestSuiteTracker(testSuiteTracker, classImpactTrackers);
-            testRunMethodsImpacted.putAll(coverageResult.getAllMethodsClassesInvoked());
+            collectCoverageForTestSuite(testSuiteTracker);
         }
 
         runnerTestSuites.add(testSuiteName);
@@ -333,8 +486,7 @@ public class TiaTestExecutionListener implements TestExecutionListener {
         log.info("Test run finished. Persisting the DB.");
         Set<String> runnerTestSuites = getRunnerTestSuites();
         TestStats testStats = updateDBStats ? getStatsForTestRun() : null;
-        LibraryImpactDrainResult drainResult = LibraryImpactDrainResultSerializer.deserialize(
-                System.getProperty("tiaDrainResultFile"));
+        LibraryImpactDrainResult drainResult = getDrainResult();
         TestRunResult testRunResult = new TestRunResult(testSuiteTrackers, testSuitesFailed, runnerTestSuites,
                 selectedTests, testRunMethodsImpacted, testStats, drainResult, ignoredTestSuiteCount,
                 suitesFinishedThisAttempt.size());
@@ -342,6 +494,20 @@ public class TiaTestExecutionListener implements TestExecutionListener {
                 headCommit, branch, testRunStartTime, testRunResult);
     }
 
+    /**
+     * Read the library drain result from the selection handoff file when the agent was given one,
+     * or else from the file named by the {@code tiaDrainResultFile} system property.
+     *
+     * @return the drain result, or {@code null} when no library drain occurred
+     */
+    private LibraryImpactDrainResult getDrainResult(){
+        SelectionHandoff handoff = SelectionHandoff.fromSystemProperty();
+        if (handoff != null){
+            return handoff.getLibraryImpactDrainResult();
+        }
+        return LibraryImpactDrainResultSerializer.deserialize(System.getProperty("tiaDrainResultFile"));
+    }
+
     private TestStats getStatsForTestRun(){
         if (testRunStats.getNumRuns() > 0){
             // Don't increment the stats for this test run if we have already done so.
@@ -384,38 +550,50 @@ public class TiaTestExecutionListener implements TestExecutionListener {
     }
 
     /**
-     * Add all the source classes with coverage to the tracker for the test suite.
-     * We need to merge the tracking coverage to account for failed test re-runs.
-     * i.e. the re-run test plan mappings will be only relevant for the re-run test method(s) which are a subset and
-     * won't account for the other test methods in the suite.
+     * Dump the coverage collected since the previous dump and merge it into the test suite's
+     * mapping.
      *
      * @param testSuiteTracker the test suite being executed
-     * @param classImpactTrackers the class trackers with coverage info for the test suite being executed
+     * @return the class trackers with coverage info from this dump
      */
-    private void addClassTrackersToTestSuiteTracker(TestSuiteTracker testSuiteTracker,
-                                                    List<ClassImpactTracker> classImpactTrackers) {
-        for (ClassImpactTracker newClassImpactTracker : classImpactTrackers){
-            // check if the class is already tracked for the test suite
-            boolean classTrackerAdded = false;
-            for (ClassImpactTracker classImpactTracker : testSuiteTracker.getClassesImpacted()){
-                if (classImpactTracker.getSourceFilename().equals(newClassImpactTracker.getSourceFilename())){
-                    classImpactTracker.getMethodsImpacted().addAll(newClassImpactTracker.getMethodsImpacted());
-                    classTrackerAdded = true;
-                    break;
-                }
-            }
-
-            if (!classTrackerAdded){
-                testSuiteTracker.getClassesImpacted().add(newClassImpactTracker);
-            }
+    private List<ClassImpactTracker> collectCoverageForTestSuite(TestSuiteTracker testSuiteTracker) {
+        CoverageResult coverageResult = null;
+        try {
+            coverageResult = this.coverageClient.collectCoverage();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
+        List<ClassImpactTracker> classImpactTrackers = coverageResult.getClassesInvoked();
+        // merged rather than replaced: a failed test re-run only covers the re-run test methods
+        testSuiteTracker.addClassesImpacted(classImpactTrackers);
+        testSuiteTracker.addMethodLinesHit(coverageResult.getMethodLinesHit());
+        testRunMethodsImpacted.putAll(coverageResult.getMethodCatalogueDelta());
+        return classImpactTrackers;
     }
 
+    /**
+     * Find the test suite of a test suite or test. A test is walked up the test plan to the nearest
+     * method or class source, as dynamic tests carry no method source of their own.
+     *
+     * @param testIdentifier the test suite or test being executed
+     * @return the test suite name, or null if neither it nor an ancestor has a method or class source
+     */
     private String getTestSuiteName(TestIdentifier testIdentifier){
         if (isExecutionForTestSuite(testIdentifier)){
             return ((ClassSource) testIdentifier.getSource().get()).getClassName();
-        } else if (isExecutionForTest(testIdentifier)){
-            return ((MethodSource) testIdentifier.getSource().get()).getClassName();
+        } else if (!isExecutionForTest(testIdentifier)){
+            return null;
+        }
+
+        Optional<TestIdentifier> current = Optional.of(testIdentifier);
+        while (current.isPresent()){
+            TestSource source = current.get().getSource().orElse(null);
+            if (source instanceof MethodSource){
+                return ((MethodSource) source).getClassName();
+            } else if (source instanceof ClassSource){
+                return ((ClassSource) source).getClassName();
+            }
+            current = getParent(current.get());
         }
         return null;
     }
@@ -430,6 +608,9 @@ public class TiaTestExecutionListener implements TestExecutionListener {
      * deleted and so we treat it as still value (even if it's disabled or filtered out via 'groups').
      * This was we don't delete the tests that are being filtered from Tia. We only delete from Tia when the test class
      * has been removed.
+     * <p>
+     * When the build names a test class inventory file ({@code tiaTestClassInventoryFile}), only the dirs modified
+     * since the previous run are listed. See the "Test class inventory" chapter in WIKI.md.
      *
      * @return the set of all test suite names for the project that Tia is aware of.
      */
@@ -438,7 +619,7 @@ public class TiaTestExecutionListener implements TestExecutionListener {
             return runnerTestSuites;
         }
 
-        return testRunnerService.getTestClassesFromDir(testClassesDir);
+        return testRunnerService.getTestClassesFromDir(testClassesDir, testClassInventoryFile);
     }
 
     private void updateTrackerStatsForFailedRun(String testSuiteName) {
@@ -0,0 +1,159 @@
+package org.tiatesting.junit.junit5;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.tiatesting.core.coverage.client.JacocoClient;
+import org.tiatesting.core.coverage.result.CoverageResult;
+import org.tiatesting.core.model.ClassImpactTracker;
+import org.tiatesting.core.model.MethodIdSet;
+import org.tiatesting.core.model.TestSuiteTracker;
+import org.tiatesting.core.persistence.h2.H2ConnectionSettings;
+import org.tiatesting.core.vcs.VCSReader;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.request;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link TiaTestExecutionListener} collecting per-test coverage while a real launcher
+ * executes a test class, verifying the per-test edges are keyed by test method - dynamic tests
+ * under their {@code @TestFactory} method, and overloads by their parameter types. See the
+ * "Per-test-method selection" chapter in WIKI.md.
+ */
+class TiaTestExecutionListenerTest {
+
+    private static final int COVERED_METHOD_ID = 7;
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    void enablePerTestCoverage() {
+        System.setProperty("tiaEnabled", "true");
+        System.setProperty("tiaUpdateDBMapping", "true");
+        System.setProperty("tiaUpdateDBStats", "false");
+        System.setProperty("tiaUpdateDBTestRunHistory", "false");
+        System.setProperty("tiaPerTestSelection", "true");
+        System.setProperty(H2ConnectionSettings.PROP_DB_FILE_PATH, tempDir.getAbsolutePath());
+    }
+
+    @AfterEach
+    void clearTiaProperties() {
+        for (String property : Arrays.asList("tiaEnabled", "tiaUpdateDBMapping", "tiaUpdateDBStats",
+                "tiaUpdateDBTestRunHistory", "tiaPerTestSelection", H2ConnectionSettings.PROP_DB_FILE_PATH)) {
+            System.clearProperty(property);
+        }
+    }
+
+    /**
+     * The dynamic tests of a test factory carry no method source, so they are recorded under the
+     * factory method; overloads sharing a name keep their own edges.
+     */
+    @Test
+    void perTestEdgesAreKeyedByTestMethod() throws Exception {
+        // given
+        SharedTestRunData sharedTestRunData = new SharedTestRunData();
+        TiaTestExecutionListener listener = new TiaTestExecutionListener(sharedTestRunData, vcsReader(), coverageClient());
+
+        // when
+        LauncherFactory.create().execute(request().selectors(selectClass(PricingTest.class)).build(),
+                withoutPersisting(listener));
+
+        // then
+        TestSuiteTracker testSuiteTracker = sharedTestRunData.getTestSuiteTrackers().get(PricingTest.class.getName());
+        Map<String, MethodIdSet> testCasesImpacted = testSuiteTracker.getTestCasesImpacted();
+        assertEquals(new HashSet<>(Arrays.asList("pricesOrders", "total", "total(int)")), testCasesImpacted.keySet());
+        assertTrue(testCasesImpacted.get("pricesOrders").contains(COVERED_METHOD_ID));
+    }
+
+    private static VCSReader vcsReader() {
+        VCSReader vcsReader = mock(VCSReader.class);
+        when(vcsReader.getBranchName()).thenReturn("main");
+        when(vcsReader.getHeadCommit()).thenReturn("abc123");
+        return vcsReader;
+    }
+
+    /**
+     * A coverage client reporting the same covered method on every dump, without a JaCoCo agent.
+     */
+    private static JacocoClient coverageClient() throws Exception {
+        JacocoClient coverageClient = mock(JacocoClient.class);
+        when(coverageClient.collectCoverage()).thenAnswer(invocation -> {
+            CoverageResult coverageResult = new CoverageResult();
+            coverageResult.setClassesInvoked(Collections.singletonList(
+                    new ClassImpactTracker("com/acme/Pricing.java", Collections.singletonList(COVERED_METHOD_ID))));
+            return coverageResult;
+        });
+        return coverageClient;
+    }
+
+    /**
+     * Forward the execution events to the listener, leaving out persisting the test run at the end
+     * of the test plan - the test checks what was collected, not the DB.
+     */
+    private static TestExecutionListener withoutPersisting(TiaTestExecutionListener listener) {
+        return new TestExecutionListener() {
+            @Override
+            public void testPlanExecutionStarted(TestPlan testPlan) {
+                listener.testPlanExecutionStarted(testPlan);
+            }
+
+            @Override
+            public void executionStarted(TestIdentifier testIdentifier) {
+                listener.executionStarted(testIdentifier);
+            }
+
+            @Override
+            public void executionSkipped(TestIdentifier testIdentifier, String reason) {
+                listener.executionSkipped(testIdentifier, reason);
+            }
+
+            @Override
+            public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult) {
+                listener.executionFinished(testIdentifier, testExecutionResult);
+            }
+        };
+    }
+
+    /**
+     * The test class executed by the launcher in the test above.
+     */
+    static class PricingTest {
+
+        @TestFactory
+        Stream<DynamicTest> pricesOrders() {
+            return Stream.of(DynamicTest.dynamicTest("single item", () -> { }),
+                    DynamicTest.dynamicTest("bulk order", () -> { }));
+        }
+
+        @Test
+        void total() {
+        }
+
+        @ParameterizedTest
+        @ValueSource(ints = {1, 2})
+        void total(int quantity) {
+        }
+    }
+}
@@ -39,7 +39,7 @@ public abstract class AbstractHistoryMojo extends AbstractTiaMojo {
             throw new MojoExecutionException(
                     "tiaHistoryLast must be a positive integer; received " + tiaHistoryLast);
         }
-        final VCSReader vcsReader = getVCSReader();
+        final VCSReader vcsReader = buildVCSReader();
         try (DataStore dataStore = buildDataStore(vcsReader.getBranchName())) {
             List<TestRunHistoryEntry> history = dataStore.readTestRunHistory();
             System.out.println(TestRunHistoryConsoleFormatter.formatHistory(
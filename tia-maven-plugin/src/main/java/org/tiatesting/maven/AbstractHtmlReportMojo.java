@@ -12,7 +12,7 @@ import org.tiatesting.core.vcs.VCSReader;
 public abstract class AbstractHtmlReportMojo extends AbstractReportMojo {
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
-        final VCSReader vcsReader = getVCSReader();
+        final VCSReader vcsReader = buildVCSReader();
         try (DataStore dataStore = buildDataStore(vcsReader.getBranchName())) {
             TiaData tiaData = dataStore.getTiaData(true);
             ReportGenerator reportGenerator = new HtmlReportGenerator(vcsReader.getBranchName(), getTiaReportOutputDir());
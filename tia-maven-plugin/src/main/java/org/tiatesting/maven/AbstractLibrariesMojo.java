@@ -22,7 +22,7 @@ public abstract class AbstractLibrariesMojo extends AbstractTiaMojo {
      */
     @Override
     public void execute() {
-        final VCSReader vcsReader = getVCSReader();
+        final VCSReader vcsReader = buildVCSReader();
         try (DataStore dataStore = buildDataStore(vcsReader.getBranchName())) {
             LibrariesReportGenerator reportGenerator = new LibrariesReportGenerator();
             getLog().info(reportGenerator.generateLibrariesReport(dataStore));
@@ -26,7 +26,7 @@ public abstract class AbstractLibraryPendingMethodsMojo extends AbstractTiaMojo
      */
     @Override
     public void execute() {
-        final VCSReader vcsReader = getVCSReader();
+        final VCSReader vcsReader = buildVCSReader();
         try (DataStore dataStore = buildDataStore(vcsReader.getBranchName())) {
             LibraryPendingMethodsReportGenerator reportGenerator = new LibraryPendingMethodsReportGenerator();
             getLog().info(reportGenerator.generateLibraryPendingMethodsReport(dataStore, tiaLibrary));
@@ -24,7 +24,7 @@ public abstract class AbstractLibraryPublishesMojo extends AbstractTiaMojo {
      */
     @Override
     public void execute() {
-        final VCSReader vcsReader = getVCSReader();
+        final VCSReader vcsReader = buildVCSReader();
         try (DataStore dataStore = buildDataStore(vcsReader.getBranchName())) {
             LibraryPublishesReportGenerator reportGenerator = new LibraryPublishesReportGenerator();
             getLog().info(reportGenerator.generateLibraryPublishesReport(dataStore, tiaLibrary));
@@ -46,7 +46,7 @@ public abstract class AbstractPublishLibStampMojo extends AbstractTiaMojo {
         String publishedVersion = getProject().getVersion();
         String jarFilePath = resolveBuiltArtifactPath();
 
-        final VCSReader vcsReader = getVCSReader();
+        final VCSReader vcsReader = buildVCSReader();
         StaticTestSelectionConfig staticConfig = buildStaticTestSelectionConfig();
         try (DataStore dataStore = buildDataStore(vcsReader.getBranchName())) {
             LibraryPublishStamper.PublishStampResult result = new LibraryPublishStamper()
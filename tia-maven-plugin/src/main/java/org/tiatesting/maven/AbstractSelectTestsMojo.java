@@ -23,7 +23,7 @@ public abstract class AbstractSelectTestsMojo extends AbstractTiaMojo {
     @Override
     public void execute() {
         System.out.println("Displaying the tests selected by Tia:");
-        final VCSReader vcsReader = getVCSReader();
+        final VCSReader vcsReader = buildVCSReader();
         try (DataStore dataStore = buildDataStore(vcsReader.getBranchName())) {
             List<String> sourceFilesDirs = getTiaSourceFilesDirs() != null ? Arrays.asList(getTiaSourceFilesDirs().split(",")) : null;
             StringUtil.sanitizeInputArray(sourceFilesDirs);
@@ -31,6 +31,14 @@ public abstract class AbstractSelectTestsMojo extends AbstractTiaMojo {
             StringUtil.sanitizeInputArray(testFilesDirs);
 
             TestSelector testSelector = new TestSelector(dataStore);
+            // A mapping-update run always runs whole suites, so only preview the per-test filter
+            // and line-level narrowing when the run being previewed would apply them.
+            testSelector.setPerTestSelection(isTiaPerTestSelection() && !isTiaUpdateDBMapping());
+            testSelector.setLineLevelSelection(isTiaLineLevelSelection() && !isTiaUpdateDBMapping());
+            testSelector.setMaxRunTimeMs(getTiaMaxRunTimeMs());
+            testSelector.setShard(getTiaShardIndex(), getTiaShardCount());
+            testSelector.setFailFastOrdering(isTiaFailFastOrdering());
+            testSelector.setSelectionCacheDir(getTiaSelectionCacheDir());
             LibraryImpactAnalysisConfig libraryConfig = buildLibraryImpactAnalysisConfig();
             StaticTestSelectionConfig staticMappingConfig = buildStaticTestSelectionConfig();
             // Read-only preview: no mapping writes (updateDBMapping=false).
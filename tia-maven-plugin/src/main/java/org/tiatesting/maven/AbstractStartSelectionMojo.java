@@ -0,0 +1,25 @@
+package org.tiatesting.maven;
+
+/**
+ * Mojo used to start the test selection early in the build, on a background thread, so the VCS
+ * diff and DB reads overlap with compilation. The {@code prepare-agent} goal joins the selection
+ * rather than running it. Bind it to {@code initialize} (its default phase) alongside
+ * {@code prepare-agent}. See the "Speculative test selection" chapter in WIKI.md.
+ */
+public abstract class AbstractStartSelectionMojo extends AbstractTiaMojo {
+
+    @Override
+    public void execute() {
+        if (!isTiaEnabled()){
+            return;
+        }
+
+        // prepare-agent disables Tia when the user specified the tests to run, so there's nothing to select.
+        String userSpecifiedTests = System.getProperty("test");
+        if (userSpecifiedTests != null && !userSpecifiedTests.isEmpty()){
+            return;
+        }
+
+        AgentTestSelection.start(this);
+    }
+}
@@ -7,7 +7,7 @@ import org.tiatesting.core.vcs.VCSReader;
 public abstract class AbstractStatusMojo extends AbstractTiaMojo {
     @Override
     public void execute() {
-        final VCSReader vcsReader = getVCSReader();
+        final VCSReader vcsReader = buildVCSReader();
         try (DataStore dataStore = buildDataStore(vcsReader.getBranchName())) {
             StatusReportGenerator reportGenerator = new StatusReportGenerator();
             getLog().info(reportGenerator.generateSummaryReport(dataStore));
@@ -11,7 +11,7 @@ import org.tiatesting.core.vcs.VCSReader;
 public abstract class AbstractTextReportMojo extends AbstractReportMojo {
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
-        final VCSReader vcsReader = getVCSReader();
+        final VCSReader vcsReader = buildVCSReader();
         try (DataStore dataStore = buildDataStore(vcsReader.getBranchName())) {
             TiaData tiaData = dataStore.getTiaData(true);
             ReportGenerator reportGenerator = new TextReportGenerator(vcsReader.getBranchName(), getTiaReportOutputDir());
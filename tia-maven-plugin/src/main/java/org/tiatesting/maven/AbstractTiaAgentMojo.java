@@ -6,19 +6,10 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.tiatesting.core.agent.AgentOptions;
 import org.tiatesting.core.agent.CommandLineSupport;
-import org.tiatesting.core.agent.ForkSystemProperties;
-import org.tiatesting.core.library.LibraryImpactAnalysisConfig;
-import org.tiatesting.core.library.LibraryImpactDrainResult;
-import org.tiatesting.core.library.LibraryImpactDrainResultSerializer;
-import org.tiatesting.core.staticselection.StaticTestSelectionConfig;
-import org.tiatesting.core.util.StringUtil;
-import org.tiatesting.core.vcs.VCSReader;
-import org.tiatesting.core.diff.diffanalyze.selector.TestSelector;
-import org.tiatesting.core.persistence.DataStore;
+import org.tiatesting.core.agent.SelectionHandoff;
 import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
 
@@ -30,11 +21,8 @@ public abstract class AbstractTiaAgentMojo extends AbstractTiaMojo {
      * Name of the property used in maven-surefire-plugin.
      */
     static final String SUREFIRE_ARG_LINE = "argLine";
-    private static final String IGNORED_TESTS_FILENAME = "ignored-tests.txt";
-    private static final String SELECTED_TESTS_FILENAME = "selected-tests.txt";
-    private static final String LIBRARY_JARS_FILENAME = "library-jars.txt";
-    private static final String DRAIN_RESULT_FILENAME = "drain-result.ser";
-    private static final String FORK_PROPERTIES_FILENAME = "fork.properties";
+    private static final String SELECTION_HANDOFF_FILENAME = "selection.tiah";
+    private static final String TEST_CLASS_INVENTORY_FILENAME = "test-class-inventory.ser";
 
     /**
      * Allows to specify a property which will contains settings for JaCoCo Agent.
@@ -54,15 +42,13 @@ public abstract class AbstractTiaAgentMojo extends AbstractTiaMojo {
         final Properties projectProperties = getProject().getProperties();
         final String oldValue = projectProperties.getProperty(name);
 
-        String libraryJarsFile = writeLibraryJarsFile();
-        String forkPropertiesFile = writeForkPropertiesFile();
+        Set<String> libraryJars = resolveLibraryJars();
+        Map<String, String> forkProperties = buildForkProperties();
 
         TestSelectorResult testSelectorResult = getTestSelectorResult();
-        writeIgnoredTestsToFile(testSelectorResult.getTestsToIgnore());
-        writeSelectedTestsToFile(testSelectorResult.getTestsToRun());
-        String drainResultFile = writeDrainResultFile(testSelectorResult.getLibraryImpactDrainResult());
+        String handoffFile = writeSelectionHandoffFile(forkProperties, testSelectorResult, libraryJars);
 
-        final AgentOptions agentOptions = buildTiaAgentOptions(libraryJarsFile, drainResultFile, forkPropertiesFile);
+        final AgentOptions agentOptions = buildTiaAgentOptions(handoffFile);
         final String newValue = addVMArguments(oldValue, getAgentJarFile(), agentOptions);
         getLog().info(name + " set to " + newValue);
         projectProperties.setProperty(name, newValue);
@@ -89,91 +75,51 @@ public abstract class AbstractTiaAgentMojo extends AbstractTiaMojo {
          */
     }
 
+    /**
+     * Get the test selection, joining the one the {@code start-selection} goal started in the
+     * background when there is one. See {@link AgentTestSelection}.
+     *
+     * @return the test selection
+     */
     private TestSelectorResult getTestSelectorResult() {
-        VCSReader gitReader = getVCSReader();
-        // try-with-resources: release the H2 MVStore file lock before surefire forks the test
-        // JVM. With DB_CLOSE_DELAY=-1 the Maven JVM would otherwise hold the lock for the rest
-        // of the build, and the test JVM's JdbcDataStore would fail with "Database may be
-        // already in use".
-        try (DataStore dataStore = buildDataStore(gitReader.getBranchName())) {
-            long startQueryTime = System.currentTimeMillis();
-
-            List<String> sourceFilesDirs = getTiaSourceFilesDirs() != null ? Arrays.asList(getTiaSourceFilesDirs().split(",")) : null;
-            StringUtil.sanitizeInputArray(sourceFilesDirs);
-            List<String> testFilesDirs = getTiaTestFilesDirs() != null ? Arrays.asList(getTiaTestFilesDirs().split(",")) : null;
-            StringUtil.sanitizeInputArray(testFilesDirs);
-
-            TestSelector testSelector = new TestSelector(dataStore);
-            LibraryImpactAnalysisConfig libraryConfig = buildLibraryImpactAnalysisConfig();
-            StaticTestSelectionConfig staticMappingConfig = buildStaticTestSelectionConfig();
-            TestSelectorResult testSelectorResult = testSelector.selectTestsToIgnore(gitReader, sourceFilesDirs,
-                    testFilesDirs, isCheckLocalChanges(), libraryConfig, staticMappingConfig, isTiaUpdateDBMapping());
-            getLog().debug("Time to analyze test selection data (sec): " + (System.currentTimeMillis() - startQueryTime) / 1000);
-            return testSelectorResult;
-        }
+        return AgentTestSelection.getTestSelectorResult(this);
     }
 
-    private void writeIgnoredTestsToFile(Set<String> testsToIgnore){
-        String ignoredTestsFilename = getIgnoreTestsFilename();
-        writeTestsToFile(ignoredTestsFilename, testsToIgnore);
-    }
-
-    private void writeSelectedTestsToFile(Set<String> selectedTests){
-        String selectedTestsFilename = getSelectedTestsFilename();
-        writeTestsToFile(selectedTestsFilename, selectedTests);
-    }
-
-    private void writeTestsToFile(String filename, Set<String> tests){
-        FileWriter fileWriter = null;
+    /**
+     * Write the test selection to the selection handoff file {@code ${tiaBuildDir}/selection.tiah} -
+     * one versioned binary file the TIA javaagent memory-maps at {@code premain} in the forked test
+     * JVM, in place of a file per payload. The test suite sets are written as sorted string tables
+     * with a hash index, so the fork looks suites up in place rather than parsing the selection.
+     * See the "Selection handoff file" chapter in WIKI.md.
+     *
+     * @param forkProperties the system properties for the forked test JVM
+     * @param testSelectorResult the test selection
+     * @param libraryJars the library JARs to include in the coverage analysis
+     * @return absolute path of the file written
+     */
+    private String writeSelectionHandoffFile(Map<String, String> forkProperties, TestSelectorResult testSelectorResult,
+                                             Set<String> libraryJars){
+        String filename = getTiaBuildDir() + "/" + SELECTION_HANDOFF_FILENAME;
         try {
-
-            File file = new File(filename);
-            file.getParentFile().mkdirs();
-            fileWriter = new FileWriter(file);
-
-            if (tests.isEmpty()){
-                fileWriter.write("");
-            }else{
-                for (String str : tests) {
-                    fileWriter.write(str + System.lineSeparator());
-                }
-            }
+            SelectionHandoff.write(new File(filename), forkProperties, testSelectorResult, libraryJars);
         } catch (IOException e) {
             throw new RuntimeException(e);
-        } finally {
-            try {
-                fileWriter.close();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
         }
-    }
-
-    private String getIgnoreTestsFilename(){
-        return getTiaBuildDir() + "/" + IGNORED_TESTS_FILENAME;
-    }
-
-    private String getSelectedTestsFilename(){
-        return getTiaBuildDir() + "/" + SELECTED_TESTS_FILENAME;
-    }
-
-    private String getLibraryJarsFilename(){
-        return getTiaBuildDir() + "/" + LIBRARY_JARS_FILENAME;
+        return filename;
     }
 
     /**
      * Resolve the configured {@code tiaSourceLibs} coordinates to absolute JAR paths using the
-     * source project's pom and write them (one per line) to {@code ${tiaBuildDir}/library-jars.txt}.
-     * The TIA javaagent reads this file at {@code premain} time in the forked test JVM and
-     * publishes the contents as the {@code tiaLibraryJars} system property for {@code JacocoClient}.
+     * source project's pom. The TIA javaagent reads them from the selection handoff file at
+     * {@code premain} time in the forked test JVM and publishes them as the {@code tiaLibraryJars}
+     * system property for {@code JacocoClient}.
      *
-     * @return absolute path of the file written, or {@code null} when {@code tiaSourceLibs} is
-     *         unset or no JARs resolved.
+     * @return the absolute JAR paths; empty when {@code tiaSourceLibs} is unset or no JARs resolved.
      */
-    private String writeLibraryJarsFile(){
+    private Set<String> resolveLibraryJars(){
         String libraries = getTiaSourceLibs();
         if (libraries == null || libraries.trim().isEmpty()){
-            return null;
+            return Collections.emptySet();
         }
 
         LibraryJarResolver resolver = new LibraryJarResolver(
@@ -181,102 +127,56 @@ public abstract class AbstractTiaAgentMojo extends AbstractTiaMojo {
         String jarsCsv = resolver.resolveLibraryJarsCsv(libraries, getTiaSourceProjectDir());
 
         if (jarsCsv == null || jarsCsv.isEmpty()){
-            return null;
+            return Collections.emptySet();
         }
 
         getLog().debug("tiaLibraryJars resolved to: " + jarsCsv);
-        Set<String> jars = new LinkedHashSet<>(Arrays.asList(jarsCsv.split(",")));
-        String filename = getLibraryJarsFilename();
-        writeTestsToFile(filename, jars);
-        return filename;
+        return new LinkedHashSet<>(Arrays.asList(jarsCsv.split(",")));
     }
 
-    private AgentOptions buildTiaAgentOptions(String libraryJarsFile, String drainResultFile, String forkPropertiesFile){
+    private AgentOptions buildTiaAgentOptions(String handoffFile){
         AgentOptions agentOptions = new AgentOptions();
-        agentOptions.setIgnoreTestsFile(getIgnoreTestsFilename());
-        agentOptions.setSelectedTestsFile(getSelectedTestsFilename());
-        if (libraryJarsFile != null){
-            agentOptions.setLibraryJarsFile(libraryJarsFile);
-        }
-        if (drainResultFile != null){
-            agentOptions.setDrainResultFile(drainResultFile);
-        }
-        if (forkPropertiesFile != null){
-            agentOptions.setForkPropertiesFile(forkPropertiesFile);
+        agentOptions.setHandoffFile(handoffFile);
+        if (isTiaJunit5DiscoveryFilter()){
+            agentOptions.setIgnoreTestsDiscoveryFilter(true);
         }
         return agentOptions;
     }
 
     /**
-     * Write the system properties the forked test JVM needs (database connection, project dirs,
-     * update flags) to a {@code java.util.Properties} file, so the Tia agent can republish them via
-     * {@code premain}. This removes the need for the user to mirror these into the Surefire
-     * {@code systemPropertyVariables} (Gradle forwards them automatically); using a file rather than
+     * Collect the system properties the forked test JVM needs (database connection, project dirs,
+     * update flags), so the Tia agent can republish them via {@code premain}. This removes the need
+     * for the user to mirror these into the Surefire {@code systemPropertyVariables} (Gradle
+     * forwards them automatically); handing them over in the selection handoff file rather than as
      * inline command-line properties keeps long values - {@code tiaClassFilesDirs} (a CSV) and
      * {@code testClassesDir} - off the command line and clear of the comma-delimited agent option
      * parser. Entries with a {@code null} value are skipped, so an unset {@code tiaDBUrl} simply
      * leaves the fork in embedded mode.
+     * <p>
+     * {@code tiaTestClassInventoryFile} names one test class inventory in {@code tiaBuildDir} for every
+     * fork of the module, across Surefire, Failsafe and the builds that follow, so the test classes
+     * dir is listed in full at most once. See the "Test class inventory" chapter in WIKI.md.
      *
-     * @return absolute path of the file written
+     * @return the property name to value pairs
      */
-    private String writeForkPropertiesFile(){
+    private Map<String, String> buildForkProperties(){
         Map<String, String> props = new LinkedHashMap<>();
         props.put("tiaEnabled", String.valueOf(isTiaEnabled()));
         props.put("tiaUpdateDBMapping", String.valueOf(isTiaUpdateDBMapping()));
         props.put("tiaUpdateDBStats", String.valueOf(isTiaUpdateDBStats()));
         props.put("tiaUpdateDBTestRunHistory", String.valueOf(isTiaUpdateDBTestRunHistory()));
+        props.put("tiaPerTestSelection", String.valueOf(isTiaPerTestSelection()));
+        props.put("tiaLineLevelSelection", String.valueOf(isTiaLineLevelSelection()));
         props.put("tiaProjectDir", getTiaProjectDir());
         props.put("tiaClassFilesDirs", getTiaClassFilesDirs());
         props.put("testClassesDir", getProject().getBuild().getTestOutputDirectory());
+        props.put("tiaTestClassInventoryFile", getTiaBuildDir() + "/" + TEST_CLASS_INVENTORY_FILENAME);
         props.put("tiaDBFilePath", getTiaDBFilePath());
         props.put("tiaDBUrl", getTiaDBUrl());
         props.put("tiaDBDialect", getTiaDBDialect());
         props.put("tiaDBUser", getTiaDBUser());
         props.put("tiaDBPassword", getTiaDBPassword());
-
-        String filename = getTiaBuildDir() + "/" + FORK_PROPERTIES_FILENAME;
-        try {
-            ForkSystemProperties.write(props, new File(filename));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        return filename;
-    }
-
-    /**
-     * Serialize the {@link LibraryImpactDrainResult} to a file so the test listener in the
-     * forked JVM can deserialize it and pass it to {@code TestRunnerService} for post-test-run cleanup.
-     *
-     * @return absolute path of the file written, or {@code null} if no drain result.
-     */
-    private String writeDrainResultFile(LibraryImpactDrainResult drainResult) {
-        if (drainResult == null || !drainResult.hasDrainedBatches()) {
-            return null;
-        }
-        String filename = getDrainResultFilename();
-        java.io.File file = new java.io.File(filename);
-        LibraryImpactDrainResultSerializer.serialize(drainResult, file);
-        return filename;
-    }
-
-    private String getDrainResultFilename(){
-        return getTiaBuildDir() + "/" + DRAIN_RESULT_FILENAME;
-    }
-
-    /**
-     * Check if Tia should analyze local changes.
-     * If we're updating the DB, we shouldn't check for local changes as the DB needs to be in sync with
-     * committed changes only.
-     *
-     * @return
-     */
-    private boolean isCheckLocalChanges(){
-        if (isTiaUpdateDBMapping() && isTiaCheckLocalChanges()){
-            getLog().info("Disabling the check for local changes as Tia is configured to update the mapping in the DB.");
-            return false;
-        } else{
-            return isTiaCheckLocalChanges();
-        }
+        return props;
     }
 
     /**
@@ -14,6 +14,7 @@ import org.tiatesting.core.staticselection.StaticTestSelectionRule;
 import org.tiatesting.core.staticselection.StaticTestSelectionRuleMode;
 import org.tiatesting.core.vcs.VCSReader;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -22,6 +23,16 @@ import java.util.Map;
 
 public abstract class AbstractTiaMojo extends AbstractMojo {
 
+    /**
+     * The dir under the Tia build dir the commit-range diff cache is persisted in.
+     */
+    static final String DIFF_CACHE_DIR_NAME = "diff-cache";
+
+    /**
+     * The dir under the Tia build dir the selection result cache is persisted in.
+     */
+    static final String SELECTION_CACHE_DIR_NAME = "selection-cache";
+
     /**
      * Maven project.
      */
@@ -137,6 +148,63 @@ public abstract class AbstractTiaMojo extends AbstractMojo {
     @Parameter(property = "tiaUpdateDBTestRunHistory", defaultValue = "true")
     boolean tiaUpdateDBTestRunHistory;
 
+    /**
+     * Enable per-test-method selection: mapping-update runs also collect coverage per test method
+     * (JUnit) or feature (Spock), and selection runs only execute the impacted test methods of a
+     * suite selected through changed source methods. Requires sequential test execution within the
+     * forked JVM. See the "Per-test-method selection" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaPerTestSelection")
+    boolean tiaPerTestSelection;
+
+    /**
+     * Enable line-level selection: mapping-update runs also store the lines each suite executed
+     * in every covered method, and selection runs skip a suite that covered a changed method but
+     * never executed the changed lines. See the "Line-level selection" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaLineLevelSelection")
+    boolean tiaLineLevelSelection;
+
+    /**
+     * Run-time budget (ms) for the selected tests. When the estimated run time of the selection
+     * exceeds it, only the highest-value suites that fit are run and the rest are deferred to a
+     * later run. {@code 0} (the default) means no budget. See the "Run-time budgeted selection"
+     * chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaMaxRunTimeMs", defaultValue = "0")
+    long tiaMaxRunTimeMs;
+
+    /**
+     * Zero-based index of the shard this build runs when the selected tests are split across
+     * {@code tiaShardCount} parallel CI agents. See the "Test sharding" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaShardIndex", defaultValue = "0")
+    int tiaShardIndex;
+
+    /**
+     * Number of parallel CI agents (shards) to split the selected tests across, balanced on their
+     * recorded run times. {@code 0} or {@code 1} (the default) disables sharding. See the "Test
+     * sharding" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaShardCount", defaultValue = "1")
+    int tiaShardCount;
+
+    /**
+     * Enable fail-fast ordering: the selected test classes run with the previously failed and
+     * directly impacted classes first, then in ascending average run time, so a failing build
+     * fails sooner. See the "Fail-fast test ordering" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaFailFastOrdering")
+    boolean tiaFailFastOrdering;
+
+    /**
+     * JUnit 5 only: prune the ignored test classes from the test plan with the Tia
+     * {@code PostDiscoveryFilter} instead of disabling them with the agent's bytecode
+     * instrumentation. See the "JUnit 5 discovery filter" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaJunit5DiscoveryFilter")
+    boolean tiaJunit5DiscoveryFilter;
+
     /**
      * Specifies the default option for whether Tia should analyse local changes when selecting tests.
      */
@@ -167,6 +235,63 @@ public abstract class AbstractTiaMojo extends AbstractMojo {
     @Parameter(property = "tiaVcsClientName")
     String tiaVcsClientName;
 
+    /**
+     * Git only: read the repository with the native {@code git} executable rather than JGit. Faster
+     * on very large repositories, especially the local-changes scan. Requires {@code git} on the
+     * {@code PATH}. See the "Native Git backend" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaGitNativeCli")
+    boolean tiaGitNativeCli;
+
+    /**
+     * Perforce only: the number of connections the changed files' content is printed over in
+     * parallel. Each connection is served by one server thread, so a large integration reads
+     * faster over several. See the "Parallel Perforce content fetch" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaP4PrintParallelism", defaultValue = "1")
+    int tiaP4PrintParallelism;
+
+    /**
+     * Perforce only: the dir of an on-disk cache of file revision content, shared by every build
+     * on the machine. Revisions found in it aren't printed from the server again. Disabled when
+     * not set. See the "Perforce revision content cache" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaP4ContentCacheDir")
+    String tiaP4ContentCacheDir;
+
+    /**
+     * Perforce only: the size in MB the revision content cache is bounded to; the least recently
+     * used revisions are evicted beyond it.
+     */
+    @Parameter(property = "tiaP4ContentCacheMaxSizeMb", defaultValue = "512")
+    long tiaP4ContentCacheMaxSizeMb;
+
+    /**
+     * Persist the VCS reader's commit-range diff cache under {@code ${tiaBuildDir}/diff-cache}, so
+     * later goals in the same build reading the same commit range (select-tests, prepare-agent,
+     * publish-lib-stamp) are served from disk rather than the VCS. See the "Commit-range diff
+     * cache" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaPersistDiffCache")
+    boolean tiaPersistDiffCache;
+
+    /**
+     * Persist the test selections of runs that don't update the mapping under
+     * {@code ${tiaBuildDir}/selection-cache}, so a rerun with nothing changed (same stored commit,
+     * head, local changes, static rules and resolved libraries) reads the selection back rather than
+     * redoing it. See the "Selection result cache" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaPersistSelectionCache")
+    boolean tiaPersistSelectionCache;
+
+    /**
+     * The endpoint file of a running Tia selection daemon. When set, {@code prepare-agent} asks the
+     * daemon to select the tests for a local run first, and selects them itself when no daemon answers.
+     * See the "Selection daemon" chapter in WIKI.md.
+     */
+    @Parameter(property = "tiaSelectionDaemonEndpointFile")
+    String tiaSelectionDaemonEndpointFile;
+
     /**
      * Static test selection rules. Each rule maps a regex over the repo-relative paths of
      * changed files to a set of test suites that should be force-run regardless of dynamic
@@ -309,6 +434,55 @@ public abstract class AbstractTiaMojo extends AbstractMojo {
         return tiaUpdateDBTestRunHistory;
     }
 
+    /**
+     * @return whether per-test-method selection is enabled
+     */
+    public boolean isTiaPerTestSelection() {
+        return tiaPerTestSelection;
+    }
+
+    /**
+     * @return whether line-level selection is enabled
+     */
+    public boolean isTiaLineLevelSelection() {
+        return tiaLineLevelSelection;
+    }
+
+    /**
+     * @return the run-time budget (ms) for the selected tests, or {@code 0} for no budget
+     */
+    public long getTiaMaxRunTimeMs() {
+        return tiaMaxRunTimeMs;
+    }
+
+    /**
+     * @return the zero-based index of the shard this build runs
+     */
+    public int getTiaShardIndex() {
+        return tiaShardIndex;
+    }
+
+    /**
+     * @return the number of shards to split the selected tests across; {@code 1} or less for none
+     */
+    public int getTiaShardCount() {
+        return tiaShardCount;
+    }
+
+    /**
+     * @return whether fail-fast ordering is enabled
+     */
+    public boolean isTiaFailFastOrdering() {
+        return tiaFailFastOrdering;
+    }
+
+    /**
+     * @return whether the ignored JUnit 5 test classes are pruned by the discovery filter
+     */
+    public boolean isTiaJunit5DiscoveryFilter() {
+        return tiaJunit5DiscoveryFilter;
+    }
+
     public boolean isTiaCheckLocalChanges() {
         return tiaCheckLocalChanges;
     }
@@ -325,6 +499,57 @@ public abstract class AbstractTiaMojo extends AbstractMojo {
         return tiaVcsPassword;
     }
 
+    /**
+     * @return whether the Git reader shells out to the native {@code git} executable
+     */
+    public boolean isTiaGitNativeCli() {
+        return tiaGitNativeCli;
+    }
+
+    /**
+     * @return the number of Perforce connections file content is printed over in parallel
+     */
+    public int getTiaP4PrintParallelism() {
+        return tiaP4PrintParallelism;
+    }
+
+    /**
+     * @return the dir of the Perforce revision content cache, or {@code null} when it's disabled
+     */
+    public File getTiaP4ContentCacheDir() {
+        return (tiaP4ContentCacheDir == null || tiaP4ContentCacheDir.trim().isEmpty())
+                ? null : new File(tiaP4ContentCacheDir);
+    }
+
+    /**
+     * @return the size in bytes the Perforce revision content cache is bounded to
+     */
+    public long getTiaP4ContentCacheMaxSizeBytes() {
+        return tiaP4ContentCacheMaxSizeMb * 1024 * 1024;
+    }
+
+    /**
+     * @return whether the commit-range diff cache is persisted under the Tia build dir
+     */
+    public boolean isTiaPersistDiffCache() {
+        return tiaPersistDiffCache;
+    }
+
+    /**
+     * @return the dir the selection result cache is persisted in, or {@code null} when it isn't persisted
+     */
+    public File getTiaSelectionCacheDir() {
+        return tiaPersistSelectionCache ? new File(getTiaBuildDir(), SELECTION_CACHE_DIR_NAME) : null;
+    }
+
+    /**
+     * @return the endpoint file of the Tia selection daemon, or {@code null} when not configured
+     */
+    public File getTiaSelectionDaemonEndpointFile() {
+        return (tiaSelectionDaemonEndpointFile == null || tiaSelectionDaemonEndpointFile.trim().isEmpty())
+                ? null : new File(tiaSelectionDaemonEndpointFile);
+    }
+
     public String getTiaVcsClientName() {
         return tiaVcsClientName;
     }
@@ -338,6 +563,20 @@ public abstract class AbstractTiaMojo extends AbstractMojo {
 
     public abstract VCSReader getVCSReader();
 
+    /**
+     * Create the {@link VCSReader} for the goal via {@link #getVCSReader()}, with its commit-range
+     * diff cache persisted under the Tia build dir when {@link #tiaPersistDiffCache} is enabled.
+     *
+     * @return the VCS reader
+     */
+    protected VCSReader buildVCSReader() {
+        VCSReader vcsReader = getVCSReader();
+        if (isTiaPersistDiffCache()) {
+            vcsReader.setDiffCacheDir(new File(getTiaBuildDir(), DIFF_CACHE_DIR_NAME));
+        }
+        return vcsReader;
+    }
+
     /**
      * Build the library impact analysis configuration from the Maven plugin parameters.
      * Coordinates in {@link #tiaSourceLibs} should be in the format
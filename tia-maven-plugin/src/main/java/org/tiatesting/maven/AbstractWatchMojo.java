@@ -0,0 +1,201 @@
+package org.tiatesting.maven;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelector;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+import org.tiatesting.core.library.LibraryImpactAnalysisConfig;
+import org.tiatesting.core.persistence.DataStore;
+import org.tiatesting.core.staticselection.StaticTestSelectionConfig;
+import org.tiatesting.core.util.StringUtil;
+import org.tiatesting.core.vcs.VCSReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Mojo used to rerun the impacted tests every time a source or test file is saved. The goal
+ * keeps running until it's stopped (Ctrl-C): on each save it compiles the saved files into the
+ * project's output dirs, selects the tests impacted by the local changes, and runs them on a JUnit
+ * Platform launcher kept warm for the session. See the "Watch mode" chapter in WIKI.md.
+ *
+ * <p>The VCS reader and the data store are opened once for the session, so every selection reads
+ * the same mapping without reconnecting. An embedded H2 DB stays locked while the goal runs.
+ *
+ * <p>The goal watches the module it runs in - run it for one module with {@code -pl}.
+ */
+public abstract class AbstractWatchMojo extends AbstractTiaMojo {
+
+    /**
+     * How long the source dirs must be quiet after a save before the impacted tests rerun, so a
+     * save that touches many files reruns the tests once.
+     */
+    @Parameter(property = "tiaWatchDebounceMs", defaultValue = "200")
+    private long tiaWatchDebounceMs;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (!isTiaEnabled()){
+            return;
+        }
+
+        MavenProject project = getProject();
+        List<String> classpath;
+        try {
+            classpath = project.getTestClasspathElements();
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Couldn't resolve the test class path of " + project.getId(), e);
+        }
+        File outputDir = new File(project.getBuild().getOutputDirectory());
+        File testOutputDir = new File(project.getBuild().getTestOutputDirectory());
+        List<File> sourceRoots = toFiles(project.getCompileSourceRoots());
+        List<File> testSourceRoots = toFiles(project.getTestCompileSourceRoots());
+
+        WatchCompiler compiler = new WatchCompiler(classpath, getCompilerOptions(project), getSourceEncoding(project), getLog());
+        if (!compiler.isAvailable()){
+            getLog().warn("No Java compiler is available to Maven (is it running on a JRE?) - the saved files won't be "
+                    + "compiled, so the tests will rerun against the classes last compiled into " + outputDir
+                    + " and " + testOutputDir);
+        }
+
+        List<File> watchedDirs = new ArrayList<>(sourceRoots);
+        watchedDirs.addAll(testSourceRoots);
+
+        final VCSReader vcsReader = buildVCSReader();
+        try (DataStore dataStore = buildDataStore(vcsReader.getBranchName());
+             WatchTestRunner testRunner = new WatchTestRunner(classpath, Arrays.asList(outputDir, testOutputDir), getLog());
+             SourceChangeWatcher watcher = new SourceChangeWatcher(watchedDirs, tiaWatchDebounceMs)) {
+            TestSelector testSelector = new TestSelector(dataStore);
+            // Rerun every impacted suite in full - a shard or a time budget would hide impacted tests locally.
+            testSelector.setLineLevelSelection(isTiaLineLevelSelection());
+            testSelector.setFailFastOrdering(isTiaFailFastOrdering());
+            LibraryImpactAnalysisConfig libraryConfig = buildLibraryImpactAnalysisConfig();
+            StaticTestSelectionConfig staticMappingConfig = buildStaticTestSelectionConfig();
+
+            runImpactedTests(vcsReader, testSelector, libraryConfig, staticMappingConfig, testRunner);
+            while (true){
+                getLog().info("Tia is watching " + watchedDirs + " for changes - press Ctrl-C to stop.");
+                Set<File> changedFiles = watcher.awaitChanges();
+                if (compiler.isAvailable() && !compileChangedFiles(compiler, changedFiles, testSourceRoots, outputDir, testOutputDir)){
+                    getLog().warn("The changed files didn't compile - waiting for the next change.");
+                    continue;
+                }
+                runImpactedTests(vcsReader, testSelector, libraryConfig, staticMappingConfig, testRunner);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Couldn't watch the source dirs " + watchedDirs, e);
+        } finally {
+            vcsReader.close();
+        }
+    }
+
+    private void runImpactedTests(final VCSReader vcsReader, final TestSelector testSelector,
+                                  final LibraryImpactAnalysisConfig libraryConfig,
+                                  final StaticTestSelectionConfig staticMappingConfig,
+                                  final WatchTestRunner testRunner){
+        long startTime = System.currentTimeMillis();
+        List<String> sourceFilesDirs = getTiaSourceFilesDirs() != null ? Arrays.asList(getTiaSourceFilesDirs().split(",")) : null;
+        StringUtil.sanitizeInputArray(sourceFilesDirs);
+        List<String> testFilesDirs = getTiaTestFilesDirs() != null ? Arrays.asList(getTiaTestFilesDirs().split(",")) : null;
+        StringUtil.sanitizeInputArray(testFilesDirs);
+
+        // Select against the local changes, and never update the mapping from a watch session.
+        TestSelectorResult result = testSelector.selectTestsToIgnore(vcsReader, sourceFilesDirs, testFilesDirs,
+                true, libraryConfig, staticMappingConfig, false);
+        getLog().info("Time to select the impacted tests (ms): " + (System.currentTimeMillis() - startTime));
+
+        List<String> testSuites = !result.getTestRunOrder().isEmpty()
+                ? result.getTestRunOrder() : new ArrayList<>(result.getTestsToRun());
+        if (testSuites.isEmpty()){
+            getLog().info("No tests are impacted by the local changes.");
+            return;
+        }
+
+        getLog().info("Running the " + testSuites.size() + " impacted test suites: " + testSuites);
+        TestExecutionSummary summary = testRunner.run(testSuites);
+        testRunner.logSummary(summary);
+    }
+
+    /**
+     * Compile the changed files, the test files into the test output dir and the source files
+     * into the main output dir. The source files are compiled first, so the test files compile
+     * against the saved sources.
+     */
+    private boolean compileChangedFiles(final WatchCompiler compiler, final Set<File> changedFiles,
+                                        final List<File> testSourceRoots, final File outputDir,
+                                        final File testOutputDir){
+        List<File> sourceFiles = new ArrayList<>();
+        List<File> testFiles = new ArrayList<>();
+        for (File changedFile : changedFiles){
+            if (isUnderAny(changedFile, testSourceRoots)){
+                testFiles.add(changedFile);
+            } else {
+                sourceFiles.add(changedFile);
+            }
+        }
+
+        if (!sourceFiles.isEmpty() && !compiler.compile(sourceFiles, outputDir)){
+            return false;
+        }
+        return testFiles.isEmpty() || compiler.compile(testFiles, testOutputDir);
+    }
+
+    /**
+     * Compile with the Java level the project is built for, when the compiler plugin's user
+     * properties set it.
+     */
+    private static List<String> getCompilerOptions(final MavenProject project){
+        String release = project.getProperties().getProperty("maven.compiler.release");
+        if (release != null){
+            return Arrays.asList("--release", release);
+        }
+
+        List<String> options = new ArrayList<>();
+        String source = project.getProperties().getProperty("maven.compiler.source");
+        if (source != null){
+            options.addAll(Arrays.asList("-source", source));
+        }
+        String target = project.getProperties().getProperty("maven.compiler.target");
+        if (target != null){
+            options.addAll(Arrays.asList("-target", target));
+        }
+        return options;
+    }
+
+    private static Charset getSourceEncoding(final MavenProject project){
+        String encoding = project.getProperties().getProperty("project.build.sourceEncoding");
+        return encoding != null ? Charset.forName(encoding) : null;
+    }
+
+    private static boolean isUnderAny(final File file, final List<File> dirs){
+        String path = file.getAbsolutePath();
+        for (File dir : dirs){
+            if (path.startsWith(dir.getAbsolutePath() + File.separator)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<File> toFiles(final List<String> paths){
+        if (paths == null){
+            return Collections.emptyList();
+        }
+        List<File> files = new ArrayList<>();
+        for (String path : paths){
+            files.add(new File(path));
+        }
+        return files;
+    }
+}
@@ -0,0 +1,260 @@
+package org.tiatesting.maven;
+
+import org.tiatesting.core.daemon.SelectionDaemonClient;
+import org.tiatesting.core.daemon.SelectionDaemonRequest;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelector;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+import org.tiatesting.core.library.LibraryImpactAnalysisConfig;
+import org.tiatesting.core.persistence.DataStore;
+import org.tiatesting.core.staticselection.StaticTestSelectionConfig;
+import org.tiatesting.core.util.StringUtil;
+import org.tiatesting.core.vcs.VCSReader;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The test selection the {@code prepare-agent} goal hands to the Tia agent, and its speculative
+ * start by the {@code start-selection} goal. See the "Speculative test selection" chapter in WIKI.md.
+ *
+ * <p>{@code prepare-agent} is bound late in the build (typically {@code test-compile}), so the VCS
+ * diff and DB reads of the selection sit on the critical path right before Surefire forks.
+ * {@code start-selection}, bound at {@code initialize}, starts the same selection on a background
+ * thread and parks it in the plugin context, which Maven shares between the goals of one plugin
+ * in one project. {@code prepare-agent} then only joins it, so the selection overlaps with
+ * compilation.
+ *
+ * <p>The speculative selection is only used when it was started with the same selection settings
+ * as {@code prepare-agent} has - the goals can be configured per execution. When the settings
+ * differ, or the speculative selection failed, {@code prepare-agent} selects the tests itself.
+ *
+ * <p>Only a selection that just reads the DB is started speculatively. Updating the mapping or
+ * analyzing library impact writes to the DB as the tests are selected, so those selections are
+ * left to {@code prepare-agent}.
+ */
+final class AgentTestSelection {
+
+    /**
+     * The plugin context key the speculative selection is parked under.
+     */
+    static final String PLUGIN_CONTEXT_KEY = "tiaSpeculativeTestSelection";
+
+    private final String selectionSettings;
+    private final CompletableFuture<TestSelectorResult> selection;
+
+    private AgentTestSelection(final String selectionSettings, final CompletableFuture<TestSelectorResult> selection) {
+        this.selectionSettings = selectionSettings;
+        this.selection = selection;
+    }
+
+    /**
+     * Start selecting the tests for the mojo's settings on a background thread and park the
+     * selection in the mojo's plugin context for {@link #getTestSelectorResult} to join.
+     *
+     * @param mojo the {@code start-selection} mojo
+     */
+    static void start(final AbstractTiaMojo mojo) {
+        Map<Object, Object> pluginContext = getPluginContext(mojo);
+        if (pluginContext == null) {
+            mojo.getLog().warn("No Maven plugin context to share the Tia test selection with - prepare-agent will select the tests.");
+            return;
+        }
+        if (mojo.isTiaUpdateDBMapping() || mojo.buildLibraryImpactAnalysisConfig().isEnabled()) {
+            // the selection writes to the DB - it mustn't run for a test run that may never happen,
+            // or be cut short mid-write when the build fails before prepare-agent joins it
+            mojo.getLog().info("The Tia test selection updates the DB - prepare-agent will select the tests.");
+            return;
+        }
+
+        CompletableFuture<TestSelectorResult> selection = new CompletableFuture<>();
+        Thread selectionThread = new Thread(() -> {
+            try {
+                selection.complete(select(mojo));
+            } catch (Throwable t) {
+                selection.completeExceptionally(t);
+            }
+        }, "tia-speculative-test-selection");
+        // Don't hold the build JVM open when the build fails before prepare-agent joins the selection.
+        selectionThread.setDaemon(true);
+        selectionThread.start();
+
+        pluginContext.put(PLUGIN_CONTEXT_KEY, new AgentTestSelection(getSelectionSettings(mojo), selection));
+        mojo.getLog().info("Started the Tia test selection in the background.");
+    }
+
+    /**
+     * Get the test selection for the mojo: join the speculative selection started for the project
+     * when its settings match the mojo's, otherwise select the tests now. The speculative selection
+     * is taken out of the plugin context either way, so a later build in the same session starts afresh.
+     *
+     * @param mojo the {@code prepare-agent} mojo
+     * @return the test selection
+     */
+    static TestSelectorResult getTestSelectorResult(final AbstractTiaMojo mojo) {
+        Map<Object, Object> pluginContext = getPluginContext(mojo);
+        AgentTestSelection speculative = pluginContext != null
+                ? (AgentTestSelection) pluginContext.remove(PLUGIN_CONTEXT_KEY) : null;
+        if (speculative == null) {
+            return select(mojo);
+        }
+
+        if (!speculative.selectionSettings.equals(getSelectionSettings(mojo))) {
+            mojo.getLog().info("The Tia test selection started in the background used different settings - selecting the tests again.");
+            return select(mojo);
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            TestSelectorResult testSelectorResult = speculative.selection.join();
+            mojo.getLog().info("Time to wait for the Tia test selection started in the background (ms): "
+                    + (System.currentTimeMillis() - startTime));
+            return testSelectorResult;
+        } catch (CompletionException e) {
+            mojo.getLog().warn("The Tia test selection started in the background failed - selecting the tests again: "
+                    + e.getCause());
+            return select(mojo);
+        }
+    }
+
+    /**
+     * Select the tests for the mojo's settings.
+     *
+     * @param mojo the mojo to read the selection settings from
+     * @return the test selection
+     */
+    static TestSelectorResult select(final AbstractTiaMojo mojo) {
+        TestSelectorResult daemonSelection = selectWithDaemon(mojo);
+        if (daemonSelection != null) {
+            return daemonSelection;
+        }
+
+        // try-with-resources: release the H2 MVStore file lock before surefire forks the test
+        // JVM. With DB_CLOSE_DELAY=-1 the Maven JVM would otherwise hold the lock for the rest
+        // of the build, and the test JVM's JdbcDataStore would fail with "Database may be
+        // already in use". The reader is closed too: with gitNativeCli it holds a git cat-file
+        // process, and a Perforce reader holds its pooled server connections, which would
+        // otherwise be left open by every module's selection until the Maven JVM exits.
+        try (VCSReader vcsReader = mojo.buildVCSReader();
+             DataStore dataStore = mojo.buildDataStore(vcsReader.getBranchName())) {
+            long startQueryTime = System.currentTimeMillis();
+
+            List<String> sourceFilesDirs = mojo.getTiaSourceFilesDirs() != null ? Arrays.asList(mojo.getTiaSourceFilesDirs().split(",")) : null;
+            StringUtil.sanitizeInputArray(sourceFilesDirs);
+            List<String> testFilesDirs = mojo.getTiaTestFilesDirs() != null ? Arrays.asList(mojo.getTiaTestFilesDirs().split(",")) : null;
+            StringUtil.sanitizeInputArray(testFilesDirs);
+
+            TestSelector testSelector = new TestSelector(dataStore);
+            testSelector.setPerTestSelection(mojo.isTiaPerTestSelection());
+            testSelector.setLineLevelSelection(mojo.isTiaLineLevelSelection());
+            testSelector.setMaxRunTimeMs(mojo.getTiaMaxRunTimeMs());
+            testSelector.setShard(mojo.getTiaShardIndex(), mojo.getTiaShardCount());
+            testSelector.setFailFastOrdering(mojo.isTiaFailFastOrdering());
+            testSelector.setSelectionCacheDir(mojo.getTiaSelectionCacheDir());
+            LibraryImpactAnalysisConfig libraryConfig = mojo.buildLibraryImpactAnalysisConfig();
+            StaticTestSelectionConfig staticMappingConfig = mojo.buildStaticTestSelectionConfig();
+            TestSelectorResult testSelectorResult = testSelector.selectTestsToIgnore(vcsReader, sourceFilesDirs,
+                    testFilesDirs, isCheckLocalChanges(mojo), libraryConfig, staticMappingConfig, mojo.isTiaUpdateDBMapping());
+            mojo.getLog().debug("Time to analyze test selection data (sec): " + (System.currentTimeMillis() - startQueryTime) / 1000);
+            return testSelectorResult;
+        }
+    }
+
+    /**
+     * Ask the Tia selection daemon to select the tests, when one is configured. The daemon doesn't
+     * update the mapping or analyze library impact, so it's only consulted for runs that need neither.
+     * See the "Selection daemon" chapter in WIKI.md.
+     *
+     * @param mojo the mojo to read the selection settings from
+     * @return the daemon's selection, or {@code null} when the tests are to be selected in process
+     */
+    private static TestSelectorResult selectWithDaemon(final AbstractTiaMojo mojo) {
+        File endpointFile = mojo.getTiaSelectionDaemonEndpointFile();
+        if (endpointFile == null) {
+            return null;
+        }
+        if (mojo.isTiaUpdateDBMapping() || mojo.buildLibraryImpactAnalysisConfig().isEnabled()) {
+            mojo.getLog().info("The Tia selection daemon doesn't update the mapping or analyze library impact - selecting the tests in process.");
+            return null;
+        }
+
+        List<String> sourceFilesDirs = mojo.getTiaSourceFilesDirs() != null ? Arrays.asList(mojo.getTiaSourceFilesDirs().split(",")) : null;
+        StringUtil.sanitizeInputArray(sourceFilesDirs);
+        List<String> testFilesDirs = mojo.getTiaTestFilesDirs() != null ? Arrays.asList(mojo.getTiaTestFilesDirs().split(",")) : null;
+        StringUtil.sanitizeInputArray(testFilesDirs);
+
+        // resolve a relative DB path the way this JVM would open it, not against the daemon's working dir
+        String dbFilePath = mojo.getTiaDBFilePath() != null ? new File(mojo.getTiaDBFilePath()).getAbsolutePath() : null;
+        SelectionDaemonRequest request = new SelectionDaemonRequest(mojo.getTiaProjectDir(), dbFilePath,
+                mojo.getTiaDBUrl(), sourceFilesDirs, testFilesDirs, mojo.isTiaCheckLocalChanges(),
+                mojo.buildStaticTestSelectionConfig());
+        request.setPerTestSelection(mojo.isTiaPerTestSelection());
+        request.setLineLevelSelection(mojo.isTiaLineLevelSelection());
+        request.setMaxRunTimeMs(mojo.getTiaMaxRunTimeMs());
+        request.setShard(mojo.getTiaShardIndex(), mojo.getTiaShardCount());
+        request.setFailFastOrdering(mojo.isTiaFailFastOrdering());
+        return SelectionDaemonClient.select(endpointFile, request);
+    }
+
+    /**
+     * Check if Tia should analyze local changes.
+     * If we're updating the DB, we shouldn't check for local changes as the DB needs to be in sync with
+     * committed changes only.
+     *
+     * @param mojo the mojo to read the settings from
+     * @return whether local changes are analyzed
+     */
+    private static boolean isCheckLocalChanges(final AbstractTiaMojo mojo){
+        if (mojo.isTiaUpdateDBMapping() && mojo.isTiaCheckLocalChanges()){
+            mojo.getLog().info("Disabling the check for local changes as Tia is configured to update the mapping in the DB.");
+            return false;
+        } else{
+            return mojo.isTiaCheckLocalChanges();
+        }
+    }
+
+    /**
+     * Describe every setting the selection depends on, to tell whether a speculative selection was
+     * started with the same settings as the goal joining it.
+     *
+     * @param mojo the mojo to read the settings from
+     * @return the selection settings
+     */
+    static String getSelectionSettings(final AbstractTiaMojo mojo) {
+        StringBuilder settings = new StringBuilder()
+                .append("projectDir=").append(mojo.getTiaProjectDir())
+                .append(";dbFilePath=").append(mojo.getTiaDBFilePath())
+                .append(";dbUrl=").append(mojo.getTiaDBUrl())
+                .append(";dbUser=").append(mojo.getTiaDBUser())
+                .append(";dbDialect=").append(mojo.getTiaDBDialect())
+                .append(";gitNativeCli=").append(mojo.isTiaGitNativeCli())
+                .append(";diffCacheDir=").append(mojo.isTiaPersistDiffCache()
+                        ? new File(mojo.getTiaBuildDir(), AbstractTiaMojo.DIFF_CACHE_DIR_NAME) : null)
+                .append(";selectionCacheDir=").append(mojo.getTiaSelectionCacheDir())
+                .append(";selectionDaemonEndpointFile=").append(mojo.getTiaSelectionDaemonEndpointFile())
+                .append(";sourceFilesDirs=").append(mojo.getTiaSourceFilesDirs())
+                .append(";testFilesDirs=").append(mojo.getTiaTestFilesDirs())
+                .append(";sourceLibs=").append(mojo.getTiaSourceLibs())
+                .append(";sourceProjectDir=").append(mojo.getTiaSourceProjectDir())
+                .append(";checkLocalChanges=").append(mojo.isTiaCheckLocalChanges())
+                .append(";updateDBMapping=").append(mojo.isTiaUpdateDBMapping())
+                .append(";perTestSelection=").append(mojo.isTiaPerTestSelection())
+                .append(";lineLevelSelection=").append(mojo.isTiaLineLevelSelection())
+                .append(";maxRunTimeMs=").append(mojo.getTiaMaxRunTimeMs())
+                .append(";shard=").append(mojo.getTiaShardIndex()).append('/').append(mojo.getTiaShardCount())
+                .append(";failFastOrdering=").append(mojo.isTiaFailFastOrdering());
+        for (MavenStaticTestSelectionRule rule : mojo.getTiaStaticTestSelectionRules()) {
+            settings.append(";staticRule=").append(rule.getName()).append(',').append(rule.getFilePathPattern())
+                    .append(',').append(rule.getMode()).append(',').append(rule.getSuiteNamePatterns());
+        }
+        return settings.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> getPluginContext(final AbstractTiaMojo mojo) {
+        return mojo.getPluginContext();
+    }
+}
@@ -0,0 +1,117 @@
+package org.tiatesting.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the source and test dirs for the {@code watch} goal, handing back the Java files saved
+ * since the last batch. See the "Watch mode" chapter in WIKI.md.
+ *
+ * <p>An IDE save can touch a file more than once (write, then a timestamp or formatter pass), and
+ * a refactoring saves many files at once, so the events are collected until the dirs have been
+ * quiet for the debounce period and handed back as one batch.
+ */
+class SourceChangeWatcher implements AutoCloseable {
+
+    private final WatchService watchService;
+    private final long debounceMs;
+
+    /**
+     * Register the dirs and their sub dirs with the file system's watch service.
+     *
+     * @param dirs the source and test dirs to watch; missing dirs are skipped
+     * @param debounceMs how long the dirs must be quiet before a batch is handed back
+     * @throws IOException when a dir can't be registered
+     */
+    SourceChangeWatcher(final List<File> dirs, final long debounceMs) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.debounceMs = debounceMs;
+        for (File dir : dirs) {
+            if (dir.isDirectory()) {
+                registerTree(dir.toPath());
+            }
+        }
+    }
+
+    /**
+     * Block until Java files change, then collect the changes until the dirs are quiet.
+     *
+     * @return the Java files created or modified in the batch, which still exist. Deleted files
+     *         aren't returned - there's nothing to compile for them - so the batch is empty when
+     *         files were only deleted.
+     * @throws InterruptedException when the watching thread is interrupted
+     */
+    Set<File> awaitChanges() throws InterruptedException {
+        Set<File> changedFiles = new LinkedHashSet<>();
+        WatchKey key = watchService.take();
+        while (key != null) {
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                    // a new package - watch it, and pick up the files already moved or copied into it
+                    registerCreatedTree(changed, changedFiles);
+                } else if (changed.toString().endsWith(".java") && Files.isRegularFile(changed)) {
+                    changedFiles.add(changed.toFile());
+                }
+            }
+            key.reset();
+            key = watchService.poll(debounceMs, TimeUnit.MILLISECONDS);
+        }
+        return changedFiles;
+    }
+
+    private void registerCreatedTree(final Path created, final Set<File> changedFiles) {
+        try {
+            registerTree(created);
+            Files.walkFileTree(created, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (file.toString().endsWith(".java")) {
+                        changedFiles.add(file.toFile());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // the dir was removed again before it could be registered, e.g. an IDE temp dir
+        }
+    }
+
+    private void registerTree(final Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+    }
+}
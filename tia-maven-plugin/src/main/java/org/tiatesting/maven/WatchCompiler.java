@@ -0,0 +1,90 @@
+package org.tiatesting.maven;
+
+import org.apache.maven.plugin.logging.Log;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compiles the Java files saved while the {@code watch} goal runs straight into the project's
+ * output dirs, with the compiler of the JDK running Maven, so a save doesn't need a Maven build
+ * before the impacted tests rerun. See the "Watch mode" chapter in WIKI.md.
+ *
+ * <p>Only the saved files are compiled, against the rest of the compiled project on the class
+ * path. That's what an IDE does on save; a change that breaks a file that wasn't saved (e.g. a
+ * removed method) shows up when the tests run, or on the next full build.
+ */
+class WatchCompiler {
+
+    private final JavaCompiler compiler;
+    private final String classpath;
+    private final List<String> compilerOptions;
+    private final Charset encoding;
+    private final Log log;
+
+    /**
+     * @param classpath the project's test class path, output dirs included
+     * @param compilerOptions the javac options for the project, e.g. {@code --release}
+     * @param encoding the source encoding, or {@code null} for the platform default
+     * @param log the mojo log
+     */
+    WatchCompiler(final List<String> classpath, final List<String> compilerOptions, final Charset encoding,
+                  final Log log) {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        this.classpath = String.join(File.pathSeparator, classpath);
+        this.compilerOptions = compilerOptions;
+        this.encoding = encoding;
+        this.log = log;
+    }
+
+    /**
+     * @return whether a compiler is available - Maven may be running on a JRE
+     */
+    boolean isAvailable() {
+        return compiler != null;
+    }
+
+    /**
+     * Compile the source files into the output dir.
+     *
+     * @param sourceFiles the source files to compile
+     * @param outputDir the output dir for the class files
+     * @return whether the files compiled; the errors are logged when they didn't
+     */
+    boolean compile(final Collection<File> sourceFiles, final File outputDir) {
+        long startTime = System.currentTimeMillis();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, encoding)) {
+            List<String> options = new ArrayList<>(compilerOptions);
+            options.add("-d");
+            options.add(outputDir.getAbsolutePath());
+            options.add("-classpath");
+            options.add(classpath);
+
+            Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(sourceFiles);
+            boolean compiled = compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits).call();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    log.error(diagnostic.toString());
+                } else if (diagnostic.getKind() == Diagnostic.Kind.WARNING || diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING) {
+                    log.debug(diagnostic.toString());
+                }
+            }
+            log.debug("Time to compile the changed files (ms): " + (System.currentTimeMillis() - startTime));
+            return compiled;
+        } catch (IOException e) {
+            log.error("Couldn't compile the changed files: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.tiatesting.maven;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.platform.engine.DiscoverySelector;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.request;
+
+/**
+ * Runs the selected test suites for the {@code watch} goal in the Maven JVM, on a JUnit Platform
+ * launcher created once for the whole watch session. See the "Watch mode" chapter in WIKI.md.
+ *
+ * <p>The class loaders are layered so a run only reloads what a save can change:
+ * <ul>
+ *     <li>the JUnit Platform and Jupiter classes come from the plugin, so the test classes and the
+ *     engine the launcher found share the same annotations;</li>
+ *     <li>the project's dependency jars are loaded once, by a loader kept for the session;</li>
+ *     <li>the project's output dirs are loaded by a new loader for every run, so the classes
+ *     compiled since the previous run are picked up.</li>
+ * </ul>
+ */
+class WatchTestRunner implements AutoCloseable {
+
+    /**
+     * The packages the test classes must share with the plugin's JUnit Platform launcher.
+     */
+    private static final String[] PLUGIN_PACKAGES = {"org.junit.platform.", "org.junit.jupiter.", "org.opentest4j.",
+            "org.apiguardian."};
+
+    private final URLClassLoader dependencyClassLoader;
+    private final URL[] outputDirUrls;
+    private final Launcher launcher;
+    private final Log log;
+
+    /**
+     * @param classpath the project's test class path
+     * @param outputDirs the project's output dirs, reloaded for every run
+     * @param log the mojo log
+     */
+    WatchTestRunner(final List<String> classpath, final List<File> outputDirs, final Log log) {
+        this.log = log;
+        List<URL> dependencyUrls = new ArrayList<>();
+        List<URL> outputUrls = new ArrayList<>();
+        for (String element : classpath) {
+            File file = new File(element);
+            if (outputDirs.contains(file)) {
+                outputUrls.add(toUrl(file));
+            } else {
+                dependencyUrls.add(toUrl(file));
+            }
+        }
+        this.outputDirUrls = outputUrls.toArray(new URL[0]);
+        this.dependencyClassLoader = new URLClassLoader(dependencyUrls.toArray(new URL[0]),
+                new PluginPackagesClassLoader(getClass().getClassLoader()));
+
+        long startTime = System.currentTimeMillis();
+        this.launcher = withContextClassLoader(getClass().getClassLoader(), LauncherFactory::create);
+        log.debug("Time to create the JUnit Platform launcher (ms): " + (System.currentTimeMillis() - startTime));
+    }
+
+    /**
+     * Run the test suites, in the order given.
+     *
+     * @param testSuites the names of the test suite classes to run
+     * @return the summary of the run
+     */
+    TestExecutionSummary run(final List<String> testSuites) {
+        try (URLClassLoader runClassLoader = new URLClassLoader(outputDirUrls, dependencyClassLoader)) {
+            List<DiscoverySelector> selectors = new ArrayList<>();
+            for (String testSuite : testSuites) {
+                try {
+                    selectors.add(selectClass(runClassLoader.loadClass(testSuite)));
+                } catch (ClassNotFoundException | LinkageError e) {
+                    log.warn("Couldn't load the test suite " + testSuite + " - skipping it: " + e);
+                }
+            }
+
+            SummaryGeneratingListener listener = new SummaryGeneratingListener();
+            LauncherDiscoveryRequest discoveryRequest = request().selectors(selectors).build();
+            withContextClassLoader(runClassLoader, () -> {
+                launcher.execute(discoveryRequest, listener);
+                return null;
+            });
+            return listener.getSummary();
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't release the test class loader", e);
+        }
+    }
+
+    /**
+     * Log the summary of a run, with the failures in full.
+     *
+     * @param summary the summary of the run
+     */
+    void logSummary(final TestExecutionSummary summary) {
+        if (summary.getTotalFailureCount() > 0) {
+            StringWriter failures = new StringWriter();
+            summary.printFailuresTo(new PrintWriter(failures), 20);
+            log.error(failures.toString());
+        }
+        log.info(String.format("Tests run: %d, Failures: %d, Skipped: %d, Time elapsed (ms): %d",
+                summary.getTestsStartedCount(), summary.getTotalFailureCount(), summary.getTestsSkippedCount(),
+                summary.getTimeFinished() - summary.getTimeStarted()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        dependencyClassLoader.close();
+    }
+
+    private static <T> T withContextClassLoader(final ClassLoader classLoader, final Supplier<T> action) {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            return action.get();
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    private static URL toUrl(final File file) {
+        try {
+            return file.toURI().toURL();
+        } catch (MalformedURLException e) {
+            throw new RuntimeException("Invalid class path element " + file, e);
+        }
+    }
+
+    /**
+     * Loads the JUnit packages from the plugin and everything else from the JDK only, so the
+     * project's dependencies don't resolve against the plugin's own dependencies.
+     */
+    private static class PluginPackagesClassLoader extends ClassLoader {
+
+        private final ClassLoader pluginClassLoader;
+
+        PluginPackagesClassLoader(final ClassLoader pluginClassLoader) {
+            super(ClassLoader.getSystemClassLoader().getParent());
+            this.pluginClassLoader = pluginClassLoader;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            for (String pluginPackage : PLUGIN_PACKAGES) {
+                if (name.startsWith(pluginPackage)) {
+                    return pluginClassLoader.loadClass(name);
+                }
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+}
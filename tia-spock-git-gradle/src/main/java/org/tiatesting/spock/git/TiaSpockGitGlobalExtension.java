@@ -1,11 +1,12 @@
 package org.tiatesting.spock.git;
 
 import org.tiatesting.spock.TiaSpockGlobalExtension;
-import org.tiatesting.vcs.git.GitReader;
+import org.tiatesting.vcs.git.GitReaderFactory;
 
 public class TiaSpockGitGlobalExtension extends TiaSpockGlobalExtension {
 
     public TiaSpockGitGlobalExtension(){
-        super(Boolean.parseBoolean(System.getProperty("tiaEnabled")) == true ? new GitReader(System.getProperty("tiaProjectDir")) : null);
+        super(Boolean.parseBoolean(System.getProperty("tiaEnabled")) == true ? GitReaderFactory.newReader(System.getProperty("tiaProjectDir"),
+                Boolean.parseBoolean(System.getProperty("tiaGitNativeCli"))) : null);
     }
 }
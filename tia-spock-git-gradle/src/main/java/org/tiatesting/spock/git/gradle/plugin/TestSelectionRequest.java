@@ -0,0 +1,107 @@
+package org.tiatesting.spock.git.gradle.plugin;
+
+import org.gradle.api.logging.Logging;
+import org.slf4j.Logger;
+import org.tiatesting.core.daemon.SelectionDaemonClient;
+import org.tiatesting.core.daemon.SelectionDaemonRequest;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+import org.tiatesting.core.library.LibraryImpactAnalysisConfig;
+import org.tiatesting.core.persistence.DataStore;
+import org.tiatesting.core.staticselection.StaticTestSelectionConfig;
+import org.tiatesting.core.vcs.VCSReader;
+import org.tiatesting.spock.TiaSpockTestRunInitializer;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Everything the test selection of one test task reads, taken from the task and its Tia extension
+ * on the task's thread. Selecting the tests from it needs no Gradle model, so it can run on a Gradle
+ * worker thread. See the "Parallel test selection across projects" chapter in WIKI.md.
+ */
+final class TestSelectionRequest {
+    private static final Logger LOGGER = Logging.getLogger(TestSelectionRequest.class);
+
+    String projectDir;
+    boolean gitNativeCli;
+    String dbFilePath;
+    String dbUrl;
+    String dbUser;
+    String dbPassword;
+    String dbDialect;
+    List<String> sourceFilesDirs;
+    List<String> testFilesDirs;
+    boolean checkLocalChanges;
+    boolean updateDBMapping;
+    boolean perTestSelection;
+    boolean lineLevelSelection;
+    long maxRunTimeMs;
+    int shardIndex;
+    int shardCount;
+    File diffCacheDir;
+    File selectionCacheDir;
+    File selectionDaemonEndpointFile;
+    LibraryImpactAnalysisConfig libraryConfig;
+    StaticTestSelectionConfig staticMappingConfig;
+
+    /**
+     * @return whether the selection only reads the Tia DB - it neither updates the mapping nor
+     *         analyzes library impact, which record state in the DB as they select.
+     */
+    boolean isReadOnly() {
+        return !updateDBMapping && (libraryConfig == null || !libraryConfig.isEnabled());
+    }
+
+    /**
+     * Select the tests: ask the Tia selection daemon when one is configured, or else select them
+     * in process over the VCS reader and DB the build service shares between the test tasks.
+     *
+     * @param selectionService the build service sharing the VCS readers and DBs
+     * @return the selection
+     */
+    TestSelectorResult select(final TiaSelectionService selectionService) {
+        TestSelectorResult testSelectorResult = selectWithDaemon();
+        if (testSelectorResult != null) {
+            return testSelectorResult;
+        }
+
+        VCSReader vcsReader = selectionService.getVCSReader(projectDir, gitNativeCli, diffCacheDir);
+        DataStore dataStore = selectionService.acquireDataStore(dbFilePath, dbUrl, dbUser, dbPassword, dbDialect,
+                vcsReader.getBranchName());
+        try {
+            TiaSpockTestRunInitializer testRunInitializer = new TiaSpockTestRunInitializer(vcsReader, dataStore);
+            testRunInitializer.setSelectionCacheDir(selectionCacheDir);
+            return testRunInitializer.selectTests(sourceFilesDirs, testFilesDirs, checkLocalChanges, updateDBMapping,
+                    libraryConfig, staticMappingConfig, perTestSelection, lineLevelSelection, maxRunTimeMs,
+                    shardIndex, shardCount);
+        } finally {
+            // release the H2 file lock before the forks open the DB to persist the run
+            selectionService.releaseDataStore(dataStore);
+        }
+    }
+
+    /**
+     * Ask the Tia selection daemon to select the tests, when one is configured. The daemon doesn't
+     * update the mapping or analyze library impact, so it's only consulted for runs that need
+     * neither. See the "Selection daemon" chapter in WIKI.md.
+     *
+     * @return the daemon's selection, or {@code null} when the tests are to be selected in the Gradle daemon
+     */
+    private TestSelectorResult selectWithDaemon() {
+        if (selectionDaemonEndpointFile == null) {
+            return null;
+        }
+        if (!isReadOnly()) {
+            LOGGER.info("The Tia selection daemon doesn't update the mapping or analyze library impact - selecting the tests in process.");
+            return null;
+        }
+
+        SelectionDaemonRequest request = new SelectionDaemonRequest(projectDir, dbFilePath, dbUrl,
+                sourceFilesDirs, testFilesDirs, checkLocalChanges, staticMappingConfig);
+        request.setPerTestSelection(perTestSelection);
+        request.setLineLevelSelection(lineLevelSelection);
+        request.setMaxRunTimeMs(maxRunTimeMs);
+        request.setShard(shardIndex, shardCount);
+        return SelectionDaemonClient.select(selectionDaemonEndpointFile, request);
+    }
+}
@@ -0,0 +1,72 @@
+package org.tiatesting.spock.git.gradle.plugin;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.util.function.Supplier;
+
+/**
+ * Gradle task that selects the tests for a test task ahead of it, as a Gradle worker item, when
+ * {@code parallelSelection} is on. Registered as {@code tia-select-<test task>} for each test task,
+ * which depends on it. See the "Parallel test selection across projects" chapter in WIKI.md.
+ *
+ * <p>The task's action only reads the test task's Tia config into a {@link TestSelectionRequest}.
+ * The selection itself is a worker item, so the selections of the test tasks across the build run
+ * in parallel on Gradle's worker threads, up to {@code --max-workers}, while other tasks run. The
+ * result is held by the {@link TiaSelectionService} until the test task takes it. When the task
+ * doesn't select - Tia or {@code parallelSelection} is off, the DB is the embedded H2 DB, or the
+ * selection updates the DB - the test task selects the tests itself, as before.
+ */
+public abstract class TiaSelectTestsTask extends DefaultTask {
+
+    private String testTaskPath;
+    private Supplier<TestSelectionRequest> selectionRequestSupplier;
+
+    /**
+     * @return the build service the selection is handed to the test task through
+     */
+    @Internal
+    public abstract Property<TiaSelectionService> getSelectionService();
+
+    @Inject
+    public abstract WorkerExecutor getWorkerExecutor();
+
+    /**
+     * @param testTaskPath the path of the test task the tests are selected for
+     */
+    void setTestTaskPath(String testTaskPath) {
+        this.testTaskPath = testTaskPath;
+    }
+
+    /**
+     * Inject the reader of the test task's Tia config; called at task registration so the config is
+     * read at execution time, once the test task's extension is populated.
+     *
+     * @param selectionRequestSupplier returns the selection inputs, or {@code null} when the test
+     *                                 task is to select the tests itself
+     */
+    void setSelectionRequestSupplier(Supplier<TestSelectionRequest> selectionRequestSupplier) {
+        this.selectionRequestSupplier = selectionRequestSupplier;
+    }
+
+    @TaskAction
+    public void selectTests() {
+        TestSelectionRequest request = selectionRequestSupplier.get();
+        if (request == null) {
+            setDidWork(false);
+            return;
+        }
+
+        getSelectionService().get().addPendingSelection(testTaskPath, request);
+        WorkQueue workQueue = getWorkerExecutor().noIsolation();
+        workQueue.submit(TiaSelectTestsWorkAction.class, parameters -> {
+            parameters.getSelectionService().set(getSelectionService());
+            parameters.getTestTaskPath().set(testTaskPath);
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package org.tiatesting.spock.git.gradle.plugin;
+
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * The worker item a {@link TiaSelectTestsTask} submits: makes the selection the task left pending
+ * in the {@link TiaSelectionService}, on a Gradle worker thread.
+ */
+public abstract class TiaSelectTestsWorkAction implements WorkAction<TiaSelectTestsWorkAction.Parameters> {
+
+    public interface Parameters extends WorkParameters {
+        Property<TiaSelectionService> getSelectionService();
+
+        Property<String> getTestTaskPath();
+    }
+
+    @Override
+    public void execute() {
+        getParameters().getSelectionService().get().makePendingSelection(getParameters().getTestTaskPath().get());
+    }
+}
@@ -0,0 +1,301 @@
+package org.tiatesting.spock.git.gradle.plugin;
+
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.slf4j.Logger;
+import org.tiatesting.core.diff.SourceFileDiffContext;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+import org.tiatesting.core.library.LibraryImpactAnalysisConfig;
+import org.tiatesting.core.persistence.DataStore;
+import org.tiatesting.core.persistence.DataStoreFactory;
+import org.tiatesting.core.vcs.VCSReader;
+import org.tiatesting.vcs.git.GitReaderFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Shared by the test tasks of every project in the build, so the test selections of a multi-project
+ * build share what they have in common rather than each task redoing it. See the "Parallel test
+ * selection across projects" chapter in WIKI.md.
+ *
+ * <ul>
+ *     <li>The library resolution of each {@code sourceLibs} and {@code sourceProjectDir} pair is
+ *     done once, by the first task that needs it.</li>
+ *     <li>One VCS reader is opened per Git repository, so its in-memory commit-range diff cache
+ *     serves the diff read by the first selection to the others. The reader's calls are
+ *     serialized.</li>
+ *     <li>One {@link DataStore} is opened per DB. An embedded H2 DB is closed once no selection is
+ *     using it, to release the file lock before the test forks open it.</li>
+ *     <li>The selections made by the {@code tia-select-*} tasks on Gradle worker threads are held
+ *     until their test task takes them.</li>
+ * </ul>
+ */
+public abstract class TiaSelectionService implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+    private static final Logger LOGGER = Logging.getLogger(TiaSelectionService.class);
+
+    static final String NAME = "tiaSelection";
+
+    private final Map<String, ResolvedLibraries> resolvedLibraries = new ConcurrentHashMap<>();
+    private final Map<String, TestSelectionRequest> pendingSelections = new ConcurrentHashMap<>();
+    private final Map<String, TestSelectorResult> selections = new ConcurrentHashMap<>();
+    private final Map<String, SharedVCSReader> vcsReaders = new HashMap<>();
+    private final Map<String, SharedDataStore> dataStores = new HashMap<>();
+
+    /**
+     * Register the service with the build, once for all the projects.
+     *
+     * @param project a project of the build
+     * @return the service
+     */
+    static Provider<TiaSelectionService> register(final Project project) {
+        return project.getGradle().getSharedServices().registerIfAbsent(NAME, TiaSelectionService.class, spec -> {});
+    }
+
+    /**
+     * Get the libraries resolved for the key, resolving them on the first call. The resolver runs on
+     * the calling task's thread and outside any lock, as it may read the Gradle model of another
+     * project; two tasks asking at once may both resolve, and the first result is kept.
+     *
+     * @param key the {@code sourceLibs} and the dir they're resolved against
+     * @param resolver resolves the libraries on a miss
+     * @return the resolved libraries
+     */
+    ResolvedLibraries resolveLibraries(final String key, final Supplier<ResolvedLibraries> resolver) {
+        ResolvedLibraries libraries = resolvedLibraries.get(key);
+        if (libraries != null) {
+            LOGGER.debug("Libraries for {} served from the Tia selection service", key);
+            return libraries;
+        }
+
+        libraries = resolver.get();
+        ResolvedLibraries previous = resolvedLibraries.putIfAbsent(key, libraries);
+        return previous != null ? previous : libraries;
+    }
+
+    /**
+     * Hold a selection for a {@code tia-select-*} task's worker item to make.
+     *
+     * @param testTaskPath the path of the test task the selection is for
+     * @param request the selection inputs
+     */
+    void addPendingSelection(final String testTaskPath, final TestSelectionRequest request) {
+        pendingSelections.put(testTaskPath, request);
+    }
+
+    /**
+     * Make the pending selection for the test task, and hold the result for the test task to take.
+     *
+     * @param testTaskPath the path of the test task the selection is for
+     */
+    void makePendingSelection(final String testTaskPath) {
+        TestSelectionRequest request = pendingSelections.remove(testTaskPath);
+        if (request == null) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        selections.put(testTaskPath, request.select(this));
+        LOGGER.info("Time to select the tests to run for {} (ms): {}", testTaskPath, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * @param testTaskPath the path of the test task
+     * @return the selection made for the test task ahead of it, or {@code null} when there's none
+     */
+    TestSelectorResult takeSelection(final String testTaskPath) {
+        return selections.remove(testTaskPath);
+    }
+
+    /**
+     * Get the VCS reader for the Git repository the project dir is in, opening it on the first call.
+     * Readers persisting their diff cache to different dirs aren't shared, so each dir still gets
+     * the ranges read through it.
+     *
+     * @param projectDir the project dir inside the Git repository
+     * @param gitNativeCli whether to read the repository with the native {@code git} executable
+     * @param diffCacheDir the dir to persist the commit-range diff cache under; may be {@code null}
+     * @return the shared reader; closing it has no effect, the service closes it at the end of the build
+     */
+    synchronized VCSReader getVCSReader(final String projectDir, final boolean gitNativeCli, final File diffCacheDir) {
+        String key = findRepositoryDir(projectDir) + "|" + gitNativeCli + "|" + diffCacheDir;
+        SharedVCSReader reader = vcsReaders.get(key);
+        if (reader == null) {
+            VCSReader delegate = GitReaderFactory.newReader(projectDir, gitNativeCli);
+            if (diffCacheDir != null) {
+                delegate.setDiffCacheDir(diffCacheDir);
+            }
+            reader = new SharedVCSReader(delegate);
+            vcsReaders.put(key, reader);
+        }
+        return reader;
+    }
+
+    /**
+     * The dir the Git repository is in - the nearest dir at or above the project dir holding a
+     * {@code .git} entry - or the project dir itself when there's none, for the reader to fail on.
+     */
+    private static String findRepositoryDir(final String projectDir) {
+        File dir;
+        try {
+            dir = new File(projectDir).getCanonicalFile();
+        } catch (IOException e) {
+            return projectDir;
+        }
+        for (File current = dir; current != null; current = current.getParentFile()) {
+            if (new File(current, ".git").exists()) {
+                return current.getPath();
+            }
+        }
+        return dir.getPath();
+    }
+
+    /**
+     * Get the datastore for the DB, opening it when no selection is using it. Each call must be
+     * paired with a {@link #releaseDataStore} call.
+     *
+     * @return the shared datastore
+     */
+    synchronized DataStore acquireDataStore(final String dbFilePath, final String dbUrl, final String dbUser,
+                                            final String dbPassword, final String dbDialect, final String branch) {
+        String key = String.join("|", String.valueOf(dbFilePath), String.valueOf(dbUrl), String.valueOf(dbUser),
+                String.valueOf(dbPassword), String.valueOf(dbDialect), String.valueOf(branch));
+        SharedDataStore shared = dataStores.get(key);
+        if (shared == null) {
+            boolean embedded = dbUrl == null || dbUrl.trim().isEmpty();
+            shared = new SharedDataStore(DataStoreFactory.fromConfig(dbFilePath, dbUrl, dbUser, dbPassword, dbDialect,
+                    branch), embedded);
+            dataStores.put(key, shared);
+        }
+        shared.users++;
+        return shared.dataStore;
+    }
+
+    /**
+     * Release a datastore from {@link #acquireDataStore}. An embedded H2 DB is closed once no
+     * selection is using it; a server DB is kept open for the rest of the build.
+     *
+     * @param dataStore the datastore
+     */
+    synchronized void releaseDataStore(final DataStore dataStore) {
+        Iterator<SharedDataStore> sharedDataStores = dataStores.values().iterator();
+        while (sharedDataStores.hasNext()) {
+            SharedDataStore shared = sharedDataStores.next();
+            if (shared.dataStore != dataStore) {
+                continue;
+            }
+            shared.users--;
+            if (shared.users == 0 && shared.embedded) {
+                sharedDataStores.remove();
+                dataStore.close();
+            }
+            return;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (SharedVCSReader reader : vcsReaders.values()) {
+            reader.delegate.close();
+        }
+        vcsReaders.clear();
+        for (SharedDataStore shared : dataStores.values()) {
+            shared.dataStore.close();
+        }
+        dataStores.clear();
+    }
+
+    /**
+     * The libraries resolved for a {@code sourceLibs} setting: the JARs for the coverage analysis,
+     * and the config for the library impact analysis.
+     */
+    static final class ResolvedLibraries {
+        final String libraryJarsCsv;
+        final LibraryImpactAnalysisConfig libraryConfig;
+
+        /**
+         * @param libraryJarsCsv the CSV of library JAR paths; may be {@code null}
+         * @param libraryConfig the library impact analysis config; may be {@code null}
+         */
+        ResolvedLibraries(String libraryJarsCsv, LibraryImpactAnalysisConfig libraryConfig) {
+            this.libraryJarsCsv = libraryJarsCsv;
+            this.libraryConfig = libraryConfig;
+        }
+    }
+
+    private static final class SharedDataStore {
+        private final DataStore dataStore;
+        private final boolean embedded;
+        private int users;
+
+        SharedDataStore(DataStore dataStore, boolean embedded) {
+            this.dataStore = dataStore;
+            this.embedded = embedded;
+        }
+    }
+
+    /**
+     * A VCS reader shared by the selections running on the worker threads. The readers aren't
+     * thread safe, so each call holds the reader's lock.
+     */
+    private static final class SharedVCSReader implements VCSReader {
+        private final VCSReader delegate;
+
+        SharedVCSReader(VCSReader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized String getBranchName() {
+            return delegate.getBranchName();
+        }
+
+        @Override
+        public synchronized String getHeadCommit() {
+            return delegate.getHeadCommit();
+        }
+
+        @Override
+        public synchronized Set<SourceFileDiffContext> getDiffFiles(final String baseChangeNum, final List<String> sourceFilesDirs,
+                                                                    final List<String> testFilesDirs, final boolean checkLocalChanges) {
+            return delegate.getDiffFiles(baseChangeNum, sourceFilesDirs, testFilesDirs, checkLocalChanges);
+        }
+
+        @Override
+        public synchronized void loadContentForDiffs(final Collection<SourceFileDiffContext> diffs, final String baseChangeNum,
+                                                     final boolean checkLocalChanges) {
+            delegate.loadContentForDiffs(diffs, baseChangeNum, checkLocalChanges);
+        }
+
+        @Override
+        public synchronized Set<String> getChangedFilePaths(final String baseChangeNum, final boolean checkLocalChanges) {
+            return delegate.getChangedFilePaths(baseChangeNum, checkLocalChanges);
+        }
+
+        @Override
+        public void setDiffCacheDir(final File diffCacheDir) {
+            // set when the reader is opened; readers with different dirs aren't shared
+        }
+
+        @Override
+        public synchronized String getLocalChangesFingerprint(final String baseChangeNum) {
+            return delegate.getLocalChangesFingerprint(baseChangeNum);
+        }
+
+        @Override
+        public void close() {
+            // closed by the service at the end of the build
+        }
+    }
+}
@@ -4,12 +4,15 @@ import org.gradle.api.Project;
 import org.gradle.api.artifacts.dsl.DependencyHandler;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.TaskProvider;
 import org.gradle.api.tasks.testing.Test;
 import org.slf4j.Logger;
 import org.tiatesting.core.vcs.VCSReader;
 import org.tiatesting.gradle.plugin.TiaBasePlugin;
-import org.tiatesting.vcs.git.GitReader;
+import org.tiatesting.vcs.git.GitReaderFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 
 // Gradle locates plugin classes via META-INF/gradle-plugins/*.properties (string reference),
@@ -38,7 +41,7 @@ public class TiaSpockGitGradlePlugin extends TiaBasePlugin {
 
     @Override
     public VCSReader getVCSReader() {
-        return new GitReader(getProjectDir());
+        return GitReaderFactory.newReader(getProjectDir(), isGitNativeCli());
     }
 
     private void applyPluginToTestTasks(Project project) {
@@ -71,5 +74,25 @@ public class TiaSpockGitGradlePlugin extends TiaBasePlugin {
 
     private void applyToDefaultTasks(TiaSpockGitGradlePluginTestExtension extension) {
         project.getTasks().withType(Test.class).configureEach(extension::applyTo);
+
+        // registered once the build script has added its test tasks; each selects its test task's
+        // tests ahead of it when parallelSelection is on and the Tia DB is a server DB (dbUrl), and
+        // does nothing otherwise
+        project.afterEvaluate(evaluatedProject -> {
+            Provider<TiaSelectionService> selectionService = TiaSelectionService.register(evaluatedProject);
+            for (String testTaskName : new ArrayList<>(evaluatedProject.getTasks().withType(Test.class).getNames())) {
+                TaskProvider<Test> testTask = evaluatedProject.getTasks().withType(Test.class).named(testTaskName);
+                TaskProvider<TiaSelectTestsTask> selectTask = evaluatedProject.getTasks().register(
+                        TiaSpockGitGradlePluginTestExtension.SELECT_TESTS_TASK_PREFIX + testTaskName,
+                        TiaSelectTestsTask.class, task -> {
+                            task.setDescription("Selects the tests for the " + testTaskName + " task ahead of it.");
+                            task.getSelectionService().set(selectionService);
+                            task.usesService(selectionService);
+                            task.setTestTaskPath(testTask.get().getPath());
+                            task.setSelectionRequestSupplier(() -> extension.prepareSelection(testTask.get(), selectionService.get()));
+                        });
+                testTask.configure(task -> task.dependsOn(selectTask));
+            }
+        });
     }
 }
\ No newline at end of file
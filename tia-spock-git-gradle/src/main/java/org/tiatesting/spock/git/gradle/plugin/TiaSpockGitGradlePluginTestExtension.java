@@ -4,28 +4,39 @@ import org.gradle.api.Action;
 import org.gradle.api.Task;
 import org.gradle.api.internal.tasks.testing.filter.DefaultTestFilter;
 import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.testing.Test;
 import org.gradle.process.JavaForkOptions;
 import org.gradle.testing.jacoco.plugins.JacocoTaskExtension;
 import org.slf4j.Logger;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+import org.tiatesting.core.library.LibraryImpactAnalysisConfig;
 import org.tiatesting.core.library.ResolvedSourceProjectLibrary;
 import org.tiatesting.core.model.LibraryBuildMetadata;
-import org.tiatesting.core.staticselection.StaticTestSelectionConfig;
+import org.tiatesting.core.util.StringUtil;
 import org.tiatesting.gradle.plugin.LibraryJarResolver;
 import org.tiatesting.gradle.plugin.TiaBasePlugin;
 import org.tiatesting.gradle.plugin.TiaBaseTaskExtension;
+import org.tiatesting.spock.PreSelectedTests;
 import org.tiatesting.spock.library.LibraryMetadataSystemProperties;
 import org.tiatesting.spock.library.PreResolvedLibraryMetadataReader;
-import org.tiatesting.spock.staticselection.StaticTestSelectionSystemProperties;
+import org.tiatesting.spock.git.gradle.plugin.TiaSelectionService.ResolvedLibraries;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 public class TiaSpockGitGradlePluginTestExtension {
     private static final Logger LOGGER = Logging.getLogger(TiaSpockGitGradlePluginTestExtension.class);
 
+    private static final String SELECTION_FILENAME = "tia-selection.ser";
+
+    static final String SELECT_TESTS_TASK_PREFIX = "tia-select-";
+
     public TiaSpockGitGradlePluginTestExtension(){
     }
 
@@ -35,6 +46,8 @@ public class TiaSpockGitGradlePluginTestExtension {
         TiaBaseTaskExtension tiaProjectExtension = task.getProject().getExtensions().findByType(TiaBaseTaskExtension.class);
         TiaBaseTaskExtension tiaTaskExtension = task.getExtensions().create("tia", TiaBaseTaskExtension.class);
         JacocoTaskExtension jacocoTaskExtension = task.getExtensions().findByType(JacocoTaskExtension.class);
+        Provider<TiaSelectionService> selectionService = TiaSelectionService.register(task.getProject());
+        task.usesService(selectionService);
 
         Action<Task> action = new Action<Task>() {
             @Override
@@ -70,17 +83,29 @@ public class TiaSpockGitGradlePluginTestExtension {
                         testTask.systemProperty("tiaDBDialect", tiaTaskExtension.getDbDialect());
                     }
                     testTask.systemProperty("tiaCheckLocalChanges", tiaTaskExtension.getCheckLocalChanges());
+                    testTask.systemProperty("tiaPerTestSelection", Boolean.TRUE.equals(tiaTaskExtension.getPerTestSelection()));
+                    testTask.systemProperty("tiaLineLevelSelection", Boolean.TRUE.equals(tiaTaskExtension.getLineLevelSelection()));
+                    if (tiaTaskExtension.getMaxRunTimeMs() != null){
+                        testTask.systemProperty("tiaMaxRunTimeMs", tiaTaskExtension.getMaxRunTimeMs());
+                    }
+                    if (tiaTaskExtension.getShardIndex() != null){
+                        testTask.systemProperty("tiaShardIndex", tiaTaskExtension.getShardIndex());
+                    }
+                    if (tiaTaskExtension.getShardCount() != null){
+                        testTask.systemProperty("tiaShardCount", tiaTaskExtension.getShardCount());
+                    }
+                    testTask.systemProperty("tiaGitNativeCli", Boolean.TRUE.equals(tiaTaskExtension.getGitNativeCli()));
+                    if (Boolean.TRUE.equals(tiaTaskExtension.getPersistDiffCache())){
+                        testTask.systemProperty("tiaDiffCacheDir",
+                                TiaBasePlugin.getDiffCacheDir(testTask.getProject()).getAbsolutePath());
+                    }
 
-                    LibraryJarResolver resolver = new LibraryJarResolver(testTask.getProject(), LOGGER);
-                    String libraryJarsCsv = resolver.resolveLibraryJarsCsv(
-                            tiaTaskExtension.getSourceLibs(),
-                            tiaTaskExtension.getSourceProjectDir());
-                    if (libraryJarsCsv != null && !libraryJarsCsv.isEmpty()){
-                        testTask.systemProperty("tiaLibraryJars", libraryJarsCsv);
+                    ResolvedLibraries libraries = resolveLibraries(testTask, tiaTaskExtension, selectionService.get());
+                    if (libraries.libraryJarsCsv != null && !libraries.libraryJarsCsv.isEmpty()){
+                        testTask.systemProperty("tiaLibraryJars", libraries.libraryJarsCsv);
                     }
 
-                    forwardLibraryMetadata(testTask, tiaTaskExtension, resolver);
-                    forwardStaticTestSelectionRules(testTask, tiaTaskExtension);
+                    selectTests(testTask, tiaTaskExtension, libraries.libraryConfig, selectionService.get());
 
                     // only apply and configure the jacoco task extension if we're updating the tia DB
                     if (tiaTaskExtension.getUpdateDBMapping()) {
@@ -128,6 +153,46 @@ public class TiaSpockGitGradlePluginTestExtension {
                             : Boolean.TRUE);
         }
 
+        if (tiaTaskExt.getPerTestSelection() == null){
+            tiaTaskExt.setPerTestSelection(tiaProjectExt.getPerTestSelection());
+        }
+
+        if (tiaTaskExt.getLineLevelSelection() == null){
+            tiaTaskExt.setLineLevelSelection(tiaProjectExt.getLineLevelSelection());
+        }
+
+        if (tiaTaskExt.getMaxRunTimeMs() == null){
+            tiaTaskExt.setMaxRunTimeMs(tiaProjectExt.getMaxRunTimeMs());
+        }
+
+        if (tiaTaskExt.getShardIndex() == null){
+            tiaTaskExt.setShardIndex(tiaProjectExt.getShardIndex());
+        }
+
+        if (tiaTaskExt.getShardCount() == null){
+            tiaTaskExt.setShardCount(tiaProjectExt.getShardCount());
+        }
+
+        if (tiaTaskExt.getGitNativeCli() == null){
+            tiaTaskExt.setGitNativeCli(tiaProjectExt.getGitNativeCli());
+        }
+
+        if (tiaTaskExt.getPersistDiffCache() == null){
+            tiaTaskExt.setPersistDiffCache(tiaProjectExt.getPersistDiffCache());
+        }
+
+        if (tiaTaskExt.getPersistSelectionCache() == null){
+            tiaTaskExt.setPersistSelectionCache(tiaProjectExt.getPersistSelectionCache());
+        }
+
+        if (tiaTaskExt.getParallelSelection() == null){
+            tiaTaskExt.setParallelSelection(tiaProjectExt.getParallelSelection());
+        }
+
+        if (tiaTaskExt.getSelectionDaemonEndpointFile() == null){
+            tiaTaskExt.setSelectionDaemonEndpointFile(tiaProjectExt.getSelectionDaemonEndpointFile());
+        }
+
         if (tiaTaskExt.getProjectDir() == null){
             tiaTaskExt.setProjectDir(tiaProjectExt.getProjectDir());
         }
@@ -220,29 +285,87 @@ public class TiaSpockGitGradlePluginTestExtension {
     }
 
     /**
-     * Pre-resolve library metadata on the Gradle side and forward it to the test JVM as flat
-     * system properties. The test JVM uses {@link LibraryMetadataSystemProperties} to rebuild a
-     * {@code LibraryImpactAnalysisConfig} so {@code TestSelector} can run reconcile / partition /
-     * stamp / drain in-process — without needing a Gradle {@code Project} reference.
+     * Resolve the {@code sourceLibs} of the task, or take them from the build service when a task
+     * with the same {@code sourceLibs} and source project has resolved them already in this build.
+     * The resolution may open a Tooling API connection to the source project, so in a multi-project
+     * build it's done once rather than by every test task.
+     */
+    private ResolvedLibraries resolveLibraries(Test testTask, TiaBaseTaskExtension tiaTaskExtension,
+                                               TiaSelectionService selectionService) {
+        String sourceLibs = tiaTaskExtension.getSourceLibs();
+        if (sourceLibs == null || sourceLibs.trim().isEmpty()) {
+            return new ResolvedLibraries(null, null);
+        }
+
+        String sourceProjectDir = tiaTaskExtension.getSourceProjectDir();
+        File resolvedAgainst = sourceProjectDir == null || sourceProjectDir.trim().isEmpty()
+                ? testTask.getProject().getProjectDir() : new File(sourceProjectDir);
+        return selectionService.resolveLibraries(sourceLibs + "@" + resolvedAgainst.getAbsolutePath(), () -> {
+            LibraryJarResolver resolver = new LibraryJarResolver(testTask.getProject(), LOGGER);
+            String libraryJarsCsv = resolver.resolveLibraryJarsCsv(sourceLibs, sourceProjectDir);
+            return new ResolvedLibraries(libraryJarsCsv, resolveLibraryImpactAnalysisConfig(tiaTaskExtension, resolver));
+        });
+    }
+
+    /**
+     * Read the selection inputs of the test task for its {@code tia-select-*} task to select the
+     * tests on a Gradle worker thread. Selections that update the Tia DB - updating the mapping or
+     * analyzing library impact - are left to the test task, so they don't run alongside each other.
+     * So are selections against the embedded H2 DB: a worker selection holds the DB file lock while
+     * the test forks of other projects' test tasks, already running, open the same DB. Only a
+     * server DB ({@code dbUrl}) takes connections from both at once.
+     * See the "Parallel test selection across projects" chapter in WIKI.md.
+     *
+     * @param testTask the test task to select the tests for
+     * @param selectionService the build service
+     * @return the selection inputs, or {@code null} when the test task is to select the tests itself
+     */
+    TestSelectionRequest prepareSelection(Test testTask, TiaSelectionService selectionService) {
+        TiaBaseTaskExtension tiaProjectExtension = testTask.getProject().getExtensions().findByType(TiaBaseTaskExtension.class);
+        TiaBaseTaskExtension tiaTaskExtension = testTask.getExtensions().getByType(TiaBaseTaskExtension.class);
+        populateTestTaskExtension(tiaProjectExtension, tiaTaskExtension);
+        if (!Boolean.TRUE.equals(tiaTaskExtension.getParallelSelection()) || !isEnabled(tiaTaskExtension, testTask)) {
+            return null;
+        }
+        if (tiaTaskExtension.getDbUrl() == null){
+            LOGGER.info("The selection for " + testTask.getPath() + " uses the embedded Tia DB - selecting the tests in the test task.");
+            return null;
+        }
+
+        ResolvedLibraries libraries = resolveLibraries(testTask, tiaTaskExtension, selectionService);
+        TestSelectionRequest request = buildSelectionRequest(testTask, tiaTaskExtension, libraries.libraryConfig);
+        if (!request.isReadOnly()) {
+            LOGGER.info("The selection for " + testTask.getPath() + " updates the Tia DB - selecting the tests in the test task.");
+            return null;
+        }
+        return request;
+    }
+
+    /**
+     * Pre-resolve library metadata on the Gradle side into the {@code LibraryImpactAnalysisConfig}
+     * the daemon-side selection runs reconcile / partition / stamp / drain with.
      *
      * <p>Why pre-resolve here: {@link LibraryJarResolver} requires either the current Gradle
-     * {@code Project} or a Tooling-API connection. Neither is available inside the forked test JVM.
-     * The plugin runs the resolver once at task-action time and forwards the results.
+     * {@code Project} or a Tooling-API connection. The plugin runs the resolver once at task-action
+     * time. The entries go through the same encoding {@link LibraryMetadataSystemProperties} reads
+     * in a test JVM that selects its own tests, so both build the config the same way.
      *
      * <p>The {@code tiaLibraryJars} CSV (set above) is a separate concern — it feeds JaCoCo so
-     * library classes are included in coverage. The metadata forwarded here drives TIA's selection
+     * library classes are included in coverage. The metadata resolved here drives TIA's selection
      * logic.
+     *
+     * @return the library config, or {@code null} when no {@code sourceLibs} are configured
      */
-    private void forwardLibraryMetadata(Test testTask, TiaBaseTaskExtension tiaTaskExtension,
-                                        LibraryJarResolver resolver) {
+    private LibraryImpactAnalysisConfig resolveLibraryImpactAnalysisConfig(TiaBaseTaskExtension tiaTaskExtension,
+                                                                           LibraryJarResolver resolver) {
         String sourceLibs = tiaTaskExtension.getSourceLibs();
         if (sourceLibs == null || sourceLibs.trim().isEmpty()) {
-            return;
+            return null;
         }
 
         List<CoordinateAndDir> parsed = parseSourceLibs(sourceLibs);
         if (parsed.isEmpty()) {
-            return;
+            return null;
         }
 
         String sourceProjectDir = tiaTaskExtension.getSourceProjectDir();
@@ -274,38 +397,122 @@ public class TiaSpockGitGradlePluginTestExtension {
                     cd.coordinate, cd.projectDir, declaredVersion, sourceDirs, resolvedVersion, resolvedJar));
         }
 
-        String encoded = LibraryMetadataSystemProperties.formatEntries(entries);
-        if (!encoded.isEmpty()) {
-            testTask.systemProperty(LibraryMetadataSystemProperties.PROP_LIBRARIES_METADATA, encoded);
-        }
-        if (sourceProjectDir != null && !sourceProjectDir.isEmpty()) {
-            testTask.systemProperty(LibraryMetadataSystemProperties.PROP_SOURCE_PROJECT_DIR, sourceProjectDir);
-        }
+        return LibraryMetadataSystemProperties.fromValues(LibraryMetadataSystemProperties.formatEntries(entries),
+                sourceProjectDir != null && !sourceProjectDir.isEmpty() ? sourceProjectDir : null);
     }
 
     /**
-     * Build the user's static test selection rules into a {@link StaticTestSelectionConfig} on
-     * the Gradle side and forward the encoded form to the forked test JVM as a single system
-     * property. The test JVM uses
-     * {@link StaticTestSelectionSystemProperties#fromSystemProperties()} to rebuild the config
-     * so {@code TestSelector} can apply the rules in-process.
+     * Select the tests once for the test task, in the Gradle daemon, rather than in every forked
+     * test JVM - with {@code maxParallelForks} each fork would otherwise open the DB and diff the
+     * VCS itself. See the "Gradle test selection in the daemon" chapter in WIKI.md. When the task's
+     * {@code tia-select-*} task has selected the tests ahead of it, that selection is used.
      *
-     * <p>Building the config on the Gradle side surfaces invalid regex / unknown mode errors
-     * at configuration time rather than deferring them to the forked test JVM.
+     * <p>The ignored specs are excluded from the task, so Gradle's test class scan never hands them
+     * to a fork to load. The selection is written to the task's temporary dir and its path passed
+     * to the forks as the {@code tiaSelectionFile} system property; {@code TiaSpockGlobalExtension}
+     * reads it in place of selecting the tests.
      *
-     * @param testTask the test task whose forked JVM receives the property.
-     * @param tiaTaskExtension the Tia extension carrying the user-declared rule list.
+     * @param testTask the test task about to run.
+     * @param tiaTaskExtension the Tia extension of the task, populated from the project extension.
+     * @param libraryConfig the library impact analysis config; may be {@code null}.
+     * @param selectionService the build service sharing the VCS readers and DBs across the test tasks.
      */
-    private void forwardStaticTestSelectionRules(Test testTask, TiaBaseTaskExtension tiaTaskExtension) {
-        StaticTestSelectionConfig config = TiaBasePlugin.buildStaticTestSelectionConfig(
-                tiaTaskExtension.getStaticTestSelectionRules());
-        if (!config.isEnabled()) {
-            return;
+    private void selectTests(Test testTask, TiaBaseTaskExtension tiaTaskExtension,
+                             LibraryImpactAnalysisConfig libraryConfig, TiaSelectionService selectionService) {
+        long startTime = System.currentTimeMillis();
+        TestSelectorResult testSelectorResult = selectionService.takeSelection(testTask.getPath());
+        if (testSelectorResult != null) {
+            LOGGER.info("Using the tests selected ahead of " + testTask.getPath() + " by "
+                    + SELECT_TESTS_TASK_PREFIX + testTask.getName());
+        } else {
+            testSelectorResult = buildSelectionRequest(testTask, tiaTaskExtension, libraryConfig).select(selectionService);
         }
-        String encoded = StaticTestSelectionSystemProperties.format(config);
-        if (!encoded.isEmpty()) {
-            testTask.systemProperty(StaticTestSelectionSystemProperties.PROP_STATIC_TEST_SELECTION_RULES, encoded);
+
+        Set<String> ignoredClassFiles = new HashSet<>();
+        Set<String> ignoredTestsFound = new HashSet<>();
+        Set<File> testClassesDirs = testTask.getTestClassesDirs().getFiles();
+        for (String testSuiteName : testSelectorResult.getTestsToIgnore()){
+            String classFile = testSuiteName.replace('.', '/') + ".class";
+            ignoredClassFiles.add(classFile);
+            for (File testClassesDir : testClassesDirs){
+                if (new File(testClassesDir, classFile).isFile()){
+                    ignoredTestsFound.add(testSuiteName);
+                    break;
+                }
+            }
+        }
+        // a set lookup per scanned class file, rather than matching each file against a pattern per ignored spec
+        testTask.exclude(element -> ignoredClassFiles.contains(element.getPath()));
+
+        File selectionFile = new File(testTask.getTemporaryDir(), SELECTION_FILENAME);
+        new PreSelectedTests(testSelectorResult, ignoredTestsFound).write(selectionFile);
+        testTask.systemProperty(PreSelectedTests.PROP_SELECTION_FILE, selectionFile.getAbsolutePath());
+        LOGGER.info("Time to select the tests to run (ms): " + (System.currentTimeMillis() - startTime));
+    }
+
+    /**
+     * Read the selection inputs from the test task and its Tia extension. Reads the Gradle model, so
+     * it runs on the task's thread; the selection itself doesn't.
+     */
+    private TestSelectionRequest buildSelectionRequest(Test testTask, TiaBaseTaskExtension tiaTaskExtension,
+                                                       LibraryImpactAnalysisConfig libraryConfig) {
+        boolean updateDBMapping = Boolean.TRUE.equals(tiaTaskExtension.getUpdateDBMapping());
+        boolean checkLocalChanges = Boolean.TRUE.equals(tiaTaskExtension.getCheckLocalChanges());
+        if (updateDBMapping && checkLocalChanges){
+            // Don't check for local changes. We shouldn't update the DB mapping using unsubmitted changes.
+            LOGGER.info("Disabling the check for local changes as Tia is configured to update the DB.");
+            checkLocalChanges = false;
+        }
+
+        List<String> sourceFilesDirs = tiaTaskExtension.getSourceFilesDirs() != null
+                ? Arrays.asList(tiaTaskExtension.getSourceFilesDirs().split(",")) : null;
+        StringUtil.sanitizeInputArray(sourceFilesDirs);
+        List<String> testFilesDirs = tiaTaskExtension.getTestFilesDirs() != null
+                ? Arrays.asList(tiaTaskExtension.getTestFilesDirs().split(",")) : null;
+        StringUtil.sanitizeInputArray(testFilesDirs);
+
+        TestSelectionRequest request = new TestSelectionRequest();
+        request.projectDir = tiaTaskExtension.getProjectDir();
+        request.gitNativeCli = Boolean.TRUE.equals(tiaTaskExtension.getGitNativeCli());
+        request.dbFilePath = resolveDbFilePath(testTask, tiaTaskExtension.getDbFilePath());
+        request.dbUrl = tiaTaskExtension.getDbUrl();
+        request.dbUser = tiaTaskExtension.getDbUser();
+        request.dbPassword = tiaTaskExtension.getDbPassword();
+        request.dbDialect = tiaTaskExtension.getDbDialect();
+        request.sourceFilesDirs = sourceFilesDirs;
+        request.testFilesDirs = testFilesDirs;
+        request.checkLocalChanges = checkLocalChanges;
+        request.updateDBMapping = updateDBMapping;
+        request.perTestSelection = Boolean.TRUE.equals(tiaTaskExtension.getPerTestSelection());
+        request.lineLevelSelection = Boolean.TRUE.equals(tiaTaskExtension.getLineLevelSelection());
+        request.maxRunTimeMs = tiaTaskExtension.getMaxRunTimeMs() != null ? tiaTaskExtension.getMaxRunTimeMs() : 0L;
+        request.shardIndex = tiaTaskExtension.getShardIndex() != null ? tiaTaskExtension.getShardIndex() : 0;
+        request.shardCount = tiaTaskExtension.getShardCount() != null ? tiaTaskExtension.getShardCount() : 1;
+        if (Boolean.TRUE.equals(tiaTaskExtension.getPersistDiffCache())){
+            request.diffCacheDir = TiaBasePlugin.getDiffCacheDir(testTask.getProject());
+        }
+        if (Boolean.TRUE.equals(tiaTaskExtension.getPersistSelectionCache())){
+            request.selectionCacheDir = TiaBasePlugin.getSelectionCacheDir(testTask.getProject());
+        }
+        String endpointFile = tiaTaskExtension.getSelectionDaemonEndpointFile();
+        if (endpointFile != null && !endpointFile.trim().isEmpty()) {
+            request.selectionDaemonEndpointFile = testTask.getProject().file(endpointFile);
+        }
+        request.libraryConfig = libraryConfig;
+        request.staticMappingConfig = TiaBasePlugin.buildStaticTestSelectionConfig(
+                tiaTaskExtension.getStaticTestSelectionRules());
+        return request;
+    }
+
+    /**
+     * The forks resolve a relative {@code dbFilePath} against their working dir, while the daemon's
+     * {@code user.dir} is wherever the daemon was first started. Resolve it the same way the forks do.
+     */
+    private String resolveDbFilePath(Test testTask, String dbFilePath) {
+        if (dbFilePath == null || new File(dbFilePath).isAbsolute()) {
+            return dbFilePath;
         }
+        return new File(testTask.getWorkingDir(), dbFilePath).getAbsolutePath();
     }
 
     /**
@@ -0,0 +1,103 @@
+package org.tiatesting.spock;
+
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+import org.tiatesting.core.library.LibraryImpactDrainResult;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The test selection the Gradle plugin computes once in the daemon and hands to every forked test
+ * JVM of the test task, in place of each fork running {@code TestSelector} itself. See the "Gradle
+ * test selection in the daemon" chapter in WIKI.md.
+ *
+ * <p>The plugin excludes the ignored specs from the test task, so the forks never load them. The
+ * ignored specs found in the test classes dirs are carried through so the forks still count them
+ * as known to the runner - otherwise Tia would treat them as deleted from the workspace.
+ *
+ * <p>Written with Java object serialization, like the library drain result it carries.
+ */
+public class PreSelectedTests implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The system property holding the path of the file the selection is written to.
+     */
+    public static final String PROP_SELECTION_FILE = "tiaSelectionFile";
+
+    private final Set<String> testsToRun;
+    private final Set<String> testsToIgnore;
+    private final Set<String> ignoredTestsFound;
+    private final Map<String, Set<String>> testCasesToRun;
+    private final LibraryImpactDrainResult libraryImpactDrainResult;
+
+    /**
+     * @param testSelectorResult the selection
+     * @param ignoredTestsFound the ignored specs present in the test classes dirs
+     */
+    public PreSelectedTests(final TestSelectorResult testSelectorResult, final Set<String> ignoredTestsFound) {
+        this.testsToRun = new HashSet<>(testSelectorResult.getTestsToRun());
+        this.testsToIgnore = new HashSet<>(testSelectorResult.getTestsToIgnore());
+        this.ignoredTestsFound = new HashSet<>(ignoredTestsFound);
+        this.testCasesToRun = new HashMap<>(testSelectorResult.getTestCasesToRun());
+        this.libraryImpactDrainResult = testSelectorResult.getLibraryImpactDrainResult();
+    }
+
+    /**
+     * Write the selection to the file the forks read it from.
+     *
+     * @param file the target file
+     */
+    public void write(final File file) {
+        file.getParentFile().mkdirs();
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
+            oos.writeObject(this);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Read the selection written by the Gradle plugin.
+     *
+     * @param filePath the path of the selection file
+     * @return the selection
+     */
+    public static PreSelectedTests read(final String filePath) {
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filePath))) {
+            return (PreSelectedTests) ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Set<String> getTestsToRun() {
+        return testsToRun;
+    }
+
+    public Set<String> getTestsToIgnore() {
+        return testsToIgnore;
+    }
+
+    public Set<String> getIgnoredTestsFound() {
+        return ignoredTestsFound;
+    }
+
+    public Map<String, Set<String>> getTestCasesToRun() {
+        return testCasesToRun;
+    }
+
+    public LibraryImpactDrainResult getLibraryImpactDrainResult() {
+        return libraryImpactDrainResult;
+    }
+}
@@ -3,6 +3,7 @@ package org.tiatesting.spock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spockframework.runtime.extension.IGlobalExtension;
+import org.spockframework.runtime.model.FeatureInfo;
 import org.spockframework.runtime.model.SpecInfo;
 import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
 import org.tiatesting.core.library.LibraryImpactAnalysisConfig;
@@ -14,9 +15,13 @@ import org.tiatesting.core.vcs.VCSReader;
 import org.tiatesting.spock.staticselection.StaticTestSelectionSystemProperties;
 import org.tiatesting.spock.library.LibraryMetadataSystemProperties;
 
+import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -35,6 +40,10 @@ public class TiaSpockGlobalExtension implements IGlobalExtension {
     private final SpecificationUtil specificationUtil;
     private Set<String> ignoredTests = new HashSet<>();
     /*
+    Per-test-method filter: for specs narrowed by per-test-method selection, the only features to run.
+     */
+    private Map<String, Set<String>> testCasesToRun = new HashMap<>();
+    /*
     Track all the test suites that were executed by the test runner. This includes those that were skipped/ignored.
      */
     private Set<String> runnerTestSuites = ConcurrentHashMap.newKeySet();
@@ -45,6 +54,10 @@ public class TiaSpockGlobalExtension implements IGlobalExtension {
         tiaEnabled = Boolean.parseBoolean(System.getProperty("tiaEnabled"));
 
         if (tiaEnabled){
+            if (System.getProperty("tiaDiffCacheDir") != null){
+                // the Gradle plugin persists the commit-range diff cache under the build dir
+                vcsReader.setDiffCacheDir(new File(System.getProperty("tiaDiffCacheDir")));
+            }
             tiaUpdateDBMapping = Boolean.parseBoolean(System.getProperty("tiaUpdateDBMapping"));
             tiaUpdateDBStats = Boolean.parseBoolean(System.getProperty("tiaUpdateDBStats"));
             // updateDBTestRunHistory defaults to TRUE - log unless explicitly switched off.
@@ -55,6 +68,11 @@ public class TiaSpockGlobalExtension implements IGlobalExtension {
             testFilesDirs = System.getProperty("tiaTestFilesDirs") != null ? Arrays.asList(System.getProperty("tiaTestFilesDirs").split(",")) : null;
             StringUtil.sanitizeInputArray(testFilesDirs);
             boolean checkLocalChanges = Boolean.parseBoolean(System.getProperty("tiaCheckLocalChanges"));
+            boolean perTestSelection = Boolean.parseBoolean(System.getProperty("tiaPerTestSelection"));
+            boolean lineLevelSelection = Boolean.parseBoolean(System.getProperty("tiaLineLevelSelection"));
+            long maxRunTimeMs = Long.parseLong(System.getProperty("tiaMaxRunTimeMs", "0"));
+            int shardIndex = Integer.parseInt(System.getProperty("tiaShardIndex", "0"));
+            int shardCount = Integer.parseInt(System.getProperty("tiaShardCount", "1"));
 
             if (tiaUpdateDBMapping && checkLocalChanges){
                 // Don't check for local changes. We shouldn't update the DB mapping using unsubmitted changes.
@@ -67,29 +85,41 @@ public class TiaSpockGlobalExtension implements IGlobalExtension {
                 this.checkLocalChanges = checkLocalChanges;
             }
 
-            // The Gradle plugin pre-resolves library metadata (declared version, source dirs, resolved
-            // version + JAR path) and forwards it via the tiaLibrariesMetadata system property. When
-            // unset (no tiaSourceLibs configured), libraryConfig is null and library partitioning /
-            // reconcile / stamp / drain are skipped - same as before.
-            LibraryImpactAnalysisConfig libraryConfig = LibraryMetadataSystemProperties.fromSystemProperties();
-
-            TiaSpockTestRunInitializer tiaSpockTestRunInitializer = new TiaSpockTestRunInitializer(vcsReader, dataStore);
-            // Static test selection rules are pre-resolved on the Gradle side and forwarded
-            // through the tiaStaticTestSelectionRules system property; absent property means
-            // no rules in effect.
-            StaticTestSelectionConfig staticMappingConfig = StaticTestSelectionSystemProperties.fromSystemProperties();
-            TestSelectorResult testSelectorResult = tiaSpockTestRunInitializer.selectTests(sourceFilesDirs, testFilesDirs,
-                    this.checkLocalChanges, tiaUpdateDBMapping, libraryConfig, staticMappingConfig);
-            ignoredTests = testSelectorResult.getTestsToIgnore();
+            PreSelectedTests selection;
+            String selectionFile = System.getProperty(PreSelectedTests.PROP_SELECTION_FILE);
+            if (selectionFile != null){
+                // The Gradle plugin selected the tests once for the test task and excluded the ignored
+                // specs from it, so every fork reads the same selection rather than repeating it.
+                selection = PreSelectedTests.read(selectionFile);
+                runnerTestSuites.addAll(selection.getIgnoredTestsFound());
+            } else {
+                // The Gradle plugin pre-resolves library metadata (declared version, source dirs, resolved
+                // version + JAR path) and forwards it via the tiaLibrariesMetadata system property. When
+                // unset (no tiaSourceLibs configured), libraryConfig is null and library partitioning /
+                // reconcile / stamp / drain are skipped - same as before.
+                LibraryImpactAnalysisConfig libraryConfig = LibraryMetadataSystemProperties.fromSystemProperties();
+
+                TiaSpockTestRunInitializer tiaSpockTestRunInitializer = new TiaSpockTestRunInitializer(vcsReader, dataStore);
+                // Static test selection rules are pre-resolved on the Gradle side and forwarded
+                // through the tiaStaticTestSelectionRules system property; absent property means
+                // no rules in effect.
+                StaticTestSelectionConfig staticMappingConfig = StaticTestSelectionSystemProperties.fromSystemProperties();
+                TestSelectorResult testSelectorResult = tiaSpockTestRunInitializer.selectTests(sourceFilesDirs, testFilesDirs,
+                        this.checkLocalChanges, tiaUpdateDBMapping, libraryConfig, staticMappingConfig, perTestSelection,
+                        lineLevelSelection, maxRunTimeMs, shardIndex, shardCount);
+                selection = new PreSelectedTests(testSelectorResult, Collections.<String>emptySet());
+            }
+            ignoredTests = selection.getTestsToIgnore();
+            testCasesToRun = selection.getTestCasesToRun();
 
             if (tiaUpdateDBMapping || tiaUpdateDBStats || tiaUpdateDBTestRunHistory){
                 // the listener is used for collecting coverage, updating the stored mapping,
                 // and/or recording the run in the history log
                 int ignoredTestSuiteCount = ignoredTests != null ? ignoredTests.size() : 0;
-                this.tiaTestingSpockRunListener = new TiaSpockRunListener(vcsReader, dataStore, testSelectorResult.getTestsToRun(),
+                this.tiaTestingSpockRunListener = new TiaSpockRunListener(vcsReader, dataStore, selection.getTestsToRun(),
                         ignoredTestSuiteCount,
-                        tiaUpdateDBMapping, tiaUpdateDBStats, tiaUpdateDBTestRunHistory,
-                        testSelectorResult.getLibraryImpactDrainResult());
+                        tiaUpdateDBMapping, tiaUpdateDBStats, tiaUpdateDBTestRunHistory, perTestSelection,
+                        selection.getLibraryImpactDrainResult());
             } else {
                 // not updating the DB, no need to use the Spock listener
                 this.tiaTestingSpockRunListener = null;
@@ -124,8 +154,26 @@ public class TiaSpockGlobalExtension implements IGlobalExtension {
                 spec.addListener(tiaTestingSpockRunListener);
             }
 
-            if (ignoredTests.contains(specificationUtil.getSpecName(spec))){
+            String specName = specificationUtil.getSpecName(spec);
+            if (ignoredTests.contains(specName)){
                 spec.skip("Test not selected to run based on the changes analyzed by Tia");
+            } else if (testCasesToRun.containsKey(specName)){
+                skipFeaturesNotSelected(spec, testCasesToRun.get(specName));
+            }
+        }
+    }
+
+    /**
+     * Per-test-method selection: skip the features of a selected spec whose own stored coverage
+     * doesn't hit the changed code.
+     *
+     * @param spec the spec selected to run
+     * @param selectedFeatures the names of the spec's features selected to run
+     */
+    private void skipFeaturesNotSelected(SpecInfo spec, Set<String> selectedFeatures){
+        for (FeatureInfo feature : spec.getFeatures()){
+            if (!selectedFeatures.contains(feature.getName())){
+                feature.skip("Test not selected to run based on the changes analyzed by Tia");
             }
         }
     }
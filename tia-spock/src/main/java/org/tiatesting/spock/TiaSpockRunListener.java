@@ -4,10 +4,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spockframework.runtime.AbstractRunListener;
 import org.spockframework.runtime.model.ErrorInfo;
+import org.spockframework.runtime.model.FeatureInfo;
 import org.spockframework.runtime.model.SpecInfo;
 import org.tiatesting.core.coverage.client.JacocoClient;
 import org.tiatesting.core.coverage.result.CoverageResult;
 import org.tiatesting.core.library.LibraryImpactDrainResult;
+import org.tiatesting.core.model.ClassImpactTracker;
+import org.tiatesting.core.model.MethodIdSet;
 import org.tiatesting.core.model.MethodImpactTracker;
 import org.tiatesting.core.model.TestSuiteTracker;
 import org.tiatesting.core.persistence.DataStore;
@@ -17,6 +20,7 @@ import org.tiatesting.core.testrunner.TestRunnerService;
 import org.tiatesting.core.vcs.VCSReader;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -39,6 +43,7 @@ public class TiaSpockRunListener extends AbstractRunListener {
     private final boolean updateDBMapping;
     private final boolean updateDBStats;
     private final boolean updateDBTestRunHistory;
+    private final boolean perTestCoverage;
     private final SpecificationUtil specificationUtil;
     private final LibraryImpactDrainResult libraryImpactDrainResult;
     private boolean stopStepRan;
@@ -54,12 +59,14 @@ public class TiaSpockRunListener extends AbstractRunListener {
      * @param updateDBMapping         persist test-suite ↔ method mapping
      * @param updateDBStats           persist run stats
      * @param updateDBTestRunHistory  log a row to {@code tia_test_run_history}
+     * @param perTestSelection        also collect coverage per feature so the mapping stores
+     *                                per-test edges; only applies when {@code updateDBMapping}
      * @param libraryImpactDrainResult drain result from selection (may be {@code null})
      */
     public TiaSpockRunListener(final VCSReader vcsReader, final DataStore dataStore, Set<String> selectedTests,
                                final int ignoredTestSuiteCount,
                                final boolean updateDBMapping, final boolean updateDBStats,
-                               final boolean updateDBTestRunHistory,
+                               final boolean updateDBTestRunHistory, final boolean perTestSelection,
                                final LibraryImpactDrainResult libraryImpactDrainResult){
         this.testRunnerService = new TestRunnerService(dataStore);
         this.coverageClient = new JacocoClient();
@@ -74,6 +81,7 @@ public class TiaSpockRunListener extends AbstractRunListener {
         this.updateDBMapping = updateDBMapping;
         this.updateDBStats = updateDBStats;
         this.updateDBTestRunHistory = updateDBTestRunHistory;
+        this.perTestCoverage = updateDBMapping && perTestSelection;
         this.libraryImpactDrainResult = libraryImpactDrainResult;
         this.headCommit = vcsReader.getHeadCommit();
         this.branch = vcsReader.getBranchName();
@@ -90,6 +98,10 @@ public class TiaSpockRunListener extends AbstractRunListener {
         TestSuiteTracker testSuiteTracker = new TestSuiteTracker(specName);
         testSuiteTrackers.put(specName, testSuiteTracker);
 
+        if (perTestCoverage){
+            testSuiteTracker.setTestCasesImpacted(new ConcurrentHashMap<>());
+        }
+
         if (updateDBStats){
             // assume the test suite will run and succeed. Explicitly set to false on failure, or no runs if ignored.
             testSuiteTracker.getTestStats().setNumRuns(1);
@@ -99,6 +111,50 @@ public class TiaSpockRunListener extends AbstractRunListener {
         }
     }
 
+    /**
+     * Per-test coverage: dump the coverage collected since the previous dump ({@code setupSpec},
+     * or the previous feature's tail) into the suite mapping only, so the feature's own dump in
+     * {@link #afterFeature} is limited to what it executed.
+     *
+     * @param feature the feature about to run
+     */
+    @Override
+    public void beforeFeature(FeatureInfo feature) {
+        if (!perTestCoverage){
+            return;
+        }
+
+        TestSuiteTracker testSuiteTracker = testSuiteTrackers.get(specificationUtil.getSpecName(feature.getSpec()));
+        if (testSuiteTracker != null){
+            collectCoverageForTestSuite(testSuiteTracker);
+        }
+    }
+
+    /**
+     * Per-test coverage: dump the coverage the feature executed (all of its iterations) and
+     * record it both in the suite mapping and as the feature's own per-test edges, keyed by
+     * feature name.
+     *
+     * @param feature the feature that finished running
+     */
+    @Override
+    public void afterFeature(FeatureInfo feature) {
+        if (!perTestCoverage){
+            return;
+        }
+
+        TestSuiteTracker testSuiteTracker = testSuiteTrackers.get(specificationUtil.getSpecName(feature.getSpec()));
+        if (testSuiteTracker == null){
+            return;
+        }
+
+        MethodIdSet featureMethodsImpacted = new MethodIdSet();
+        for (ClassImpactTracker classImpactTracker : collectCoverageForTestSuite(testSuiteTracker)){
+            featureMethodsImpacted.addAll(classImpactTracker.getMethodsImpacted());
+        }
+        testSuiteTracker.getTestCasesImpacted().put(feature.getName(), featureMethodsImpacted);
+    }
+
     @Override
     public void error(ErrorInfo error) {
         SpecInfo spec = error.getMethod().getFeature().getSpec();
@@ -135,19 +191,45 @@ public class TiaSpockRunListener extends AbstractRunListener {
 
         if (updateDBMapping) {
             log.debug("Collecting coverage and adding the mapping for the test suite: " + specName);
-            try {
-                CoverageResult coverageResult = this.coverageClient.collectCoverage();
+            if (perTestCoverage){
+                // the features' coverage is already in the suite mapping, add the cleanupSpec tail
+                collectCoverageForTestSuite(testSuiteTracker);
+            } else {
+                CoverageResult coverageResult = collectCoverage();
                 testSuiteTracker.setClassesImpacted(coverageResult.getClassesInvoked());
-                testRunMethodsImpacted.putAll(coverageResult.getAllMethodsClassesInvoked());
-            } catch (IOException e) {
-                log.error("Error while collecting coverage", e);
-                throw new RuntimeException(e);
+                testSuiteTracker.addMethodLinesHit(coverageResult.getMethodLinesHit());
+                testRunMethodsImpacted.putAll(coverageResult.getMethodCatalogueDelta());
             }
         }
 
         testSuitesProcessed.add(specName); // this method is called twice for some reason - avoid processing it twice.
     }
 
+    private CoverageResult collectCoverage() {
+        try {
+            return this.coverageClient.collectCoverage();
+        } catch (IOException e) {
+            log.error("Error while collecting coverage", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Dump the coverage collected since the previous dump and merge it into the spec's mapping.
+     * Used by per-test coverage, where a spec's mapping is built up from several dumps.
+     *
+     * @param testSuiteTracker the spec being executed
+     * @return the class trackers with coverage info from this dump
+     */
+    private List<ClassImpactTracker> collectCoverageForTestSuite(TestSuiteTracker testSuiteTracker) {
+        CoverageResult coverageResult = collectCoverage();
+        List<ClassImpactTracker> classImpactTrackers = coverageResult.getClassesInvoked();
+        testSuiteTracker.addMethodLinesHit(coverageResult.getMethodLinesHit());
+        testSuiteTracker.addClassesImpacted(classImpactTrackers);
+        testRunMethodsImpacted.putAll(coverageResult.getMethodCatalogueDelta());
+        return classImpactTrackers;
+    }
+
     public void finishAllTests(Set<String> runnerTestSuites, long testRunStartTime){
         if (stopStepRan){
             return;
@@ -9,6 +9,7 @@ import org.tiatesting.core.persistence.DataStore;
 import org.tiatesting.core.staticselection.StaticTestSelectionConfig;
 import org.tiatesting.core.vcs.VCSReader;
 
+import java.io.File;
 import java.util.List;
 
 public class TiaSpockTestRunInitializer {
@@ -16,12 +17,21 @@ public class TiaSpockTestRunInitializer {
 
     private final VCSReader vcsReader;
     private final DataStore dataStore;
+    private File selectionCacheDir;
 
     public TiaSpockTestRunInitializer(final VCSReader vcsReader, final DataStore dataStore){
         this.vcsReader = vcsReader;
         this.dataStore = dataStore;
     }
 
+    /**
+     * @param selectionCacheDir the dir to persist the selections under (see
+     *                          {@link TestSelector#setSelectionCacheDir}); {@code null} disables the cache
+     */
+    public void setSelectionCacheDir(final File selectionCacheDir){
+        this.selectionCacheDir = selectionCacheDir;
+    }
+
     /**
      * Run Tia's test selection for a Spock build, returning the suites to ignore.
      *
@@ -31,13 +41,25 @@ public class TiaSpockTestRunInitializer {
      * @param updateDBMapping whether this run owns mapping-DB updates.
      * @param libraryConfig the library impact analysis config; may be {@code null}.
      * @param staticMappingConfig the static test selection config; may be {@code null}.
+     * @param perTestSelection whether to narrow method-selected specs to their impacted features.
+     * @param lineLevelSelection whether to skip specs that never executed the changed lines.
+     * @param maxRunTimeMs the run-time budget (ms) for the selected specs; {@code 0} for no budget.
+     * @param shardIndex the zero-based index of the shard this build runs.
+     * @param shardCount the number of shards to split the selected specs across; {@code 1} for none.
      * @return the {@link TestSelectorResult} produced by {@link TestSelector#selectTestsToIgnore}.
      */
-    TestSelectorResult selectTests(final List<String> sourceFilesDirs, final List<String> testFilesDirs,
-                                   boolean checkLocalChanges, boolean updateDBMapping,
-                                   LibraryImpactAnalysisConfig libraryConfig,
-                                   StaticTestSelectionConfig staticMappingConfig){
+    public TestSelectorResult selectTests(final List<String> sourceFilesDirs, final List<String> testFilesDirs,
+                                          boolean checkLocalChanges, boolean updateDBMapping,
+                                          LibraryImpactAnalysisConfig libraryConfig,
+                                          StaticTestSelectionConfig staticMappingConfig,
+                                          boolean perTestSelection, boolean lineLevelSelection,
+                                          long maxRunTimeMs, int shardIndex, int shardCount){
         TestSelector testSelector = new TestSelector(dataStore);
+        testSelector.setPerTestSelection(perTestSelection);
+        testSelector.setLineLevelSelection(lineLevelSelection);
+        testSelector.setMaxRunTimeMs(maxRunTimeMs);
+        testSelector.setShard(shardIndex, shardCount);
+        testSelector.setSelectionCacheDir(selectionCacheDir);
         return testSelector.selectTestsToIgnore(vcsReader, sourceFilesDirs, testFilesDirs, checkLocalChanges,
                 libraryConfig, staticMappingConfig, updateDBMapping);
     }
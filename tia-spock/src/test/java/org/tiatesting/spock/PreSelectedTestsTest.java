@@ -0,0 +1,48 @@
+package org.tiatesting.spock;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tiatesting.core.diff.diffanalyze.selector.TestSelectorResult;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Verifies that {@link PreSelectedTests} carries the selection the Gradle plugin computes in the
+ * daemon through the file the forked test JVMs read it from.
+ */
+class PreSelectedTestsTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void selectionSurvivesTheFileRoundTrip() {
+        // given
+        Set<String> testsToRun = new HashSet<>(Arrays.asList("com.acme.OrderSpec", "com.acme.PaymentSpec"));
+        Set<String> testsToIgnore = new HashSet<>(Arrays.asList("com.acme.InventorySpec", "com.acme.DeletedSpec"));
+        Map<String, Set<String>> testCasesToRun = Collections.singletonMap("com.acme.OrderSpec",
+                Collections.singleton("places an order"));
+        TestSelectorResult testSelectorResult = new TestSelectorResult(testsToRun, testsToIgnore, null, 0,
+                Collections.emptySet(), 0, Collections.emptyMap(), 0, 0, testCasesToRun);
+        File selectionFile = new File(tempDir, "tia/tia-selection.ser");
+
+        // when
+        new PreSelectedTests(testSelectorResult, Collections.singleton("com.acme.InventorySpec")).write(selectionFile);
+        PreSelectedTests read = PreSelectedTests.read(selectionFile.getAbsolutePath());
+
+        // then
+        assertEquals(testsToRun, read.getTestsToRun());
+        assertEquals(testsToIgnore, read.getTestsToIgnore());
+        assertEquals(Collections.singleton("com.acme.InventorySpec"), read.getIgnoredTestsFound());
+        assertEquals(testCasesToRun, read.getTestCasesToRun());
+        assertNull(read.getLibraryImpactDrainResult());
+    }
+}
@@ -0,0 +1,112 @@
+package org.tiatesting.vcs.git;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.tiatesting.core.vcs.VCSAnalyzerException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the content of a set of Git blobs as UTF-8 text, spreading the work over a bounded pool
+ * of threads.
+ *
+ * <p>Inflating blobs is CPU-bound (zlib, delta resolution) and independent per blob, so a large
+ * commit range with thousands of changed files loads at the speed of all cores rather than one.
+ * JGit's {@link ObjectReader} isn't thread-safe, so each thread reads its share of the blobs
+ * through its own reader; the {@link Repository} and its object database are shared.
+ */
+class GitBlobReader {
+
+    private final int maxThreads;
+
+    /**
+     * @param maxThreads the maximum number of threads to read with; {@code 1} reads on the calling thread
+     */
+    GitBlobReader(final int maxThreads) {
+        this.maxThreads = Math.max(1, maxThreads);
+    }
+
+    /**
+     * Read the blobs and decode each to a UTF-8 string.
+     *
+     * @param repository the Git repository holding the blobs
+     * @param blobIdsByPath the blob id to read, keyed by the repo-relative path it is read for
+     * @return the blob content, keyed by the same paths
+     */
+    Map<String, String> readBlobs(final Repository repository, final Map<String, ObjectId> blobIdsByPath) {
+        int threads = Math.min(maxThreads, blobIdsByPath.size());
+        if (threads <= 1) {
+            Map<String, String> contentByPath = new HashMap<>();
+            readBlobs(repository, new ArrayList<>(blobIdsByPath.entrySet()), contentByPath);
+            return contentByPath;
+        }
+
+        // split the blobs round-robin into one share per thread
+        List<List<Map.Entry<String, ObjectId>>> shares = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            shares.add(new ArrayList<>());
+        }
+        int next = 0;
+        for (Map.Entry<String, ObjectId> blob : blobIdsByPath.entrySet()) {
+            shares.get(next++ % threads).add(blob);
+        }
+
+        Map<String, String> contentByPath = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (List<Map.Entry<String, ObjectId>> share : shares) {
+                futures.add(executor.submit(() -> {
+                    readBlobs(repository, share, contentByPath);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VCSAnalyzerException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new VCSAnalyzerException(cause instanceof Exception ? (Exception) cause : e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return contentByPath;
+    }
+
+    /**
+     * Read a share of the blobs through one {@link ObjectReader}.
+     *
+     * @param repository the Git repository holding the blobs
+     * @param blobs the blob ids to read, keyed by path
+     * @param contentByPath the map to add the decoded content to
+     */
+    private static void readBlobs(final Repository repository, final List<Map.Entry<String, ObjectId>> blobs,
+                                  final Map<String, String> contentByPath) {
+        try (ObjectReader reader = repository.newObjectReader()) {
+            for (Map.Entry<String, ObjectId> blob : blobs) {
+                byte[] bytes = reader.open(blob.getValue(), Constants.OBJ_BLOB).getBytes(Integer.MAX_VALUE);
+                contentByPath.put(blob.getKey(), new String(bytes, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new VCSAnalyzerException(e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.tiatesting.vcs.git;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tiatesting.core.vcs.VCSAnalyzerException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived {@code git cat-file --batch} process that object content is streamed from.
+ *
+ * <p>Each request is a {@code <rev>:<path>} line written to the process's stdin; git replies
+ * with a {@code <sha> <type> <size>} header followed by the raw object bytes, or
+ * {@code <rev>:<path> missing} when the path doesn't exist at that revision. One process serves
+ * every read for the life of the reader, so loading the content of thousands of changed files
+ * costs one fork rather than one per file. The process is started on the first read and ended
+ * by {@link #close()}.
+ *
+ * <p>Not thread-safe - requests and replies share the one pair of pipes.
+ */
+class GitCatFileBatch implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GitCatFileBatch.class);
+
+    private final String gitExecutable;
+    private final File workTree;
+
+    private Process process;
+    private OutputStream requests;
+    private InputStream replies;
+
+    /**
+     * @param gitExecutable the git executable to run
+     * @param workTree the repository work tree to run in
+     */
+    GitCatFileBatch(final String gitExecutable, final File workTree) {
+        this.gitExecutable = gitExecutable;
+        this.workTree = workTree;
+    }
+
+    /**
+     * Read the content of a file at a revision as UTF-8 text.
+     *
+     * @param revision the commit (or any tree-ish) to read the file at
+     * @param path the repo-relative, forward-slash path of the file
+     * @return the file content, or {@code null} when the file doesn't exist at the revision
+     */
+    String readFile(final String revision, final String path) {
+        try {
+            ensureStarted();
+            requests.write((revision + ":" + path + "\n").getBytes(StandardCharsets.UTF_8));
+            requests.flush();
+
+            String header = readLine();
+            if (header.endsWith(" missing") || header.endsWith(" ambiguous")) {
+                log.trace("{}:{} not found by git cat-file: {}", revision, path, header);
+                return null;
+            }
+
+            String[] headerParts = header.split(" ");
+            if (headerParts.length != 3) {
+                throw new VCSAnalyzerException("Unexpected git cat-file reply for " + revision + ":" + path
+                        + ": " + header);
+            }
+            int size = Integer.parseInt(headerParts[2]);
+            byte[] content = new byte[size];
+            int read = 0;
+            while (read < size) {
+                int count = replies.read(content, read, size - read);
+                if (count < 0) {
+                    throw new VCSAnalyzerException("git cat-file ended while reading " + revision + ":" + path);
+                }
+                read += count;
+            }
+            replies.read(); // the newline terminating the object
+
+            return "blob".equals(headerParts[1]) ? new String(content, StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            throw new VCSAnalyzerException(e);
+        }
+    }
+
+    private void ensureStarted() throws IOException {
+        if (process != null) {
+            return;
+        }
+        log.debug("Starting git cat-file --batch in {}", workTree);
+        process = new ProcessBuilder(gitExecutable, "cat-file", "--batch")
+                .directory(workTree)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        requests = process.getOutputStream();
+        replies = new BufferedInputStream(process.getInputStream());
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int next;
+        while ((next = replies.read()) != '\n') {
+            if (next < 0) {
+                throw new VCSAnalyzerException("git cat-file ended unexpectedly");
+            }
+            line.write(next);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * End the process: closing its stdin lets git exit cleanly, and it's killed if it doesn't.
+     */
+    @Override
+    public void close() {
+        if (process == null) {
+            return;
+        }
+        try {
+            requests.close();
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (IOException e) {
+            process.destroyForcibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+        } finally {
+            process = null;
+        }
+    }
+}
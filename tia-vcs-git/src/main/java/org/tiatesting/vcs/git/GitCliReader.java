@@ -0,0 +1,431 @@
+package org.tiatesting.vcs.git;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tiatesting.core.diff.ChangeType;
+import org.tiatesting.core.diff.SourceFileDiffContext;
+import org.tiatesting.core.vcs.CommitRangeDiffCache;
+import org.tiatesting.core.vcs.LocalChangesFingerprint;
+import org.tiatesting.core.vcs.VCSAnalyzerException;
+import org.tiatesting.core.vcs.VCSReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link VCSReader} for Git that shells out to the native {@code git} executable rather than
+ * reading the repository through JGit. See the "Native Git backend" chapter in WIKI.md.
+ *
+ * <p>On very large repositories native git is markedly faster, mostly on the local-changes scan:
+ * {@code git status} uses the index's cached stat data (and the fsmonitor/untracked cache when
+ * configured) where JGit's {@code FileTreeIterator} walks and hashes the working tree. The reader
+ * runs:
+ * <ul>
+ *     <li>{@code git diff --name-status -z} for the files changed in a commit range;</li>
+ *     <li>{@code git status --porcelain=v2 -z} for the files changed in the local workspace;</li>
+ *     <li>one long-lived {@code git cat-file --batch} process (see {@link GitCatFileBatch}) for
+ *     the file content at a revision.</li>
+ * </ul>
+ * The scans are limited to the source and test dirs with pathspecs, and rename detection is off,
+ * so the diff contexts built are the same ones {@link GitReader} builds: a rename is a delete of
+ * the old path plus an add of the new, and the absent side of an add or delete is
+ * {@code /dev/null}.
+ *
+ * <p>Requires {@code git} on the {@code PATH}.
+ */
+public class GitCliReader implements VCSReader {
+
+    private static final Logger log = LoggerFactory.getLogger(GitCliReader.class);
+
+    private static final String GIT_EXECUTABLE = "git";
+    private static final String DEV_NULL = "/dev/null";
+    private static final String NO_FILE_MODE = "000000";
+
+    private final File workTree;
+    private final String projectPath;
+    private volatile String headCommit;
+    private volatile String branchName;
+    private final GitCatFileBatch catFile;
+    private final CommitRangeDiffCache diffCache = new CommitRangeDiffCache();
+
+    /**
+     * @param gitProjectPath the project dir; the repository is found from it the same way git does
+     */
+    public GitCliReader(final String gitProjectPath) {
+        String topLevel = new String(runGit(new File(gitProjectPath), "rev-parse", "--show-toplevel"),
+                StandardCharsets.UTF_8).trim();
+        try {
+            workTree = new File(topLevel).getCanonicalFile();
+        } catch (IOException e) {
+            throw new VCSAnalyzerException("Failed to resolve the Git work tree: " + topLevel, e);
+        }
+        projectPath = workTree.getPath();
+        log.info("Using the native git executable for the Git repository in {}", projectPath);
+
+        refreshHead();
+        catFile = new GitCatFileBatch(GIT_EXECUTABLE, workTree);
+    }
+
+    @Override
+    public void refreshHead() {
+        String head = runGitForLine("rev-parse", "HEAD");
+        // a detached HEAD yields the commit SHA, as JGit's Repository.getBranch() does
+        String branch = runGitForLine("rev-parse", "--abbrev-ref", "HEAD");
+        branchName = "HEAD".equals(branch) ? head : branch;
+        headCommit = head;
+    }
+
+    @Override
+    public String getBranchName() {
+        return branchName;
+    }
+
+    @Override
+    public String getHeadCommit() {
+        return headCommit;
+    }
+
+    @Override
+    public Set<SourceFileDiffContext> getDiffFiles(final String baseChangeNum, final List<String> sourceFilesDirs,
+                                                   final List<String> testFilesDirs, final boolean checkLocalChanges) {
+        List<String> sourceAndTestDirs = new ArrayList<>(sourceFilesDirs);
+        sourceAndTestDirs.addAll(testFilesDirs);
+        if (checkLocalChanges) {
+            return readDiffFiles(baseChangeNum, sourceAndTestDirs, true);
+        }
+        return diffCache.getDiffFiles(baseChangeNum, headCommit, sourceAndTestDirs,
+                () -> readDiffFiles(baseChangeNum, sourceAndTestDirs, false));
+    }
+
+    private Set<SourceFileDiffContext> readDiffFiles(final String baseChangeNum, final List<String> sourceAndTestDirs,
+                                                     final boolean checkLocalChanges) {
+        List<String> pathspecs = buildPathspecs(sourceAndTestDirs);
+
+        List<ChangedFile> changedFiles;
+        if (checkLocalChanges) {
+            log.info("Finding the impacted sources code files in Git for local uncommited changes to workspace HEAD");
+            changedFiles = readLocalChanges(pathspecs);
+        } else {
+            log.info("Finding the impacted sources code files in Git for the commit range from {} to {}",
+                    baseChangeNum, headCommit);
+            changedFiles = readCommitRangeChanges(baseChangeNum, pathspecs);
+        }
+
+        Map<String, SourceFileDiffContext> sourceFileDiffContexts = new HashMap<>();
+        for (ChangedFile changedFile : changedFiles) {
+            String localOldPath = projectPath + File.separator + changedFile.oldPath;
+            String localNewPath = projectPath + File.separator + changedFile.newPath;
+            String pathForTracking;
+            if (GitDiffAnalyzer.isValidSourceOrTestFile(localOldPath, sourceAndTestDirs)) {
+                pathForTracking = changedFile.oldPath;
+            } else if (GitDiffAnalyzer.isValidSourceOrTestFile(localNewPath, sourceAndTestDirs)) {
+                pathForTracking = changedFile.newPath;
+            } else {
+                continue;
+            }
+
+            SourceFileDiffContext diffContext = new SourceFileDiffContext(localOldPath, localNewPath,
+                    changedFile.changeType);
+            diffContext.setVcsFetchKey(pathForTracking);
+            sourceFileDiffContexts.put(pathForTracking, diffContext);
+        }
+
+        log.info(checkLocalChanges ? "Source files found with local changes: {}"
+                : "Source files found in the commit range: {}", sourceFileDiffContexts.keySet());
+        return new HashSet<>(sourceFileDiffContexts.values());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Every version is streamed through the one {@code git cat-file --batch} process. For local
+     * changes the "before" is read at head and the "after" is read from disk. A side that doesn't
+     * exist (the old side of an add, the new side of a delete) is left {@code null}. Commit-range
+     * content is cached per range (see {@link CommitRangeDiffCache}).
+     */
+    @Override
+    public void loadContentForDiffs(final Collection<SourceFileDiffContext> diffs, final String baseChangeNum,
+                                    final boolean checkLocalChanges) {
+        if (checkLocalChanges) {
+            readContent(diffs, baseChangeNum, true);
+        } else {
+            diffCache.loadContentForDiffs(baseChangeNum, headCommit, diffs,
+                    misses -> readContent(misses, baseChangeNum, false));
+        }
+    }
+
+    private void readContent(final Collection<SourceFileDiffContext> diffs, final String baseChangeNum,
+                             final boolean checkLocalChanges) {
+        for (SourceFileDiffContext diff : diffs) {
+            String path = diff.getVcsFetchKey();
+            if (checkLocalChanges) {
+                diff.setSourceContentOriginal(catFile.readFile(headCommit, path));
+                diff.setSourceContentNew(readLocalFile(path));
+            } else {
+                diff.setSourceContentOriginal(catFile.readFile(baseChangeNum, path));
+                diff.setSourceContentNew(catFile.readFile(headCommit, path));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Runs the same {@code git diff} / {@code git status} scan as {@link #getDiffFiles} without
+     * pathspecs, and returns both the old and new path of every entry. The {@code /dev/null}
+     * placeholder for the absent side of an add or delete is excluded. Commit-range paths are
+     * cached per range (see {@link CommitRangeDiffCache}).
+     */
+    @Override
+    public Set<String> getChangedFilePaths(final String baseChangeNum, final boolean checkLocalChanges) {
+        if (checkLocalChanges) {
+            return readChangedFilePaths(readLocalChanges(new ArrayList<>()));
+        }
+        return diffCache.getChangedFilePaths(baseChangeNum, headCommit,
+                () -> readChangedFilePaths(readCommitRangeChanges(baseChangeNum, new ArrayList<>())));
+    }
+
+    @Override
+    public void setDiffCacheDir(final File diffCacheDir) {
+        diffCache.setPersistDir(diffCacheDir);
+    }
+
+    @Override
+    public String getLocalChangesFingerprint(final String baseChangeNum) {
+        return LocalChangesFingerprint.compute(workTree, getChangedFilePaths(baseChangeNum, true));
+    }
+
+    private Set<String> readChangedFilePaths(final List<ChangedFile> changedFiles) {
+
+        Set<String> changedPaths = new HashSet<>();
+        for (ChangedFile changedFile : changedFiles) {
+            if (!DEV_NULL.equals(changedFile.oldPath)) {
+                changedPaths.add(changedFile.oldPath);
+            }
+            if (!DEV_NULL.equals(changedFile.newPath)) {
+                changedPaths.add(changedFile.newPath);
+            }
+        }
+        return changedPaths;
+    }
+
+    @Override
+    public void close() {
+        log.debug("Closing the git cat-file process");
+        catFile.close();
+    }
+
+    /**
+     * Limit a scan to the source and test dirs. As with the JGit diff filter, a dir given as a path
+     * fragment (e.g. {@code src/main/java}) matches anywhere in a file's path, which a pathspec
+     * can't express - the scan is then left unlimited and the entries are checked afterwards.
+     *
+     * @param sourceAndTestDirs the source and test dirs of the project being analysed
+     * @return the literal, repo-relative pathspecs; empty to scan the whole repository
+     */
+    private List<String> buildPathspecs(final List<String> sourceAndTestDirs) {
+        String projectPathPrefix = projectPath + File.separator;
+        List<String> pathspecs = new ArrayList<>();
+        for (String sourceAndTestDir : sourceAndTestDirs) {
+            if (!sourceAndTestDir.startsWith(projectPathPrefix)
+                    || sourceAndTestDir.length() == projectPathPrefix.length()) {
+                return new ArrayList<>();
+            }
+            pathspecs.add(":(literal)" + sourceAndTestDir.substring(projectPathPrefix.length())
+                    .replace(File.separatorChar, '/'));
+        }
+        return pathspecs;
+    }
+
+    /**
+     * Read the files changed between a commit and head with {@code git diff --name-status -z}.
+     * Each record is a status token followed by the path, or by the old and new path for a copy.
+     *
+     * @param commitFrom the oldest commit in the range
+     * @param pathspecs the pathspecs to limit the diff to
+     * @return the changed files
+     */
+    private List<ChangedFile> readCommitRangeChanges(final String commitFrom, final List<String> pathspecs) {
+        List<String> args = new ArrayList<>(Arrays.asList("diff", "--name-status", "-z", "--no-renames",
+                "--no-ext-diff", commitFrom, headCommit, "--"));
+        args.addAll(pathspecs);
+        String[] tokens = splitOnNul(runGit(workTree, args.toArray(new String[0])));
+
+        List<ChangedFile> changedFiles = new ArrayList<>();
+        int i = 0;
+        while (i < tokens.length) {
+            String status = tokens[i];
+            if (status.startsWith("R") || status.startsWith("C")) {
+                changedFiles.add(new ChangedFile(tokens[i + 1], tokens[i + 2],
+                        status.startsWith("R") ? ChangeType.RENAME : ChangeType.COPY));
+                i += 3;
+            } else {
+                String path = tokens[i + 1];
+                switch (status.charAt(0)) {
+                    case 'A':
+                        changedFiles.add(new ChangedFile(DEV_NULL, path, ChangeType.ADD));
+                        break;
+                    case 'D':
+                        changedFiles.add(new ChangedFile(path, DEV_NULL, ChangeType.DELETE));
+                        break;
+                    default:
+                        changedFiles.add(new ChangedFile(path, path, ChangeType.MODIFY));
+                }
+                i += 2;
+            }
+        }
+        return changedFiles;
+    }
+
+    /**
+     * Read the files that differ between head and the working tree with
+     * {@code git status --porcelain=v2 -z}. A tracked entry carries the file mode at head and in
+     * the working tree, and a mode of {@code 000000} means the file doesn't exist on that side.
+     * Untracked files are adds; ignored files are skipped.
+     *
+     * @param pathspecs the pathspecs to limit the scan to
+     * @return the changed files
+     */
+    private List<ChangedFile> readLocalChanges(final List<String> pathspecs) {
+        List<String> args = new ArrayList<>(Arrays.asList("status", "--porcelain=v2", "-z", "--no-renames",
+                "--untracked-files=all", "--"));
+        args.addAll(pathspecs);
+        String[] tokens = splitOnNul(runGit(workTree, args.toArray(new String[0])));
+
+        List<ChangedFile> changedFiles = new ArrayList<>();
+        int i = 0;
+        while (i < tokens.length) {
+            String entry = tokens[i++];
+            if (entry.startsWith("1 ")) {
+                // 1 <XY> <sub> <mH> <mI> <mW> <hH> <hI> <path>
+                String[] fields = entry.split(" ", 9);
+                addLocalChange(changedFiles, fields[8], fields[3], fields[5]);
+            } else if (entry.startsWith("2 ")) {
+                // 2 <XY> <sub> <mH> <mI> <mW> <hH> <hI> <X><score> <path>, then <origPath>
+                String[] fields = entry.split(" ", 10);
+                String origPath = tokens[i++];
+                changedFiles.add(new ChangedFile(origPath, DEV_NULL, ChangeType.DELETE));
+                addLocalChange(changedFiles, fields[9], NO_FILE_MODE, fields[5]);
+            } else if (entry.startsWith("u ")) {
+                // u <XY> <sub> <m1> <m2> <m3> <mW> <h1> <h2> <h3> <path>
+                String path = entry.split(" ", 11)[10];
+                changedFiles.add(new ChangedFile(path, path, ChangeType.MODIFY));
+            } else if (entry.startsWith("? ")) {
+                changedFiles.add(new ChangedFile(DEV_NULL, entry.substring(2), ChangeType.ADD));
+            }
+        }
+        return changedFiles;
+    }
+
+    private void addLocalChange(final List<ChangedFile> changedFiles, final String path, final String headMode,
+                                final String workTreeMode) {
+        boolean inHead = !NO_FILE_MODE.equals(headMode);
+        boolean inWorkTree = !NO_FILE_MODE.equals(workTreeMode);
+        if (inHead && inWorkTree) {
+            changedFiles.add(new ChangedFile(path, path, ChangeType.MODIFY));
+        } else if (inHead) {
+            changedFiles.add(new ChangedFile(path, DEV_NULL, ChangeType.DELETE));
+        } else if (inWorkTree) {
+            changedFiles.add(new ChangedFile(DEV_NULL, path, ChangeType.ADD));
+        }
+    }
+
+    private String readLocalFile(final String path) {
+        File file = new File(workTree, path);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new VCSAnalyzerException(e);
+        }
+    }
+
+    private static String[] splitOnNul(final byte[] output) {
+        if (output.length == 0) {
+            return new String[0];
+        }
+        // the output is NUL-terminated, so the trailing empty token is dropped by split
+        return new String(output, StandardCharsets.UTF_8).split("\0");
+    }
+
+    private String runGitForLine(final String... args) {
+        return new String(runGit(workTree, args), StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Run a git command to completion and return its stdout. stderr is drained on a separate
+     * thread so a chatty command can't block on a full pipe.
+     *
+     * @param directory the dir to run git in
+     * @param args the git arguments
+     * @return the command's stdout
+     */
+    private static byte[] runGit(final File directory, final String... args) {
+        List<String> command = new ArrayList<>();
+        command.add(GIT_EXECUTABLE);
+        command.addAll(Arrays.asList(args));
+        log.debug("Running {}", command);
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command).directory(directory);
+        // read-only commands - don't take the index lock to refresh the stat cache
+        processBuilder.environment().put("GIT_OPTIONAL_LOCKS", "0");
+
+        try {
+            Process process = processBuilder.start();
+            process.getOutputStream().close();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+            Thread stderrDrain = new Thread(() -> {
+                try {
+                    IOUtils.copy(process.getErrorStream(), stderr);
+                } catch (IOException e) {
+                    log.debug("Failed to read the stderr of {}", command, e);
+                }
+            });
+            stderrDrain.start();
+
+            byte[] stdout = IOUtils.toByteArray(process.getInputStream());
+            int exitCode = process.waitFor();
+            stderrDrain.join();
+            if (exitCode != 0) {
+                throw new VCSAnalyzerException("git command " + command + " failed with exit code " + exitCode
+                        + ": " + new String(stderr.toByteArray(), StandardCharsets.UTF_8).trim());
+            }
+            return stdout;
+        } catch (IOException e) {
+            throw new VCSAnalyzerException("Failed to run " + command + " - is git on the PATH?", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VCSAnalyzerException(e);
+        }
+    }
+
+    /**
+     * A changed file with its repo-relative paths; the absent side of an add or delete is
+     * {@code /dev/null}.
+     */
+    private static class ChangedFile {
+        private final String oldPath;
+        private final String newPath;
+        private final ChangeType changeType;
+
+        ChangedFile(String oldPath, String newPath, ChangeType changeType) {
+            this.oldPath = oldPath;
+            this.newPath = newPath;
+            this.changeType = changeType;
+        }
+    }
+}
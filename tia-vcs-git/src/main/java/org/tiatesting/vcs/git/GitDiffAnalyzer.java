@@ -12,13 +12,17 @@ import org.eclipse.jgit.treewalk.AbstractTreeIterator;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.FileTreeIterator;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.OrTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tiatesting.core.diff.ChangeType;
 import org.tiatesting.core.diff.SourceFileDiffContext;
 import org.tiatesting.core.vcs.VCSAnalyzerException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -33,6 +37,8 @@ public class GitDiffAnalyzer {
 
     private static final Logger log = LoggerFactory.getLogger(GitDiffAnalyzer.class);
 
+    private final GitBlobReader blobReader = new GitBlobReader(Runtime.getRuntime().availableProcessors());
+
     /**
      * Build the list of files that have changes either since the previously stored commit, or from local uncommited changes.
      * Return the list of SourceFileDiffContext.
@@ -198,6 +204,7 @@ public class GitDiffAnalyzer {
 
         try (DiffFormatter diffFormatter = new DiffFormatter(null)) {
             diffFormatter.setRepository(repository);
+            diffFormatter.setPathFilter(buildSourceFileFilter(repository, sourceAndTestDirs));
 
             for (DiffEntry diffEntry : diffFormatter.scan(commitFrom, commitTo)) {
                 buildDiffContextsFromDiffEntries(diffEntry, sourceFileDiffContexts, getProjectPath(repository), sourceAndTestDirs);
@@ -243,6 +250,7 @@ public class GitDiffAnalyzer {
 
         try (DiffFormatter diffFormatter = new DiffFormatter(null)) {
             diffFormatter.setRepository(repository);
+            diffFormatter.setPathFilter(buildSourceFileFilter(repository, sourceAndTestDirs));
             for (DiffEntry diffEntry : diffFormatter.scan( commitTreeIterator, workTreeIterator )){
                 buildDiffContextsFromDiffEntries(diffEntry, sourceFileDiffContexts, getProjectPath(repository), sourceAndTestDirs);
             }
@@ -253,6 +261,40 @@ public class GitDiffAnalyzer {
         return sourceFileDiffContexts;
     }
 
+    /**
+     * Build the JGit filter applied to the diff scan so only Java/Groovy files under the source and test dirs are
+     * compared. The scan then skips every other subtree without reading it, rather than producing a diff entry
+     * for every changed file in the repository for {@link #isValidSourceOrTestFile} to discard afterwards.
+     * <p>
+     * The filter only narrows the scan - {@link #isValidSourceOrTestFile} still checks every entry. The dir prefix
+     * part is only applied when every dir is inside the repository: a dir given as a path fragment (e.g.
+     * {@code src/main/java}) matches anywhere in a file's path, which a path prefix can't express, so the scan then
+     * falls back to filtering on the file suffix alone.
+     *
+     * @param repository the Git repository being analysed
+     * @param sourceAndTestDirs the list of source code and test files for the source project being analysed
+     * @return the filter for the diff scan
+     */
+    private TreeFilter buildSourceFileFilter(Repository repository, List<String> sourceAndTestDirs){
+        TreeFilter sourceFileSuffix = OrTreeFilter.create(PathSuffixFilter.create("." + JAVA_FILE_EXT),
+                PathSuffixFilter.create("." + GROOVY_FILE_EXT));
+
+        String projectPathPrefix = getProjectPath(repository) + File.separator;
+        List<String> dirPrefixes = new ArrayList<>();
+        for (String sourceAndTestDir : sourceAndTestDirs){
+            if (!sourceAndTestDir.startsWith(projectPathPrefix)
+                    || sourceAndTestDir.length() == projectPathPrefix.length()){
+                return sourceFileSuffix;
+            }
+            dirPrefixes.add(sourceAndTestDir.substring(projectPathPrefix.length()).replace(File.separatorChar, '/'));
+        }
+
+        if (dirPrefixes.isEmpty()){
+            return sourceFileSuffix;
+        }
+        return AndTreeFilter.create(PathFilterGroup.createFromStrings(dirPrefixes), sourceFileSuffix);
+    }
+
     private void buildDiffContextsFromDiffEntries(DiffEntry diffEntry, Map<String, SourceFileDiffContext> sourceFileDiffContexts,
                                                   String projectPath, List<String> sourceAndTestDirs) {
         String diffOldPath = diffEntry.getOldPath();
@@ -323,8 +365,13 @@ public class GitDiffAnalyzer {
 
     /**
      * Read the content of a list of source files at a given version.
-     * Use a TreeWalk to recursively walk through the repository tree for a version. Read the content for each of the
-     * given source files and load it into a map to be used later for diffing.
+     * Use a TreeWalk to walk the repository tree for a version down to the given source files only, collecting the
+     * blob id of each, then read the blobs (see {@link GitBlobReader}) and load each file's content into a map to be
+     * used later for diffing.
+     * <p>
+     * The walk is restricted with a {@link PathFilterGroup} of the changed paths, so JGit only descends into the
+     * trees on the way to a changed file and skips every other subtree unread - the cost is proportional to the
+     * number of changed files rather than the size of the repository.
      *
      * @param repository the Git repository being analysed
      * @param commitObjectId the id of the commit revision we are reading the file content for
@@ -333,6 +380,8 @@ public class GitDiffAnalyzer {
      */
     private void readFileContentForVersion(Repository repository, ObjectId commitObjectId, boolean forOriginal,
                                            Map<String, SourceFileDiffContext> sourceFilesImpacted) {
+        Map<String, ObjectId> blobIdsByPath = new HashMap<>();
+
         try (RevWalk revWalk = new RevWalk(repository)) {
             RevCommit commit = revWalk.parseCommit(commitObjectId);
             RevTree tree = commit.getTree();
@@ -340,22 +389,11 @@ public class GitDiffAnalyzer {
             try (TreeWalk treeWalk = new TreeWalk(repository)) {
                 treeWalk.addTree(tree);
                 treeWalk.setRecursive(true);
-
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                treeWalk.setFilter(PathFilterGroup.createFromStrings(sourceFilesImpacted.keySet()));
 
                 while(treeWalk.next()){
                     if (sourceFilesImpacted.containsKey(treeWalk.getPathString())){
-                        ObjectId objectId = treeWalk.getObjectId(0);
-                        ObjectLoader loader = repository.open(objectId);
-                        loader.copyTo(baos);
-
-                        if (forOriginal){
-                            sourceFilesImpacted.get(treeWalk.getPathString()).setSourceContentOriginal(baos.toString());
-                        } else {
-                            sourceFilesImpacted.get(treeWalk.getPathString()).setSourceContentNew(baos.toString());
-                        }
-
-                        baos.reset();
+                        blobIdsByPath.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
                     }
                 }
             }
@@ -364,6 +402,11 @@ public class GitDiffAnalyzer {
         } catch (IOException e) {
             throw new VCSAnalyzerException(e);
         }
+
+        Map<String, String> contentByPath = blobReader.readBlobs(repository, blobIdsByPath);
+        for (Map.Entry<String, String> content : contentByPath.entrySet()){
+            loadFileContentIntoDiffContext(sourceFilesImpacted, forOriginal, content.getKey(), content.getValue());
+        }
     }
 
     /**
@@ -430,7 +473,7 @@ public class GitDiffAnalyzer {
      * @param fileName
      * @return
      */
-    private boolean isFileSourceCode(String fileName) {
+    private static boolean isFileSourceCode(String fileName) {
         return fileName.toLowerCase().endsWith("." + JAVA_FILE_EXT) ||
                 fileName.toLowerCase().endsWith("." + GROOVY_FILE_EXT);
     }
@@ -451,11 +494,19 @@ public class GitDiffAnalyzer {
         return projectPathFull;
     }
 
-    private boolean isValidSourceOrTestFile(String fileFullPath, List<String> sourceAndTestDirs){
+    /**
+     * Check if a file is a Java or Groovy file inside one of the source or test dirs. Shared with
+     * {@link GitCliReader} so both backends select the same files.
+     *
+     * @param fileFullPath the full local path of the file
+     * @param sourceAndTestDirs the source and test dirs of the project being analysed
+     * @return whether the file is a source or test file Tia analyses
+     */
+    static boolean isValidSourceOrTestFile(String fileFullPath, List<String> sourceAndTestDirs){
         return isFileSourceCode(fileFullPath) && isFileInSourceOrTestDir(fileFullPath, sourceAndTestDirs);
     }
 
-    private boolean isFileInSourceOrTestDir(String fileFullPath, List<String> sourceAndTestDirs){
+    private static boolean isFileInSourceOrTestDir(String fileFullPath, List<String> sourceAndTestDirs){
         for (String sourceAndTestDir: sourceAndTestDirs){
             log.trace("Checking if file {} is in source or test directory: {}", fileFullPath, sourceAndTestDir);
             if (fileFullPath.contains(sourceAndTestDir)){
@@ -7,6 +7,8 @@ import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tiatesting.core.diff.SourceFileDiffContext;
+import org.tiatesting.core.vcs.CommitRangeDiffCache;
+import org.tiatesting.core.vcs.LocalChangesFingerprint;
 import org.tiatesting.core.vcs.VCSAnalyzerException;
 import org.tiatesting.core.vcs.VCSReader;
 
@@ -23,8 +25,9 @@ public class GitReader implements VCSReader {
     public static final String GIT_REPOSITORY_NAME = ".git";
 
     private final GitDiffAnalyzer gitDiffAnalyzer;
-    private final GitContext gitContext;
+    private volatile GitContext gitContext;
     private final GitCheckoutProcessor gitCheckoutProcessor;
+    private final CommitRangeDiffCache diffCache = new CommitRangeDiffCache();
 
     public GitReader(final String gitProjectPath) {
         File gitDir = resolveGitDir(gitProjectPath);
@@ -39,13 +42,22 @@ public class GitReader implements VCSReader {
                                                    final List<String> testFilesDirs, final boolean checkLocalChanges) {
         List<String> sourceAndTestFilesDir = new ArrayList<>(sourceFilesDirs);
         sourceAndTestFilesDir.addAll(testFilesDirs);
-        return gitDiffAnalyzer.getDiffFiles(gitContext, baseChangeNum, sourceAndTestFilesDir, checkLocalChanges);
+        if (checkLocalChanges) {
+            return gitDiffAnalyzer.getDiffFiles(gitContext, baseChangeNum, sourceAndTestFilesDir, true);
+        }
+        return diffCache.getDiffFiles(baseChangeNum, getHeadCommit(), sourceAndTestFilesDir,
+                () -> gitDiffAnalyzer.getDiffFiles(gitContext, baseChangeNum, sourceAndTestFilesDir, false));
     }
 
     @Override
     public void loadContentForDiffs(final Collection<SourceFileDiffContext> diffs, final String baseChangeNum,
                                     final boolean checkLocalChanges) {
-        gitDiffAnalyzer.loadContentForDiffContexts(gitContext, diffs, baseChangeNum, checkLocalChanges);
+        if (checkLocalChanges) {
+            gitDiffAnalyzer.loadContentForDiffContexts(gitContext, diffs, baseChangeNum, true);
+        } else {
+            diffCache.loadContentForDiffs(baseChangeNum, getHeadCommit(), diffs,
+                    misses -> gitDiffAnalyzer.loadContentForDiffContexts(gitContext, misses, baseChangeNum, false));
+        }
     }
 
     /**
@@ -53,11 +65,33 @@ public class GitReader implements VCSReader {
      *
      * <p>Walks the JGit {@link org.eclipse.jgit.diff.DiffEntry} list for either the commit range
      * ({@code commitFrom} to head) or the local workspace and emits each entry's old and new
-     * path directly. No content is loaded and no file-type filter is applied.
+     * path directly. No content is loaded and no file-type filter is applied. Commit-range paths
+     * are cached per range (see {@link CommitRangeDiffCache}).
      */
     @Override
     public Set<String> getChangedFilePaths(final String baseChangeNum, final boolean checkLocalChanges) {
-        return gitDiffAnalyzer.getChangedFilePaths(gitContext, baseChangeNum, checkLocalChanges);
+        if (checkLocalChanges) {
+            return gitDiffAnalyzer.getChangedFilePaths(gitContext, baseChangeNum, true);
+        }
+        return diffCache.getChangedFilePaths(baseChangeNum, getHeadCommit(),
+                () -> gitDiffAnalyzer.getChangedFilePaths(gitContext, baseChangeNum, false));
+    }
+
+    @Override
+    public void setDiffCacheDir(final File diffCacheDir) {
+        diffCache.setPersistDir(diffCacheDir);
+    }
+
+    @Override
+    public String getLocalChangesFingerprint(final String baseChangeNum) {
+        return LocalChangesFingerprint.compute(gitContext.getRepository().getWorkTree(),
+                getChangedFilePaths(baseChangeNum, true));
+    }
+
+    @Override
+    public void refreshHead() {
+        Repository repository = gitContext.getRepository();
+        gitContext = new GitContext(repository, readBranchName(repository), readHeadObjectId(repository));
     }
 
     @Override
@@ -0,0 +1,22 @@
+package org.tiatesting.vcs.git;
+
+import org.tiatesting.core.vcs.VCSReader;
+
+/**
+ * Creates the {@link VCSReader} for a Git project: the JGit-backed {@link GitReader} by default,
+ * or the {@link GitCliReader} that shells out to the native {@code git} executable when it's
+ * enabled. See the "Native Git backend" chapter in WIKI.md.
+ */
+public class GitReaderFactory {
+
+    private GitReaderFactory() {}
+
+    /**
+     * @param gitProjectPath the project dir inside the Git repository
+     * @param nativeGitCli whether to read the repository with the native {@code git} executable
+     * @return the reader
+     */
+    public static VCSReader newReader(final String gitProjectPath, final boolean nativeGitCli) {
+        return nativeGitCli ? new GitCliReader(gitProjectPath) : new GitReader(gitProjectPath);
+    }
+}
@@ -0,0 +1,86 @@
+package org.tiatesting.vcs.git;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies {@link GitBlobReader} reads every requested blob as UTF-8 text, whether on the calling
+ * thread or spread over its pool. Builds a throwaway on-disk Git repository per test via JGit.
+ */
+class GitBlobReaderTest {
+
+    private File tempDir;
+    private Git git;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("tia-git-blobs-").toFile();
+        git = Git.init().setDirectory(tempDir).setInitialBranch("main").call();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (git != null) {
+            git.getRepository().close();
+            git.close();
+        }
+        if (tempDir != null) {
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    void readsEveryBlobAcrossThePool() throws Exception {
+        // given - more blobs than threads, so each thread reads a share
+        Map<String, String> expected = new HashMap<>();
+        Map<String, ObjectId> blobIdsByPath = new HashMap<>();
+        for (int i = 0; i < 25; i++) {
+            String path = "src/main/java/com/example/Foo" + i + ".java";
+            String content = "class Foo" + i + " { }";
+            expected.put(path, content);
+            blobIdsByPath.put(path, insertBlob(content));
+        }
+
+        // when
+        Map<String, String> contentByPath = new GitBlobReader(4).readBlobs(git.getRepository(), blobIdsByPath);
+
+        // then
+        assertEquals(expected, contentByPath);
+    }
+
+    @Test
+    void decodesBlobsAsUtf8() throws Exception {
+        // given - non-ASCII content that a platform-charset decode could mangle
+        String content = "class Grüße { String s = \"héllo €\"; }";
+        Map<String, ObjectId> blobIdsByPath = new HashMap<>();
+        blobIdsByPath.put("src/main/java/Grüße.java", insertBlob(content));
+
+        // when
+        Map<String, String> contentByPath = new GitBlobReader(1).readBlobs(git.getRepository(), blobIdsByPath);
+
+        // then
+        assertEquals(content, contentByPath.get("src/main/java/Grüße.java"));
+    }
+
+    private ObjectId insertBlob(String content) throws Exception {
+        try (ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+            ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8));
+            inserter.flush();
+            return blobId;
+        }
+    }
+}
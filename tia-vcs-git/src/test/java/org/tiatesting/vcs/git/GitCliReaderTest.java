@@ -0,0 +1,158 @@
+package org.tiatesting.vcs.git;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.tiatesting.core.diff.ChangeType;
+import org.tiatesting.core.diff.SourceFileDiffContext;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Verifies that {@link GitCliReader} builds the same diff contexts and loads the same content as
+ * the JGit-backed {@link GitReader}, for a commit range and for local changes. Builds a throwaway
+ * on-disk Git repository per test via JGit; skipped when {@code git} isn't on the {@code PATH}.
+ */
+class GitCliReaderTest {
+
+    private static final String SOURCE_DIR = "src/main/java";
+    private static final String SOURCE_FILE = SOURCE_DIR + "/com/example/Foo.java";
+    private static final String OTHER_FILE = SOURCE_DIR + "/com/example/Bar.java";
+
+    private File tempDir;
+    private Git git;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assumeTrue(isGitOnPath(), "git is not on the PATH");
+        tempDir = Files.createTempDirectory("tia-git-cli-").toFile();
+        git = Git.init().setDirectory(tempDir).setInitialBranch("main").call();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (git != null) {
+            git.getRepository().close();
+            git.close();
+        }
+        if (tempDir != null) {
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    void readsTheCommitRangeChangesAndContent() throws Exception {
+        // given - Foo modified, Bar added and a non-source file changed after the base commit
+        String baseCommit = commitFile(SOURCE_FILE, "class Foo { int v = 1; }", "add Foo");
+        commitFile(SOURCE_FILE, "class Foo { int v = 2; }", "edit Foo");
+        commitFile(OTHER_FILE, "class Bar { }", "add Bar");
+        commitFile("README.md", "readme", "add readme");
+
+        GitCliReader reader = new GitCliReader(tempDir.getAbsolutePath());
+        try {
+            // when
+            Set<SourceFileDiffContext> diffs = reader.getDiffFiles(baseCommit,
+                    Collections.singletonList(SOURCE_DIR), Collections.emptyList(), false);
+            reader.loadContentForDiffs(diffs, baseCommit, false);
+
+            // then
+            Map<String, SourceFileDiffContext> diffsByPath = byFetchKey(diffs);
+            assertEquals(new HashSet<>(Arrays.asList(SOURCE_FILE, OTHER_FILE)), diffsByPath.keySet());
+
+            SourceFileDiffContext foo = diffsByPath.get(SOURCE_FILE);
+            assertEquals(ChangeType.MODIFY, foo.getChangeType());
+            assertEquals("class Foo { int v = 1; }", foo.getSourceContentOriginal().trim());
+            assertEquals("class Foo { int v = 2; }", foo.getSourceContentNew().trim());
+
+            SourceFileDiffContext bar = diffsByPath.get(OTHER_FILE);
+            assertEquals(ChangeType.ADD, bar.getChangeType());
+            assertNull(bar.getSourceContentOriginal());
+            assertEquals("class Bar { }", bar.getSourceContentNew().trim());
+
+            assertEquals(new HashSet<>(Arrays.asList(SOURCE_FILE, OTHER_FILE, "README.md")),
+                    reader.getChangedFilePaths(baseCommit, false));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void readsTheLocalChangesAndContent() throws Exception {
+        // given - a committed Foo modified on disk, and an untracked Bar
+        String headCommit = commitFile(SOURCE_FILE, "class Foo { int v = 1; }", "add Foo");
+        writeFile(SOURCE_FILE, "class Foo { int v = 2; }");
+        writeFile(OTHER_FILE, "class Bar { }");
+
+        GitCliReader reader = new GitCliReader(tempDir.getAbsolutePath());
+        try {
+            // when
+            Set<SourceFileDiffContext> diffs = reader.getDiffFiles(headCommit,
+                    Collections.singletonList(SOURCE_DIR), Collections.emptyList(), true);
+
+            // then - the same contexts the JGit reader builds
+            GitReader jgitReader = new GitReader(tempDir.getAbsolutePath());
+            try {
+                assertEquals(jgitReader.getDiffFiles(headCommit, Collections.singletonList(SOURCE_DIR),
+                        Collections.emptyList(), true), diffs);
+                assertEquals(jgitReader.getBranchName(), reader.getBranchName());
+                assertEquals(jgitReader.getHeadCommit(), reader.getHeadCommit());
+            } finally {
+                jgitReader.close();
+            }
+
+            // and the content is loaded from head and the working tree
+            reader.loadContentForDiffs(diffs, headCommit, true);
+            Map<String, SourceFileDiffContext> diffsByPath = byFetchKey(diffs);
+            SourceFileDiffContext foo = diffsByPath.get(SOURCE_FILE);
+            assertEquals(ChangeType.MODIFY, foo.getChangeType());
+            assertEquals("class Foo { int v = 1; }", foo.getSourceContentOriginal().trim());
+            assertEquals("class Foo { int v = 2; }", foo.getSourceContentNew().trim());
+            assertEquals(ChangeType.ADD, diffsByPath.get(OTHER_FILE).getChangeType());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Map<String, SourceFileDiffContext> byFetchKey(Set<SourceFileDiffContext> diffs) {
+        Map<String, SourceFileDiffContext> diffsByPath = new HashMap<>();
+        for (SourceFileDiffContext diff : diffs) {
+            diffsByPath.put(diff.getVcsFetchKey(), diff);
+        }
+        return diffsByPath;
+    }
+
+    private void writeFile(String relativePath, String content) throws Exception {
+        File file = new File(tempDir, relativePath);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String commitFile(String relativePath, String content, String message) throws Exception {
+        writeFile(relativePath, content);
+        git.add().addFilepattern(relativePath).call();
+        return git.commit().setMessage(message).setAuthor("tia", "tia@example.com")
+                .setCommitter("tia", "tia@example.com").setSign(false).call().getName();
+    }
+
+    private static boolean isGitOnPath() {
+        try {
+            return new ProcessBuilder("git", "--version").start().waitFor() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
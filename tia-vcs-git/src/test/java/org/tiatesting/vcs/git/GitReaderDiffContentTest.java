@@ -16,6 +16,7 @@ import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 /**
  * Verifies that {@link GitReader#getDiffFiles} + {@link GitReader#loadContentForDiffs} (which
@@ -77,6 +78,66 @@ class GitReaderDiffContentTest {
         }
     }
 
+    @Test
+    void scansOnlySourceFilesInsideTheSourceDirs() throws Exception {
+        // given - a source file, a non-source file in the source dir, and a Java file outside it
+        String baseCommit = commitFile(SOURCE_FILE, "class Foo { int v = 1; }", "add Foo");
+        commitFile(SOURCE_FILE, "class Foo { int v = 2; }", "edit Foo");
+        commitFile(SOURCE_DIR + "/com/example/notes.txt", "notes", "add notes");
+        commitFile("tools/Build.java", "class Build { }", "add Build");
+        String sourceDir = new File(tempDir, SOURCE_DIR).getCanonicalPath();
+
+        GitReader reader = new GitReader(tempDir.getAbsolutePath());
+        try {
+            // when - the source dir is an absolute path inside the repository, so the scan is path-filtered
+            Set<SourceFileDiffContext> diffs = reader.getDiffFiles(baseCommit,
+                    Collections.singletonList(sourceDir), Collections.emptyList(), false);
+
+            // then
+            assertEquals(1, diffs.size(), "expected only the source file in the source dir");
+            assertEquals(SOURCE_FILE, diffs.iterator().next().getVcsFetchKey());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void loadsContentOnlyForTheRequestedDiffs() throws Exception {
+        // given - two source files in different packages, both modified in the range
+        String otherFile = SOURCE_DIR + "/com/other/Bar.java";
+        commitFile(SOURCE_FILE, "class Foo { int v = 1; }", "add Foo");
+        String baseCommit = commitFile(otherFile, "class Bar { int v = 1; }", "add Bar");
+        commitFile(SOURCE_FILE, "class Foo { int v = 2; }", "edit Foo");
+        commitFile(otherFile, "class Bar { int v = 2; }", "edit Bar");
+
+        GitReader reader = new GitReader(tempDir.getAbsolutePath());
+        try {
+            Set<SourceFileDiffContext> diffs = reader.getDiffFiles(baseCommit,
+                    Collections.singletonList(SOURCE_DIR), Collections.emptyList(), false);
+            SourceFileDiffContext foo = null;
+            SourceFileDiffContext bar = null;
+            for (SourceFileDiffContext diff : diffs) {
+                if (SOURCE_FILE.equals(diff.getVcsFetchKey())) {
+                    foo = diff;
+                } else {
+                    bar = diff;
+                }
+            }
+
+            // when - load the content of Foo only
+            reader.loadContentForDiffs(Collections.singletonList(foo), baseCommit, false);
+
+            // then - the path-filtered walk found Foo at both versions and never loaded Bar
+            assertEquals(2, diffs.size(), "expected two changed source files");
+            assertEquals("class Foo { int v = 1; }", foo.getSourceContentOriginal().trim());
+            assertEquals("class Foo { int v = 2; }", foo.getSourceContentNew().trim());
+            assertNull(bar.getSourceContentOriginal());
+            assertNull(bar.getSourceContentNew());
+        } finally {
+            reader.close();
+        }
+    }
+
     /**
      * Write {@code content} to {@code relativePath} under the repo, stage and commit it.
      *
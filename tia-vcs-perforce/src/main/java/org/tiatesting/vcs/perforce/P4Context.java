@@ -1,6 +1,7 @@
 package org.tiatesting.vcs.perforce;
 
 import org.tiatesting.vcs.perforce.connection.P4Connection;
+import org.tiatesting.vcs.perforce.connection.P4ConnectionPool;
 
 import java.util.Objects;
 
@@ -12,16 +13,34 @@ public class P4Context {
 
     private final String headCL;
 
+    private final P4ConnectionPool connectionPool;
+
     public P4Context(final P4Connection p4Connection, final String branchName, final String headCL) {
+        this(p4Connection, branchName, headCL, new P4ConnectionPool(p4Connection, 1));
+    }
+
+    /**
+     * @param p4Connection the primary connection to the Perforce server
+     * @param branchName the branch (stream) name
+     * @param headCL the workspace head changelist
+     * @param connectionPool the pool file content is printed over, in parallel when its size is over 1
+     */
+    public P4Context(final P4Connection p4Connection, final String branchName, final String headCL,
+                     final P4ConnectionPool connectionPool) {
         this.p4Connection = p4Connection;
         this.branchName = branchName;
         this.headCL = headCL;
+        this.connectionPool = connectionPool;
     }
 
     public P4Connection getP4Connection() {
         return p4Connection;
     }
 
+    public P4ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
     public String getBranchName() {
         return branchName;
     }
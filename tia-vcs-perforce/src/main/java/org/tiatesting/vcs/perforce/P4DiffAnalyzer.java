@@ -12,16 +12,13 @@ import org.tiatesting.core.diff.ChangeType;
 import org.tiatesting.core.diff.SourceFileDiffContext;
 import org.tiatesting.core.vcs.VCSAnalyzerException;
 import org.tiatesting.vcs.perforce.connection.P4Connection;
+import org.tiatesting.vcs.perforce.connection.P4ConnectionPool;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static org.tiatesting.core.sourcefile.FileExtensions.GROOVY_FILE_EXT;
@@ -34,6 +31,26 @@ public class P4DiffAnalyzer {
 
     private static final Logger log = LoggerFactory.getLogger(P4DiffAnalyzer.class);
 
+    /**
+     * The fewest files a parallel {@code p4 print} batch is given - below this the cost of another
+     * round-trip outweighs printing the files over a connection already in use.
+     */
+    static final int MIN_FILES_PER_PRINT_BATCH = 25;
+
+    private final P4RevisionContentCache revisionContentCache;
+
+    public P4DiffAnalyzer() {
+        this(null);
+    }
+
+    /**
+     * @param revisionContentCache the on-disk cache of file revision content consulted before
+     *                             {@code p4 print}; {@code null} to print every revision
+     */
+    P4DiffAnalyzer(final P4RevisionContentCache revisionContentCache) {
+        this.revisionContentCache = revisionContentCache;
+    }
+
     /**
      * Build the list of files that have changes either since the previously stored submit, or from local changes.
      * Return the list of SourceFileDiffContext.
@@ -90,13 +107,12 @@ public class P4DiffAnalyzer {
             diffsByDepotPath.put(diff.getVcsFetchKey(), diff);
         }
 
-        P4Connection p4Connection = p4Context.getP4Connection();
         if (checkLocalChanges) {
-            readFileContentForVersion(p4Connection, p4Context.getHeadCL(), true, diffsByDepotPath);
+            readFileContentForVersion(p4Context, p4Context.getHeadCL(), true, diffsByDepotPath);
             loadLocalContentFromDisk(diffs, false);
         } else {
-            readFileContentForVersion(p4Connection, baseCl, true, diffsByDepotPath);
-            readFileContentForVersion(p4Connection, p4Context.getHeadCL(), false, diffsByDepotPath);
+            readFileContentForVersion(p4Context, baseCl, true, diffsByDepotPath);
+            readFileContentForVersion(p4Context, p4Context.getHeadCL(), false, diffsByDepotPath);
         }
     }
 
@@ -616,12 +632,12 @@ public class P4DiffAnalyzer {
      * Read the content of a list of source files at a given version.
      * Read the content for each of the given source files and load it into a map to be used later for diffing.
      *
-     * p4Connection the Perforce connection being used for the analysis.
+     * @param p4Context the Perforce context (primary connection + connection pool)
      * @param cl the id of the changelist revision we are reading the file content for
      * @param forOriginal is the file content being read used as the 'before' in the diff?
      * @param sourceFileDiffContexts the map of source files that were impacted in the diff range
      */
-    private void readFileContentForVersion(P4Connection p4Connection, String cl, boolean forOriginal,
+    private void readFileContentForVersion(P4Context p4Context, String cl, boolean forOriginal,
                                            Map<String, SourceFileDiffContext> sourceFileDiffContexts) {
         try {
             List<String> filePaths = new ArrayList<>();
@@ -638,18 +654,133 @@ public class P4DiffAnalyzer {
             });
 
             List<IFileSpec> searchFileSpecs = FileSpecBuilder.makeFileSpecList(filePaths);
-            List<IFileSpec> revisionFileSpecs = p4Connection.getServer().getDepotFiles(searchFileSpecs, false);
+            List<IFileSpec> revisionFileSpecs = p4Context.getP4Connection().getServer().getDepotFiles(searchFileSpecs, false);
 
             if (revisionFileSpecs == null || revisionFileSpecs.isEmpty()){
                 throw new VCSAnalyzerException("Couldn't find the source files in Perforce for revision " + cl);
             }
 
-            loadFileSpecsContentIntoDiffContext(p4Connection, revisionFileSpecs, sourceFileDiffContexts, forOriginal, cl);
+            if (revisionContentCache == null) {
+                loadFileSpecsContentIntoDiffContext(p4Context.getConnectionPool(), revisionFileSpecs, sourceFileDiffContexts,
+                        forOriginal, cl);
+                return;
+            }
+
+            Map<String, String> missedRevisionKeys = new HashMap<>();
+            List<IFileSpec> missedFileSpecs = loadCachedRevisions(p4Context.getP4Connection(), revisionFileSpecs, cl,
+                    forOriginal, sourceFileDiffContexts, missedRevisionKeys);
+            loadFileSpecsContentIntoDiffContext(p4Context.getConnectionPool(), missedFileSpecs, sourceFileDiffContexts,
+                    forOriginal, cl);
+            storeRevisions(missedRevisionKeys, forOriginal, sourceFileDiffContexts);
         } catch (P4JavaException e) {
             throw new VCSAnalyzerException(e);
         }
     }
 
+    /**
+     * Load the content of every revision found in the {@link P4RevisionContentCache} into its diff
+     * context, and return the file specs of the revisions still to print. The revision of each
+     * file at the changelist, and the server's digest of its content, are read with one
+     * {@code p4 fstat -Ol} round-trip; files without a revision to key on (e.g. deleted at the
+     * changelist) are always printed.
+     *
+     * @param p4Connection the Perforce connection used for the {@code fstat}
+     * @param revisionFileSpecs the file specs returned by {@code getDepotFiles} for the changelist
+     * @param cl the changelist the content is read at
+     * @param forOriginal whether the content is the "before" side of the diff
+     * @param sourceFileDiffContexts the diff-context map keyed by depot path
+     * @param missedRevisionKeys populated with the revision key of each printed file that can be
+     *                           stored in the cache, keyed by depot path
+     * @return the file specs of the revisions that weren't in the cache
+     */
+    private List<IFileSpec> loadCachedRevisions(P4Connection p4Connection, List<IFileSpec> revisionFileSpecs,
+                                                String cl, boolean forOriginal,
+                                                Map<String, SourceFileDiffContext> sourceFileDiffContexts,
+                                                Map<String, String> missedRevisionKeys) throws P4JavaException {
+        Map<String, String> revisionKeys = readRevisionKeys(p4Connection, revisionFileSpecs, cl);
+        List<IFileSpec> missedFileSpecs = new ArrayList<>();
+        int hits = 0;
+        for (IFileSpec fileSpec : revisionFileSpecs) {
+            String depotPath = fileSpec.getDepotPathString();
+            String revisionKey = (depotPath != null) ? revisionKeys.get(depotPath) : null;
+            String content = (revisionKey != null) ? revisionContentCache.get(revisionKey) : null;
+            if (content != null) {
+                loadFileContentIntoDiffContext(sourceFileDiffContexts, forOriginal, depotPath, content);
+                hits++;
+            } else {
+                missedFileSpecs.add(fileSpec);
+                if (revisionKey != null) {
+                    missedRevisionKeys.put(depotPath, revisionKey);
+                }
+            }
+        }
+        log.info("Content for {} of {} files at CL {} served from the revision cache (forOriginal={})", hits,
+                revisionFileSpecs.size(), cl, forOriginal);
+        return missedFileSpecs;
+    }
+
+    /**
+     * Read the revision key of each file at the changelist: the depot path, the revision the
+     * changelist resolves to and the server's digest of its content.
+     *
+     * @return the revision keys, keyed by depot path
+     */
+    private Map<String, String> readRevisionKeys(P4Connection p4Connection, List<IFileSpec> revisionFileSpecs,
+                                                 String cl) throws P4JavaException {
+        List<String> filePaths = new ArrayList<>();
+        for (IFileSpec fileSpec : revisionFileSpecs) {
+            if (fileSpec.getDepotPathString() != null) {
+                filePaths.add(fileSpec.getDepotPathString() + "@" + cl);
+            }
+        }
+        Map<String, String> revisionKeys = new HashMap<>();
+        if (filePaths.isEmpty()) {
+            return revisionKeys;
+        }
+
+        GetExtendedFilesOptions options = new GetExtendedFilesOptions();
+        FileStatAncilliaryOptions ancilliaryOptions = new FileStatAncilliaryOptions();
+        ancilliaryOptions.setFileSizeDigest(true);
+        options.setAncilliaryOptions(ancilliaryOptions);
+        List<IExtendedFileSpec> fileStats = p4Connection.getServer().getExtendedFiles(
+                FileSpecBuilder.makeFileSpecList(filePaths), options);
+        if (fileStats == null) {
+            return revisionKeys;
+        }
+
+        for (IExtendedFileSpec fileStat : fileStats) {
+            String depotPath = fileStat.getDepotPathString();
+            FileAction headAction = fileStat.getHeadAction();
+            if (depotPath == null || fileStat.getHeadRev() <= 0
+                    || (headAction != null && convertP4ChangeType(headAction) == ChangeType.DELETE)) {
+                continue;
+            }
+            revisionKeys.put(depotPath, P4RevisionContentCache.revisionKey(depotPath, fileStat.getHeadRev(),
+                    fileStat.getDigest()));
+        }
+        return revisionKeys;
+    }
+
+    /**
+     * Store the printed content of the revisions that missed the cache, then trim the cache back
+     * to its size limit.
+     */
+    private void storeRevisions(Map<String, String> missedRevisionKeys, boolean forOriginal,
+                                Map<String, SourceFileDiffContext> sourceFileDiffContexts) {
+        if (missedRevisionKeys.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<String, String> missedRevisionKey : missedRevisionKeys.entrySet()) {
+            SourceFileDiffContext diffContext = sourceFileDiffContexts.get(missedRevisionKey.getKey());
+            String content = forOriginal ? diffContext.getSourceContentOriginal() : diffContext.getSourceContentNew();
+            if (content != null) {
+                revisionContentCache.put(missedRevisionKey.getValue(), content);
+            }
+        }
+        revisionContentCache.evictLeastRecentlyUsed();
+    }
+
     /**
      * Read each diff's working-copy content from disk (via its
      * {@link SourceFileDiffContext#getLocalContentPath() local content path}) and set it as the
@@ -682,9 +813,15 @@ public class P4DiffAnalyzer {
 
     /**
      * Load content for every file in {@code revisionFileSpecs} at the given changelist into
-     * the matching {@link SourceFileDiffContext}. Fetches all files in a single
-     * {@code p4 print} round-trip per version - replaces the older per-file loop that made
-     * one round-trip per file.
+     * the matching {@link SourceFileDiffContext}. Fetches the files in one batched
+     * {@code p4 print} round-trip per version and connection - replaces the older per-file
+     * loop that made one round-trip per file.
+     *
+     * <p>When the connection pool holds more than one connection, the argv is split into up to
+     * that many batches of at least {@link #MIN_FILES_PER_PRINT_BATCH} files, each printed over
+     * its own connection in parallel - one connection is served by one server thread, so a
+     * large integration would otherwise be bounded by that thread's throughput. Each batch's
+     * time is logged.
      *
      * <p>Implementation: call {@code IServer.execStreamCmd("print", argv)} directly with
      * a {@code String[]} of {@code //depot/path@<CL>} arguments. The higher-level
@@ -710,12 +847,13 @@ public class P4DiffAnalyzer {
      * <p>The returned stream is the concatenation of every file's {@code p4 print} output:
      * each file is prefixed by a header line of the form
      * {@code //depot/path#rev - <action> change <CL> (<type>)} followed by the raw file
-     * content bytes. {@link #parseBatchedPrintStream} locates the header line positions in
-     * the byte buffer and slices the content for each file as the bytes between two
-     * consecutive header lines (preserving line endings, leading blank lines and trailing
-     * newlines verbatim - important for line-level diff accuracy).
+     * content bytes. {@link P4PrintStreamDemultiplexer} splits the stream into each file's
+     * content as it's read - the bytes between two consecutive header lines, preserving line
+     * endings, leading blank lines and trailing newlines verbatim (important for line-level
+     * diff accuracy) - and each file's content is set on its diff context as soon as the file
+     * ends. Only one file's bytes are held at a time, so a large batch isn't buffered whole.
      *
-     * @param p4Connection the Perforce connection used to call {@code execStreamCmd}
+     * @param connectionPool the Perforce connections used to call {@code execStreamCmd}
      * @param revisionFileSpecs the file specs returned by {@code getDepotFiles} - each carries
      *                          a depot path for the file at the requested CL; specs with a
      *                          null depot path (file missing at this revision) are skipped
@@ -727,7 +865,7 @@ public class P4DiffAnalyzer {
      * @param cl the changelist id used as the {@code @CL} annotation in the argv (same id
      *           that was passed to {@code getDepotFiles} to resolve the specs)
      */
-    private void loadFileSpecsContentIntoDiffContext(P4Connection p4Connection,
+    private void loadFileSpecsContentIntoDiffContext(P4ConnectionPool connectionPool,
                                                      List<IFileSpec> revisionFileSpecs,
                                                      Map<String, SourceFileDiffContext> sourceFileDiffContexts,
                                                      boolean forOriginal,
@@ -755,28 +893,28 @@ public class P4DiffAnalyzer {
             return;
         }
 
-        byte[] streamBytes;
-        try {
-            InputStream stream = p4Connection.getServer().execStreamCmd("print",
-                    argvList.toArray(new String[0]));
-            if (stream == null) {
-                throw new VCSAnalyzerException("Batched p4 print returned a null stream for "
-                        + argvList.size() + " files (forOriginal=" + forOriginal + ")");
-            }
-            try {
-                streamBytes = readAllBytes(stream);
-            } finally {
-                stream.close();
-            }
-        } catch (P4JavaException | IOException e) {
-            throw new VCSAnalyzerException(e);
+        // split the argv into contiguous batches, one per pooled connection
+        int batchCount = Math.min(connectionPool.getSize(),
+                (argvList.size() + MIN_FILES_PER_PRINT_BATCH - 1) / MIN_FILES_PER_PRINT_BATCH);
+        batchCount = Math.max(1, batchCount);
+        List<P4ConnectionPool.P4ConnectionTask<Set<String>>> batches = new ArrayList<>(batchCount);
+        for (int i = 0; i < batchCount; i++) {
+            int from = i * argvList.size() / batchCount;
+            int to = (i + 1) * argvList.size() / batchCount;
+            int batchNumber = i + 1;
+            int batchTotal = batchCount;
+            batches.add(connection -> printBatch(connection, argvList.subList(from, to),
+                    expectedDepotPaths.subList(from, to), sourceFileDiffContexts, forOriginal,
+                    batchNumber, batchTotal));
         }
 
-        Map<String, String> contentByDepotPath = parseBatchedPrintStream(streamBytes, expectedDepotPaths);
+        Set<String> seenDepotPaths = new HashSet<>();
+        for (Set<String> batchSeenDepotPaths : connectionPool.runAll(batches)) {
+            seenDepotPaths.addAll(batchSeenDepotPaths);
+        }
 
         for (String depotPath : expectedDepotPaths) {
-            String content = contentByDepotPath.get(depotPath);
-            if (content == null) {
+            if (!seenDepotPaths.contains(depotPath)) {
                 // We asked p4 print for this depot path but no header for it appeared in the
                 // response. Either p4java returned a partial stream or the demux missed a
                 // header - either way, silently leaving the diff context with null content
@@ -784,122 +922,37 @@ public class P4DiffAnalyzer {
                 throw new VCSAnalyzerException("Batched p4 print returned no content for depot path "
                         + depotPath + " (forOriginal=" + forOriginal + ")");
             }
-            loadFileContentIntoDiffContext(sourceFileDiffContexts, forOriginal, depotPath, content);
         }
     }
 
     /**
-     * Read every byte of {@code stream} into an in-memory byte array. The batched
-     * {@code p4 print} output is bounded by the total size of the changed source files in
-     * the range - kilobytes to a few megabytes in normal use - so buffering in memory is
-     * fine and keeps the parse loop simple.
-     *
-     * @param stream the input stream to drain (caller closes it)
-     * @return the byte contents
-     * @throws IOException if the underlying read fails
-     */
-    private byte[] readAllBytes(InputStream stream) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        byte[] chunk = new byte[8192];
-        int n;
-        while ((n = stream.read(chunk)) != -1) {
-            buffer.write(chunk, 0, n);
-        }
-        return buffer.toByteArray();
-    }
-
-    /**
-     * Locate each {@code //depot/path#rev - ...} header line in {@code streamBytes} and slice
-     * the content for each file as the verbatim bytes between consecutive header line
-     * starts. Slicing by byte position (rather than reading line-by-line and rejoining)
-     * preserves line endings, leading blank lines and trailing newlines exactly as the
-     * server emitted them - critical so the line-level diff comparison in
-     * {@code MethodImpactAnalyzer} sees the same byte shape that the serial per-file fetch
-     * would have produced.
-     *
-     * @param streamBytes the raw stream contents
-     * @param expectedDepotPaths depot paths the caller requested (used to validate header
-     *                           candidates - prevents a content line that happens to look
-     *                           like a header from being mistaken for one)
-     * @return content keyed by depot path; files whose header was not found in the stream
-     *         are absent from the map
-     */
-    /**
-     * Matches the portion of a p4 print header that comes <em>after</em> {@code <path>#}, up
-     * to the end of the header line. Shape: {@code <digits> - <whatever> (<type>)}. The
-     * {@code <whatever>} segment varies by action ({@code edit change 1234},
-     * {@code integrate change 1234 from //other#3}, etc.) so we don't pin its internal
-     * structure; only the bookend digits, the {@code  - }, and the trailing parenthesised
-     * file-type segment are load-bearing.
+     * Print one batch of files over one connection, setting each file's content on its diff
+     * context as it's read from the stream. Batches run in parallel, each on its own diff
+     * contexts, so the shared map is only read.
+     *
+     * @return the depot paths whose content was found in the stream
      */
-    private static final Pattern P4_PRINT_HEADER_TAIL =
-            Pattern.compile("\\d+ - .* \\([^)]+\\)");
-
-    private Map<String, String> parseBatchedPrintStream(byte[] streamBytes,
-                                                        List<String> expectedDepotPaths) {
-        String stream = new String(streamBytes, StandardCharsets.UTF_8);
-
-        // Phase 1: locate every expected file's header by direct substring search and
-        // header-shape validation. We do NOT require the header to be preceded by '\n' -
-        // a source file whose content lacks a trailing '\n' makes the next file's header
-        // physically adjacent to the prior file's content tail in the stream bytes
-        // ("<prior content tail>//nextFile#1 - add change 1234 (text)\n"). Java source
-        // files commonly omit the trailing newline, so this case must be handled.
-        //
-        // Instead of a boundary check, we validate the full header-line shape after the
-        // path's '#' (digits, ' - ', whatever, ' (<type>)'). The chance of source code
-        // accidentally containing this exact substring sequence for one of THIS run's
-        // expected depot paths is vanishingly small.
-        List<int[]> headerSpans = new ArrayList<>();   // [headerStartIdx, contentStartIdx]
-        List<String> headerDepotPaths = new ArrayList<>();
-        for (String expectedPath : expectedDepotPaths) {
-            String needle = expectedPath + "#";
-            int searchFrom = 0;
-            while (searchFrom <= stream.length() - needle.length()) {
-                int idx = stream.indexOf(needle, searchFrom);
-                if (idx < 0) {
-                    break;
-                }
-
-                int afterHash = idx + needle.length();
-                int nlIdx = stream.indexOf('\n', afterHash);
-                int lineEnd = (nlIdx == -1) ? stream.length() : nlIdx;
-                int lineDataEnd = lineEnd;
-                if (lineDataEnd > afterHash && stream.charAt(lineDataEnd - 1) == '\r') {
-                    lineDataEnd--; // ignore CR for header-shape validation
-                }
-
-                Matcher m = P4_PRINT_HEADER_TAIL.matcher(stream);
-                m.region(afterHash, lineDataEnd);
-                if (m.matches()) {
-                    int contentStart = (nlIdx == -1) ? stream.length() : nlIdx + 1;
-                    headerSpans.add(new int[]{idx, contentStart});
-                    headerDepotPaths.add(expectedPath);
-                    break;  // first valid header for this path wins; move to next path
-                }
-                searchFrom = idx + 1;
-            }
-        }
-
-        // Phase 2: sort header positions in stream order (p4's response order isn't
-        // guaranteed to match the order of expectedDepotPaths), then slice content for
-        // each file as the bytes between its header's end and the next header's start.
-        List<Integer> orderedIndices = new ArrayList<>(headerSpans.size());
-        for (int i = 0; i < headerSpans.size(); i++) {
-            orderedIndices.add(i);
+    private Set<String> printBatch(P4Connection p4Connection, List<String> argv, List<String> expectedDepotPaths,
+                                   Map<String, SourceFileDiffContext> sourceFileDiffContexts, boolean forOriginal,
+                                   int batchNumber, int batchCount) throws P4JavaException, IOException {
+        long startTime = System.currentTimeMillis();
+        InputStream stream = p4Connection.getServer().execStreamCmd("print", argv.toArray(new String[0]));
+        if (stream == null) {
+            throw new VCSAnalyzerException("Batched p4 print returned a null stream for "
+                    + argv.size() + " files (forOriginal=" + forOriginal + ")");
         }
-        orderedIndices.sort((a, b) -> Integer.compare(headerSpans.get(a)[0], headerSpans.get(b)[0]));
 
-        Map<String, String> contentByDepotPath = new HashMap<>();
-        for (int i = 0; i < orderedIndices.size(); i++) {
-            int spanIdx = orderedIndices.get(i);
-            int contentStart = headerSpans.get(spanIdx)[1];
-            int contentEnd = (i < orderedIndices.size() - 1)
-                    ? headerSpans.get(orderedIndices.get(i + 1))[0]
-                    : stream.length();
-            contentByDepotPath.put(headerDepotPaths.get(spanIdx), stream.substring(contentStart, contentEnd));
+        Set<String> seenDepotPaths;
+        try {
+            seenDepotPaths = P4PrintStreamDemultiplexer.demultiplex(stream, expectedDepotPaths,
+                    (depotPath, content) ->
+                            loadFileContentIntoDiffContext(sourceFileDiffContexts, forOriginal, depotPath, content));
+        } finally {
+            stream.close();
         }
-        return contentByDepotPath;
+        log.info("Time to p4 print batch {} of {} with {} files (forOriginal={}) (ms): {}", batchNumber, batchCount,
+                argv.size(), forOriginal, System.currentTimeMillis() - startTime);
+        return seenDepotPaths;
     }
 
     private void loadFileContentIntoDiffContext(Map<String, SourceFileDiffContext> sourceFileDiffContexts, boolean forOriginal,
@@ -0,0 +1,186 @@
+package org.tiatesting.vcs.perforce;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the output of a batched {@code p4 print //path1@CL //path2@CL ...} into the content of
+ * each file while the stream is being read, handing each file's content to a consumer as soon as
+ * the next file's header (or the end of the stream) is reached.
+ *
+ * <p>The stream is the concatenation of every file's {@code p4 print} output: a header line of the
+ * form {@code //depot/path#rev - <action> change <CL> (<type>)} followed by the raw file content
+ * bytes. Only the bytes of the file currently being read are buffered, so memory is bounded by the
+ * largest single file in the batch rather than by the whole batch - after a large integration the
+ * batch can be hundreds of MB. Each file's content is the verbatim bytes between its header line
+ * and the next header, decoded as UTF-8 - line endings, leading blank lines and trailing newlines
+ * are preserved, as the line-level diff in {@code MethodImpactAnalyzer} depends on them.
+ *
+ * <p>A header is not required to start a line: a file whose content lacks a trailing {@code '\n'}
+ * puts the next file's header directly against its content tail
+ * ({@code "<prior content tail>//nextFile#1 - add change 1234 (text)\n"}). Java source files
+ * commonly omit the trailing newline, so every line ending in {@code ')'} is searched for the
+ * {@code <path>#} of an expected depot path that hasn't been seen yet, and the rest of the line is
+ * validated against the header shape. The chance of source code containing this exact sequence for
+ * one of the batch's expected depot paths is vanishingly small.
+ */
+final class P4PrintStreamDemultiplexer {
+
+    /**
+     * Matches the portion of a p4 print header that comes <em>after</em> {@code <path>#}, up
+     * to the end of the header line. Shape: {@code <digits> - <whatever> (<type>)}. The
+     * {@code <whatever>} segment varies by action ({@code edit change 1234},
+     * {@code integrate change 1234 from //other#3}, etc.) so we don't pin its internal
+     * structure; only the bookend digits, the {@code  - }, and the trailing parenthesised
+     * file-type segment are load-bearing.
+     */
+    private static final Pattern P4_PRINT_HEADER_TAIL = Pattern.compile("\\d+ - .* \\([^)]+\\)");
+
+    private static final int READ_CHUNK_SIZE = 8192;
+
+    /** The {@code <path>#} bytes of each expected depot path whose header hasn't been seen yet. */
+    private final Map<String, byte[]> pendingHeaderNeedles = new LinkedHashMap<>();
+    private final Set<String> seenDepotPaths = new HashSet<>();
+    private final BiConsumer<String, String> fileContentConsumer;
+
+    /** The bytes read since the last header - the current file's content, ending with the line being read. */
+    private byte[] buffer = new byte[READ_CHUNK_SIZE];
+    private int bufferLength;
+    private int lineStart;
+    private String currentDepotPath;
+
+    private P4PrintStreamDemultiplexer(Collection<String> expectedDepotPaths,
+                                       BiConsumer<String, String> fileContentConsumer) {
+        for (String depotPath : expectedDepotPaths) {
+            pendingHeaderNeedles.put(depotPath, (depotPath + "#").getBytes(StandardCharsets.UTF_8));
+        }
+        this.fileContentConsumer = fileContentConsumer;
+    }
+
+    /**
+     * Read the batched {@code p4 print} stream to its end, passing each expected file's content to
+     * {@code fileContentConsumer} in stream order. The first valid header for a depot path wins;
+     * bytes before the first header are ignored.
+     *
+     * @param stream the batched {@code p4 print} output (caller closes it)
+     * @param expectedDepotPaths the depot paths the caller requested - used to validate header
+     *                           candidates, so a content line that happens to look like a header
+     *                           isn't mistaken for one
+     * @param fileContentConsumer receives each file's depot path and content
+     * @return the depot paths whose header was found in the stream
+     * @throws IOException if the underlying read fails
+     */
+    static Set<String> demultiplex(InputStream stream, Collection<String> expectedDepotPaths,
+                                   BiConsumer<String, String> fileContentConsumer) throws IOException {
+        P4PrintStreamDemultiplexer demultiplexer = new P4PrintStreamDemultiplexer(expectedDepotPaths, fileContentConsumer);
+        demultiplexer.read(stream);
+        return demultiplexer.seenDepotPaths;
+    }
+
+    private void read(InputStream stream) throws IOException {
+        byte[] chunk = new byte[READ_CHUNK_SIZE];
+        int n;
+        while ((n = stream.read(chunk)) != -1) {
+            int segmentStart = 0;
+            for (int i = 0; i < n; i++) {
+                if (chunk[i] == '\n') {
+                    append(chunk, segmentStart, i + 1 - segmentStart);
+                    segmentStart = i + 1;
+                    endLine(bufferLength - 1);
+                }
+            }
+            append(chunk, segmentStart, n - segmentStart);
+        }
+
+        // the stream can end without a newline - in the content of the last file, or in the
+        // header line of an empty last file
+        if (bufferLength > lineStart) {
+            endLine(bufferLength);
+        }
+        emitCurrentFile(bufferLength);
+    }
+
+    private void append(byte[] bytes, int offset, int length) {
+        if (bufferLength + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, bufferLength + length));
+        }
+        System.arraycopy(bytes, offset, buffer, bufferLength, length);
+        bufferLength += length;
+    }
+
+    /**
+     * Check whether the line just read holds the next file's header. If it does, the bytes before
+     * the header complete the current file's content and the bytes after the header line start the
+     * next file's.
+     *
+     * @param lineDataEnd the end of the line in the buffer, excluding its {@code '\n'}
+     */
+    private void endLine(int lineDataEnd) {
+        if (lineDataEnd > lineStart && buffer[lineDataEnd - 1] == '\r') {
+            lineDataEnd--; // ignore CR for header-shape validation
+        }
+
+        if (lineDataEnd > lineStart && buffer[lineDataEnd - 1] == ')' && !pendingHeaderNeedles.isEmpty()) {
+            String headerDepotPath = null;
+            int headerStart = -1;
+            for (Map.Entry<String, byte[]> needle : pendingHeaderNeedles.entrySet()) {
+                int idx = indexOfHeader(needle.getValue(), lineDataEnd);
+                if (idx >= 0 && (headerStart < 0 || idx < headerStart)) {
+                    headerStart = idx;
+                    headerDepotPath = needle.getKey();
+                }
+            }
+
+            if (headerDepotPath != null) {
+                emitCurrentFile(headerStart);
+                pendingHeaderNeedles.remove(headerDepotPath);
+                seenDepotPaths.add(headerDepotPath);
+                currentDepotPath = headerDepotPath;
+                bufferLength = 0;
+            }
+        }
+        lineStart = bufferLength;
+    }
+
+    /**
+     * @return the buffer index of the first {@code needle} in the current line that's followed by
+     *         a valid header tail up to {@code lineDataEnd}, or -1 if there's none
+     */
+    private int indexOfHeader(byte[] needle, int lineDataEnd) {
+        for (int idx = lineStart; idx <= lineDataEnd - needle.length; idx++) {
+            if (regionMatches(idx, needle)) {
+                int afterHash = idx + needle.length;
+                String headerTail = new String(buffer, afterHash, lineDataEnd - afterHash, StandardCharsets.UTF_8);
+                if (P4_PRINT_HEADER_TAIL.matcher(headerTail).matches()) {
+                    return idx;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean regionMatches(int offset, byte[] needle) {
+        for (int i = 0; i < needle.length; i++) {
+            if (buffer[offset + i] != needle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void emitCurrentFile(int contentEnd) {
+        if (currentDepotPath != null) {
+            fileContentConsumer.accept(currentDepotPath, new String(buffer, 0, contentEnd, StandardCharsets.UTF_8));
+            currentDepotPath = null;
+        }
+    }
+}
@@ -7,10 +7,13 @@ import com.perforce.p4java.option.server.GetChangelistsOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tiatesting.core.diff.SourceFileDiffContext;
+import org.tiatesting.core.vcs.CommitRangeDiffCache;
 import org.tiatesting.core.vcs.VCSAnalyzerException;
 import org.tiatesting.core.vcs.VCSReader;
 import org.tiatesting.vcs.perforce.connection.P4Connection;
+import org.tiatesting.vcs.perforce.connection.P4ConnectionPool;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -23,19 +26,50 @@ public class P4Reader implements VCSReader {
 
     private final P4DiffAnalyzer p4DiffAnalyzer;
     private final P4Context p4Context;
+    private final CommitRangeDiffCache diffCache = new CommitRangeDiffCache();
 
     public P4Reader(final boolean enabled, final String serverUri, final String userName,
                     final String password, final String clientName) {
+        this(enabled, serverUri, userName, password, clientName, 1, null, 0);
+    }
+
+    /**
+     * @param enabled whether Tia is enabled; when not, no connection is made
+     * @param serverUri the Perforce server URI
+     * @param userName the Perforce user name
+     * @param password the Perforce password
+     * @param clientName the Perforce client name
+     * @param printParallelism the number of connections file content is printed over in parallel
+     * @param contentCacheDir the dir of the on-disk cache of file revision content; {@code null} to
+     *                        print every revision from the server
+     * @param contentCacheMaxSizeBytes the size the revision content cache is bounded to
+     */
+    public P4Reader(final boolean enabled, final String serverUri, final String userName,
+                    final String password, final String clientName, final int printParallelism,
+                    final File contentCacheDir, final long contentCacheMaxSizeBytes) {
         if (enabled){
             P4Connection p4Connection = initializeConnection(serverUri, userName, password, clientName);
-            p4Context = new P4Context(p4Connection, readBranchName(p4Connection), readHeadCL(p4Connection));
-            p4DiffAnalyzer = new P4DiffAnalyzer();
+            p4Context = new P4Context(p4Connection, readBranchName(p4Connection), readHeadCL(p4Connection),
+                    new P4ConnectionPool(p4Connection, printParallelism));
+            p4DiffAnalyzer = new P4DiffAnalyzer(contentCacheDir != null
+                    ? new P4RevisionContentCache(contentCacheDir, contentCacheMaxSizeBytes) : null);
         }else{
             p4Context = null;
             p4DiffAnalyzer = null;
         }
     }
 
+    /**
+     * Test seam: a reader over an already built context.
+     *
+     * @param p4Context the P4 context, holding the connection and its pool
+     * @param p4DiffAnalyzer the diff analyzer
+     */
+    P4Reader(final P4Context p4Context, final P4DiffAnalyzer p4DiffAnalyzer) {
+        this.p4Context = p4Context;
+        this.p4DiffAnalyzer = p4DiffAnalyzer;
+    }
+
     private P4Connection initializeConnection(final String serverUri, final String userName, final String password, final String clientName){
         P4Connection p4Connection = P4Connection.getInstance();
         p4Connection.setP4Settings(serverUri, userName, password, clientName);
@@ -50,13 +84,22 @@ public class P4Reader implements VCSReader {
                                                    final List<String> testFilesDirs, final boolean checkLocalChanges) {
         List<String> sourceAndTestFilesDir = new ArrayList<>(sourceFilesDirs);
         sourceAndTestFilesDir.addAll(testFilesDirs);
-        return p4DiffAnalyzer.getDiffFiles(p4Context, baseChangeNum, sourceAndTestFilesDir, checkLocalChanges);
+        if (checkLocalChanges) {
+            return p4DiffAnalyzer.getDiffFiles(p4Context, baseChangeNum, sourceAndTestFilesDir, true);
+        }
+        return diffCache.getDiffFiles(baseChangeNum, getHeadCommit(), sourceAndTestFilesDir,
+                () -> p4DiffAnalyzer.getDiffFiles(p4Context, baseChangeNum, sourceAndTestFilesDir, false));
     }
 
     @Override
     public void loadContentForDiffs(final Collection<SourceFileDiffContext> diffs, final String baseChangeNum,
                                     final boolean checkLocalChanges) {
-        p4DiffAnalyzer.loadContentForDiffContexts(p4Context, diffs, baseChangeNum, checkLocalChanges);
+        if (checkLocalChanges) {
+            p4DiffAnalyzer.loadContentForDiffContexts(p4Context, diffs, baseChangeNum, true);
+        } else {
+            diffCache.loadContentForDiffs(baseChangeNum, getHeadCommit(), diffs,
+                    misses -> p4DiffAnalyzer.loadContentForDiffContexts(p4Context, misses, baseChangeNum, false));
+        }
     }
 
     /**
@@ -66,15 +109,30 @@ public class P4Reader implements VCSReader {
      * ({@code getDepotFiles(...@from,to)} with {@code allRevs=true}) or the local-changes query
      * ({@code getExtendedFiles(//...)} with opened-files=true) and returns each depot path with
      * the client's stream prefix stripped (so the result is repo-relative and forward-slash).
+     * Submit-range paths are cached per changelist range (see {@link CommitRangeDiffCache}).
      */
     @Override
     public Set<String> getChangedFilePaths(final String baseChangeNum, final boolean checkLocalChanges) {
-        return p4DiffAnalyzer.getChangedFilePaths(p4Context, baseChangeNum, checkLocalChanges);
+        if (checkLocalChanges) {
+            return p4DiffAnalyzer.getChangedFilePaths(p4Context, baseChangeNum, true);
+        }
+        return diffCache.getChangedFilePaths(baseChangeNum, getHeadCommit(),
+                () -> p4DiffAnalyzer.getChangedFilePaths(p4Context, baseChangeNum, false));
+    }
+
+    @Override
+    public void setDiffCacheDir(final File diffCacheDir) {
+        diffCache.setPersistDir(diffCacheDir);
     }
 
     @Override
     public void close() {
+        if (p4Context == null) {
+            // Tia is disabled, no connection was made
+            return;
+        }
         log.debug("Closing the P4 connection resource");
+        p4Context.getConnectionPool().close();
         p4Context.getP4Connection().stop();
     }
 
@@ -0,0 +1,174 @@
+package org.tiatesting.vcs.perforce;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tiatesting.core.vcs.VCSAnalyzerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An on-disk cache of Perforce file revision content, keyed by the depot path, the revision and
+ * the server's digest of the content (from {@code p4 fstat -Ol}). See the "Perforce revision
+ * content cache" chapter in WIKI.md.
+ *
+ * <p>A submitted revision never changes, so a revision printed by one select-tests run is served
+ * from disk to every later run whose changelist range includes it - overlapping ranges only print
+ * the revisions they haven't seen. The cache is bounded in size: when a write takes it over the
+ * limit, the least recently used revisions are deleted. Recency is the cache file's modified time,
+ * touched on every hit, so it's shared by every build on the machine.
+ *
+ * <p>Every failure to read or write the cache is logged and treated as a miss - the revision is
+ * printed from the server instead.
+ */
+class P4RevisionContentCache {
+
+    private static final Logger log = LoggerFactory.getLogger(P4RevisionContentCache.class);
+
+    private static final String CACHE_FILE_SUFFIX = ".rev";
+
+    private final File cacheDir;
+    private final long maxSizeBytes;
+
+    /**
+     * @param cacheDir the dir the revisions are stored in; shared by every build using it
+     * @param maxSizeBytes the size the cache is trimmed back to after a write takes it over
+     */
+    P4RevisionContentCache(final File cacheDir, final long maxSizeBytes) {
+        this.cacheDir = cacheDir;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Build the cache key for a file revision.
+     *
+     * @param depotPath the depot path of the file
+     * @param revision the revision number
+     * @param digest the server's digest of the revision's content; {@code null} when the server didn't report one
+     * @return the key
+     */
+    static String revisionKey(final String depotPath, final int revision, final String digest) {
+        return depotPath + "#" + revision + (digest != null ? ":" + digest : "");
+    }
+
+    /**
+     * @param revisionKey the key from {@link #revisionKey}
+     * @return the cached content of the revision, or {@code null} on a miss
+     */
+    String get(final String revisionKey) {
+        File cacheFile = getCacheFile(revisionKey);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+
+        try {
+            String content = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+            if (!cacheFile.setLastModified(System.currentTimeMillis())) {
+                log.debug("Couldn't update the last used time of {}", cacheFile);
+            }
+            return content;
+        } catch (IOException e) {
+            log.warn("Ignoring the unreadable revision cache file {}: {}", cacheFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Store the content of a revision. The file is written alongside and moved into place, so a
+     * concurrent build reading the revision sees the whole content or a miss.
+     *
+     * @param revisionKey the key from {@link #revisionKey}
+     * @param content the revision's content
+     */
+    void put(final String revisionKey, final String content) {
+        File cacheFile = getCacheFile(revisionKey);
+        File tempFile = null;
+        try {
+            Files.createDirectories(cacheDir.toPath());
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDir);
+            Files.write(tempFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write the revision cache file {}: {}", cacheFile, e.getMessage());
+            if (tempFile != null && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used revisions until the cache is within its size limit. Called
+     * once after a batch of writes rather than per write, as it lists the cache dir.
+     */
+    void evictLeastRecentlyUsed() {
+        File[] cacheFiles = cacheDir.listFiles((dir, name) -> name.endsWith(CACHE_FILE_SUFFIX));
+        if (cacheFiles == null) {
+            return;
+        }
+
+        List<CacheFileStat> stats = new ArrayList<>(cacheFiles.length);
+        long totalSize = 0;
+        for (File cacheFile : cacheFiles) {
+            CacheFileStat stat = new CacheFileStat(cacheFile);
+            stats.add(stat);
+            totalSize += stat.size;
+        }
+        if (totalSize <= maxSizeBytes) {
+            return;
+        }
+
+        stats.sort(Comparator.comparingLong(stat -> stat.lastModified));
+        int evicted = 0;
+        for (CacheFileStat stat : stats) {
+            if (totalSize <= maxSizeBytes) {
+                break;
+            }
+            if (stat.file.delete()) {
+                totalSize -= stat.size;
+                evicted++;
+            }
+        }
+        log.info("Evicted {} least recently used revisions from the revision cache {}", evicted, cacheDir);
+    }
+
+    /**
+     * The cache file name is a hash of the key - depot paths and digests aren't always safe in a
+     * file name, and a depot path can be longer than the file system allows.
+     */
+    private File getCacheFile(final String revisionKey) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(revisionKey.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return new File(cacheDir, name + CACHE_FILE_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new VCSAnalyzerException(e);
+        }
+    }
+
+    /**
+     * A cache file's size and last used time, read once so the sort is stable.
+     */
+    private static class CacheFileStat {
+        private final File file;
+        private final long size;
+        private final long lastModified;
+
+        CacheFileStat(File file) {
+            this.file = file;
+            this.size = file.length();
+            this.lastModified = file.lastModified();
+        }
+    }
+}
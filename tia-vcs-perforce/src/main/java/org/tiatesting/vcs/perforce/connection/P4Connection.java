@@ -97,6 +97,22 @@ public class P4Connection {
         }
     }
 
+    /**
+     * Open another connection to the same server, as the same user and client, as this one. Used
+     * by {@link P4ConnectionPool} to run commands in parallel; the caller stops it.
+     *
+     * @return the started connection
+     */
+    public P4Connection newConnection() throws VCSAnalyzerException {
+        P4Connection p4Connection = new P4Connection();
+        p4Connection.serverUri = serverUri;
+        p4Connection.userName = userName;
+        p4Connection.password = password;
+        p4Connection.clientName = clientName;
+        p4Connection.start();
+        return p4Connection;
+    }
+
     /**
      * Disconnects from the P4 server.
      */
@@ -0,0 +1,167 @@
+package org.tiatesting.vcs.perforce.connection;
+
+import com.perforce.p4java.exception.P4JavaException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tiatesting.core.vcs.VCSAnalyzerException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A bounded pool of connections to the same Perforce server, user and client, used to run
+ * independent commands (the batches of a large {@code p4 print}) in parallel. Each Perforce
+ * connection is served by one server thread, so a 3k-file integration read over one connection is
+ * bounded by that thread's throughput.
+ *
+ * <p>The pool lends out the reader's primary connection first and opens the additional
+ * connections lazily, up to the pool size, the first time they're needed. A p4java server isn't
+ * safe for concurrent commands, so each connection runs one task at a time. With a size of 1 the
+ * tasks run one after the other on the calling thread over the primary connection.
+ */
+public class P4ConnectionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(P4ConnectionPool.class);
+
+    private final P4Connection primaryConnection;
+    private final int size;
+    private final LinkedBlockingQueue<P4Connection> idleConnections = new LinkedBlockingQueue<>();
+    private final List<P4Connection> openedConnections = new ArrayList<>();
+
+    /**
+     * @param primaryConnection the started connection the pool's additional connections copy the settings of
+     * @param size the maximum number of connections to run commands over in parallel; {@code 1} or
+     *             less runs every command over the primary connection
+     */
+    public P4ConnectionPool(final P4Connection primaryConnection, final int size) {
+        this.primaryConnection = primaryConnection;
+        this.size = Math.max(1, size);
+        this.idleConnections.add(primaryConnection);
+    }
+
+    /**
+     * @return the maximum number of connections commands are run over in parallel
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Run each task over its own connection, up to the pool size in parallel, and return their
+     * results in task order. The first task to fail fails the call, cancelling the rest.
+     *
+     * @param tasks the tasks to run
+     * @param <T> the task result type
+     * @return the task results, in task order
+     */
+    public <T> List<T> runAll(final List<P4ConnectionTask<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        int threads = Math.min(size, tasks.size());
+        if (threads <= 1) {
+            for (P4ConnectionTask<T> task : tasks) {
+                results.add(run(task, primaryConnection));
+            }
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (P4ConnectionTask<T> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    P4Connection connection = borrowConnection();
+                    try {
+                        return run(task, connection);
+                    } finally {
+                        idleConnections.add(connection);
+                    }
+                }));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VCSAnalyzerException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new VCSAnalyzerException(cause instanceof Exception ? (Exception) cause : e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Disconnect the additional connections the pool opened. The primary connection is left for
+     * its owner to stop.
+     */
+    public void close() {
+        synchronized (openedConnections) {
+            for (P4Connection connection : openedConnections) {
+                try {
+                    connection.stop();
+                } catch (VCSAnalyzerException e) {
+                    log.warn("Failed to disconnect a pooled P4 connection: {}", e.getMessage());
+                }
+            }
+            openedConnections.clear();
+        }
+        idleConnections.clear();
+        idleConnections.add(primaryConnection);
+    }
+
+    private <T> T run(final P4ConnectionTask<T> task, final P4Connection connection) {
+        try {
+            return task.run(connection);
+        } catch (P4JavaException | IOException e) {
+            throw new VCSAnalyzerException(e);
+        }
+    }
+
+    /**
+     * Take an idle connection, opening a new one when none is idle and the pool isn't full. The
+     * executor never runs more tasks than the pool size, so a full pool always has one coming back.
+     */
+    private P4Connection borrowConnection() throws InterruptedException {
+        P4Connection connection = idleConnections.poll();
+        if (connection != null) {
+            return connection;
+        }
+
+        synchronized (openedConnections) {
+            if (openedConnections.size() + 1 < size) {
+                P4Connection newConnection = primaryConnection.newConnection();
+                openedConnections.add(newConnection);
+                log.debug("Opened pooled P4 connection {} of {}", openedConnections.size() + 1, size);
+                return newConnection;
+            }
+        }
+        return idleConnections.take();
+    }
+
+    /**
+     * A command run over one pooled connection.
+     *
+     * @param <T> the command result type
+     */
+    @FunctionalInterface
+    public interface P4ConnectionTask<T> {
+        /**
+         * @param p4Connection the connection to run the command over; used by this task only until it returns
+         * @return the command result
+         * @throws P4JavaException if the command fails on the server
+         * @throws IOException if reading the command output fails
+         */
+        T run(P4Connection p4Connection) throws P4JavaException, IOException;
+    }
+}
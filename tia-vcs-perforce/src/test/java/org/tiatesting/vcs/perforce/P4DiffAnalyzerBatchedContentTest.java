@@ -2,12 +2,14 @@ package org.tiatesting.vcs.perforce;
 
 import com.perforce.p4java.client.IClient;
 import com.perforce.p4java.core.file.FileAction;
+import com.perforce.p4java.core.file.IExtendedFileSpec;
 import com.perforce.p4java.core.file.IFileSpec;
 import com.perforce.p4java.exception.P4JavaException;
 import com.perforce.p4java.server.IOptionsServer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -17,9 +19,12 @@ import org.tiatesting.core.diff.ChangeType;
 import org.tiatesting.core.diff.SourceFileDiffContext;
 import org.tiatesting.core.vcs.VCSAnalyzerException;
 import org.tiatesting.vcs.perforce.connection.P4Connection;
+import org.tiatesting.vcs.perforce.connection.P4ConnectionPool;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -27,6 +32,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -514,6 +521,146 @@ class P4DiffAnalyzerBatchedContentTest {
                 "exception should mention the null-stream cause. Got: " + thrown.getMessage());
     }
 
+    /**
+     * With a connection pool over 1, the argv is split into one batch per connection and each
+     * batch is printed over its own connection - for both the "before" and "after" versions -
+     * with every file's content still attributed to the right diff context.
+     */
+    @Test
+    void pooledConnections_splitArgvIntoParallelBatches() throws P4JavaException {
+        // given - enough modified files for two batches, and a pool of two connections
+        int fileCount = 2 * P4DiffAnalyzer.MIN_FILES_PER_PRINT_BATCH;
+        stubPrintBatches(fileCount, null);
+        P4Connection pooledConnection = org.mockito.Mockito.mock(P4Connection.class);
+        when(pooledConnection.getServer()).thenReturn(server);
+        when(p4Connection.newConnection()).thenReturn(pooledConnection);
+        P4Context ctx = new P4Context(p4Connection, "main", "103", new P4ConnectionPool(p4Connection, 2));
+
+        // when
+        Set<SourceFileDiffContext> contexts =
+                buildDiffFilesContext(ctx, "100", Collections.singletonList(SOURCE_DIR_DEPOT), false);
+
+        // then - two batches of half the files per version, and every file's content is its own
+        ArgumentCaptor<String[]> argvCaptor = ArgumentCaptor.forClass(String[].class);
+        verify(server, times(4)).execStreamCmd(eq("print"), argvCaptor.capture());
+        for (String[] argv : argvCaptor.getAllValues()) {
+            assertEquals(fileCount / 2, argv.length);
+        }
+        assertEquals(fileCount, contexts.size());
+        for (SourceFileDiffContext context : contexts) {
+            String depotPath = context.getVcsFetchKey();
+            assertEquals(depotPath + "@100\n", context.getSourceContentOriginal());
+            assertEquals(depotPath + "@103\n", context.getSourceContentNew());
+        }
+    }
+
+    /**
+     * Closing the reader after a selection has read the diff over the pool disconnects the
+     * connections the pool opened as well as the primary one, so no server connection outlives it.
+     */
+    @Test
+    void pooledConnections_areDisconnectedWhenTheReaderIsClosed() throws P4JavaException {
+        // given - a selection's diff read over a pool of two connections, the first two batches
+        // printed at the same time so the pool has to open its second connection
+        stubPrintBatches(2 * P4DiffAnalyzer.MIN_FILES_PER_PRINT_BATCH, new CountDownLatch(2));
+        P4Connection pooledConnection = org.mockito.Mockito.mock(P4Connection.class);
+        when(pooledConnection.getServer()).thenReturn(server);
+        when(p4Connection.newConnection()).thenReturn(pooledConnection);
+        P4Reader reader = new P4Reader(new P4Context(p4Connection, "main", "103",
+                new P4ConnectionPool(p4Connection, 2)), analyzer);
+        Set<SourceFileDiffContext> diffs = reader.getDiffFiles("100", Collections.singletonList(SOURCE_DIR_DEPOT),
+                Collections.emptyList(), false);
+        reader.loadContentForDiffs(diffs, "100", false);
+        verify(p4Connection).newConnection();
+
+        // when
+        reader.close();
+
+        // then
+        verify(pooledConnection).stop();
+        verify(p4Connection).stop();
+    }
+
+    /**
+     * Stub a range of modified files and a {@code p4 print} that prints every argv entry
+     * {@code //path@CL} as {@code //path#1} with content naming the path and CL.
+     *
+     * @param fileCount the number of modified files in the range
+     * @param printsInFlight when set, each print waits until this many prints have started
+     */
+    private void stubPrintBatches(final int fileCount, final CountDownLatch printsInFlight) throws P4JavaException {
+        List<IFileSpec> changedSpecs = new ArrayList<>();
+        List<IFileSpec> whereSpecs = new ArrayList<>();
+        for (int i = 0; i < fileCount; i++) {
+            String depotPath = SOURCE_DIR_DEPOT + "/com/example/File" + i + ".java";
+            changedSpecs.add(spec(depotPath, "/ws/File" + i + ".java", FileAction.EDIT, 101, 2));
+            whereSpecs.add(spec(depotPath, "/ws/File" + i + ".java", null, 0, 0));
+        }
+        when(server.getDepotFiles(any(), anyBoolean())).thenReturn(changedSpecs);
+        when(client.where(any()))
+                .thenReturn(sourceAndTestFilesSpecs)
+                .thenReturn(whereSpecs);
+
+        // every argv entry //path@CL prints as //path#1 with content naming the path and CL
+        when(server.execStreamCmd(eq("print"), any(String[].class))).thenAnswer(invocation -> {
+            if (printsInFlight != null) {
+                printsInFlight.countDown();
+                printsInFlight.await(10, TimeUnit.SECONDS);
+            }
+            StringBuilder printed = new StringBuilder();
+            for (String argv : (String[]) invocation.getArgument(1)) {
+                String depotPath = argv.substring(0, argv.indexOf('@'));
+                printed.append(depotPath).append("#1 - edit change 1 (text)\n").append(argv).append('\n');
+            }
+            return streamFor(printed.toString());
+        });
+    }
+
+    /**
+     * With a revision content cache, a second analysis of the same range reads each revision's
+     * content from the cache rather than printing it from the server again.
+     */
+    @Test
+    void revisionContentCache_servesRevisionsAlreadyPrinted(@TempDir File cacheDir) throws P4JavaException {
+        // given - one modified file, whose revisions at the two CLs fstat reports as #3 and #4
+        IFileSpec foo = spec(FOO_DEPOT, "/ws/Foo.java", FileAction.EDIT, 101, 4);
+        when(server.getDepotFiles(any(), anyBoolean())).thenReturn(Collections.singletonList(foo));
+        IFileSpec fooWhere = spec(FOO_DEPOT, "/ws/Foo.java", null, 0, 0);
+        when(client.where(any()))
+                .thenReturn(sourceAndTestFilesSpecs)
+                .thenReturn(Collections.singletonList(fooWhere))
+                .thenReturn(sourceAndTestFilesSpecs)
+                .thenReturn(Collections.singletonList(fooWhere));
+        IExtendedFileSpec fooBefore = fileStat(FOO_DEPOT, 3, "D3");
+        IExtendedFileSpec fooAfter = fileStat(FOO_DEPOT, 4, "D4");
+        when(server.getExtendedFiles(any(), any()))
+                .thenReturn(Collections.singletonList(fooBefore))
+                .thenReturn(Collections.singletonList(fooAfter))
+                .thenReturn(Collections.singletonList(fooBefore))
+                .thenReturn(Collections.singletonList(fooAfter));
+        when(server.execStreamCmd(eq("print"), any(String[].class)))
+                .thenReturn(streamFor(printedFiles(Collections.singletonList(FOO_DEPOT),
+                        Collections.singletonList(3), Collections.singletonList("class Foo { v3 }"))))
+                .thenReturn(streamFor(printedFiles(Collections.singletonList(FOO_DEPOT),
+                        Collections.singletonList(4), Collections.singletonList("class Foo { v4 }"))));
+
+        P4DiffAnalyzer cachingAnalyzer = new P4DiffAnalyzer(new P4RevisionContentCache(cacheDir, 1024 * 1024));
+        P4Context ctx = new P4Context(p4Connection, "main", "103");
+        List<String> dirs = Collections.singletonList(SOURCE_DIR_DEPOT);
+        Set<SourceFileDiffContext> firstRun = cachingAnalyzer.getDiffFiles(ctx, "100", dirs, false);
+        cachingAnalyzer.loadContentForDiffContexts(ctx, firstRun, "100", false);
+
+        // when
+        Set<SourceFileDiffContext> secondRun = cachingAnalyzer.getDiffFiles(ctx, "100", dirs, false);
+        cachingAnalyzer.loadContentForDiffContexts(ctx, secondRun, "100", false);
+
+        // then - only the first run printed, and the second run has the same content
+        verify(server, times(2)).execStreamCmd(eq("print"), any(String[].class));
+        SourceFileDiffContext fooDiff = secondRun.iterator().next();
+        assertEquals("class Foo { v3 }\n", fooDiff.getSourceContentOriginal());
+        assertEquals("class Foo { v4 }\n", fooDiff.getSourceContentNew());
+    }
+
     /**
      * Build a {@code p4 print}-shaped textual blob for the given depot paths, revisions and
      * contents. Each file gets a {@code //depot/path#<rev> - edit change 1 (text)} header
@@ -541,6 +688,18 @@ class P4DiffAnalyzerBatchedContentTest {
         return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
     }
 
+    /**
+     * Build a Mockito-stubbed {@code fstat} result for a file revision.
+     */
+    private static IExtendedFileSpec fileStat(String depotPath, int headRev, String digest) {
+        IExtendedFileSpec s = org.mockito.Mockito.mock(IExtendedFileSpec.class);
+        when(s.getDepotPathString()).thenReturn(depotPath);
+        when(s.getHeadRev()).thenReturn(headRev);
+        when(s.getDigest()).thenReturn(digest);
+        when(s.getHeadAction()).thenReturn(FileAction.EDIT);
+        return s;
+    }
+
     /**
      * Build a Mockito-stubbed {@link IFileSpec} populated with the fields the analyzer
      * reads ({@code depotPathString}, {@code localPathString}, {@code originalPathString},
@@ -0,0 +1,153 @@
+package org.tiatesting.vcs.perforce;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies that {@link P4PrintStreamDemultiplexer} splits a batched {@code p4 print} stream into
+ * each file's verbatim content as the bytes arrive, independent of how the underlying stream
+ * chunks its reads.
+ */
+class P4PrintStreamDemultiplexerTest {
+
+    private static final String FOO_DEPOT = "//apps/example/src/main/java/com/example/Foo.java";
+    private static final String BAR_DEPOT = "//apps/example/src/main/java/com/example/Bar.java";
+    private static final String BAZ_DEPOT = "//apps/example/src/main/java/com/example/Baz.java";
+
+    /**
+     * Content is sliced verbatim - CRLF line endings, a missing trailing newline, leading blank
+     * lines and multi-byte characters - even when every read returns only a few bytes.
+     */
+    @Test
+    void contentIsSlicedVerbatimAcrossSmallReads() throws IOException {
+        // given - Foo lacks a trailing newline, Bar has CRLF endings and non-ASCII content
+        String stream =
+                FOO_DEPOT + "#3 - edit change 12 (text)\n" +
+                "\nclass Foo { }" +
+                BAR_DEPOT + "#5 - integrate change 12 from //other/Bar.java#2 (text)\r\n" +
+                "class Bar {\r\n  String s = \"héllo €\";\r\n}\r\n";
+
+        // when
+        Map<String, String> content = new LinkedHashMap<>();
+        Set<String> seen = P4PrintStreamDemultiplexer.demultiplex(new TrickleInputStream(stream, 3),
+                Arrays.asList(FOO_DEPOT, BAR_DEPOT), content::put);
+
+        // then
+        assertEquals(new HashSet<>(Arrays.asList(FOO_DEPOT, BAR_DEPOT)), seen);
+        assertEquals(Arrays.asList(FOO_DEPOT, BAR_DEPOT), Arrays.asList(content.keySet().toArray()));
+        assertEquals("\nclass Foo { }", content.get(FOO_DEPOT));
+        assertEquals("class Bar {\r\n  String s = \"héllo €\";\r\n}\r\n", content.get(BAR_DEPOT));
+    }
+
+    /**
+     * A content line shaped like a header for a path that wasn't requested stays in the content,
+     * an empty last file without a trailing newline is still returned, and a requested path with
+     * no header is left out of the seen paths.
+     */
+    @Test
+    void onlyHeadersForExpectedPathsSplitTheStream() throws IOException {
+        // given
+        String fakeHeader = "//apps/other/Other.java#1 - edit change 1 (text)\n";
+        String stream =
+                BAR_DEPOT + "#5 - edit change 12 (text)\n" +
+                "// " + fakeHeader +
+                fakeHeader +
+                FOO_DEPOT + "#1 - add change 12 (text)";
+
+        // when
+        Map<String, String> content = new LinkedHashMap<>();
+        Set<String> seen = P4PrintStreamDemultiplexer.demultiplex(new TrickleInputStream(stream, 7),
+                Arrays.asList(FOO_DEPOT, BAR_DEPOT, BAZ_DEPOT), content::put);
+
+        // then
+        assertEquals(new HashSet<>(Arrays.asList(FOO_DEPOT, BAR_DEPOT)), seen);
+        assertEquals("// " + fakeHeader + fakeHeader, content.get(BAR_DEPOT));
+        assertEquals("", content.get(FOO_DEPOT));
+    }
+
+    /**
+     * Each file is handed over as soon as the next file's header is read, before the rest of the
+     * stream arrives.
+     */
+    @Test
+    void eachFileIsHandedOverWhenTheNextHeaderIsRead() throws IOException {
+        // given
+        String stream =
+                FOO_DEPOT + "#3 - edit change 12 (text)\n" +
+                "class Foo { }\n" +
+                BAR_DEPOT + "#5 - edit change 12 (text)\n" +
+                "class Bar { }\n";
+        TrickleInputStream input = new TrickleInputStream(stream, 1);
+        Map<String, Integer> bytesReadWhenHandedOver = new LinkedHashMap<>();
+
+        // when
+        P4PrintStreamDemultiplexer.demultiplex(input, Arrays.asList(FOO_DEPOT, BAR_DEPOT),
+                (depotPath, fileContent) -> bytesReadWhenHandedOver.put(depotPath, input.position));
+
+        // then - Foo is handed over once Bar's header line is read, Bar at the end of the stream
+        int barContentStart = stream.indexOf("class Bar");
+        assertEquals(Integer.valueOf(barContentStart), bytesReadWhenHandedOver.get(FOO_DEPOT));
+        assertEquals(Integer.valueOf(stream.length()), bytesReadWhenHandedOver.get(BAR_DEPOT));
+    }
+
+    /**
+     * An empty stream hands nothing over.
+     */
+    @Test
+    void emptyStreamSeesNoFiles() throws IOException {
+        // given
+        List<String> handedOver = new ArrayList<>();
+
+        // when
+        Set<String> seen = P4PrintStreamDemultiplexer.demultiplex(new ByteArrayInputStream(new byte[0]),
+                Collections.singletonList(FOO_DEPOT), (depotPath, fileContent) -> handedOver.add(depotPath));
+
+        // then
+        assertEquals(Collections.emptySet(), seen);
+        assertEquals(Collections.emptyList(), handedOver);
+    }
+
+    /**
+     * Returns at most {@code maxBytesPerRead} bytes per read, like a network stream.
+     */
+    private static class TrickleInputStream extends InputStream {
+        private final byte[] bytes;
+        private final int maxBytesPerRead;
+        private int position;
+
+        TrickleInputStream(String text, int maxBytesPerRead) {
+            this.bytes = text.getBytes(StandardCharsets.UTF_8);
+            this.maxBytesPerRead = maxBytesPerRead;
+        }
+
+        @Override
+        public int read() {
+            return position < bytes.length ? bytes[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= bytes.length) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, maxBytesPerRead), bytes.length - position);
+            System.arraycopy(bytes, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
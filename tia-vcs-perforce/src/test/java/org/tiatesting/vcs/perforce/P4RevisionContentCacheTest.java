@@ -0,0 +1,68 @@
+package org.tiatesting.vcs.perforce;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Verifies that {@link P4RevisionContentCache} serves a stored revision to a later cache over the
+ * same dir, keys on the revision and digest, and evicts the least recently used revisions once
+ * over its size limit. See the "Perforce revision content cache" chapter in {@code WIKI.md}.
+ */
+class P4RevisionContentCacheTest {
+
+    private static final String FOO_DEPOT = "//apps/example/src/main/java/com/example/Foo.java";
+
+    @TempDir
+    File tempDir;
+
+    /**
+     * A stored revision is read by a later build; a different revision or digest is a miss.
+     */
+    @Test
+    void storedRevisionIsServedToALaterBuild(){
+        // given
+        new P4RevisionContentCache(tempDir, 1024).put(
+                P4RevisionContentCache.revisionKey(FOO_DEPOT, 3, "ABC"), "class Foo {\r\n}\r\n");
+
+        // when
+        P4RevisionContentCache laterCache = new P4RevisionContentCache(tempDir, 1024);
+
+        // then
+        assertEquals("class Foo {\r\n}\r\n", laterCache.get(P4RevisionContentCache.revisionKey(FOO_DEPOT, 3, "ABC")));
+        assertNull(laterCache.get(P4RevisionContentCache.revisionKey(FOO_DEPOT, 4, "ABC")));
+        assertNull(laterCache.get(P4RevisionContentCache.revisionKey(FOO_DEPOT, 3, "DEF")));
+    }
+
+    /**
+     * Over the size limit the least recently used revisions are evicted - a read counts as a use.
+     */
+    @Test
+    void leastRecentlyUsedRevisionsAreEvicted(){
+        // given - three 10 byte revisions in a 25 byte cache, all last used a while ago, then two read again
+        P4RevisionContentCache cache = new P4RevisionContentCache(tempDir, 25);
+        String rev1 = P4RevisionContentCache.revisionKey(FOO_DEPOT, 1, null);
+        String rev2 = P4RevisionContentCache.revisionKey(FOO_DEPOT, 2, null);
+        String rev3 = P4RevisionContentCache.revisionKey(FOO_DEPOT, 3, null);
+        cache.put(rev1, "0123456789");
+        cache.put(rev2, "0123456789");
+        cache.put(rev3, "0123456789");
+        for (File cacheFile : tempDir.listFiles()){
+            cacheFile.setLastModified(System.currentTimeMillis() - 30_000);
+        }
+        cache.get(rev1);
+        cache.get(rev3);
+
+        // when
+        cache.evictLeastRecentlyUsed();
+
+        // then - only the least recently used revision went
+        assertEquals("0123456789", cache.get(rev1));
+        assertNull(cache.get(rev2));
+        assertEquals("0123456789", cache.get(rev3));
+    }
+}